@@ -0,0 +1,82 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * The accept loop of {@link BankServer}, {@link ShardNode} and {@link ReplicationPrimary}.
+ *
+ * <p>Each accepted connection is added to the server's open connections and handed to
+ * {@code handoff}, which starts serving it. If the handoff fails, even with an Error such as
+ * running out of threads, the connection is dropped and closed and the loop carries on.
+ * Every failure goes to the server's error handler, and failures in a row back off from
+ * {@value #MIN_BACKOFF_MILLIS} ms to {@value #MAX_BACKOFF_MILLIS} ms, so running out of file
+ * descriptors neither spins a core nor floods the handler.
+ */
+final class AcceptLoop {
+    /** An error handler that ignores every failure. */
+    static final Consumer<Throwable> IGNORE = e -> { };
+
+    static final long MIN_BACKOFF_MILLIS = 10;
+    static final long MAX_BACKOFF_MILLIS = 1000;
+
+    /** Blocks until the next connection arrives. */
+    interface Source<S> {
+        S accept() throws IOException;
+    }
+
+    /** Starts serving an accepted connection. */
+    interface Handoff<S> {
+        void start(S connection) throws IOException;
+    }
+
+    private AcceptLoop() {
+    }
+
+    /**
+     * Accepts until {@code running} turns false; a failure seen after that ends the loop
+     * quietly. {@code connections} may be null when the server tracks connections itself.
+     */
+    static <S extends Closeable> void run(BooleanSupplier running, Source<S> source, Set<S> connections,
+                                          Handoff<S> handoff, Consumer<? super Throwable> onError) {
+        long backoffMillis = 0;
+        while (running.getAsBoolean()) {
+            S connection = null;
+            try {
+                connection = source.accept();
+                if (connections != null) {
+                    connections.add(connection);
+                }
+                handoff.start(connection);
+                backoffMillis = 0;
+                continue;
+            } catch (IOException | RuntimeException | Error e) {
+                if (connection != null) {
+                    drop(connection, connections);
+                }
+                if (!running.getAsBoolean()) {
+                    return;
+                }
+                onError.accept(e);
+            }
+            backoffMillis = Math.min(Math.max(backoffMillis * 2, MIN_BACKOFF_MILLIS), MAX_BACKOFF_MILLIS);
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static <S extends Closeable> void drop(S connection, Set<S> connections) {
+        if (connections != null) {
+            connections.remove(connection);
+        }
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // Already failed; nothing more to do with it.
+        }
+    }
+}
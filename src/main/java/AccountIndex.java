@@ -0,0 +1,212 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bank's lookup index: account number -> accounts registered under it, oldest first.
+ *
+ * <p>Numbers that {@link AccountNumbers} can encode are kept by code in an open-addressing
+ * table of primitive longs, so a lookup hashes and compares a {@code long} and allocates
+ * nothing; other numbers go to a {@link ConcurrentHashMap} by string. A slot holds the
+ * account itself while a number is registered once, and a {@link Registration} chain for
+ * duplicates. Lookups take no lock. Writers must hold the bank's lock.
+ */
+final class AccountIndex {
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private final ConcurrentHashMap<String, Object> others = new ConcurrentHashMap<>();
+
+    /** The earliest account registered under {@code accountNumber}, or null. */
+    BankAccount first(String accountNumber) {
+        long code = AccountNumbers.encode(accountNumber);
+        Object entry = code == AccountNumbers.NOT_ENCODABLE ? others.get(accountNumber) : table.get(code);
+        if (entry instanceof Registration) {
+            return ((Registration) entry).account;
+        }
+        return (BankAccount) entry;
+    }
+
+    /** Registers {@code account} under its number; call before the account is attached with {@code sequence}. */
+    void add(BankAccount account, long sequence) {
+        long code = account.numberCode();
+        Object head = code == AccountNumbers.NOT_ENCODABLE ? others.get(account.getAccountNumber()) : table.get(code);
+        Object entry = head == null ? account : Registration.append(chain(head), sequence, account);
+        put(account, code, entry);
+    }
+
+    /** Drops one registration. */
+    void remove(BankAccount account, long sequence) {
+        long code = account.numberCode();
+        Object head = code == AccountNumbers.NOT_ENCODABLE ? others.get(account.getAccountNumber()) : table.get(code);
+        if (head == null) {
+            return;
+        }
+        Object entry;
+        if (head instanceof Registration) {
+            Registration rest = Registration.remove((Registration) head, sequence);
+            entry = rest != null && rest.next == null && rest.account.getId() == rest.sequence ? rest.account : rest;
+        } else {
+            entry = head == account ? null : head;
+        }
+        if (entry != head) {
+            put(account, code, entry);
+        }
+    }
+
+    /** Drops every registration under {@code accountNumber} and returns them, oldest first, or null. */
+    Registration removeAll(String accountNumber) {
+        long code = AccountNumbers.encode(accountNumber);
+        Object head;
+        if (code == AccountNumbers.NOT_ENCODABLE) {
+            head = others.remove(accountNumber);
+        } else {
+            head = table.get(code);
+            if (head != null) {
+                table = table.put(code, null);
+            }
+        }
+        return head == null ? null : chain(head);
+    }
+
+    private void put(BankAccount account, long code, Object entry) {
+        if (code != AccountNumbers.NOT_ENCODABLE) {
+            table = table.put(code, entry);
+        } else if (entry == null) {
+            others.remove(account.getAccountNumber());
+        } else {
+            others.put(account.getAccountNumber(), entry);
+        }
+    }
+
+    private static Registration chain(Object entry) {
+        if (entry instanceof Registration) {
+            return (Registration) entry;
+        }
+        BankAccount account = (BankAccount) entry;
+        return new Registration(account.getId(), account, null);
+    }
+
+    /**
+     * Linear-probing table of codes. A removed number keeps its slot with a null value until
+     * the table is rebuilt, so probes never have to be restarted. Slots are written value
+     * first, then key, with release stores, and read key first with acquire loads; a rebuilt
+     * table is filled completely before it is published.
+     */
+    private static final class Table {
+        // Codes are never negative.
+        private static final long FREE = -1;
+
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+        // Slots with a key, removed or not, and slots with a live value.
+        int used;
+        int live;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, FREE);
+        }
+
+        Object get(long code) {
+            for (int i = slot(code); ; i = (i + 1) & mask) {
+                long key = (long) KEYS.getAcquire(keys, i);
+                if (key == code) {
+                    return VALUES.getAcquire(values, i);
+                }
+                if (key == FREE) {
+                    return null;
+                }
+            }
+        }
+
+        /** Sets the entry for {@code code}, null to remove it; returns the table now in use. */
+        Table put(long code, Object entry) {
+            int i = slot(code);
+            for (long key; (key = keys[i]) != FREE; i = (i + 1) & mask) {
+                if (key == code) {
+                    live += (entry != null ? 1 : 0) - (values[i] != null ? 1 : 0);
+                    VALUES.setRelease(values, i, entry);
+                    return this;
+                }
+            }
+            if (entry == null) {
+                return this;
+            }
+            if ((used + 1) * 4L > keys.length * 3L) {
+                return rebuilt(live + 1).put(code, entry);
+            }
+            used++;
+            live++;
+            VALUES.setRelease(values, i, entry);
+            KEYS.setRelease(keys, i, code);
+            return this;
+        }
+
+        private Table rebuilt(int entries) {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < entries * 2L) {
+                capacity <<= 1;
+            }
+            Table table = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE && values[i] != null) {
+                    int j = table.slot(keys[i]);
+                    while (table.keys[j] != FREE) {
+                        j = (j + 1) & table.mask;
+                    }
+                    table.keys[j] = keys[i];
+                    table.values[j] = values[i];
+                    table.used++;
+                    table.live++;
+                }
+            }
+            return table;
+        }
+
+        private int slot(long code) {
+            long h = code * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * Immutable chain of accounts registered under the same account number.
+     * Duplicates are allowed, and lookups return the earliest one.
+     */
+    static final class Registration {
+        final long sequence;
+        final BankAccount account;
+        final Registration next;
+
+        Registration(long sequence, BankAccount account, Registration next) {
+            this.sequence = sequence;
+            this.account = account;
+            this.next = next;
+        }
+
+        static Registration append(Registration head, long sequence, BankAccount account) {
+            if (head == null) {
+                return new Registration(sequence, account, null);
+            }
+            return new Registration(head.sequence, head.account, append(head.next, sequence, account));
+        }
+
+        static Registration remove(Registration head, long sequence) {
+            if (head == null) {
+                return null;
+            }
+            if (head.sequence == sequence) {
+                return head.next;
+            }
+            Registration rest = remove(head.next, sequence);
+            return rest == head.next ? head : new Registration(head.sequence, head.account, rest);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Encodes account numbers of the usual fixed formats into one non-negative {@code long}, so
+ * they can be stored, hashed and compared as primitives; {@link #decode} turns a code back
+ * into the same string. Each encodable string has exactly one code:
+ *
+ * <ul>
+ * <li>1 to 18 decimal digits (bit 62 clear): the digits' value, offset by the count of all
+ *     shorter digit strings, so leading zeros are kept;</li>
+ * <li>otherwise 1 to 10 characters from {@code [0-9A-Za-z-]} (bit 62 set): six bits per
+ *     character, first character highest, with 0 marking the unused tail.</li>
+ * </ul>
+ *
+ * Anything else, including the empty string and null, encodes to {@link #NOT_ENCODABLE}
+ * and has to be kept as a string.
+ */
+final class AccountNumbers {
+    static final long NOT_ENCODABLE = -1;
+
+    static final int MAX_DIGITS = 18;
+    static final int MAX_CHARS = 10;
+
+    private static final long PACKED = 1L << 62;
+    private static final int BITS_PER_CHAR = 6;
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-";
+    // DIGIT_OFFSETS[n] = number of digit strings shorter than n characters.
+    private static final long[] DIGIT_OFFSETS = new long[MAX_DIGITS + 2];
+    private static final byte[] SYMBOLS = new byte[128];
+
+    static {
+        long count = 1;
+        for (int length = 1; length <= MAX_DIGITS; length++) {
+            count *= 10;
+            DIGIT_OFFSETS[length + 1] = DIGIT_OFFSETS[length] + count;
+        }
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            SYMBOLS[ALPHABET.charAt(i)] = (byte) (i + 1);
+        }
+    }
+
+    private AccountNumbers() {
+    }
+
+    static long encode(String accountNumber) {
+        if (accountNumber == null) {
+            return NOT_ENCODABLE;
+        }
+        int length = accountNumber.length();
+        if (length == 0) {
+            return NOT_ENCODABLE;
+        }
+        if (length <= MAX_DIGITS) {
+            long value = 0;
+            int i = 0;
+            for (; i < length; i++) {
+                int digit = accountNumber.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+            }
+            if (i == length) {
+                return DIGIT_OFFSETS[length] + value;
+            }
+        }
+        if (length > MAX_CHARS) {
+            return NOT_ENCODABLE;
+        }
+        long code = 0;
+        for (int i = 0; i < MAX_CHARS; i++) {
+            int symbol = 0;
+            if (i < length) {
+                char c = accountNumber.charAt(i);
+                symbol = c < SYMBOLS.length ? SYMBOLS[c] : 0;
+                if (symbol == 0) {
+                    return NOT_ENCODABLE;
+                }
+            }
+            code = code << BITS_PER_CHAR | symbol;
+        }
+        return PACKED | code;
+    }
+
+    static String decode(long code) {
+        if (code < 0) {
+            throw new IllegalArgumentException("Not an account number code: " + code);
+        }
+        if ((code & PACKED) == 0) {
+            int length = 1;
+            while (length < MAX_DIGITS && code >= DIGIT_OFFSETS[length + 1]) {
+                length++;
+            }
+            long value = code - DIGIT_OFFSETS[length];
+            char[] digits = new char[length];
+            for (int i = length - 1; i >= 0; i--) {
+                digits[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            return new String(digits);
+        }
+        char[] chars = new char[MAX_CHARS];
+        int length = 0;
+        for (int shift = (MAX_CHARS - 1) * BITS_PER_CHAR; shift >= 0; shift -= BITS_PER_CHAR) {
+            int symbol = (int) (code >>> shift) & ((1 << BITS_PER_CHAR) - 1);
+            if (symbol == 0) {
+                break;
+            }
+            chars[length++] = ALPHABET.charAt(symbol - 1);
+        }
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * The list {@link Bank#getAccounts()} returns: reads go to one fixed version of the bank's
+ * accounts, and the first change, through the list or its iterator, copies that version into
+ * a private {@link ArrayList} that takes every later call. The bank never sees the change.
+ */
+abstract class AccountSnapshot extends AbstractList<BankAccount> {
+    private List<BankAccount> copy;
+
+    /** The {@code index}-th account of the version. */
+    abstract BankAccount versionGet(int index);
+
+    abstract int versionSize();
+
+    /** The accounts of the version, in order. */
+    abstract Iterator<BankAccount> versionIterator();
+
+    private List<BankAccount> copy() {
+        if (copy == null) {
+            List<BankAccount> accounts = new ArrayList<>(versionSize());
+            versionIterator().forEachRemaining(accounts::add);
+            copy = accounts;
+        }
+        return copy;
+    }
+
+    @Override
+    public BankAccount get(int index) {
+        return copy == null ? versionGet(index) : copy.get(index);
+    }
+
+    @Override
+    public int size() {
+        return copy == null ? versionSize() : copy.size();
+    }
+
+    @Override
+    public Iterator<BankAccount> iterator() {
+        return copy == null ? new VersionIterator() : copy.iterator();
+    }
+
+    @Override
+    public BankAccount set(int index, BankAccount element) {
+        return copy().set(index, element);
+    }
+
+    @Override
+    public void add(int index, BankAccount element) {
+        copy().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public BankAccount remove(int index) {
+        modCount++;
+        return copy().remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        modCount++;
+        return copy().remove(o);
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        copy = new ArrayList<>();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        modCount++;
+        return copy().removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        modCount++;
+        return copy().retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super BankAccount> filter) {
+        modCount++;
+        return copy().removeIf(filter);
+    }
+
+    /**
+     * Walks the version; {@link #remove()} copies it first. Only elements before the cursor
+     * are removed, so the rest of the walk still matches the copy.
+     */
+    private final class VersionIterator implements Iterator<BankAccount> {
+        private final Iterator<BankAccount> accounts = versionIterator();
+        private int cursor;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return accounts.hasNext();
+        }
+
+        @Override
+        public BankAccount next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!accounts.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BankAccount account = accounts.next();
+            last = cursor++;
+            return account;
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            copy().remove(last);
+            cursor = last;
+            last = -1;
+            expectedModCount = ++modCount;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Immutable, versioned table of accounts indexed by registration id.
+ *
+ * <p>The table is a 32-way trie. An update copies only the nodes on the path to the changed
+ * slot and shares the rest, so a reference to one version is a consistent snapshot that later
+ * updates never touch. Every node keeps the number of accounts below it, which gives
+ * {@link #size()} in O(1) and the n-th account in insertion order in O(log32 n).
+ */
+final class AccountVector {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    static final AccountVector EMPTY = new AccountVector(new Node(new Object[WIDTH], 0), 0);
+
+    private final Node root;
+    // Level of the root: child index = (index >>> shift) & MASK; leaves are at shift 0.
+    private final int shift;
+
+    private AccountVector(Node root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    int size() {
+        return root.live;
+    }
+
+    /** Returns the account registered under {@code index}, or null. */
+    BankAccount find(long index) {
+        if (index < 0 || index >= capacity(shift)) {
+            return null;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[(int) (index >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (BankAccount) node.slots[(int) index & MASK];
+    }
+
+    /** One past the highest index in use, or 0 if the table is empty. */
+    long end() {
+        if (root.live == 0) {
+            return 0;
+        }
+        Node node = root;
+        long index = 0;
+        for (int level = shift; ; level -= BITS) {
+            int i = MASK;
+            while (node.slots[i] == null) {
+                i--;
+            }
+            index |= (long) i << level;
+            if (level == 0) {
+                return index + 1;
+            }
+            node = (Node) node.slots[i];
+        }
+    }
+
+    /** Passes the accounts with an index in {@code [from, to)} to {@code action}, in index order. */
+    void forEach(long from, long to, Consumer<? super BankAccount> action) {
+        if (from < to) {
+            forEach(root, shift, 0, from, Math.min(to, capacity(shift)), action);
+        }
+    }
+
+    private static void forEach(Node node, int level, long base, long from, long to,
+                                Consumer<? super BankAccount> action) {
+        int first = from > base ? (int) ((from - base) >>> level) : 0;
+        for (int i = first; i < WIDTH; i++) {
+            long childBase = base + ((long) i << level);
+            if (childBase >= to) {
+                return;
+            }
+            Object slot = node.slots[i];
+            if (slot == null) {
+                continue;
+            }
+            if (level == 0) {
+                action.accept((BankAccount) slot);
+            } else {
+                forEach((Node) slot, level - BITS, childBase, from, to, action);
+            }
+        }
+    }
+
+    /** Returns the {@code position}-th account in index order. */
+    BankAccount get(int position) {
+        if (position < 0 || position >= root.live) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + root.live);
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            for (Object slot : node.slots) {
+                if (slot != null) {
+                    Node child = (Node) slot;
+                    if (position < child.live) {
+                        node = child;
+                        break;
+                    }
+                    position -= child.live;
+                }
+            }
+        }
+        for (Object slot : node.slots) {
+            if (slot != null && position-- == 0) {
+                return (BankAccount) slot;
+            }
+        }
+        throw new IllegalStateException("Live counts out of step");
+    }
+
+    /** Returns a version with {@code account} stored under {@code index}; null clears the slot. */
+    AccountVector with(long index, BankAccount account) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Index cannot be negative");
+        }
+        Node top = root;
+        int level = shift;
+        while (index >= capacity(level)) {
+            if (account == null) {
+                return this;
+            }
+            Object[] slots = new Object[WIDTH];
+            slots[0] = top.live == 0 ? null : top;
+            top = new Node(slots, top.live);
+            level += BITS;
+        }
+        Node updated = with(top, level, index, account);
+        return updated == top && level == shift ? this : new AccountVector(updated, level);
+    }
+
+    private static Node with(Node node, int level, long index, BankAccount account) {
+        int i = (int) (index >>> level) & MASK;
+        Object current = node == null ? null : node.slots[i];
+        Object replacement;
+        int delta;
+        if (level == 0) {
+            replacement = account;
+            delta = (account == null ? 0 : 1) - (current == null ? 0 : 1);
+        } else {
+            Node child = (Node) current;
+            if (child == null && account == null) {
+                return node;
+            }
+            Node updated = with(child, level - BITS, index, account);
+            replacement = updated.live == 0 ? null : updated;
+            delta = updated.live - (child == null ? 0 : child.live);
+        }
+        if (replacement == current && node != null) {
+            return node;
+        }
+        Object[] slots = node == null ? new Object[WIDTH] : node.slots.clone();
+        slots[i] = replacement;
+        return new Node(slots, (node == null ? 0 : node.live) + delta);
+    }
+
+    /**
+     * Returns a version with {@code accounts[0..count)} stored under consecutive indexes from
+     * {@code first}. Each node on the way is copied once for the whole run, not once per account.
+     */
+    AccountVector withAll(long first, BankAccount[] accounts, int count) {
+        if (first < 0) {
+            throw new IllegalArgumentException("Index cannot be negative");
+        }
+        if (count == 0) {
+            return this;
+        }
+        Node top = root;
+        int level = shift;
+        while (first + count - 1 >= capacity(level)) {
+            Object[] slots = new Object[WIDTH];
+            slots[0] = top.live == 0 ? null : top;
+            top = new Node(slots, top.live);
+            level += BITS;
+        }
+        return new AccountVector(withAll(top, level, 0, first, first + count, accounts, first), level);
+    }
+
+    private static Node withAll(Node node, int level, long base, long from, long to,
+                                BankAccount[] accounts, long first) {
+        Object[] slots = node == null ? new Object[WIDTH] : node.slots.clone();
+        int live = node == null ? 0 : node.live;
+        int start = (int) ((Math.max(from, base) - base) >>> level);
+        for (int i = start; i < WIDTH; i++) {
+            long childBase = base + ((long) i << level);
+            if (childBase >= to) {
+                break;
+            }
+            if (level == 0) {
+                BankAccount account = accounts[(int) (childBase - first)];
+                live += (account == null ? 0 : 1) - (slots[i] == null ? 0 : 1);
+                slots[i] = account;
+            } else {
+                Node child = (Node) slots[i];
+                Node updated = withAll(child, level - BITS, childBase, from, to, accounts, first);
+                live += updated.live - (child == null ? 0 : child.live);
+                slots[i] = updated.live == 0 ? null : updated;
+            }
+        }
+        return new Node(slots, live);
+    }
+
+    /** Accounts in index order. */
+    Iterator<BankAccount> iterator() {
+        return new Iterator<>() {
+            private final Node[] nodes = new Node[shift / BITS + 1];
+            private final int[] positions = new int[nodes.length];
+            private int depth;
+            private BankAccount next;
+
+            {
+                nodes[0] = root;
+                advance();
+            }
+
+            private void advance() {
+                next = null;
+                while (depth >= 0) {
+                    if (positions[depth] == WIDTH) {
+                        depth--;
+                        continue;
+                    }
+                    Object slot = nodes[depth].slots[positions[depth]++];
+                    if (slot == null) {
+                        continue;
+                    }
+                    if (depth == nodes.length - 1) {
+                        next = (BankAccount) slot;
+                        return;
+                    }
+                    nodes[++depth] = (Node) slot;
+                    positions[depth] = 0;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public BankAccount next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                BankAccount result = next;
+                advance();
+                return result;
+            }
+        };
+    }
+
+    /** A list over this version; the first change to the list copies it, so the bank is never affected. */
+    List<BankAccount> asList() {
+        return new AccountSnapshot() {
+            @Override
+            BankAccount versionGet(int index) {
+                return AccountVector.this.get(index);
+            }
+
+            @Override
+            int versionSize() {
+                return AccountVector.this.size();
+            }
+
+            @Override
+            Iterator<BankAccount> versionIterator() {
+                return AccountVector.this.iterator();
+            }
+        };
+    }
+
+    private static long capacity(int level) {
+        return level + BITS >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << (level + BITS);
+    }
+
+    private static final class Node {
+        final Object[] slots;
+        final int live;
+
+        Node(Object[] slots, int live) {
+            this.slots = slots;
+            this.live = live;
+        }
+    }
+}
@@ -1,34 +1,449 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
 
 public class Bank {
-    private List<BankAccount> accounts;
+    // Accounts per leaf task of a parallel pass; large enough to amortize a task, small enough to balance.
+    private static final long SCAN_CHUNK = 1 << 14;
+    private static final int MEMBERSHIP_STRIPES = 16;
+
+    // Lookup index: account number -> registrations with that number, oldest first.
+    private final AccountIndex index = new AccountIndex();
+    // Insertion order: registration sequence - 1 -> account. Replaced, never mutated, by writers.
+    private volatile AccountVector accounts = AccountVector.EMPTY;
+    private long nextSequence = 1;
+    private volatile BankListener[] listeners = new BankListener[0];
+    // Held while a change is applied and reported, when a listener requires ordering; see BankListener.
+    private final ReentrantLock changeLock = new ReentrantLock();
+    private volatile boolean ordered;
+    // When listeners are registered and none requires ordering, a balance change holds its
+    // thread's stripe shared and adding or removing accounts holds every stripe exclusively.
+    private final ReentrantReadWriteLock[] membershipLocks = new ReentrantReadWriteLock[MEMBERSHIP_STRIPES];
+    private volatile boolean guarded;
+    // Holder -> account ids, maintained by writers under the bank's lock.
+    final HolderIndex holders = new HolderIndex();
+    private final TransferGate transferGate = new TransferGate();
 
     public Bank() {
-        accounts = new ArrayList<>();
+        for (int i = 0; i < MEMBERSHIP_STRIPES; i++) {
+            membershipLocks[i] = new ReentrantReadWriteLock();
+        }
     }
 
     public void addAccount(BankAccount account) {
         if (account == null) {
             throw new IllegalArgumentException("Account cannot be null");
         }
-        accounts.add(account);
+        String accountNumber = account.getAccountNumber();
+        if (accountNumber == null) {
+            throw new IllegalArgumentException("Account number cannot be null");
+        }
+        synchronized (this) {
+            boolean locked = beginMembershipChange();
+            try {
+                long sequence = nextSequence++;
+                register(account, sequence);
+                accountAdded(account, sequence);
+            } finally {
+                endChange(locked);
+            }
+        }
+    }
+
+    /**
+     * Adds accounts in order, as {@link #addAccount} would one by one, under a single lock
+     * and with one update of the account table for the whole batch. Nothing is added if any
+     * account is invalid.
+     */
+    public void addAccounts(List<BankAccount> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Accounts cannot be null");
+        }
+        BankAccount[] added = batch.toArray(new BankAccount[0]);
+        for (BankAccount account : added) {
+            if (account == null) {
+                throw new IllegalArgumentException("Account cannot be null");
+            }
+            if (account.getAccountNumber() == null) {
+                throw new IllegalArgumentException("Account number cannot be null");
+            }
+        }
+        synchronized (this) {
+            boolean locked = beginMembershipChange();
+            try {
+                long first = nextSequence;
+                nextSequence += added.length;
+                accounts = accounts.withAll(first - 1, added, added.length);
+                for (int i = 0; i < added.length; i++) {
+                    BankAccount account = added[i];
+                    long sequence = first + i;
+                    index.add(account, sequence);
+                    holders.add(account.getAccountHolder(), sequence);
+                    account.attach(this, sequence);
+                    accountAdded(account, sequence);
+                }
+            } finally {
+                endChange(locked);
+            }
+        }
+    }
+
+    /** Registers an account under a known id, as when rebuilding a bank; listeners are not called. */
+    synchronized void restoreAccount(BankAccount account, long accountId) {
+        nextSequence = Math.max(nextSequence, accountId + 1);
+        register(account, accountId);
+    }
+
+    private void register(BankAccount account, long sequence) {
+        accounts = accounts.with(sequence - 1, account);
+        index.add(account, sequence);
+        holders.add(account.getAccountHolder(), sequence);
+        account.attach(this, sequence);
     }
 
     public void removeAccount(String accountNumber) {
-        accounts.removeIf(acc -> acc.getAccountNumber().equals(accountNumber));
+        if (accountNumber == null) {
+            return;
+        }
+        synchronized (this) {
+            boolean locked = beginMembershipChange();
+            try {
+                AccountIndex.Registration head = index.removeAll(accountNumber);
+                for (AccountIndex.Registration r = head; r != null; r = r.next) {
+                    accounts = accounts.with(r.sequence - 1, null);
+                    holders.remove(r.account.getAccountHolder(), r.sequence);
+                    r.account.detach(this);
+                    accountRemoved(r.account, r.sequence);
+                }
+            } finally {
+                endChange(locked);
+            }
+        }
+    }
+
+    /** Removes a single registration by id, as when rebuilding a bank; listeners are not called. */
+    synchronized void removeAccountById(long accountId) {
+        BankAccount account = accounts.find(accountId - 1);
+        if (account == null) {
+            return;
+        }
+        accounts = accounts.with(accountId - 1, null);
+        index.remove(account, accountId);
+        holders.remove(account.getAccountHolder(), accountId);
+        account.detach(this);
+    }
+
+    BankAccount getAccountById(long accountId) {
+        return accounts.find(accountId - 1);
     }
 
     public BankAccount getAccount(String accountNumber) {
-        for (BankAccount account : accounts) {
-            if (account.getAccountNumber().equals(accountNumber)) {
-                return account;
-            }
+        if (accountNumber == null) {
+            return null;
+        }
+        long start = BankMetrics.start();
+        BankAccount account = index.first(accountNumber);
+        BankMetrics.stop(BankMetrics.Operation.GET_ACCOUNT, start);
+        return account;
+    }
+
+    /** Accounts whose holder is exactly {@code accountHolder}, oldest first, from an index. */
+    public List<BankAccount> findByHolder(String accountHolder) {
+        return holders.exact(accountHolder, this::getAccountById);
+    }
+
+    /**
+     * Up to {@code limit} accounts whose holder starts with {@code prefix} (case-sensitive),
+     * sorted by holder and then oldest first. Costs O(log n + limit), not a scan.
+     */
+    public List<BankAccount> findByHolderPrefix(String prefix, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
         }
-        return null;
+        return holders.prefix(prefix, limit, this::getAccountById);
     }
 
+    /**
+     * Returns the accounts in insertion order, as of one consistent point in time. Taking the
+     * list is O(1); changes to it copy it first and never reach the bank.
+     */
     public List<BankAccount> getAccounts() {
-        return new ArrayList<>(accounts);
+        return accounts.asList();
+    }
+
+    /**
+     * Runs {@code job} over every account in parallel on the common fork/join pool, as by
+     * {@link #processAccounts(Collector, ForkJoinPool)}.
+     */
+    public <A, R> R processAccounts(Collector<? super BankAccount, A, R> job) {
+        return processAccounts(job, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs {@code job} over every account while online traffic continues. The accounts present
+     * when the call starts are split into chunks of consecutive ids; each chunk is folded into
+     * its own container on {@code pool} and the containers are combined in id order. Accounts
+     * added during the pass are not visited. Use this for per-account updates such as interest
+     * and fees; use {@link #aggregate} for totals that must balance.
+     */
+    public <A, R> R processAccounts(Collector<? super BankAccount, A, R> job, ForkJoinPool pool) {
+        if (job == null || pool == null) {
+            throw new IllegalArgumentException("Job and pool cannot be null");
+        }
+        AccountSource source = accountSource();
+        A container = pool.invoke(new ScanTask<>(source, job, 0, source.end()));
+        return job.finisher().apply(container);
+    }
+
+    /** {@link #aggregate(Collector, ForkJoinPool)} on the common fork/join pool. */
+    public <A, R> R aggregate(Collector<? super BankAccount, A, R> job) {
+        return aggregate(job, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Like {@link #processAccounts(Collector, ForkJoinPool)}, but transfers are held back for
+     * the duration of the pass, so no transfer is counted on one side only and a total of
+     * balances is exact with respect to them. Single-account deposits and withdrawals carry
+     * on; each account is read once, at some point during the pass.
+     */
+    public <A, R> R aggregate(Collector<? super BankAccount, A, R> job, ForkJoinPool pool) {
+        transferGate.close();
+        try {
+            return processAccounts(job, pool);
+        } finally {
+            transferGate.open();
+        }
+    }
+
+    /** The accounts as of now, addressed by index (id - 1). */
+    AccountSource accountSource() {
+        AccountVector version = accounts;
+        return new AccountSource() {
+            @Override
+            public long end() {
+                return version.end();
+            }
+
+            @Override
+            public void forEach(long from, long to, Consumer<? super BankAccount> action) {
+                version.forEach(from, to, action);
+            }
+        };
+    }
+
+    public synchronized void addListener(BankListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        BankListener[] current = listeners;
+        BankListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        setListeners(updated);
+    }
+
+    public synchronized void removeListener(BankListener listener) {
+        List<BankListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+        remaining.remove(listener);
+        setListeners(remaining.toArray(new BankListener[0]));
+    }
+
+    // Switches locking modes only while no change holds a lock, so every change releases what it took.
+    private void setListeners(BankListener[] updated) {
+        changeLock.lock();
+        lockMembership();
+        try {
+            listeners = updated;
+            ordered = Arrays.stream(updated).anyMatch(BankListener::requiresOrdering);
+            guarded = !ordered && updated.length > 0;
+        } finally {
+            unlockMembership();
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Called before a balance changes. Takes the ordering lock if a listener requires
+     * ordering, or else a shared membership lock while any listener is registered, and
+     * returns whether it took one; pass that to {@link #endChange} once the change has been
+     * reported, in a finally block.
+     */
+    boolean beginChange() {
+        if (ordered) {
+            changeLock.lock();
+            return true;
+        }
+        if (guarded) {
+            membershipStripe().readLock().lock();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called before accounts are added or removed. Like {@link #beginChange}, but the
+     * membership lock is taken exclusively, so no balance change is between applied and
+     * reported while a listener hears of an account coming or going.
+     */
+    boolean beginMembershipChange() {
+        if (ordered) {
+            changeLock.lock();
+            return true;
+        }
+        if (guarded) {
+            lockMembership();
+            return true;
+        }
+        return false;
+    }
+
+    void endChange(boolean locked) {
+        if (locked && !release()) {
+            return;
+        }
+        for (BankListener listener : listeners) {
+            listener.afterChange();
+        }
+    }
+
+    // Releases the innermost lock this thread took in beginChange; true if it was the outermost.
+    private boolean release() {
+        if (changeLock.isHeldByCurrentThread()) {
+            boolean outermost = changeLock.getHoldCount() == 1;
+            changeLock.unlock();
+            return outermost;
+        }
+        ReentrantReadWriteLock stripe = membershipStripe();
+        if (stripe.getReadHoldCount() > 0) {
+            stripe.readLock().unlock();
+            return stripe.getReadHoldCount() == 0 && !stripe.isWriteLockedByCurrentThread();
+        }
+        unlockMembership();
+        return true;
+    }
+
+    private boolean holdsChangeLock() {
+        return changeLock.isHeldByCurrentThread() || membershipStripe().getReadHoldCount() > 0;
+    }
+
+    private ReentrantReadWriteLock membershipStripe() {
+        return membershipLocks[System.identityHashCode(Thread.currentThread()) & (MEMBERSHIP_STRIPES - 1)];
+    }
+
+    private void lockMembership() {
+        for (ReentrantReadWriteLock lock : membershipLocks) {
+            lock.writeLock().lock();
+        }
+    }
+
+    private void unlockMembership() {
+        for (int i = MEMBERSHIP_STRIPES - 1; i >= 0; i--) {
+            membershipLocks[i].writeLock().unlock();
+        }
+    }
+
+    void accountAdded(BankAccount account, long accountId) {
+        for (BankListener listener : listeners) {
+            listener.accountAdded(account, accountId);
+        }
+    }
+
+    void accountRemoved(BankAccount account, long accountId) {
+        for (BankListener listener : listeners) {
+            listener.accountRemoved(account, accountId);
+        }
+    }
+
+    void balanceChanged(BankAccount account, long accountId, long deltaUnits) {
+        for (BankListener listener : listeners) {
+            listener.balanceChanged(account, accountId, deltaUnits);
+        }
+    }
+
+    // Transfers enter the gate last and leave it first, so a throwing listener never leaves it held.
+    // The ordering lock is taken after the gate, since a pass holding the gate closed may change balances.
+    void transferStarted() {
+        for (BankListener listener : listeners) {
+            listener.transferStarted();
+        }
+        transferGate.enter();
+        try {
+            beginChange();
+        } catch (RuntimeException | Error e) {
+            transferGate.exit();
+            throw e;
+        }
+    }
+
+    void transferFinished() {
+        transferGate.exit();
+        boolean locked = holdsChangeLock();
+        try {
+            for (BankListener listener : listeners) {
+                listener.transferFinished();
+            }
+        } finally {
+            endChange(locked);
+        }
+    }
+
+    void transactionPrepared(long txId, BankAccount account, long deltaUnits) {
+        for (BankListener listener : listeners) {
+            listener.transactionPrepared(txId, account, account.getId(), deltaUnits);
+        }
+    }
+
+    void transactionResolved(long txId, boolean committed) {
+        for (BankListener listener : listeners) {
+            listener.transactionResolved(txId, committed);
+        }
+    }
+
+    /** A fixed set of accounts, addressed by index, that a parallel pass splits into ranges. */
+    interface AccountSource {
+        /** One past the highest index in use. */
+        long end();
+
+        void forEach(long from, long to, Consumer<? super BankAccount> action);
+    }
+
+    private static final class ScanTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final AccountSource source;
+        private final Collector<? super BankAccount, A, ?> job;
+        private final long from;
+        private final long to;
+
+        ScanTask(AccountSource source, Collector<? super BankAccount, A, ?> job, long from, long to) {
+            this.source = source;
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= SCAN_CHUNK) {
+                A container = job.supplier().get();
+                BiConsumer<A, ? super BankAccount> accumulator = job.accumulator();
+                source.forEach(from, to, account -> accumulator.accept(container, account));
+                return container;
+            }
+            long middle = (from + to) >>> 1;
+            ScanTask<A> right = new ScanTask<>(source, job, middle, to);
+            right.fork();
+            A left = new ScanTask<>(source, job, from, middle).compute();
+            return job.combiner().apply(left, right.join());
+        }
     }
 }
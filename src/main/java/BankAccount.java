@@ -1,22 +1,87 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class BankAccount {
-    private String accountNumber;
+    // Balances are kept as a count of minor units, 1/10000 of the currency unit.
+    static final long UNITS_PER_CURRENCY = 10_000;
+
+    private static final VarHandle BALANCE;
+
+    static {
+        try {
+            BALANCE = MethodHandles.lookup().findVarHandle(BankAccount.class, "balance", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Account numbers are kept as an AccountNumbers code; the string only when none fits.
+    private final long numberCode;
+    private final String accountNumber;
     private String accountHolder;
-    private double balance;
+    private volatile long balance;
+    // The bank this account is registered with, notified of every balance change.
+    private volatile Bank bank;
+    private volatile long id;
+    private volatile WithdrawalRules rules = WithdrawalRules.STANDARD;
+    // Rolling withdrawal totals, present only while the rules have velocity limits.
+    private volatile VelocityCounters velocity;
 
     public BankAccount(String accountNumber, String accountHolder, double initialBalance) {
         if (initialBalance < 0) {
             throw new IllegalArgumentException("Initial balance cannot be negative");
         }
-        this.accountNumber = accountNumber;
+        this.numberCode = AccountNumbers.encode(accountNumber);
+        this.accountNumber = numberCode == AccountNumbers.NOT_ENCODABLE ? accountNumber : null;
         this.accountHolder = accountHolder;
-        this.balance = initialBalance;
+        this.balance = toUnits(initialBalance);
+    }
+
+    /** Creates an account whose balance is given directly in minor units. */
+    static BankAccount fromUnits(String accountNumber, String accountHolder, long balanceUnits) {
+        BankAccount account = new BankAccount(accountNumber, accountHolder, 0.0);
+        account.balance = balanceUnits;
+        return account;
     }
 
     public void deposit(double amount) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Deposit amount must be positive");
+        TransactionStatus status = tryDeposit(amount);
+        if (status != TransactionStatus.SUCCESS) {
+            throw rejection(status, amount, "Deposit amount must be positive");
+        }
+    }
+
+    /**
+     * Same as {@link #deposit(double)} but reports a rejection through the returned
+     * status instead of throwing.
+     */
+    public TransactionStatus tryDeposit(double amount) {
+        long start = BankMetrics.start();
+        long units = toUnitsOrZero(amount);
+        TransactionStatus status = units <= 0 ? TransactionStatus.INVALID_AMOUNT : depositUnits(units);
+        BankMetrics.stop(BankMetrics.Operation.DEPOSIT, start);
+        BankMetrics.outcome(BankMetrics.Operation.DEPOSIT, status);
+        return status;
+    }
+
+    TransactionStatus depositUnits(long units) {
+        Bank owner = bank;
+        boolean locked = owner != null && owner.beginChange();
+        try {
+            long current;
+            do {
+                current = balance;
+                if (current > Long.MAX_VALUE - units) {
+                    return TransactionStatus.BALANCE_OVERFLOW;
+                }
+            } while (!BALANCE.compareAndSet(this, current, current + units));
+            changed(owner, units);
+            return TransactionStatus.SUCCESS;
+        } finally {
+            if (owner != null) {
+                owner.endChange(locked);
+            }
         }
-        balance += amount;
     }
 
 //    public void withdraw(double amount) {
@@ -30,32 +95,252 @@ public class BankAccount {
 //    }
 
     public void withdraw(double amount) {
-        if (amount > 0) {
-            double currentBalance = getBalance();
-            if (amount > currentBalance) {
-                throw new IllegalArgumentException("Insufficient balance");
+        TransactionStatus status = tryWithdraw(amount);
+        if (status != TransactionStatus.SUCCESS) {
+            throw rejection(status, amount, "Withdrawal amount must be positive");
+        }
+    }
+
+    /**
+     * Same as {@link #withdraw(double)} but reports a rejection through the returned
+     * status instead of throwing.
+     */
+    public TransactionStatus tryWithdraw(double amount) {
+        long start = BankMetrics.start();
+        long units = toUnitsOrZero(amount);
+        TransactionStatus status = units <= 0 ? TransactionStatus.INVALID_AMOUNT : withdrawUnits(units);
+        BankMetrics.stop(BankMetrics.Operation.WITHDRAW, start);
+        BankMetrics.outcome(BankMetrics.Operation.WITHDRAW, status);
+        return status;
+    }
+
+    /**
+     * Withdraws the units if every rule holds against one snapshot of the balance;
+     * the rules are re-checked whenever a concurrent update wins the race. Accounts with
+     * velocity limits check and record them under the counters' lock.
+     */
+    TransactionStatus withdrawUnits(long units) {
+        Bank owner = bank;
+        boolean locked = owner != null && owner.beginChange();
+        try {
+            VelocityCounters counters = velocity;
+            if (counters != null) {
+                return withdrawWithinVelocity(owner, counters, units);
+            }
+            WithdrawalRules current = rules;
+            long balanceUnits;
+            TransactionStatus status;
+            do {
+                balanceUnits = balance;
+                status = current.check(balanceUnits, units);
+                if (status != TransactionStatus.SUCCESS) {
+                    return status;
+                }
+            } while (!BALANCE.compareAndSet(this, balanceUnits, balanceUnits - units));
+            changed(owner, -units);
+            return TransactionStatus.SUCCESS;
+        } finally {
+            if (owner != null) {
+                owner.endChange(locked);
+            }
+        }
+    }
+
+    private TransactionStatus withdrawWithinVelocity(Bank owner, VelocityCounters counters, long units) {
+        synchronized (counters) {
+            long now = counters.rules.now();
+            long balanceUnits;
+            do {
+                balanceUnits = balance;
+                TransactionStatus status = counters.rules.check(balanceUnits, units);
+                if (status != TransactionStatus.SUCCESS) {
+                    return status;
+                }
+                if (!counters.allows(now, units)) {
+                    return TransactionStatus.EXCEEDS_VELOCITY_LIMIT;
+                }
+            } while (!BALANCE.compareAndSet(this, balanceUnits, balanceUnits - units));
+            counters.record(now, units);
+        }
+        changed(owner, -units);
+        return TransactionStatus.SUCCESS;
+    }
+
+    /**
+     * Applies this account's withdrawal rules to a balance without touching the account, as
+     * for a batch that debits later. On success the units already count toward the velocity
+     * limits, checked and counted under one lock so no concurrent withdrawal can use the same
+     * allowance; {@link #forgetWithdrawal} gives them back if the debit is not made.
+     */
+    TransactionStatus reserveWithdrawal(long balanceUnits, long units) {
+        VelocityCounters counters = velocityCounters();
+        if (counters == null) {
+            return getWithdrawalRules().check(balanceUnits, units);
+        }
+        TransactionStatus status = counters.rules.check(balanceUnits, units);
+        if (status == TransactionStatus.SUCCESS) {
+            synchronized (counters) {
+                long now = counters.rules.now();
+                if (!counters.allows(now, units)) {
+                    return TransactionStatus.EXCEEDS_VELOCITY_LIMIT;
+                }
+                counters.record(now, units);
+            }
+        }
+        return status;
+    }
+
+    /** Puts back units just withdrawn, when the rest of a transfer failed, and un-counts them. */
+    void refundWithdrawal(long units) {
+        adjustUnits(units);
+        forgetWithdrawal(units);
+    }
+
+    /** Takes units just withdrawn, or reserved, and since put back out of the velocity totals. */
+    void forgetWithdrawal(long units) {
+        VelocityCounters counters = velocityCounters();
+        if (counters != null) {
+            synchronized (counters) {
+                counters.unrecord(counters.rules.now(), units);
+            }
+        }
+    }
+
+    public WithdrawalRules getWithdrawalRules() {
+        return rules;
+    }
+
+    /** The rolling withdrawal totals, or null while the rules have no velocity limits. */
+    VelocityCounters velocityCounters() {
+        return velocity;
+    }
+
+    /**
+     * Switches this account to another tier's rules. Velocity totals start from zero when
+     * the new rules have velocity limits.
+     */
+    public void setWithdrawalRules(WithdrawalRules withdrawalRules) {
+        if (withdrawalRules == null) {
+            throw new IllegalArgumentException("Withdrawal rules cannot be null");
+        }
+        velocity = withdrawalRules.hasVelocityLimits() ? new VelocityCounters(withdrawalRules) : null;
+        rules = withdrawalRules;
+    }
+
+    /**
+     * Debits a charge such as a fee. The withdrawal rules do not apply, except that the balance
+     * never goes negative, and the charge does not count toward velocity limits.
+     */
+    TransactionStatus chargeUnits(long units) {
+        long current;
+        do {
+            current = getBalanceUnits();
+            if (units > current) {
+                return TransactionStatus.INSUFFICIENT_BALANCE;
             }
-            if (amount > 10000) { // Added: max withdrawal limit
-                throw new IllegalArgumentException("Exceeds max withdrawal limit");
+        } while (!compareAndSetUnits(current, current - units));
+        return TransactionStatus.SUCCESS;
+    }
+
+    /** Replaces the balance only if it still equals the expected value. No rules are applied. */
+    boolean compareAndSetUnits(long expectedUnits, long newUnits) {
+        Bank owner = bank;
+        boolean locked = owner != null && owner.beginChange();
+        try {
+            if (!BALANCE.compareAndSet(this, expectedUnits, newUnits)) {
+                return false;
             }
-            if (currentBalance - amount < 50) { // Added: minimum balance requirement
-                throw new IllegalArgumentException("Below minimum balance");
+            changed(owner, newUnits - expectedUnits);
+            return true;
+        } finally {
+            if (owner != null) {
+                owner.endChange(locked);
             }
-            balance -= amount;
-        } else {
-            throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
     }
 
+    /** Adds a signed delta to the balance without applying any rules; used to undo applied changes. */
+    void adjustUnits(long deltaUnits) {
+        Bank owner = bank;
+        boolean locked = owner != null && owner.beginChange();
+        try {
+            BALANCE.getAndAdd(this, deltaUnits);
+            changed(owner, deltaUnits);
+        } finally {
+            if (owner != null) {
+                owner.endChange(locked);
+            }
+        }
+    }
+
+    // Reports to the bank the change was made under, whose ordering lock the caller holds if it has one.
+    // Not reported once the account has left the bank; removal takes the lock the change holds.
+    private void changed(Bank owner, long deltaUnits) {
+        if (owner != null && bank == owner) {
+            owner.balanceChanged(this, id, deltaUnits);
+        }
+    }
+
+    void attach(Bank owner, long accountId) {
+        this.id = accountId;
+        this.bank = owner;
+    }
+
+    void detach(Bank owner) {
+        if (bank == owner) {
+            bank = null;
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
     public double getBalance() {
+        return toAmount(getBalanceUnits());
+    }
+
+    long getBalanceUnits() {
         return balance;
     }
 
     public String getAccountNumber() {
-        return accountNumber;
+        return numberCode == AccountNumbers.NOT_ENCODABLE ? accountNumber : AccountNumbers.decode(numberCode);
+    }
+
+    /** The account number's {@link AccountNumbers} code, or {@code NOT_ENCODABLE}. */
+    long numberCode() {
+        return numberCode;
     }
 
     public String getAccountHolder() {
         return accountHolder;
     }
+
+    private static TransactionRejectedException rejection(TransactionStatus status, double amount,
+                                                          String nonPositiveMessage) {
+        if (status == TransactionStatus.INVALID_AMOUNT) {
+            return new TransactionRejectedException(status, amount > 0 ? "Amount out of range" : nonPositiveMessage);
+        }
+        return new TransactionRejectedException(status, status.getMessage());
+    }
+
+    /** Converts a positive amount to units, or returns 0 if it is not positive or out of range. */
+    static long toUnitsOrZero(double amount) {
+        if (!(amount > 0) || amount >= Long.MAX_VALUE / UNITS_PER_CURRENCY) {
+            return 0;
+        }
+        return Math.round(amount * UNITS_PER_CURRENCY);
+    }
+
+    static long toUnits(double amount) {
+        if (!Double.isFinite(amount) || Math.abs(amount) >= Long.MAX_VALUE / UNITS_PER_CURRENCY) {
+            throw new IllegalArgumentException("Amount out of range");
+        }
+        return Math.round(amount * UNITS_PER_CURRENCY);
+    }
+
+    static double toAmount(long units) {
+        return units / (double) UNITS_PER_CURRENCY;
+    }
 }
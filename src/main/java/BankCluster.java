@@ -0,0 +1,459 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Client of a set of {@link ShardNode}s that together hold one account space, split by
+ * consistent hashing on the account number ({@link HashRing}).
+ *
+ * <p>Operations on one account, and transfers between two accounts of the same node, are a
+ * single request to that node. A transfer across nodes is a two-phase commit coordinated
+ * here: the debit leg is prepared first, since it is the one rules can reject, then the
+ * credit leg; the commit decision is made durable in the {@link CoordinatorLog} before
+ * either node is told. Decisions a node could not be told are retried in the background
+ * until it answers. On open, commits an earlier run decided are re-sent, and transactions
+ * it left prepared without a decision are aborted on every node.
+ *
+ * <pre>{@code
+ * BankCluster cluster = BankCluster.open(List.of(node1, node2), Path.of("coordinator.log"), 1);
+ * TransactionStatus status = cluster.tryTransfer("ACC1", "ACC2", 25.0);
+ * }</pre>
+ */
+public final class BankCluster implements Closeable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 10_000;
+    private static final long RETRY_MILLIS = 100;
+
+    private final HashRing ring;
+    private final InetSocketAddress[] addresses;
+    private final ConnectionPool[] pools;
+    private final CoordinatorLog log;
+    // Decisions some node has not acknowledged yet, retried by the resolver thread.
+    private final ConcurrentLinkedQueue<Decision> unresolved = new ConcurrentLinkedQueue<>();
+    // Nodes not yet asked for the transactions an earlier run left in doubt.
+    private final boolean[] swept;
+    private final Thread resolver;
+    private volatile boolean closed;
+
+    private BankCluster(List<InetSocketAddress> nodes, CoordinatorLog log) {
+        List<String> names = new ArrayList<>();
+        for (InetSocketAddress node : nodes) {
+            names.add(name(node));
+        }
+        this.ring = new HashRing(names);
+        this.addresses = nodes.toArray(new InetSocketAddress[0]);
+        this.pools = new ConnectionPool[addresses.length];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new ConnectionPool(addresses[i]);
+        }
+        this.log = log;
+        this.swept = new boolean[addresses.length];
+        this.resolver = new Thread(this::resolveLoop, "cluster-resolver");
+        this.resolver.setDaemon(true);
+    }
+
+    /**
+     * Connects to the nodes, in the same order on every client, and recovers the
+     * coordinator state kept in {@code coordinatorLog}. Each client needs its own log and
+     * its own {@code coordinatorId}, from 1 to 2^23 - 1, which it must keep across restarts:
+     * transaction ids are unique only as long as no two clients share an id.
+     */
+    public static BankCluster open(List<InetSocketAddress> nodes, Path coordinatorLog, int coordinatorId)
+            throws IOException {
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one node");
+        }
+        BankCluster cluster = new BankCluster(nodes, CoordinatorLog.open(coordinatorLog, coordinatorId));
+        Map<String, Integer> indexByName = new HashMap<>();
+        for (int i = 0; i < cluster.ring.size(); i++) {
+            indexByName.put(cluster.ring.node(i), i);
+        }
+        for (Map.Entry<Long, String[]> commit : cluster.log.pendingCommits().entrySet()) {
+            List<Integer> participants = new ArrayList<>();
+            for (String name : commit.getValue()) {
+                Integer index = indexByName.get(name);
+                if (index != null) {
+                    participants.add(index);
+                }
+            }
+            cluster.unresolved.add(new Decision(commit.getKey(), true,
+                    participants.stream().mapToInt(Integer::intValue).toArray()));
+        }
+        cluster.resolveOnce();
+        cluster.resolver.start();
+        return cluster;
+    }
+
+    /** Number of nodes. */
+    public int size() {
+        return ring.size();
+    }
+
+    /** Index, in the list given to {@link #open}, of the node that holds {@code accountNumber}. */
+    public int nodeFor(String accountNumber) {
+        if (accountNumber == null) {
+            throw new IllegalArgumentException("Account number cannot be null");
+        }
+        return ring.nodeFor(accountNumber);
+    }
+
+    public void addAccount(String accountNumber, String accountHolder, double initialBalance) {
+        if (accountNumber == null) {
+            throw new IllegalArgumentException("Account number cannot be null");
+        }
+        TransactionStatus status = call(ring.nodeFor(accountNumber), out -> {
+            out.writeByte(ShardNode.ADD);
+            out.writeUTF(accountNumber);
+            out.writeBoolean(accountHolder != null);
+            if (accountHolder != null) {
+                out.writeUTF(accountHolder);
+            }
+            out.writeDouble(initialBalance);
+        }, null);
+        if (status != TransactionStatus.SUCCESS) {
+            throw new IllegalStateException(status.getMessage());
+        }
+    }
+
+    /** Balance of an account; throws if it does not exist or its node cannot be reached. */
+    public double getBalance(String accountNumber) {
+        if (accountNumber == null) {
+            throw new IllegalArgumentException(TransactionStatus.ACCOUNT_NOT_FOUND.getMessage());
+        }
+        long[] units = new long[1];
+        TransactionStatus status = call(ring.nodeFor(accountNumber), out -> {
+            out.writeByte(ShardNode.BALANCE);
+            out.writeUTF(accountNumber);
+        }, in -> units[0] = in.readLong());
+        if (status != TransactionStatus.SUCCESS) {
+            throw new IllegalArgumentException(status.getMessage());
+        }
+        return BankAccount.toAmount(units[0]);
+    }
+
+    public TransactionStatus tryDeposit(String accountNumber, double amount) {
+        return single(ShardNode.DEPOSIT, accountNumber, amount);
+    }
+
+    public TransactionStatus tryWithdraw(String accountNumber, double amount) {
+        return single(ShardNode.WITHDRAW, accountNumber, amount);
+    }
+
+    /**
+     * Transfers between any two accounts of the cluster, atomically. Returns SUCCESS, the
+     * reason a leg was rejected, or NODE_UNAVAILABLE if a node could not vote; a transfer
+     * that reports SUCCESS is applied on both nodes even if one of them is down right now.
+     */
+    public TransactionStatus tryTransfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        if (fromAccountNumber == null || toAccountNumber == null) {
+            return TransactionStatus.ACCOUNT_NOT_FOUND;
+        }
+        int fromNode = ring.nodeFor(fromAccountNumber);
+        int toNode = ring.nodeFor(toAccountNumber);
+        if (fromNode == toNode) {
+            return call(fromNode, out -> {
+                out.writeByte(ShardNode.TRANSFER);
+                out.writeUTF(fromAccountNumber);
+                out.writeUTF(toAccountNumber);
+                out.writeDouble(amount);
+            }, null);
+        }
+        long units = BankAccount.toUnitsOrZero(amount);
+        if (units <= 0) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        long txId;
+        try {
+            txId = nextTransactionId();
+        } catch (UncheckedIOException e) {
+            return TransactionStatus.NODE_UNAVAILABLE;
+        }
+        TransactionStatus status = prepare(fromNode, txId, fromAccountNumber, -units);
+        if (status != TransactionStatus.SUCCESS) {
+            if (status == TransactionStatus.NODE_UNAVAILABLE) {
+                decide(new Decision(txId, false, new int[] {fromNode}));
+            }
+            return status;
+        }
+        status = prepare(toNode, txId, toAccountNumber, units);
+        if (status != TransactionStatus.SUCCESS) {
+            decide(new Decision(txId, false, new int[] {fromNode, toNode}));
+            return status;
+        }
+        return commit(txId, fromNode, toNode) ? TransactionStatus.SUCCESS : TransactionStatus.NODE_UNAVAILABLE;
+    }
+
+    long nextTransactionId() {
+        return log.nextTransactionId();
+    }
+
+    int coordinatorId() {
+        return log.coordinatorId();
+    }
+
+    CoordinatorLog log() {
+        return log;
+    }
+
+    /**
+     * Makes the decision to commit durable and then tells the nodes. If the log cannot be
+     * written the transaction is aborted instead, and false is returned.
+     */
+    boolean commit(long txId, int... nodes) {
+        try {
+            logCommit(txId, nodes);
+        } catch (UncheckedIOException e) {
+            // Not decided until durable, so aborting is still allowed; a commit record that
+            // reaches the disk anyway later finds nothing prepared on either node.
+            decide(new Decision(txId, false, nodes));
+            return false;
+        }
+        decide(new Decision(txId, true, nodes));
+        return true;
+    }
+
+    void logCommit(long txId, int... nodes) {
+        String[] names = new String[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            names[i] = ring.node(nodes[i]);
+        }
+        log.committed(txId, names);
+    }
+
+    // A node that fails while voting may or may not have prepared, so it counts as unavailable.
+    TransactionStatus prepare(int node, long txId, String accountNumber, long deltaUnits) {
+        try {
+            return call(node, out -> {
+                out.writeByte(ShardNode.PREPARE);
+                out.writeLong(txId);
+                out.writeUTF(accountNumber);
+                out.writeLong(deltaUnits);
+            }, null);
+        } catch (IllegalArgumentException e) {
+            return TransactionStatus.NODE_UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        resolver.interrupt();
+        for (ConnectionPool pool : pools) {
+            pool.close();
+        }
+        log.close();
+    }
+
+    private TransactionStatus single(byte op, String accountNumber, double amount) {
+        if (accountNumber == null) {
+            return TransactionStatus.ACCOUNT_NOT_FOUND;
+        }
+        return call(ring.nodeFor(accountNumber), out -> {
+            out.writeByte(op);
+            out.writeUTF(accountNumber);
+            out.writeDouble(amount);
+        }, null);
+    }
+
+    // Tells every node of the decision that it can reach now and leaves the rest to the resolver.
+    private void decide(Decision decision) {
+        if (!decision.send(this)) {
+            unresolved.add(decision);
+        } else if (decision.commit) {
+            try {
+                log.finished(decision.txId);
+            } catch (UncheckedIOException e) {
+                // The commit is replayed on restart, which the nodes ignore.
+            }
+        }
+    }
+
+    private void resolveLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            resolveOnce();
+        }
+    }
+
+    private void resolveOnce() {
+        for (int node = 0; node < swept.length; node++) {
+            if (!swept[node]) {
+                swept[node] = sweep(node);
+            }
+        }
+        for (int i = unresolved.size(); i > 0; i--) {
+            Decision decision = unresolved.poll();
+            if (decision == null) {
+                break;
+            }
+            decide(decision);
+        }
+    }
+
+    // Aborts what an earlier run of this coordinator left prepared on the node without a decision.
+    private boolean sweep(int node) {
+        List<Long> inDoubt = new ArrayList<>();
+        TransactionStatus status = call(node, out -> {
+            out.writeByte(ShardNode.IN_DOUBT);
+            out.writeInt(log.coordinatorId());
+        }, in -> {
+            for (int i = in.readInt(); i > 0; i--) {
+                inDoubt.add(in.readLong());
+            }
+        });
+        if (status != TransactionStatus.SUCCESS) {
+            return false;
+        }
+        for (long txId : inDoubt) {
+            if (txId < log.firstTransactionId() && !log.pendingCommits().containsKey(txId)) {
+                unresolved.add(new Decision(txId, false, new int[] {node}));
+            }
+        }
+        return true;
+    }
+
+    private TransactionStatus call(int node, Request request, Response response) {
+        Connection connection = null;
+        try {
+            connection = pools[node].borrow();
+            request.write(connection.out);
+            connection.out.flush();
+            byte code = connection.in.readByte();
+            if (code == ShardNode.ERROR) {
+                String message = connection.in.readUTF();
+                pools[node].release(connection);
+                throw new IllegalArgumentException(message);
+            }
+            TransactionStatus status = TransactionStatus.values()[code];
+            if (status == TransactionStatus.SUCCESS && response != null) {
+                response.read(connection.in);
+            }
+            pools[node].release(connection);
+            return status;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            // The other idle connections to a node that failed are most likely broken too.
+            pools[node].close();
+            return TransactionStatus.NODE_UNAVAILABLE;
+        }
+    }
+
+    private static String name(InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    private interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Response {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    /** A commit or abort and the nodes that still have to hear it. */
+    private static final class Decision {
+        final long txId;
+        final boolean commit;
+        final int[] nodes;
+        private int acknowledged;
+
+        Decision(long txId, boolean commit, int[] nodes) {
+            this.txId = txId;
+            this.commit = commit;
+            this.nodes = nodes;
+        }
+
+        // True once every node has acknowledged.
+        boolean send(BankCluster cluster) {
+            for (int i = 0; i < nodes.length; i++) {
+                if ((acknowledged & 1 << i) != 0) {
+                    continue;
+                }
+                try {
+                    TransactionStatus status = cluster.call(nodes[i], out -> {
+                        out.writeByte(commit ? ShardNode.COMMIT : ShardNode.ABORT);
+                        out.writeLong(txId);
+                    }, null);
+                    if (status == TransactionStatus.SUCCESS) {
+                        acknowledged |= 1 << i;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // The node failed to apply it; try again later.
+                }
+            }
+            return acknowledged == (1 << nodes.length) - 1;
+        }
+    }
+
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already broken.
+            }
+        }
+    }
+
+    /** Idle connections to one node; a caller that finds none opens a new one. */
+    private static final class ConnectionPool {
+        private final InetSocketAddress address;
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        ConnectionPool(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        Connection borrow() throws IOException {
+            Connection connection = idle.poll();
+            return connection != null ? connection : new Connection(address);
+        }
+
+        void release(Connection connection) {
+            idle.add(connection);
+        }
+
+        void close() {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+            }
+        }
+    }
+}
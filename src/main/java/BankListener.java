@@ -0,0 +1,65 @@
+/**
+ * Observes every change made to a {@link Bank} and to the accounts registered with it.
+ * Listeners are registered with {@link Bank#addListener} and are called on the thread
+ * that made the change, after it has been applied.
+ *
+ * <p>While a listener that {@link #requiresOrdering() requires ordering} is registered, the
+ * bank applies each change and reports it under one lock, so every listener sees the
+ * changes to an account in the order they were applied, and a transfer's legs with nothing
+ * in between. Such listeners must not block in these calls; {@link #afterChange()} is the
+ * place to wait, for example for an fsync.
+ *
+ * <p>Otherwise, while any listener is registered, adding or removing accounts waits for
+ * balance changes already applied to be reported, and holds back new ones, so a listener
+ * is never told of a change to an account it has heard was removed, nor of one already
+ * counted in the balance {@link #accountAdded} or {@link #accountRemoved} saw.
+ */
+public interface BankListener {
+
+    /** An account was registered; {@code accountId} identifies it even among duplicate numbers. */
+    void accountAdded(BankAccount account, long accountId);
+
+    /** An account was removed; removing a duplicated number reports each registration. */
+    void accountRemoved(BankAccount account, long accountId);
+
+    /** The balance of a registered account moved by {@code deltaUnits} minor units. */
+    void balanceChanged(BankAccount account, long accountId, long deltaUnits);
+
+    /**
+     * Called before the legs of a transfer or transfer batch. Every balance change until
+     * the matching {@link #transferFinished()} belongs to the same transfer.
+     */
+    default void transferStarted() {
+    }
+
+    default void transferFinished() {
+    }
+
+    /**
+     * A shard voted to commit cross-shard transaction {@code txId}: a debit
+     * ({@code deltaUnits < 0}) is already taken from the balance and held, a credit is
+     * applied only once the transaction commits.
+     */
+    default void transactionPrepared(long txId, BankAccount account, long accountId, long deltaUnits) {
+    }
+
+    /** A prepared transaction was committed, or aborted and its held debit put back. */
+    default void transactionResolved(long txId, boolean committed) {
+    }
+
+    /**
+     * Whether changes must reach this listener in the order they were applied. Listeners
+     * that only accumulate deltas, which commute, can return false and let changes run
+     * without the bank's ordering lock.
+     */
+    default boolean requiresOrdering() {
+        return true;
+    }
+
+    /**
+     * Called on the changing thread once a change, or a whole transfer, has been reported
+     * and the bank's ordering lock is released.
+     */
+    default void afterChange() {
+    }
+}
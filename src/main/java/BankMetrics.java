@@ -0,0 +1,163 @@
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide latency histograms and rejection counters for the hot paths.
+ *
+ * <p>{@link Bank#getAccount}, the deposit and withdrawal methods of {@link BankAccount}, and
+ * {@link BankService#transfer}/{@link BankService#tryTransfer} report here. Latencies are
+ * sampled (one call in 1024 by default) because reading the clock can cost more than the
+ * call being timed; rejections are counted exactly, per operation and {@link TransactionStatus},
+ * in striped counters. A withdrawal made by {@code transfer} is counted under both operations.
+ */
+public final class BankMetrics {
+
+    public enum Operation {
+        GET_ACCOUNT, DEPOSIT, WITHDRAW, TRANSFER
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final LatencyHistogram[] LATENCIES = new LatencyHistogram[OPERATIONS.length];
+    private static final LongAdder[][] REJECTIONS = new LongAdder[OPERATIONS.length][STATUSES.length];
+
+    static {
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            LATENCIES[op] = new LatencyHistogram();
+            for (int status = 0; status < STATUSES.length; status++) {
+                REJECTIONS[op][status] = new LongAdder();
+            }
+        }
+    }
+
+    private static volatile boolean enabled = true;
+    private static volatile int sampleMask = 1023;
+
+    private BankMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Turns all recording on or off; off costs one volatile read per call. */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /** Times one call in {@code every} (a power of two); 1 times every call. */
+    public static void setSampling(int every) {
+        if (every <= 0 || Integer.bitCount(every) != 1) {
+            throw new IllegalArgumentException("Sampling must be a power of two");
+        }
+        sampleMask = every - 1;
+    }
+
+    public static void reset() {
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            LATENCIES[op].reset();
+            for (LongAdder counter : REJECTIONS[op]) {
+                counter.reset();
+            }
+        }
+    }
+
+    public static Snapshot snapshot() {
+        long[][] latencies = new long[OPERATIONS.length][];
+        long[][] rejections = new long[OPERATIONS.length][STATUSES.length];
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            latencies[op] = LATENCIES[op].snapshot();
+            for (int status = 0; status < STATUSES.length; status++) {
+                rejections[op][status] = REJECTIONS[op][status].sum();
+            }
+        }
+        return new Snapshot(latencies, rejections);
+    }
+
+    /**
+     * Prints a snapshot to {@code out} every {@code intervalMillis} on a daemon thread.
+     * Shut the returned executor down to stop.
+     */
+    public static ScheduledExecutorService startDump(PrintStream out, long intervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bank-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> out.print(snapshot()), intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    /** Start of a sampled call: a nanoTime to pass to {@link #stop}, or 0 if this call is not timed. */
+    static long start() {
+        if (!enabled || (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    static void stop(Operation operation, long start) {
+        if (start != 0) {
+            LATENCIES[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    static void outcome(Operation operation, TransactionStatus status) {
+        if (status != TransactionStatus.SUCCESS && enabled) {
+            REJECTIONS[operation.ordinal()][status.ordinal()].increment();
+        }
+    }
+
+    /** Point-in-time copy of all histograms and counters. */
+    public static final class Snapshot {
+        private final long[][] latencies;
+        private final long[][] rejections;
+
+        Snapshot(long[][] latencies, long[][] rejections) {
+            this.latencies = latencies;
+            this.rejections = rejections;
+        }
+
+        /** Number of timed (sampled) calls. */
+        public long sampleCount(Operation operation) {
+            long total = 0;
+            for (long count : latencies[operation.ordinal()]) {
+                total += count;
+            }
+            return total;
+        }
+
+        /** Latency in nanoseconds at {@code percentile} (0-100), e.g. 50, 99 or 99.9. */
+        public long percentileNanos(Operation operation, double percentile) {
+            return LatencyHistogram.percentile(latencies[operation.ordinal()], percentile);
+        }
+
+        public long rejections(Operation operation, TransactionStatus reason) {
+            return rejections[operation.ordinal()][reason.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Operation op : OPERATIONS) {
+                text.append(String.format(Locale.ROOT, "%-12s samples=%d p50=%dns p99=%dns p999=%dns",
+                        op, sampleCount(op), percentileNanos(op, 50), percentileNanos(op, 99),
+                        percentileNanos(op, 99.9)));
+                for (TransactionStatus status : STATUSES) {
+                    long count = rejections(op, status);
+                    if (count > 0) {
+                        text.append(' ').append(status).append('=').append(count);
+                    }
+                }
+                text.append('\n');
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Minimal HTTP/1.1 front end for a {@link Bank}, listening on loopback only.
+ *
+ * <p>Each connection is served by its own thread with plain blocking I/O and keep-alive.
+ * On Java 21 and later those are virtual threads, so tens of thousands of idle or slow
+ * clients cost little; on older runtimes they are platform threads with small stacks.
+ *
+ * <pre>
+ * POST /accounts?number=..&amp;holder=..&amp;balance=..   201, or 400
+ * GET  /accounts/{number}                           200 with the balance, or 404
+ * POST /accounts/{number}/deposit?amount=..         200 SUCCESS, or 404/422 with the status
+ * POST /accounts/{number}/withdraw?amount=..        200 SUCCESS, or 404/422 with the status
+ * POST /transfer?from=..&amp;to=..&amp;amount=..           200 SUCCESS, or 404/422 with the status
+ * </pre>
+ *
+ * Bodies are plain text; rejected operations answer with a {@link TransactionStatus} name.
+ */
+public class BankServer implements Closeable {
+    private static final ThreadFactory CONNECTION_THREADS = connectionThreadFactory();
+    private static final int MAX_LINE = 8192;
+
+    private final Bank bank;
+    private final BankService service;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private volatile boolean running = true;
+    private final Consumer<? super Throwable> onError;
+
+    private BankServer(Bank bank, ServerSocket serverSocket, Consumer<? super Throwable> onError) {
+        this.bank = bank;
+        this.service = new BankService(bank);
+        this.serverSocket = serverSocket;
+        this.onError = onError;
+        this.acceptor = new Thread(this::acceptLoop, "bank-server-accept");
+        this.acceptor.setDaemon(true);
+    }
+
+    /** Starts serving {@code bank} on the loopback interface; port 0 picks a free port. */
+    public static BankServer start(Bank bank, int port) throws IOException {
+        return start(bank, port, AcceptLoop.IGNORE);
+    }
+
+    /**
+     * Same as {@link #start(Bank, int)}, passing {@code onError} every failure to accept a
+     * connection, on the accepting thread; the server keeps accepting.
+     */
+    public static BankServer start(Bank bank, int port, Consumer<? super Throwable> onError) throws IOException {
+        if (onError == null) {
+            throw new IllegalArgumentException("Error handler cannot be null");
+        }
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        BankServer server = new BankServer(bank, serverSocket, onError);
+        server.acceptor.start();
+        return server;
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** True when connections are served by virtual threads. */
+    public static boolean usesVirtualThreads() {
+        return CONNECTION_THREADS.newThread(() -> { }).getClass().getName().contains("Virtual");
+    }
+
+    /** Blocks until the server is closed. */
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+    private void acceptLoop() {
+        AcceptLoop.run(() -> running, serverSocket::accept, connections, socket -> {
+            socket.setTcpNoDelay(true);
+            CONNECTION_THREADS.newThread(() -> serve(socket)).start();
+        }, onError);
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            StringBuilder line = new StringBuilder();
+            while (running) {
+                if (!readLine(in, line)) {
+                    return;
+                }
+                if (line.length() == 0) {
+                    continue;
+                }
+                String[] requestLine = line.toString().split(" ");
+                if (requestLine.length != 3) {
+                    respond(out, 400, "Malformed request line", false);
+                    return;
+                }
+                int contentLength = 0;
+                boolean keepAlive = !requestLine[2].equals("HTTP/1.0");
+                while (readLine(in, line) && line.length() > 0) {
+                    String header = line.toString();
+                    int colon = header.indexOf(':');
+                    if (colon < 0) {
+                        continue;
+                    }
+                    String name = header.substring(0, colon).trim();
+                    String value = header.substring(colon + 1).trim();
+                    if (name.equalsIgnoreCase("Content-Length")) {
+                        contentLength = Integer.parseInt(value);
+                    } else if (name.equalsIgnoreCase("Connection")) {
+                        keepAlive = value.equalsIgnoreCase("keep-alive")
+                                || (keepAlive && !value.equalsIgnoreCase("close"));
+                    }
+                }
+                in.skipNBytes(contentLength);
+                handle(requestLine[0], requestLine[1], out, keepAlive);
+                if (!keepAlive) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Client went away or sent garbage; drop the connection.
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void handle(String method, String target, OutputStream out, boolean keepAlive) throws IOException {
+        int query = target.indexOf('?');
+        String path = query < 0 ? target : target.substring(0, query);
+        Map<String, String> params = query < 0 ? Map.of() : parseQuery(target.substring(query + 1));
+        String[] segments = path.split("/");
+        try {
+            if (method.equals("POST") && path.equals("/accounts")) {
+                bank.addAccount(new BankAccount(required(params, "number"), params.get("holder"),
+                        amount(params, "balance")));
+                respond(out, 201, "CREATED", keepAlive);
+            } else if (method.equals("GET") && segments.length == 3 && segments[1].equals("accounts")) {
+                BankAccount account = bank.getAccount(decode(segments[2]));
+                if (account == null) {
+                    respond(out, 404, TransactionStatus.ACCOUNT_NOT_FOUND.name(), keepAlive);
+                } else {
+                    respond(out, 200, Double.toString(account.getBalance()), keepAlive);
+                }
+            } else if (method.equals("POST") && segments.length == 4 && segments[1].equals("accounts")
+                    && (segments[3].equals("deposit") || segments[3].equals("withdraw"))) {
+                BankAccount account = bank.getAccount(decode(segments[2]));
+                double amount = amount(params, "amount");
+                TransactionStatus status = account == null ? TransactionStatus.ACCOUNT_NOT_FOUND
+                        : segments[3].equals("deposit") ? account.tryDeposit(amount) : account.tryWithdraw(amount);
+                respond(out, status, keepAlive);
+            } else if (method.equals("POST") && path.equals("/transfer")) {
+                respond(out, service.tryTransfer(required(params, "from"), required(params, "to"),
+                        amount(params, "amount")), keepAlive);
+            } else {
+                respond(out, 404, "Not found", keepAlive);
+            }
+        } catch (IllegalArgumentException e) {
+            respond(out, 400, e.getMessage(), keepAlive);
+        }
+    }
+
+    private static void respond(OutputStream out, TransactionStatus status, boolean keepAlive) throws IOException {
+        int code = status == TransactionStatus.SUCCESS ? 200
+                : status == TransactionStatus.ACCOUNT_NOT_FOUND ? 404 : 422;
+        respond(out, code, status.name(), keepAlive);
+    }
+
+    private static void respond(OutputStream out, int code, String body, boolean keepAlive) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + code + " " + reason(code) + "\r\n"
+                + "Content-Type: text/plain; charset=utf-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + (keepAlive ? "" : "Connection: close\r\n")
+                + "\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+
+    private static String reason(int code) {
+        switch (code) {
+            case 200:
+                return "OK";
+            case 201:
+                return "Created";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            default:
+                return "Unprocessable Entity";
+        }
+    }
+
+    // Reads one CRLF- or LF-terminated line into {@code line}; false at end of stream.
+    private static boolean readLine(InputStream in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                int last = line.length() - 1;
+                if (last >= 0 && line.charAt(last) == '\r') {
+                    line.setLength(last);
+                }
+                return true;
+            }
+            if (line.length() == MAX_LINE) {
+                throw new IOException("Line too long");
+            }
+            line.append((char) c);
+        }
+        return false;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static double amount(Map<String, String> params, String name) {
+        try {
+            return Double.parseDouble(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + params.get(name));
+        }
+    }
+
+    // Thread.ofVirtual() is looked up reflectively so the code still builds for Java 17.
+    private static ThreadFactory connectionThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "bank-connection-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicLong counter = new AtomicLong();
+            return task -> {
+                Thread thread = new Thread(null, task, "bank-connection-" + counter.getAndIncrement(), 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -1,27 +1,476 @@
 // src/BankService.java
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
 public class BankService {
+    private static final int LOCK_STRIPES = 1024;
+    private static final int IDEMPOTENCY_KEYS = 1 << 21;
+    private static final long IDEMPOTENCY_TTL_HOURS = 24;
+    // Net-movement attempts at a batch before it falls back to one transfer at a time.
+    private static final int MAX_BATCH_ATTEMPTS = 8;
+
     private Bank bank;
+    // Set when the accounts live on the nodes of a cluster instead of in a local bank.
+    private final BankCluster cluster;
+    // Transfers lock the stripes of both account numbers, always lowest index first.
+    private final ReentrantLock[] locks;
+    // Async requests queue per stripe of the account they debit, and run one at a time.
+    private final SerialQueue[] queues;
+    private final Executor executor;
+    private final IdempotencyCache idempotency;
 
     public BankService(Bank bank) {
+        this(bank, ForkJoinPool.commonPool());
+    }
+
+    /** Uses {@code executor} to run the *Async operations, e.g. a virtual-thread-per-task executor. */
+    public BankService(Bank bank, Executor executor) {
+        this(bank, executor, new IdempotencyCache(IDEMPOTENCY_KEYS, IDEMPOTENCY_TTL_HOURS, TimeUnit.HOURS));
+    }
+
+    /** Remembers the results of keyed transfers in {@code idempotency}. */
+    public BankService(Bank bank, Executor executor, IdempotencyCache idempotency) {
+        this(bank, null, executor, idempotency);
+    }
+
+    /**
+     * Serves accounts held by a cluster: transfers within one node are sent to that node,
+     * transfers across nodes are committed on both in two phases by the cluster. Batches
+     * are settled one transfer at a time.
+     */
+    public BankService(BankCluster cluster) {
+        this(null, cluster, ForkJoinPool.commonPool(),
+                new IdempotencyCache(IDEMPOTENCY_KEYS, IDEMPOTENCY_TTL_HOURS, TimeUnit.HOURS));
+        if (cluster == null) {
+            throw new IllegalArgumentException("Cluster cannot be null");
+        }
+    }
+
+    private BankService(Bank bank, BankCluster cluster, Executor executor, IdempotencyCache idempotency) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        if (idempotency == null) {
+            throw new IllegalArgumentException("Idempotency cache cannot be null");
+        }
         this.bank = bank;
+        this.cluster = cluster;
+        this.executor = executor;
+        this.idempotency = idempotency;
+        this.locks = new ReentrantLock[LOCK_STRIPES];
+        this.queues = new SerialQueue[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+            queues[i] = new SerialQueue();
+        }
     }
 
     /**
      * Transfers an amount from one account to another.
      * Returns true if successful; false if any account is not found or if an exception occurs.
+     * The transfer is all-or-nothing: if the deposit fails, the withdrawal is put back.
      */
     public boolean transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        if (cluster != null) {
+            return tryTransfer(fromAccountNumber, toAccountNumber, amount) == TransactionStatus.SUCCESS;
+        }
+        long start = BankMetrics.start();
+        TransactionStatus status = TransactionStatus.SUCCESS;
+        try {
+            BankAccount fromAccount = bank.getAccount(fromAccountNumber);
+            BankAccount toAccount = bank.getAccount(toAccountNumber);
+            if (fromAccount == null || toAccount == null) {
+                status = TransactionStatus.ACCOUNT_NOT_FOUND;
+                return false;
+            }
+            int fromStripe = stripe(fromAccountNumber);
+            int toStripe = stripe(toAccountNumber);
+            lock(fromStripe, toStripe);
+            bank.transferStarted();
+            try {
+                fromAccount.withdraw(amount);
+                try {
+                    toAccount.deposit(amount);
+                } catch (RuntimeException e) {
+                    fromAccount.deposit(amount);
+                    fromAccount.forgetWithdrawal(BankAccount.toUnitsOrZero(amount));
+                    throw e;
+                }
+                return true;
+            } catch (TransactionRejectedException e) {
+                status = e.getStatus();
+                return false;
+            } catch (IllegalArgumentException e) {
+                status = TransactionStatus.INVALID_AMOUNT;
+                return false;
+            } finally {
+                bank.transferFinished();
+                unlock(fromStripe, toStripe);
+            }
+        } finally {
+            BankMetrics.stop(BankMetrics.Operation.TRANSFER, start);
+            BankMetrics.outcome(BankMetrics.Operation.TRANSFER, status);
+        }
+    }
+
+    /**
+     * Non-throwing variant of {@link #transfer}: returns SUCCESS or the exact reason the
+     * transfer was rejected. Rejections allocate nothing.
+     */
+    public TransactionStatus tryTransfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        long start = BankMetrics.start();
+        TransactionStatus status = transferUnits(fromAccountNumber, toAccountNumber, amount);
+        BankMetrics.stop(BankMetrics.Operation.TRANSFER, start);
+        BankMetrics.outcome(BankMetrics.Operation.TRANSFER, status);
+        return status;
+    }
+
+    /**
+     * {@link #tryTransfer} guarded by a client-chosen idempotency key: a retry with a key seen
+     * recently returns the first attempt's result without touching the accounts again.
+     * Keys are remembered for 24 hours, or until about two million newer keys have been seen.
+     * A key reused for other accounts or another amount returns {@code IDEMPOTENCY_KEY_REUSED},
+     * and a {@code NODE_UNAVAILABLE} outcome is not remembered.
+     */
+    public TransactionStatus tryTransfer(String idempotencyKey, String fromAccountNumber, String toAccountNumber,
+                                         double amount) {
+        long request = IdempotencyCache.requestFingerprint(fromAccountNumber, toAccountNumber,
+                BankAccount.toUnitsOrZero(amount));
+        return idempotency.execute(idempotencyKey, request,
+                () -> tryTransfer(fromAccountNumber, toAccountNumber, amount));
+    }
+
+    /** {@link #transfer} guarded by an idempotency key, as in {@link #tryTransfer(String, String, String, double)}. */
+    public boolean transfer(String idempotencyKey, String fromAccountNumber, String toAccountNumber, double amount) {
+        return tryTransfer(idempotencyKey, fromAccountNumber, toAccountNumber, amount) == TransactionStatus.SUCCESS;
+    }
+
+    private TransactionStatus transferUnits(String fromAccountNumber, String toAccountNumber, double amount) {
+        if (cluster != null) {
+            return cluster.tryTransfer(fromAccountNumber, toAccountNumber, amount);
+        }
         BankAccount fromAccount = bank.getAccount(fromAccountNumber);
         BankAccount toAccount = bank.getAccount(toAccountNumber);
         if (fromAccount == null || toAccount == null) {
-            return false;
+            return TransactionStatus.ACCOUNT_NOT_FOUND;
         }
+        long units = BankAccount.toUnitsOrZero(amount);
+        if (units <= 0) {
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        int fromStripe = stripe(fromAccountNumber);
+        int toStripe = stripe(toAccountNumber);
+        lock(fromStripe, toStripe);
+        bank.transferStarted();
         try {
-            fromAccount.withdraw(amount);
-            toAccount.deposit(amount);
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
+            TransactionStatus status = fromAccount.withdrawUnits(units);
+            if (status != TransactionStatus.SUCCESS) {
+                return status;
+            }
+            status = toAccount.depositUnits(units);
+            if (status != TransactionStatus.SUCCESS) {
+                fromAccount.refundWithdrawal(units);
+            }
+            return status;
+        } finally {
+            bank.transferFinished();
+            unlock(fromStripe, toStripe);
+        }
+    }
+
+    /**
+     * Asynchronous {@link #tryTransfer}. Requests that debit the same lock stripe are queued
+     * and run one after another by a single task on the executor, so a burst against a hot
+     * account occupies one thread instead of one blocked thread per request.
+     */
+    public CompletableFuture<TransactionStatus> transferAsync(String fromAccountNumber, String toAccountNumber,
+                                                              double amount) {
+        return submit(fromAccountNumber, () -> tryTransfer(fromAccountNumber, toAccountNumber, amount));
+    }
+
+    /** Asynchronous deposit, queued like {@link #transferAsync}. */
+    public CompletableFuture<TransactionStatus> depositAsync(String accountNumber, double amount) {
+        return submit(accountNumber, () -> {
+            if (cluster != null) {
+                return cluster.tryDeposit(accountNumber, amount);
+            }
+            BankAccount account = bank.getAccount(accountNumber);
+            return account == null ? TransactionStatus.ACCOUNT_NOT_FOUND : account.tryDeposit(amount);
+        });
+    }
+
+    /** Asynchronous withdrawal, queued like {@link #transferAsync}. */
+    public CompletableFuture<TransactionStatus> withdrawAsync(String accountNumber, double amount) {
+        return submit(accountNumber, () -> {
+            if (cluster != null) {
+                return cluster.tryWithdraw(accountNumber, amount);
+            }
+            BankAccount account = bank.getAccount(accountNumber);
+            return account == null ? TransactionStatus.ACCOUNT_NOT_FOUND : account.tryWithdraw(amount);
+        });
+    }
+
+    private CompletableFuture<TransactionStatus> submit(String accountNumber, Supplier<TransactionStatus> operation) {
+        CompletableFuture<TransactionStatus> result = new CompletableFuture<>();
+        queues[stripe(accountNumber)].add(() -> {
+            try {
+                result.complete(operation.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * Settles a batch of transfers. Each account is resolved once and each lock stripe it
+     * maps to is taken once for the whole batch. Instructions are checked against the
+     * withdrawal rules in order, on a running view of the balances, and only each account's
+     * net movement is written back. Velocity allowances are reserved as each instruction
+     * passes and given back if the batch is not written. If unlocked deposits or withdrawals
+     * keep changing the balances underneath, the batch is instead applied one transfer at a
+     * time, still under its locks. Returns one status per instruction.
+     */
+    public TransactionStatus[] transferBatch(List<TransferInstruction> instructions) {
+        int count = instructions.size();
+        TransactionStatus[] results = new TransactionStatus[count];
+        if (cluster != null) {
+            for (int i = 0; i < count; i++) {
+                TransferInstruction instruction = instructions.get(i);
+                results[i] = tryTransfer(instruction.getFromAccountNumber(), instruction.getToAccountNumber(),
+                        instruction.getAmount());
+            }
+            return results;
+        }
+        Map<String, Integer> slotByNumber = new HashMap<>();
+        List<BankAccount> resolved = new ArrayList<>();
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        int[] fromSlots = new int[count];
+        int[] toSlots = new int[count];
+        long[] units = new long[count];
+        for (int i = 0; i < count; i++) {
+            TransferInstruction instruction = instructions.get(i);
+            fromSlots[i] = resolve(instruction.getFromAccountNumber(), slotByNumber, resolved, stripes);
+            toSlots[i] = resolve(instruction.getToAccountNumber(), slotByNumber, resolved, stripes);
+            units[i] = BankAccount.toUnitsOrZero(instruction.getAmount());
+        }
+
+        BankAccount[] accounts = resolved.toArray(new BankAccount[0]);
+        long[] start = new long[accounts.length];
+        long[] balances = new long[accounts.length];
+        long[] debited = new long[accounts.length];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            if (stripes[i]) {
+                locks[i].lock();
+            }
+        }
+        bank.transferStarted();
+        try {
+            // Retried when an unlocked deposit or withdrawal changes a balance mid-batch.
+            boolean applied = false;
+            for (int attempt = 0; attempt < MAX_BATCH_ATTEMPTS && !applied; attempt++) {
+                applied = applyBatch(accounts, fromSlots, toSlots, units, start, balances, debited, results);
+            }
+            if (!applied) {
+                applyEach(accounts, fromSlots, toSlots, units, results);
+            }
+        } finally {
+            bank.transferFinished();
+            for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+                if (stripes[i]) {
+                    locks[i].unlock();
+                }
+            }
+        }
+        return results;
+    }
+
+    private int resolve(String accountNumber, Map<String, Integer> slotByNumber,
+                        List<BankAccount> resolved, boolean[] stripes) {
+        Integer slot = slotByNumber.get(accountNumber);
+        if (slot == null) {
+            BankAccount account = bank.getAccount(accountNumber);
+            if (account == null) {
+                slot = -1;
+            } else {
+                slot = resolved.size();
+                resolved.add(account);
+                stripes[stripe(accountNumber)] = true;
+            }
+            slotByNumber.put(accountNumber, slot);
+        }
+        return slot;
+    }
+
+    private static boolean applyBatch(BankAccount[] accounts, int[] fromSlots, int[] toSlots, long[] units,
+                                      long[] start, long[] balances, long[] debited,
+                                      TransactionStatus[] results) {
+        for (int s = 0; s < accounts.length; s++) {
+            start[s] = accounts[s].getBalanceUnits();
+            balances[s] = start[s];
+            debited[s] = 0;
+        }
+        for (int i = 0; i < results.length; i++) {
+            int from = fromSlots[i];
+            int to = toSlots[i];
+            if (from < 0 || to < 0) {
+                results[i] = TransactionStatus.ACCOUNT_NOT_FOUND;
+                continue;
+            }
+            if (units[i] <= 0) {
+                results[i] = TransactionStatus.INVALID_AMOUNT;
+                continue;
+            }
+            TransactionStatus status = accounts[from].reserveWithdrawal(balances[from], units[i]);
+            if (status == TransactionStatus.SUCCESS) {
+                long creditBase = from == to ? balances[from] - units[i] : balances[to];
+                if (creditBase > Long.MAX_VALUE - units[i]) {
+                    accounts[from].forgetWithdrawal(units[i]);
+                    status = TransactionStatus.BALANCE_OVERFLOW;
+                } else {
+                    balances[from] -= units[i];
+                    balances[to] += units[i];
+                    debited[from] += units[i];
+                }
+            }
+            results[i] = status;
+        }
+
+        // Net debits are written only if the balance is still the one the rules were checked against.
+        for (int s = 0; s < accounts.length; s++) {
+            if (balances[s] < start[s] && !accounts[s].compareAndSetUnits(start[s], balances[s])) {
+                undo(accounts, start, balances, debited, s, 0);
+                return false;
+            }
+        }
+        for (int s = 0; s < accounts.length; s++) {
+            if (balances[s] > start[s]
+                    && accounts[s].depositUnits(balances[s] - start[s]) != TransactionStatus.SUCCESS) {
+                undo(accounts, start, balances, debited, accounts.length, s);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Runs the instructions as single transfers; each withdrawal records its own velocity.
+    private static void applyEach(BankAccount[] accounts, int[] fromSlots, int[] toSlots, long[] units,
+                                  TransactionStatus[] results) {
+        for (int i = 0; i < results.length; i++) {
+            int from = fromSlots[i];
+            int to = toSlots[i];
+            if (from < 0 || to < 0) {
+                results[i] = TransactionStatus.ACCOUNT_NOT_FOUND;
+                continue;
+            }
+            if (units[i] <= 0) {
+                results[i] = TransactionStatus.INVALID_AMOUNT;
+                continue;
+            }
+            TransactionStatus status = accounts[from].withdrawUnits(units[i]);
+            if (status == TransactionStatus.SUCCESS) {
+                status = accounts[to].depositUnits(units[i]);
+                if (status != TransactionStatus.SUCCESS) {
+                    accounts[from].refundWithdrawal(units[i]);
+                }
+            }
+            results[i] = status;
+        }
+    }
+
+    // Reverts the debits written to slots [0, debitsWritten) and the credits written to
+    // [0, creditsWritten), and gives back every velocity allowance the batch reserved.
+    private static void undo(BankAccount[] accounts, long[] start, long[] balances, long[] debited,
+                             int debitsWritten, int creditsWritten) {
+        for (int s = 0; s < accounts.length; s++) {
+            if (debited[s] > 0) {
+                accounts[s].forgetWithdrawal(debited[s]);
+            }
+        }
+        for (int s = 0; s < debitsWritten; s++) {
+            if (balances[s] < start[s]) {
+                accounts[s].adjustUnits(start[s] - balances[s]);
+            }
+        }
+        for (int s = 0; s < creditsWritten; s++) {
+            if (balances[s] > start[s]) {
+                accounts[s].adjustUnits(start[s] - balances[s]);
+            }
+        }
+    }
+
+    private void lock(int first, int second) {
+        if (first > second) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        locks[first].lock();
+        if (second != first) {
+            locks[second].lock();
+        }
+    }
+
+    private void unlock(int first, int second) {
+        locks[first].unlock();
+        if (second != first) {
+            locks[second].unlock();
+        }
+    }
+
+    static int stripe(String accountNumber) {
+        int h = Objects.hashCode(accountNumber);
+        h ^= h >>> 16;
+        return h & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Runs queued tasks one at a time on an executor. At most one drain task is scheduled at
+     * a time; it runs a bounded number of tasks and then reschedules itself, so one busy
+     * stripe cannot hold an executor thread forever.
+     */
+    private static final class SerialQueue {
+        private static final int MAX_DRAIN = 256;
+
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void add(Runnable task, Executor executor) {
+            tasks.add(task);
+            schedule(executor);
+        }
+
+        private void schedule(Executor executor) {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(() -> drain(executor));
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        private void drain(Executor executor) {
+            Runnable task;
+            for (int i = 0; i < MAX_DRAIN && (task = tasks.poll()) != null; i++) {
+                task.run();
+            }
+            scheduled.set(false);
+            if (!tasks.isEmpty()) {
+                schedule(executor);
+            }
         }
     }
 }
@@ -0,0 +1,658 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming bulk import and export of accounts, as CSV or a compact binary format, through a
+ * file channel and one direct buffer per call. Memory use is bounded by the buffer, one batch
+ * of accounts and the first {@value #MAX_REPORTED_ERRORS} error messages, whatever the file size.
+ *
+ * <p>CSV rows are {@code accountNumber,accountHolder,balance} in UTF-8, optionally after a
+ * header row with those names. Fields may be quoted, with {@code ""} for a quote inside
+ * quotes. An empty unquoted holder is null, and {@code ""} is the empty string. Balances are
+ * plain decimals, rounded to the nearest minor unit, and are parsed straight from the buffer.
+ *
+ * <p>The binary format is an 8-byte header {@code [int magic][int version]}, then per account
+ * {@code [int number length][number][int holder length or -1][holder][long balance units]},
+ * strings in UTF-8, all big-endian.
+ *
+ * <p>Import applies the same checks as {@link BankAccount#BankAccount} and
+ * {@link Bank#addAccount}. Bad rows are reported and skipped, and the rest of the file is
+ * still imported.
+ */
+public final class BulkAccountIO {
+    static final int MAGIC = 0x42414343;
+    static final int VERSION = 1;
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BATCH_SIZE = 4096;
+    private static final int MAX_STRING_BYTES = 1 << 16;
+    private static final int MAX_FIELDS = 3;
+    private static final byte[] HEADER = "accountNumber,accountHolder,balance\n".getBytes(StandardCharsets.US_ASCII);
+
+    private BulkAccountIO() {
+    }
+
+    /** Imports a CSV file into {@code bank}, in batches of {@link Bank#addAccounts}. */
+    public static ImportReport importCsv(Path file, Bank bank) throws IOException {
+        try (BatchSink sink = new BatchSink(bank)) {
+            return importCsv(file, sink);
+        }
+    }
+
+    /** Parses a CSV file and passes each valid account to {@code sink}, in file order. */
+    public static ImportReport importCsv(Path file, Consumer<? super BankAccount> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CsvReader(channel, sink).read();
+        }
+    }
+
+    public static ImportReport importBinary(Path file, Bank bank) throws IOException {
+        try (BatchSink sink = new BatchSink(bank)) {
+            return importBinary(file, sink);
+        }
+    }
+
+    /**
+     * Parses a binary file and passes each valid account to {@code sink}. A truncated or
+     * corrupt record ends the import, since the records after it cannot be located.
+     */
+    public static ImportReport importBinary(Path file, Consumer<? super BankAccount> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new BinaryReader(channel, sink).read();
+        }
+    }
+
+    /** Writes the bank's accounts, in insertion order, as CSV with a header row. Returns the count. */
+    public static long exportCsv(Bank bank, Path file) throws IOException {
+        try (Writer out = new Writer(file)) {
+            out.put(HEADER);
+            long count = 0;
+            for (BankAccount account : bank.getAccounts()) {
+                out.csvField(account.getAccountNumber());
+                out.put((byte) ',');
+                out.csvField(account.getAccountHolder());
+                out.put((byte) ',');
+                out.decimal(account.getBalanceUnits());
+                out.put((byte) '\n');
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /** Writes the bank's accounts, in insertion order, in the binary format. Returns the count. */
+    public static long exportBinary(Bank bank, Path file) throws IOException {
+        try (Writer out = new Writer(file)) {
+            out.room(8);
+            out.buffer.putInt(MAGIC).putInt(VERSION);
+            long count = 0;
+            for (BankAccount account : bank.getAccounts()) {
+                out.sizedString(account.getAccountNumber());
+                out.sizedString(account.getAccountHolder());
+                out.room(8);
+                out.buffer.putLong(account.getBalanceUnits());
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /** Outcome of an import: how many accounts were added, and which rows were not. */
+    public static final class ImportReport {
+        private final long imported;
+        private final long rejected;
+        private final List<String> errors;
+
+        ImportReport(long imported, long rejected, List<String> errors) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** Messages for the first rejected rows, such as {@code "line 12: Initial balance cannot be negative"}. */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return "imported=" + imported + " rejected=" + rejected;
+        }
+    }
+
+    private abstract static class Reader {
+        final FileChannel channel;
+        final Consumer<? super BankAccount> sink;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        // How rows are numbered in error messages, "line" or "record".
+        private final String rowName;
+        byte[] scratch = new byte[256];
+        private final List<String> errors = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        Reader(FileChannel channel, Consumer<? super BankAccount> sink, String rowName) {
+            this.channel = channel;
+            this.sink = sink;
+            this.rowName = rowName;
+            buffer.flip();
+        }
+
+        /** Keeps the unread bytes, reads more after them and returns false at end of file. */
+        boolean fill() throws IOException {
+            buffer.compact();
+            int read = 0;
+            while (buffer.hasRemaining() && (read = channel.read(buffer)) > 0) {
+                // Fill the buffer as far as the channel allows.
+            }
+            buffer.flip();
+            return read >= 0;
+        }
+
+        void accept(String number, String holder, long units, long row) {
+            if (number == null) {
+                reject(row, "Account number cannot be null");
+            } else if (units < 0) {
+                reject(row, "Initial balance cannot be negative");
+            } else {
+                sink.accept(BankAccount.fromUnits(number, holder, units));
+                imported++;
+            }
+        }
+
+        void reject(long row, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(rowName + " " + row + ": " + message);
+            }
+        }
+
+        /** Reports a problem with the file as a whole. */
+        void fail(String message) {
+            errors.add(message);
+        }
+
+        ImportReport report() {
+            return new ImportReport(imported, rejected, errors);
+        }
+
+        byte[] scratch(int length) {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            return scratch;
+        }
+    }
+
+    private static final class CsvReader extends Reader {
+        private final int[] starts = new int[MAX_FIELDS + 1];
+        private final int[] ends = new int[MAX_FIELDS + 1];
+        private final boolean[] quoted = new boolean[MAX_FIELDS + 1];
+        // Fields and line breaks of the record last found by scanRecord.
+        private int fieldCount;
+        private int newlines;
+        private long line = 1;
+
+        CsvReader(FileChannel channel, Consumer<? super BankAccount> sink) {
+            super(channel, sink, "line");
+        }
+
+        ImportReport read() throws IOException {
+            boolean more = fill();
+            boolean first = true;
+            while (true) {
+                int end = scanRecord(!more);
+                if (end < 0) {
+                    if (!more) {
+                        return report();
+                    }
+                    if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                        skipOversizedRecord();
+                    } else {
+                        more = fill();
+                    }
+                    continue;
+                }
+                int fields = fieldCount;
+                long recordLine = line;
+                line += newlines;
+                if (!(first && isHeader(fields)) && !(fields == 1 && ends[0] == starts[0] && !quoted[0])) {
+                    parse(fields, recordLine);
+                }
+                first = false;
+                buffer.position(end);
+            }
+        }
+
+        /**
+         * Finds the record at the buffer position: returns the index after its line break and
+         * records its field boundaries, or returns -1 if the buffer ends first.
+         */
+        private int scanRecord(boolean atEof) {
+            int i = buffer.position();
+            int limit = buffer.limit();
+            if (i == limit) {
+                return -1;
+            }
+            fieldCount = 0;
+            newlines = 0;
+            while (true) {
+                boolean isQuoted = i < limit && buffer.get(i) == '"';
+                int start = isQuoted ? i + 1 : i;
+                int end;
+                if (isQuoted) {
+                    i = start;
+                    while (true) {
+                        if (i >= limit) {
+                            return atEof ? finishField(start, limit, true, limit) : -1;
+                        }
+                        byte b = buffer.get(i);
+                        if (b == '"') {
+                            if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                                i += 2;
+                                continue;
+                            }
+                            if (i + 1 >= limit && !atEof) {
+                                return -1;
+                            }
+                            break;
+                        }
+                        if (b == '\n') {
+                            newlines++;
+                        }
+                        i++;
+                    }
+                    end = i;
+                    i++;
+                    // Anything between the closing quote and the separator is ignored.
+                    while (i < limit && buffer.get(i) != ',' && buffer.get(i) != '\n') {
+                        i++;
+                    }
+                } else {
+                    while (i < limit && buffer.get(i) != ',' && buffer.get(i) != '\n') {
+                        i++;
+                    }
+                    end = i;
+                }
+                if (i >= limit) {
+                    return atEof ? finishField(start, end, isQuoted, limit) : -1;
+                }
+                addField(start, end, isQuoted);
+                if (buffer.get(i) == '\n') {
+                    newlines++;
+                    return i + 1;
+                }
+                i++;
+            }
+        }
+
+        private int finishField(int start, int end, boolean isQuoted, int limit) {
+            addField(start, end, isQuoted);
+            return limit;
+        }
+
+        private void addField(int start, int end, boolean isQuoted) {
+            if (!isQuoted && end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            if (fieldCount <= MAX_FIELDS) {
+                starts[fieldCount] = start;
+                ends[fieldCount] = end;
+                quoted[fieldCount] = isQuoted;
+            }
+            fieldCount++;
+        }
+
+        private void parse(int fields, long row) {
+            if (fields != MAX_FIELDS) {
+                reject(row, "Expected 3 fields but found " + fields);
+                return;
+            }
+            long units = parseUnits(starts[2], ends[2]);
+            if (units == Long.MIN_VALUE) {
+                reject(row, "Invalid balance");
+                return;
+            }
+            accept(string(0), string(1), units, row);
+        }
+
+        private String string(int field) {
+            int start = starts[field];
+            int end = ends[field];
+            if (!quoted[field]) {
+                return end == start ? null : decode(start, end);
+            }
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == '"') {
+                    return unescape(start, end);
+                }
+            }
+            return decode(start, end);
+        }
+
+        private String decode(int start, int end) {
+            int length = end - start;
+            byte[] bytes = scratch(length);
+            buffer.get(start, bytes, 0, length);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private String unescape(int start, int end) {
+            byte[] bytes = scratch(end - start);
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                bytes[length++] = b;
+                if (b == '"') {
+                    i++;
+                }
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /** Parses a plain decimal into minor units, or returns Long.MIN_VALUE if it is not one. */
+        private long parseUnits(int start, int end) {
+            int i = start;
+            boolean negative = i < end && buffer.get(i) == '-';
+            if (negative) {
+                i++;
+            }
+            long whole = 0;
+            int digits = 0;
+            for (; i < end && buffer.get(i) != '.'; i++, digits++) {
+                int d = buffer.get(i) - '0';
+                if (d < 0 || d > 9 || whole > (Long.MAX_VALUE / BankAccount.UNITS_PER_CURRENCY - d) / 10) {
+                    return Long.MIN_VALUE;
+                }
+                whole = whole * 10 + d;
+            }
+            long fraction = 0;
+            long scale = BankAccount.UNITS_PER_CURRENCY;
+            boolean roundUp = false;
+            if (i < end) {
+                i++;
+                for (int position = 0; i < end; i++, position++, digits++) {
+                    int d = buffer.get(i) - '0';
+                    if (d < 0 || d > 9) {
+                        return Long.MIN_VALUE;
+                    }
+                    if (scale > 1) {
+                        scale /= 10;
+                        fraction += d * scale;
+                    } else if (position == 4) {
+                        roundUp = d >= 5;
+                    }
+                }
+            }
+            if (digits == 0) {
+                return Long.MIN_VALUE;
+            }
+            long units = whole * BankAccount.UNITS_PER_CURRENCY + fraction + (roundUp ? 1 : 0);
+            return negative ? -units : units;
+        }
+
+        private boolean isHeader(int fields) {
+            if (fields != MAX_FIELDS) {
+                return false;
+            }
+            int j = 0;
+            for (int field = 0; field < fields; field++) {
+                for (int i = starts[field]; i < ends[field]; i++, j++) {
+                    if (j >= HEADER.length || buffer.get(i) != HEADER[j]) {
+                        return false;
+                    }
+                }
+                if (j >= HEADER.length || HEADER[j++] != (field < fields - 1 ? ',' : '\n')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // A record that does not fit in the buffer is reported and dropped up to the next line break.
+        private void skipOversizedRecord() throws IOException {
+            reject(line, "Record longer than " + BUFFER_SIZE + " bytes");
+            while (true) {
+                for (int i = buffer.position(); i < buffer.limit(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        buffer.position(i + 1);
+                        line++;
+                        return;
+                    }
+                }
+                buffer.position(buffer.limit());
+                if (!fill()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class BinaryReader extends Reader {
+        private long record;
+
+        BinaryReader(FileChannel channel, Consumer<? super BankAccount> sink) {
+            super(channel, sink, "record");
+        }
+
+        ImportReport read() throws IOException {
+            boolean more = fill();
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                fail("Not an account file");
+                return report();
+            }
+            if (buffer.getInt() != VERSION) {
+                fail("Unsupported version");
+                return report();
+            }
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (!more) {
+                        return report();
+                    }
+                    more = fill();
+                    continue;
+                }
+                record++;
+                int mark = buffer.position();
+                int recordEnd = recordEnd(mark);
+                if (recordEnd == -2) {
+                    reject(record, "Corrupt record; import stopped");
+                    return report();
+                }
+                if (recordEnd < 0) {
+                    if (!more) {
+                        reject(record, "Truncated record; import stopped");
+                        return report();
+                    }
+                    more = fill();
+                    record--;
+                    continue;
+                }
+                String number = sized();
+                String holder = sized();
+                long units = buffer.getLong();
+                accept(number, holder, units, record);
+            }
+        }
+
+        /** End of the record at {@code at}, -1 if it runs past the buffer, -2 if its lengths are invalid. */
+        private int recordEnd(int at) {
+            int limit = buffer.limit();
+            for (int field = 0; field < 2; field++) {
+                if (at + 4 > limit) {
+                    return -1;
+                }
+                int length = buffer.getInt(at);
+                if (length < (field == 0 ? 0 : -1) || length > MAX_STRING_BYTES) {
+                    return -2;
+                }
+                at += 4 + Math.max(length, 0);
+            }
+            return at + 8 > limit ? -1 : at + 8;
+        }
+
+        private String sized() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = scratch(length);
+            buffer.get(bytes, 0, length);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Collects accounts into batches for {@link Bank#addAccounts}. */
+    private static final class BatchSink implements Consumer<BankAccount>, AutoCloseable {
+        private final Bank bank;
+        private final List<BankAccount> batch = new ArrayList<>(BATCH_SIZE);
+
+        BatchSink(Bank bank) {
+            this.bank = bank;
+        }
+
+        @Override
+        public void accept(BankAccount account) {
+            batch.add(account);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            bank.addAccounts(batch);
+            batch.clear();
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+    private static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final byte[] digits = new byte[20];
+
+        Writer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        void put(byte b) throws IOException {
+            room(1);
+            buffer.put(b);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                room(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void csvField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = value.isEmpty();
+            boolean ascii = true;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                quote |= c == ',' || c == '"' || c == '\n' || c == '\r';
+                ascii &= c < 0x80;
+            }
+            if (quote) {
+                put((byte) '"');
+                put(value.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+                put((byte) '"');
+            } else if (ascii) {
+                room(value.length());
+                for (int i = 0; i < value.length(); i++) {
+                    buffer.put((byte) value.charAt(i));
+                }
+            } else {
+                put(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        void sizedString(String value) throws IOException {
+            if (value == null) {
+                room(4);
+                buffer.putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            room(4);
+            buffer.putInt(bytes.length);
+            put(bytes);
+        }
+
+        /** Writes minor units as a decimal with four fraction digits, without building a string. */
+        void decimal(long units) throws IOException {
+            room(digits.length + 2);
+            if (units < 0) {
+                buffer.put((byte) '-');
+            }
+            long magnitude = Math.abs(units);
+            long whole = magnitude / BankAccount.UNITS_PER_CURRENCY;
+            int fraction = (int) (magnitude % BankAccount.UNITS_PER_CURRENCY);
+            int n = 0;
+            do {
+                digits[n++] = (byte) ('0' + whole % 10);
+                whole /= 10;
+            } while (whole > 0);
+            while (n > 0) {
+                buffer.put(digits[--n]);
+            }
+            buffer.put((byte) '.');
+            buffer.put((byte) ('0' + fraction / 1000));
+            buffer.put((byte) ('0' + fraction / 100 % 10));
+            buffer.put((byte) ('0' + fraction / 10 % 10));
+            buffer.put((byte) ('0' + fraction % 10));
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,719 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Bank} that stores accounts column-wise instead of as one object per account.
+ *
+ * <p>Each account gets a dense int slot. Balances live in chunked {@code long[]} columns and
+ * are updated with the same compare-and-set rules as {@link BankAccount}; account numbers and
+ * holders are packed into a byte arena (Latin-1 when possible, UTF-16 otherwise); and an
+ * open-addressing {@code int[]} table maps account numbers to slots. Columns grow by adding
+ * chunks, so an element never moves once written and CAS updates never race a resize.
+ *
+ * <p>{@link #addAccount} copies the given account, and its withdrawal rules, into the columns. {@link #getAccount} and
+ * {@link #getAccounts} return lightweight {@link BankAccount} views created on demand, which
+ * read and update the columns directly; later changes to the object passed to
+ * {@code addAccount} are not seen by the bank.
+ *
+ * <p>Slots of removed accounts are not reused, so a view kept past removal never aliases
+ * another account, and each removal records its sequence number, so {@link #getAccounts}
+ * can return a consistent snapshot in O(1) by remembering only the slot and removal counts.
+ */
+public class ColumnarBank extends Bank {
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle OBJECTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int ARENA_CHUNK_BITS = 20;
+    private static final int ARENA_CHUNK_SIZE = 1 << ARENA_CHUNK_BITS;
+    private static final int MAX_STRING_BYTES = 1 << 16;
+
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+    private static final int NULL_STRING = -1;
+
+    // Columns, indexed by slot through chunk = slot >>> CHUNK_BITS, offset = slot & CHUNK_MASK.
+    private volatile long[][] balances = new long[0][];
+    private volatile long[][] stringRefs = new long[0][];
+    private volatile int[][] numberMeta = new int[0][];
+    private volatile int[][] holderMeta = new int[0][];
+    private volatile int[][] numberHashes = new int[0][];
+    // Per slot, 0 while the account is live, else how many removals there had been, counting its own.
+    private volatile int[][] removedAt = new int[0][];
+    // Withdrawal rules per slot: null for the standard rules, the WithdrawalRules, or the
+    // VelocityCounters (which carry their rules) when the rules have velocity limits.
+    private volatile Object[][] withdrawalState = new Object[0][];
+    private volatile int size;
+    private int removals;
+    // (size << 32) | removals, published after each change so one read gives a consistent pair.
+    private volatile long extent;
+
+    // Packed strings: a reference is (chunk << ARENA_CHUNK_BITS) | offset.
+    private byte[][] arena = new byte[0][];
+    private int arenaOffset = ARENA_CHUNK_SIZE;
+
+    // Number index: entries are slot + 1, EMPTY or DELETED. Only grown or rebuilt by writers.
+    private volatile int[] table = new int[1024];
+    private int tableUsed;
+    private int liveCount;
+
+    @Override
+    public void addAccount(BankAccount account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        if (account.getAccountNumber() == null) {
+            throw new IllegalArgumentException("Account number cannot be null");
+        }
+        synchronized (this) {
+            boolean locked = beginMembershipChange();
+            try {
+                int slot = append(account.getAccountNumber(), account.getAccountHolder(), account.getBalanceUnits());
+                setWithdrawalRules(slot, account.getWithdrawalRules());
+                accountAdded(view(slot), slot + 1L);
+            } finally {
+                endChange(locked);
+            }
+        }
+    }
+
+    @Override
+    public void addAccounts(List<BankAccount> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Accounts cannot be null");
+        }
+        for (BankAccount account : batch) {
+            if (account == null) {
+                throw new IllegalArgumentException("Account cannot be null");
+            }
+            if (account.getAccountNumber() == null) {
+                throw new IllegalArgumentException("Account number cannot be null");
+            }
+        }
+        synchronized (this) {
+            boolean locked = beginMembershipChange();
+            try {
+                for (BankAccount account : batch) {
+                    int slot = append(account.getAccountNumber(), account.getAccountHolder(), account.getBalanceUnits());
+                    setWithdrawalRules(slot, account.getWithdrawalRules());
+                    accountAdded(view(slot), slot + 1L);
+                }
+            } finally {
+                endChange(locked);
+            }
+        }
+    }
+
+    @Override
+    synchronized void restoreAccount(BankAccount account, long accountId) {
+        if (accountId <= size) {
+            throw new IllegalStateException("Account id " + accountId + " is already in use");
+        }
+        while (size < accountId - 1) {
+            remove(append("", null, 0));
+        }
+        append(account.getAccountNumber(), account.getAccountHolder(), account.getBalanceUnits());
+    }
+
+    @Override
+    public void removeAccount(String accountNumber) {
+        if (accountNumber == null) {
+            return;
+        }
+        synchronized (this) {
+            boolean locked = beginMembershipChange();
+            try {
+                int slot;
+                while ((slot = find(accountNumber)) >= 0) {
+                    remove(slot);
+                    accountRemoved(view(slot), slot + 1L);
+                }
+            } finally {
+                endChange(locked);
+            }
+        }
+    }
+
+    @Override
+    synchronized void removeAccountById(long accountId) {
+        int slot = (int) accountId - 1;
+        if (slot >= 0 && slot < size && !isRemoved(slot)) {
+            remove(slot);
+        }
+    }
+
+    @Override
+    public BankAccount getAccount(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        long start = BankMetrics.start();
+        int slot = find(accountNumber);
+        BankMetrics.stop(BankMetrics.Operation.GET_ACCOUNT, start);
+        return slot < 0 ? null : view(slot);
+    }
+
+    @Override
+    BankAccount getAccountById(long accountId) {
+        int slot = (int) accountId - 1;
+        return slot >= 0 && slot < size && !isRemoved(slot) ? view(slot) : null;
+    }
+
+    @Override
+    public List<BankAccount> getAccounts() {
+        long current = extent;
+        return new Accounts((int) (current >>> 32), (int) current);
+    }
+
+    @Override
+    AccountSource accountSource() {
+        int count = size;
+        return new AccountSource() {
+            @Override
+            public long end() {
+                return count;
+            }
+
+            @Override
+            public void forEach(long from, long to, Consumer<? super BankAccount> action) {
+                for (int slot = (int) from; slot < to; slot++) {
+                    if (!isRemoved(slot)) {
+                        action.accept(view(slot));
+                    }
+                }
+            }
+        };
+    }
+
+    private BankAccount view(int slot) {
+        return new ColumnarAccount(this, slot);
+    }
+
+    /**
+     * The accounts as of the moment {@link #getAccounts} read {@code end} and
+     * {@code removalsThen}: the slots below {@code end} not removed by one of the first
+     * {@code removalsThen} removals. Taking it copies nothing.
+     */
+    private final class Accounts extends AccountSnapshot {
+        private final int end;
+        private final int removalsThen;
+        // Slot of each position, built on the first positional read if some slots were removed.
+        private int[] slots;
+
+        Accounts(int end, int removalsThen) {
+            this.end = end;
+            this.removalsThen = removalsThen;
+        }
+
+        private boolean visible(int slot) {
+            int at = removedAt[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+            return at == 0 || at > removalsThen;
+        }
+
+        @Override
+        BankAccount versionGet(int index) {
+            if (index < 0 || index >= versionSize()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + versionSize());
+            }
+            if (removalsThen == 0) {
+                return view(index);
+            }
+            if (slots == null) {
+                int[] positions = new int[versionSize()];
+                int count = 0;
+                for (int slot = 0; slot < end; slot++) {
+                    if (visible(slot)) {
+                        positions[count++] = slot;
+                    }
+                }
+                slots = positions;
+            }
+            return view(slots[index]);
+        }
+
+        @Override
+        int versionSize() {
+            return end - removalsThen;
+        }
+
+        @Override
+        Iterator<BankAccount> versionIterator() {
+            return new Iterator<>() {
+                private int slot = next(0);
+
+                private int next(int from) {
+                    while (from < end && !visible(from)) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < end;
+                }
+
+                @Override
+                public BankAccount next() {
+                    if (slot >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    BankAccount account = view(slot);
+                    slot = next(slot + 1);
+                    return account;
+                }
+            };
+        }
+    }
+
+    private int append(String accountNumber, String accountHolder, long balanceUnits) {
+        int slot = size;
+        int chunk = slot >>> CHUNK_BITS;
+        if (chunk == balances.length) {
+            addChunk();
+        }
+        int offset = slot & CHUNK_MASK;
+        long ref = arenaReference(accountNumber, accountHolder);
+        int numberMetaValue = store(accountNumber);
+        int holderMetaValue = accountHolder == null ? NULL_STRING : store(accountHolder);
+        stringRefs[chunk][offset] = ref;
+        numberMeta[chunk][offset] = numberMetaValue;
+        holderMeta[chunk][offset] = holderMetaValue;
+        numberHashes[chunk][offset] = spread(accountNumber.hashCode());
+        balances[chunk][offset] = balanceUnits;
+        size = slot + 1;
+        index(slot);
+        holders.add(accountHolder, slot + 1L);
+        liveCount++;
+        extent = (long) size << 32 | removals;
+        return slot;
+    }
+
+    private void remove(int slot) {
+        removedAt[slot >>> CHUNK_BITS][slot & CHUNK_MASK] = ++removals;
+        unindex(slot);
+        holders.remove(accountHolder(slot), slot + 1L);
+        liveCount--;
+        extent = (long) size << 32 | removals;
+    }
+
+    private boolean isRemoved(int slot) {
+        return removedAt[slot >>> CHUNK_BITS][slot & CHUNK_MASK] != 0;
+    }
+
+    private void addChunk() {
+        int chunks = balances.length + 1;
+        long[][] newRefs = Arrays.copyOf(stringRefs, chunks);
+        newRefs[chunks - 1] = new long[CHUNK_SIZE];
+        int[][] newNumberMeta = Arrays.copyOf(numberMeta, chunks);
+        newNumberMeta[chunks - 1] = new int[CHUNK_SIZE];
+        int[][] newHolderMeta = Arrays.copyOf(holderMeta, chunks);
+        newHolderMeta[chunks - 1] = new int[CHUNK_SIZE];
+        int[][] newHashes = Arrays.copyOf(numberHashes, chunks);
+        newHashes[chunks - 1] = new int[CHUNK_SIZE];
+        int[][] newRemovedAt = Arrays.copyOf(removedAt, chunks);
+        newRemovedAt[chunks - 1] = new int[CHUNK_SIZE];
+        Object[][] newWithdrawalState = Arrays.copyOf(withdrawalState, chunks);
+        newWithdrawalState[chunks - 1] = new Object[CHUNK_SIZE];
+        long[][] newBalances = Arrays.copyOf(balances, chunks);
+        newBalances[chunks - 1] = new long[CHUNK_SIZE];
+        stringRefs = newRefs;
+        numberMeta = newNumberMeta;
+        holderMeta = newHolderMeta;
+        numberHashes = newHashes;
+        removedAt = newRemovedAt;
+        withdrawalState = newWithdrawalState;
+        balances = newBalances;
+    }
+
+    // ---- string arena ----
+
+    // Reserves room for both strings of an account in one arena chunk and returns its reference.
+    private long arenaReference(String accountNumber, String accountHolder) {
+        int bytes = encodedLength(accountNumber) + (accountHolder == null ? 0 : encodedLength(accountHolder));
+        if (bytes > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Account number and holder are too long");
+        }
+        if (arena.length == 0 || arenaOffset + bytes > ARENA_CHUNK_SIZE) {
+            arena = Arrays.copyOf(arena, arena.length + 1);
+            arena[arena.length - 1] = new byte[ARENA_CHUNK_SIZE];
+            arenaOffset = 0;
+        }
+        return ((long) (arena.length - 1) << ARENA_CHUNK_BITS) | arenaOffset;
+    }
+
+    // Appends a string at the arena cursor; returns (length << 1) | utf16.
+    private int store(String value) {
+        byte[] chunk = arena[arena.length - 1];
+        boolean latin1 = isLatin1(value);
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (latin1) {
+                chunk[arenaOffset++] = (byte) c;
+            } else {
+                chunk[arenaOffset++] = (byte) (c >>> 8);
+                chunk[arenaOffset++] = (byte) c;
+            }
+        }
+        return (length << 1) | (latin1 ? 0 : 1);
+    }
+
+    private static int encodedLength(String value) {
+        return isLatin1(value) ? value.length() : value.length() * 2;
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(long ref, int skipBytes, int meta) {
+        byte[] chunk = arena[(int) (ref >>> ARENA_CHUNK_BITS)];
+        int offset = (int) (ref & (ARENA_CHUNK_SIZE - 1)) + skipBytes;
+        int length = meta >>> 1;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (meta & 1) == 0
+                    ? (char) (chunk[offset + i] & 0xFF)
+                    : (char) (((chunk[offset + 2 * i] & 0xFF) << 8) | (chunk[offset + 2 * i + 1] & 0xFF));
+        }
+        return new String(chars);
+    }
+
+    private static int byteLength(int meta) {
+        return (meta & 1) == 0 ? meta >>> 1 : meta & ~1;
+    }
+
+    String accountNumber(int slot) {
+        int chunk = slot >>> CHUNK_BITS;
+        int offset = slot & CHUNK_MASK;
+        return decode(stringRefs[chunk][offset], 0, numberMeta[chunk][offset]);
+    }
+
+    String accountHolder(int slot) {
+        int chunk = slot >>> CHUNK_BITS;
+        int offset = slot & CHUNK_MASK;
+        int meta = holderMeta[chunk][offset];
+        if (meta == NULL_STRING) {
+            return null;
+        }
+        return decode(stringRefs[chunk][offset], byteLength(numberMeta[chunk][offset]), meta);
+    }
+
+    private boolean numberEquals(int slot, String accountNumber) {
+        int chunk = slot >>> CHUNK_BITS;
+        int offset = slot & CHUNK_MASK;
+        int meta = numberMeta[chunk][offset];
+        int length = meta >>> 1;
+        if (length != accountNumber.length()) {
+            return false;
+        }
+        long ref = stringRefs[chunk][offset];
+        byte[] bytes = arena[(int) (ref >>> ARENA_CHUNK_BITS)];
+        int start = (int) (ref & (ARENA_CHUNK_SIZE - 1));
+        for (int i = 0; i < length; i++) {
+            char c = (meta & 1) == 0
+                    ? (char) (bytes[start + i] & 0xFF)
+                    : (char) (((bytes[start + 2 * i] & 0xFF) << 8) | (bytes[start + 2 * i + 1] & 0xFF));
+            if (c != accountNumber.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ---- number index ----
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Linear probing. Inserts never reuse DELETED entries, so among duplicates the first
+    // registered account is always found first.
+    private int find(String accountNumber) {
+        int h = spread(accountNumber.hashCode());
+        int[] t = table;
+        int mask = t.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int entry = (int) INTS.getAcquire(t, i);
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != DELETED) {
+                int slot = entry - 1;
+                if (numberHashes[slot >>> CHUNK_BITS][slot & CHUNK_MASK] == h && numberEquals(slot, accountNumber)) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    private void index(int slot) {
+        if ((tableUsed + 1) * 2 > table.length) {
+            rehash();
+        }
+        insert(table, slot);
+        tableUsed++;
+    }
+
+    private void insert(int[] t, int slot) {
+        int mask = t.length - 1;
+        int i = numberHashes[slot >>> CHUNK_BITS][slot & CHUNK_MASK] & mask;
+        while (t[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        INTS.setRelease(t, i, slot + 1);
+    }
+
+    private void unindex(int slot) {
+        int[] t = table;
+        int mask = t.length - 1;
+        for (int i = numberHashes[slot >>> CHUNK_BITS][slot & CHUNK_MASK] & mask; t[i] != EMPTY; i = (i + 1) & mask) {
+            if (t[i] == slot + 1) {
+                INTS.setRelease(t, i, DELETED);
+                return;
+            }
+        }
+    }
+
+    // Rebuilds the table without DELETED entries, doubling it when more than a quarter full.
+    private void rehash() {
+        int capacity = table.length;
+        while (liveCount * 4 >= capacity) {
+            capacity *= 2;
+        }
+        int[] rebuilt = new int[capacity];
+        int[] old = table;
+        // Keep the probe order of duplicates by re-inserting in slot order.
+        int[] slots = new int[liveCount];
+        int n = 0;
+        for (int entry : old) {
+            if (entry > 0) {
+                slots[n++] = entry - 1;
+            }
+        }
+        Arrays.sort(slots, 0, n);
+        for (int i = 0; i < n; i++) {
+            insert(rebuilt, slots[i]);
+        }
+        tableUsed = n;
+        table = rebuilt;
+    }
+
+    // ---- withdrawal rules ----
+
+    private Object withdrawalState(int slot) {
+        return OBJECTS.getAcquire(withdrawalState[slot >>> CHUNK_BITS], slot & CHUNK_MASK);
+    }
+
+    WithdrawalRules withdrawalRules(int slot) {
+        Object state = withdrawalState(slot);
+        if (state == null) {
+            return WithdrawalRules.STANDARD;
+        }
+        return state instanceof VelocityCounters ? ((VelocityCounters) state).rules : (WithdrawalRules) state;
+    }
+
+    VelocityCounters velocityCounters(int slot) {
+        Object state = withdrawalState(slot);
+        return state instanceof VelocityCounters ? (VelocityCounters) state : null;
+    }
+
+    // Velocity totals start from zero, as for an object account.
+    void setWithdrawalRules(int slot, WithdrawalRules rules) {
+        Object state = rules == WithdrawalRules.STANDARD ? null
+                : rules.hasVelocityLimits() ? new VelocityCounters(rules) : rules;
+        OBJECTS.setRelease(withdrawalState[slot >>> CHUNK_BITS], slot & CHUNK_MASK, state);
+    }
+
+    // ---- balances ----
+
+    long balanceUnits(int slot) {
+        return (long) LONGS.getVolatile(balances[slot >>> CHUNK_BITS], slot & CHUNK_MASK);
+    }
+
+    boolean compareAndSetBalance(int slot, long expectedUnits, long newUnits) {
+        return LONGS.compareAndSet(balances[slot >>> CHUNK_BITS], slot & CHUNK_MASK, expectedUnits, newUnits);
+    }
+
+    void addToBalance(int slot, long deltaUnits) {
+        LONGS.getAndAdd(balances[slot >>> CHUNK_BITS], slot & CHUNK_MASK, deltaUnits);
+    }
+
+    /**
+     * A {@link BankAccount} that reads and updates one slot of a {@link ColumnarBank}.
+     */
+    static final class ColumnarAccount extends BankAccount {
+        private final ColumnarBank owner;
+        private final int slot;
+
+        ColumnarAccount(ColumnarBank owner, int slot) {
+            super(null, null, 0.0);
+            this.owner = owner;
+            this.slot = slot;
+        }
+
+        @Override
+        public String getAccountNumber() {
+            return owner.accountNumber(slot);
+        }
+
+        // Computed from the number, as the view is built without one.
+        @Override
+        long numberCode() {
+            return AccountNumbers.encode(getAccountNumber());
+        }
+
+        @Override
+        public String getAccountHolder() {
+            return owner.accountHolder(slot);
+        }
+
+        @Override
+        long getBalanceUnits() {
+            return owner.balanceUnits(slot);
+        }
+
+        @Override
+        long getId() {
+            return slot + 1L;
+        }
+
+        @Override
+        TransactionStatus depositUnits(long units) {
+            boolean locked = owner.beginChange();
+            try {
+                long current;
+                do {
+                    current = owner.balanceUnits(slot);
+                    if (current > Long.MAX_VALUE - units) {
+                        return TransactionStatus.BALANCE_OVERFLOW;
+                    }
+                } while (!owner.compareAndSetBalance(slot, current, current + units));
+                changed(units);
+                return TransactionStatus.SUCCESS;
+            } finally {
+                owner.endChange(locked);
+            }
+        }
+
+        @Override
+        TransactionStatus withdrawUnits(long units) {
+            boolean locked = owner.beginChange();
+            try {
+                VelocityCounters counters = owner.velocityCounters(slot);
+                if (counters != null) {
+                    return withdrawWithinVelocity(counters, units);
+                }
+                WithdrawalRules rules = owner.withdrawalRules(slot);
+                long current;
+                TransactionStatus status;
+                do {
+                    current = owner.balanceUnits(slot);
+                    status = rules.check(current, units);
+                    if (status != TransactionStatus.SUCCESS) {
+                        return status;
+                    }
+                } while (!owner.compareAndSetBalance(slot, current, current - units));
+                changed(-units);
+                return TransactionStatus.SUCCESS;
+            } finally {
+                owner.endChange(locked);
+            }
+        }
+
+        private TransactionStatus withdrawWithinVelocity(VelocityCounters counters, long units) {
+            synchronized (counters) {
+                long now = counters.rules.now();
+                long current;
+                do {
+                    current = owner.balanceUnits(slot);
+                    TransactionStatus status = counters.rules.check(current, units);
+                    if (status != TransactionStatus.SUCCESS) {
+                        return status;
+                    }
+                    if (!counters.allows(now, units)) {
+                        return TransactionStatus.EXCEEDS_VELOCITY_LIMIT;
+                    }
+                } while (!owner.compareAndSetBalance(slot, current, current - units));
+                counters.record(now, units);
+            }
+            changed(-units);
+            return TransactionStatus.SUCCESS;
+        }
+
+        @Override
+        public WithdrawalRules getWithdrawalRules() {
+            return owner.withdrawalRules(slot);
+        }
+
+        @Override
+        public void setWithdrawalRules(WithdrawalRules withdrawalRules) {
+            if (withdrawalRules == null) {
+                throw new IllegalArgumentException("Withdrawal rules cannot be null");
+            }
+            owner.setWithdrawalRules(slot, withdrawalRules);
+        }
+
+        @Override
+        VelocityCounters velocityCounters() {
+            return owner.velocityCounters(slot);
+        }
+
+        @Override
+        boolean compareAndSetUnits(long expectedUnits, long newUnits) {
+            boolean locked = owner.beginChange();
+            try {
+                if (!owner.compareAndSetBalance(slot, expectedUnits, newUnits)) {
+                    return false;
+                }
+                changed(newUnits - expectedUnits);
+                return true;
+            } finally {
+                owner.endChange(locked);
+            }
+        }
+
+        @Override
+        void adjustUnits(long deltaUnits) {
+            boolean locked = owner.beginChange();
+            try {
+                owner.addToBalance(slot, deltaUnits);
+                changed(deltaUnits);
+            } finally {
+                owner.endChange(locked);
+            }
+        }
+
+        private void changed(long deltaUnits) {
+            if (!owner.isRemoved(slot)) {
+                owner.balanceChanged(this, slot + 1L, deltaUnits);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ColumnarAccount
+                    && ((ColumnarAccount) o).owner == owner && ((ColumnarAccount) o).slot == slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner) * 31 + slot;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable decisions of a {@link BankCluster} acting as two-phase-commit coordinator.
+ *
+ * <p>Aborts are presumed: only commit decisions are logged, and each is fsynced before any
+ * participant is told to commit. {@code END} marks a commit every participant has applied,
+ * and {@code RESERVE} claims a block of transaction ids, so ids are never reused after a
+ * restart. Transaction ids carry the coordinator id in their high bits; it is given by the
+ * operator, unique among the clients of a cluster, and kept in the log, which refuses to
+ * open under another id. Concurrent commits share fsyncs as in
+ * {@link Journal.SyncMode#GROUP_COMMIT}.
+ *
+ * <p>File layout: {@code [int magic][int coordinatorId]}, then records
+ * {@code [int length][int crc32c][type][payload]}. Reading stops at the first torn or corrupt
+ * record, and opening rewrites the log down to its live records.
+ */
+final class CoordinatorLog implements Closeable {
+    static final int MAGIC = 0x32504331;
+    // Low bits of a transaction id; the coordinator id goes above them.
+    static final int SEQUENCE_BITS = 40;
+    static final int MAX_COORDINATOR_ID = (1 << (63 - SEQUENCE_BITS)) - 1;
+
+    private static final byte RESERVE = 1;
+    private static final byte COMMIT = 2;
+    private static final byte END = 3;
+    private static final long ID_BLOCK = 1 << 16;
+    private static final int RECORD_HEADER = 8;
+
+    private final FileChannel channel;
+    private final int coordinatorId;
+    private final long firstTransactionId;
+    private final Map<Long, String[]> pendingCommits;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+
+    private long nextSequence;
+    private long reservedUpTo;
+    private long appendedPosition;
+    private volatile long durablePosition;
+    private boolean syncInProgress;
+
+    private CoordinatorLog(FileChannel channel, int coordinatorId, long reservedUpTo,
+                           Map<Long, String[]> pendingCommits) throws IOException {
+        this.channel = channel;
+        this.coordinatorId = coordinatorId;
+        this.reservedUpTo = reservedUpTo;
+        this.nextSequence = reservedUpTo;
+        this.firstTransactionId = transactionId(reservedUpTo);
+        this.pendingCommits = Collections.unmodifiableMap(pendingCommits);
+        this.appendedPosition = channel.size();
+        this.durablePosition = appendedPosition;
+    }
+
+    /**
+     * Opens (or creates) the log of coordinator {@code coordinatorId} and compacts it to the
+     * reservation and the unfinished commits.
+     */
+    static CoordinatorLog open(Path path, int coordinatorId) throws IOException {
+        if (coordinatorId < 1 || coordinatorId > MAX_COORDINATOR_ID) {
+            throw new IllegalArgumentException("Coordinator id must be between 1 and " + MAX_COORDINATOR_ID);
+        }
+        long reservedUpTo = 0;
+        Map<Long, String[]> commits = new LinkedHashMap<>();
+        if (Files.exists(path) && Files.size(path) > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a coordinator log: " + path);
+                }
+                int loggedId = in.readInt();
+                if (loggedId != coordinatorId) {
+                    throw new IllegalArgumentException("Coordinator log " + path + " belongs to coordinator " + loggedId);
+                }
+                byte[] record;
+                while ((record = readRecord(in)) != null) {
+                    DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+                    byte type = fields.readByte();
+                    long value = fields.readLong();
+                    if (type == RESERVE) {
+                        reservedUpTo = Math.max(reservedUpTo, value);
+                    } else if (type == COMMIT) {
+                        String[] nodes = new String[fields.readByte()];
+                        for (int i = 0; i < nodes.length; i++) {
+                            nodes[i] = fields.readUTF();
+                        }
+                        commits.put(value, nodes);
+                    } else if (type == END) {
+                        commits.remove(value);
+                    }
+                }
+            }
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.allocate(8).putInt(MAGIC).putInt(coordinatorId).flip());
+            writeFully(out, record(RESERVE, reservedUpTo, null));
+            for (Map.Entry<Long, String[]> commit : commits.entrySet()) {
+                writeFully(out, record(COMMIT, commit.getKey(), commit.getValue()));
+            }
+            out.force(true);
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new CoordinatorLog(channel, coordinatorId, reservedUpTo, commits);
+    }
+
+    int coordinatorId() {
+        return coordinatorId;
+    }
+
+    /** Every id issued by earlier runs of this coordinator is below this one. */
+    long firstTransactionId() {
+        return firstTransactionId;
+    }
+
+    /** Commits decided by an earlier run that some participant may not have applied yet. */
+    Map<Long, String[]> pendingCommits() {
+        return pendingCommits;
+    }
+
+    long nextTransactionId() {
+        long sequence;
+        long reserve = 0;
+        synchronized (this) {
+            if (nextSequence == reservedUpTo) {
+                reservedUpTo += ID_BLOCK;
+                reserve = reservedUpTo;
+            }
+            sequence = nextSequence++;
+            if (reserve != 0) {
+                // Durable before any id of the block leaves this method, even to other threads.
+                awaitDurable(append(record(RESERVE, reserve, null)));
+            }
+        }
+        return transactionId(sequence);
+    }
+
+    /** Logs the decision to commit and returns once it is durable. */
+    void committed(long txId, String[] nodes) {
+        awaitDurable(append(record(COMMIT, txId, nodes)));
+    }
+
+    /** Marks a commit as applied by every participant; not fsynced, as replaying it again is harmless. */
+    void finished(long txId) {
+        append(record(END, txId, null));
+    }
+
+    private long transactionId(long sequence) {
+        return (long) coordinatorId << SEQUENCE_BITS | sequence;
+    }
+
+    private long append(ByteBuffer record) {
+        appendLock.lock();
+        try {
+            writeFully(channel, record);
+            appendedPosition = channel.position();
+            return appendedPosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // As in the journal, one caller leads an fsync of everything appended so far and the
+    // others wait for it.
+    private void awaitDurable(long end) {
+        syncLock.lock();
+        try {
+            while (durablePosition < end) {
+                if (syncInProgress) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncInProgress = true;
+                syncLock.unlock();
+                try {
+                    sync();
+                } finally {
+                    syncLock.lock();
+                    syncInProgress = false;
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void sync() {
+        long target;
+        appendLock.lock();
+        try {
+            target = appendedPosition;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (target > durablePosition) {
+            durablePosition = target;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        channel.force(false);
+        channel.close();
+    }
+
+    private static ByteBuffer record(byte type, long value, String[] nodes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(type);
+            out.writeLong(value);
+            if (nodes != null) {
+                out.writeByte(nodes.length);
+                for (String node : nodes) {
+                    out.writeUTF(node);
+                }
+            }
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            CRC32C crc = new CRC32C();
+            crc.update(record.array(), RECORD_HEADER, record.capacity() - RECORD_HEADER);
+            return record.putInt(0, record.capacity() - RECORD_HEADER).putInt(4, (int) crc.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Returns the payload of the next intact record, or null at the end or at a torn record.
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > 1 << 16) {
+                return null;
+            }
+            byte[] payload = in.readNBytes(length);
+            if (payload.length < length) {
+                return null;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
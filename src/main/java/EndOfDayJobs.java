@@ -0,0 +1,148 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collector;
+
+/**
+ * Nightly jobs over every account, as collectors for {@link Bank#processAccounts} and
+ * {@link Bank#aggregate}. Each chunk accumulates into a {@code long[]}, so a pass allocates
+ * per chunk rather than per account.
+ *
+ * <pre>{@code
+ * double paid = bank.processAccounts(EndOfDayJobs.accrueInterest(0.0001));
+ * EndOfDayJobs.BalanceReport report = bank.aggregate(EndOfDayJobs.balanceReport());
+ * }</pre>
+ */
+public final class EndOfDayJobs {
+    // Decades of the balance in currency units: [0, 1), [1, 10), ... [1e14, 1e15), and above.
+    static final int DECADES = 16;
+
+    private EndOfDayJobs() {
+    }
+
+    /**
+     * Credits each account {@code dailyRate} times its balance, rounded down to a minor unit,
+     * and returns the total credited. Accounts whose balance would overflow are skipped.
+     */
+    public static Collector<BankAccount, long[], Double> accrueInterest(double dailyRate) {
+        if (!(dailyRate >= 0) || dailyRate > 1) {
+            throw new IllegalArgumentException("Daily rate must be between 0 and 1");
+        }
+        return Collector.of(() -> new long[1], (paid, account) -> {
+            long interest = (long) (account.getBalanceUnits() * dailyRate);
+            if (interest > 0 && account.depositUnits(interest) == TransactionStatus.SUCCESS) {
+                paid[0] += interest;
+            }
+        }, EndOfDayJobs::add, paid -> BankAccount.toAmount(paid[0]));
+    }
+
+    /**
+     * Charges each account {@code fee}, bypassing the withdrawal limits, and returns the total
+     * collected. Accounts that cannot cover the whole fee are not charged.
+     */
+    public static Collector<BankAccount, long[], Double> chargeMaintenanceFee(double fee) {
+        long units = BankAccount.toUnitsOrZero(fee);
+        if (units <= 0) {
+            throw new IllegalArgumentException("Fee must be positive");
+        }
+        return Collector.of(() -> new long[1], (collected, account) -> {
+            if (account.chargeUnits(units) == TransactionStatus.SUCCESS) {
+                collected[0] += units;
+            }
+        }, EndOfDayJobs::add, collected -> BankAccount.toAmount(collected[0]));
+    }
+
+    /** Count, total liabilities, extremes and the distribution of balances by decade. */
+    public static Collector<BankAccount, long[], BalanceReport> balanceReport() {
+        // [count, total, min, max, decade counts...]
+        return Collector.of(() -> {
+            long[] totals = new long[4 + DECADES];
+            totals[2] = Long.MAX_VALUE;
+            totals[3] = Long.MIN_VALUE;
+            return totals;
+        }, (totals, account) -> {
+            long balance = account.getBalanceUnits();
+            totals[0]++;
+            totals[1] = Math.addExact(totals[1], balance);
+            totals[2] = Math.min(totals[2], balance);
+            totals[3] = Math.max(totals[3], balance);
+            totals[4 + decade(balance)]++;
+        }, (left, right) -> {
+            left[0] += right[0];
+            left[1] = Math.addExact(left[1], right[1]);
+            left[2] = Math.min(left[2], right[2]);
+            left[3] = Math.max(left[3], right[3]);
+            for (int i = 4; i < left.length; i++) {
+                left[i] += right[i];
+            }
+            return left;
+        }, BalanceReport::new);
+    }
+
+    static int decade(long balanceUnits) {
+        int decade = 0;
+        for (long bound = BankAccount.UNITS_PER_CURRENCY; balanceUnits >= bound && decade < DECADES - 1;
+             bound *= 10) {
+            decade++;
+        }
+        return decade;
+    }
+
+    private static long[] add(long[] left, long[] right) {
+        left[0] += right[0];
+        return left;
+    }
+
+    /** Result of {@link #balanceReport()}. */
+    public static final class BalanceReport {
+        private final long count;
+        private final long totalUnits;
+        private final long minUnits;
+        private final long maxUnits;
+        private final long[] decades;
+
+        BalanceReport(long[] totals) {
+            this.count = totals[0];
+            this.totalUnits = totals[1];
+            this.minUnits = count == 0 ? 0 : totals[2];
+            this.maxUnits = count == 0 ? 0 : totals[3];
+            this.decades = Arrays.copyOfRange(totals, 4, totals.length);
+        }
+
+        public long getAccountCount() {
+            return count;
+        }
+
+        public double getTotalLiabilities() {
+            return BankAccount.toAmount(totalUnits);
+        }
+
+        public double getMinBalance() {
+            return BankAccount.toAmount(minUnits);
+        }
+
+        public double getMaxBalance() {
+            return BankAccount.toAmount(maxUnits);
+        }
+
+        /** Accounts with a balance in {@code [10^(decade-1), 10^decade)}; decade 0 is below 1. */
+        public long getAccountsInDecade(int decade) {
+            if (decade < 0 || decade >= DECADES) {
+                throw new IllegalArgumentException("Decade must be between 0 and " + (DECADES - 1));
+            }
+            return decades[decade];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                    "accounts=%d total=%.4f min=%.4f max=%.4f", count, getTotalLiabilities(),
+                    getMinBalance(), getMaxBalance()));
+            for (int i = 0; i < DECADES; i++) {
+                if (decades[i] > 0) {
+                    text.append(i == 0 ? " <1=" : " <1e" + i + "=").append(decades[i]);
+                }
+            }
+            return text.toString();
+        }
+    }
+}
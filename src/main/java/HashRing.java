@@ -0,0 +1,73 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hashing of account numbers onto nodes. Each node owns {@value #POINTS_PER_NODE}
+ * points on a 64-bit ring, placed by hashing its name, and an account belongs to the node of
+ * the first point at or after the account's hash. Adding a node therefore moves only the
+ * accounts it takes over, about 1/n of them, and every client that knows the same node
+ * names routes the same way.
+ */
+final class HashRing {
+    static final int POINTS_PER_NODE = 128;
+
+    private final String[] nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    HashRing(List<String> nodeNames) {
+        if (nodeNames == null || nodeNames.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node");
+        }
+        this.nodes = nodeNames.toArray(new String[0]);
+        long[] keyed = new long[nodes.length * POINTS_PER_NODE];
+        int[] keyedOwners = new int[keyed.length];
+        Integer[] order = new Integer[keyed.length];
+        for (int n = 0; n < nodes.length; n++) {
+            for (int p = 0; p < POINTS_PER_NODE; p++) {
+                int i = n * POINTS_PER_NODE + p;
+                keyed[i] = hash(nodes[n] + "#" + p);
+                keyedOwners[i] = n;
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keyed[a], keyed[b]));
+        this.points = new long[keyed.length];
+        this.owners = new int[keyed.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = keyed[order[i]];
+            owners[i] = keyedOwners[order[i]];
+        }
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    String node(int index) {
+        return nodes[index];
+    }
+
+    /** Index of the node that owns {@code accountNumber}. */
+    int nodeFor(String accountNumber) {
+        int i = Arrays.binarySearch(points, hash(accountNumber));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    // FNV-1a over the UTF-8 bytes, then a 64-bit finalizer so nearby keys spread over the ring.
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
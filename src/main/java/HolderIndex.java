@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongFunction;
+
+/**
+ * Sorted index from account holder to the ids of that holder's accounts.
+ *
+ * <p>One skip-list entry per distinct holder, holding an immutable sorted {@code long[]} of
+ * ids that writers replace, so readers never lock. Exact lookups are O(log n) and prefix
+ * lookups O(log n + matches). Callers serialize writes; null holders are not indexed.
+ */
+final class HolderIndex {
+    private static final long[] NO_IDS = new long[0];
+
+    private final ConcurrentSkipListMap<String, long[]> ids = new ConcurrentSkipListMap<>();
+
+    void add(String holder, long accountId) {
+        if (holder == null) {
+            return;
+        }
+        long[] current = ids.getOrDefault(holder, NO_IDS);
+        int at = Arrays.binarySearch(current, accountId);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        long[] updated = new long[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, at);
+        updated[at] = accountId;
+        System.arraycopy(current, at, updated, at + 1, current.length - at);
+        ids.put(holder, updated);
+    }
+
+    void remove(String holder, long accountId) {
+        if (holder == null) {
+            return;
+        }
+        long[] current = ids.get(holder);
+        int at = current == null ? -1 : Arrays.binarySearch(current, accountId);
+        if (at < 0) {
+            return;
+        }
+        if (current.length == 1) {
+            ids.remove(holder);
+            return;
+        }
+        long[] updated = new long[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, at);
+        System.arraycopy(current, at + 1, updated, at, updated.length - at);
+        ids.put(holder, updated);
+    }
+
+    /** Accounts of exactly {@code holder}, oldest first; ids that no longer resolve are skipped. */
+    <T> List<T> exact(String holder, LongFunction<T> resolve) {
+        List<T> found = new ArrayList<>();
+        if (holder != null) {
+            collect(ids.getOrDefault(holder, NO_IDS), resolve, found, Integer.MAX_VALUE);
+        }
+        return found;
+    }
+
+    /** Up to {@code limit} accounts whose holder starts with {@code prefix}, by holder, then oldest first. */
+    <T> List<T> prefix(String prefix, int limit, LongFunction<T> resolve) {
+        List<T> found = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : ids.tailMap(prefix).entrySet()) {
+            if (found.size() >= limit || !entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            collect(entry.getValue(), resolve, found, limit);
+        }
+        return found;
+    }
+
+    private static <T> void collect(long[] accountIds, LongFunction<T> resolve, List<T> found, int limit) {
+        for (int i = 0; i < accountIds.length && found.size() < limit; i++) {
+            T account = resolve.apply(accountIds[i]);
+            if (account != null) {
+                found.add(account);
+            }
+        }
+    }
+}
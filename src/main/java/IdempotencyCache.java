@@ -0,0 +1,302 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of recent idempotency keys and the result recorded for each.
+ *
+ * <p>Each key is bound to a 64-bit fingerprint of the request it was first used for; the
+ * same key with another request is answered with {@code IDEMPOTENCY_KEY_REUSED}. Transient
+ * outcomes, such as an unreachable node, are not recorded, so a retry runs again.
+ *
+ * <p>Keys are reduced to a 128-bit fingerprint and spread over independently locked
+ * segments. Each segment keeps its entries in a ring in insertion order, in primitive arrays
+ * indexed by an open-addressing table, so an entry costs a fixed 41 bytes whatever the key
+ * length, and the oldest entries are dropped first, when they expire or when the segment is
+ * full. Segments grow on demand up to their share of {@code maxKeys}. An entry still running
+ * is never dropped, since its key would then run twice; a segment whose oldest entry is still
+ * running grows past its share instead.
+ */
+public final class IdempotencyCache {
+    private static final int SEGMENTS = 64;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final byte PENDING = -1;
+    private static final byte RELEASED = -2;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    public IdempotencyCache(int maxKeys, long ttl, TimeUnit unit) {
+        this(maxKeys, unit.toMillis(ttl), () -> System.nanoTime() / 1_000_000);
+    }
+
+    IdempotencyCache(int maxKeys, long ttlMillis, LongSupplier clockMillis) {
+        if (maxKeys < SEGMENTS) {
+            throw new IllegalArgumentException("Cache must hold at least " + SEGMENTS + " keys");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.ttlMillis = ttlMillis;
+        this.clock = clockMillis;
+        int perSegment = Integer.highestOneBit(maxKeys / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /** Same as {@link #execute(String, long, Supplier)} for keys that stand for a single kind of request. */
+    public TransactionStatus execute(String key, Supplier<TransactionStatus> operation) {
+        return execute(key, 0, operation);
+    }
+
+    /**
+     * Returns the result recorded for {@code key}, or runs {@code operation} and records its
+     * result if the key is new or has expired. {@code request} fingerprints the parameters,
+     * as from {@link #requestFingerprint}; a key recorded for another request is not run and
+     * returns {@code IDEMPOTENCY_KEY_REUSED}. A caller that arrives while the same key is
+     * still running waits for that result. If the operation throws or its result is
+     * {@linkplain TransactionStatus#isTransient() transient}, nothing is recorded.
+     */
+    public TransactionStatus execute(String key, long request, Supplier<TransactionStatus> operation) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Idempotency key cannot be empty");
+        }
+        long high = fingerprint(key, 0x9E3779B97F4A7C15L, 0x632BE59BD9B4E019L);
+        long low = fingerprint(key, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L);
+        Segment segment = segments[(int) (high >>> 58)];
+        long sequence = segment.lookupOrReserve(high, low, request, clock.getAsLong(), ttlMillis);
+        if (sequence < 0) {
+            return STATUSES[(int) (-sequence - 1)];
+        }
+        TransactionStatus status;
+        try {
+            status = operation.get();
+        } catch (RuntimeException | Error e) {
+            segment.complete(sequence, RELEASED);
+            throw e;
+        }
+        segment.complete(sequence, status.isTransient() ? RELEASED : (byte) status.ordinal());
+        return status;
+    }
+
+    /** Fingerprint of a request made of two strings, either may be null, and a number. */
+    static long requestFingerprint(String first, String second, long value) {
+        long h = first == null ? 0 : fingerprint(first, 0x94D049BB133111EBL, 0x9E3779B97F4A7C15L);
+        h = h * 0xBF58476D1CE4E5B9L + (second == null ? 0 : fingerprint(second, 0x2545F4914F6CDD1DL, 0xC2B2AE3D27D4EB4FL));
+        h = h * 0xBF58476D1CE4E5B9L + value;
+        h ^= h >>> 31;
+        return h * 0x94D049BB133111EBL;
+    }
+
+    /** Number of keys currently held, including ones still running. */
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    // 64-bit hash of the key's chars; two seeds give two independent halves of the fingerprint.
+    private static long fingerprint(String key, long seed, long multiplier) {
+        long h = seed ^ key.length();
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * multiplier;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * One lock's worth of entries. Entry {@code n} (a running sequence number) lives in ring
+     * slot {@code n & (capacity - 1)}; entries {@code [head, tail)} are live. The index maps a
+     * fingerprint to {@code slot + 1}, 0 meaning empty, and is kept at most half full.
+     */
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition completed = lock.newCondition();
+        private final int maxCapacity;
+
+        private long[] highs;
+        private long[] lows;
+        private long[] requests;
+        private long[] expiries;
+        private byte[] results;
+        private int[] index;
+        private long head;
+        private long tail;
+
+        Segment(int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+        }
+
+        private void allocate(int capacity) {
+            highs = new long[capacity];
+            lows = new long[capacity];
+            requests = new long[capacity];
+            expiries = new long[capacity];
+            results = new byte[capacity];
+            index = new int[capacity * 2];
+        }
+
+        /**
+         * Returns {@code -(ordinal + 1)} of a recorded result, or the sequence number of a new
+         * pending entry the caller must {@link #complete}.
+         */
+        long lookupOrReserve(long high, long low, long request, long now, long ttlMillis) {
+            lock.lock();
+            try {
+                while (true) {
+                    evictExpired(now);
+                    int slot = find(high, low);
+                    if (slot < 0) {
+                        return reserve(high, low, request, now + ttlMillis);
+                    }
+                    if (requests[slot] != request) {
+                        return -(TransactionStatus.IDEMPOTENCY_KEY_REUSED.ordinal() + 1L);
+                    }
+                    byte result = results[slot];
+                    if (result >= 0) {
+                        return -(result + 1L);
+                    }
+                    completed.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void complete(long sequence, byte result) {
+            lock.lock();
+            try {
+                // Running entries are never evicted, so the entry is still in the ring.
+                int slot = (int) sequence & (highs.length - 1);
+                results[slot] = result;
+                if (result == RELEASED) {
+                    unindex(slot);
+                }
+                completed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return (int) (tail - head);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long reserve(long high, long low, long request, long expiry) {
+            int capacity = highs.length;
+            if (tail - head == capacity) {
+                if (capacity < maxCapacity || results[(int) head & (capacity - 1)] == PENDING) {
+                    grow();
+                } else {
+                    evictHead();
+                }
+            }
+            int slot = (int) tail & (highs.length - 1);
+            highs[slot] = high;
+            lows[slot] = low;
+            requests[slot] = request;
+            expiries[slot] = expiry;
+            results[slot] = PENDING;
+            insert(slot);
+            return tail++;
+        }
+
+        // Every entry has the same time to live, so the expired ones are the oldest. A running
+        // entry stays past its expiry, and the ones behind it wait until it completes.
+        private void evictExpired(long now) {
+            while (head < tail) {
+                int slot = (int) head & (highs.length - 1);
+                if (expiries[slot] > now || results[slot] == PENDING) {
+                    break;
+                }
+                evictHead();
+            }
+        }
+
+        // The oldest entry must not be running.
+        private void evictHead() {
+            int slot = (int) head & (highs.length - 1);
+            if (results[slot] != RELEASED) {
+                unindex(slot);
+            }
+            head++;
+        }
+
+        private void grow() {
+            long[] oldHighs = highs;
+            long[] oldLows = lows;
+            long[] oldRequests = requests;
+            long[] oldExpiries = expiries;
+            byte[] oldResults = results;
+            int oldMask = oldHighs.length - 1;
+            allocate(oldHighs.length * 2);
+            int mask = highs.length - 1;
+            for (long n = head; n < tail; n++) {
+                int from = (int) n & oldMask;
+                int to = (int) n & mask;
+                highs[to] = oldHighs[from];
+                lows[to] = oldLows[from];
+                requests[to] = oldRequests[from];
+                expiries[to] = oldExpiries[from];
+                results[to] = oldResults[from];
+                if (results[to] != RELEASED) {
+                    insert(to);
+                }
+            }
+        }
+
+        private int find(long high, long low) {
+            int mask = index.length - 1;
+            for (int pos = (int) high & mask; index[pos] != 0; pos = (pos + 1) & mask) {
+                int slot = index[pos] - 1;
+                if (highs[slot] == high && lows[slot] == low) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(int slot) {
+            int mask = index.length - 1;
+            int pos = (int) highs[slot] & mask;
+            while (index[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            index[pos] = slot + 1;
+        }
+
+        // Linear-probing delete: shift later entries of the cluster back into the gap.
+        private void unindex(int slot) {
+            int mask = index.length - 1;
+            int gap = (int) highs[slot] & mask;
+            while (index[gap] != slot + 1) {
+                gap = (gap + 1) & mask;
+            }
+            for (int pos = (gap + 1) & mask; index[pos] != 0; pos = (pos + 1) & mask) {
+                int home = (int) highs[index[pos] - 1] & mask;
+                if (((pos - home) & mask) >= ((pos - gap) & mask)) {
+                    index[gap] = index[pos];
+                    gap = pos;
+                }
+            }
+            index[gap] = 0;
+        }
+    }
+}
@@ -0,0 +1,605 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of every change to a {@link Bank}.
+ *
+ * <p>The journal is a {@link BankListener}: once attached it appends a binary record for
+ * each account added or removed and each balance change, and an operation returns to its
+ * caller only once its record is as durable as the {@link SyncMode} promises. The legs of
+ * a transfer are written as a single frame, so replay sees all of a transfer or none of it.
+ *
+ * <p>File layout: a sequence of frames, each {@code [int length][int crc32c][records]}.
+ * Records are {@code ADD id units number holder}, {@code REMOVE id},
+ * {@code BALANCE id delta}, and {@code PREPARE tx id delta} and {@code RESOLVE tx committed}
+ * for the cross-shard transactions of a {@link ShardNode}. Replay stops at the first torn
+ * or corrupt frame.
+ */
+public class Journal implements BankListener, Closeable {
+
+    public enum SyncMode {
+        /** fsync after every operation. */
+        PER_OPERATION,
+        /** Concurrent callers wait for a shared fsync that covers all of them. */
+        GROUP_COMMIT,
+        /** A background thread fsyncs every interval; callers do not wait. */
+        INTERVAL
+    }
+
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte BALANCE = 3;
+    static final byte PREPARE = 4;
+    static final byte RESOLVE = 5;
+
+    static final int FRAME_HEADER = 8;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final SyncMode mode;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final ThreadLocal<Frame> frames = ThreadLocal.withInitial(Frame::new);
+    private final Thread flusher;
+    // Backups to stream to; told of every frame appended.
+    private volatile ReplicationPrimary replication;
+
+    // End of the data written to the channel; writeBuffer holds the bytes after it.
+    private long writtenPosition;
+    private long appendedPosition;
+    private volatile long durablePosition;
+    private boolean syncInProgress;
+    private volatile boolean closed;
+
+    private Journal(Path path, FileChannel channel, SyncMode mode, long intervalMillis) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.mode = mode;
+        this.writtenPosition = channel.size();
+        this.appendedPosition = writtenPosition;
+        this.durablePosition = appendedPosition;
+        if (mode == SyncMode.INTERVAL) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Sync interval must be positive");
+            }
+            flusher = new Thread(() -> flushPeriodically(intervalMillis), "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    public static Journal open(Path path, SyncMode mode) throws IOException {
+        return open(path, mode, 10);
+    }
+
+    /** Opens (or creates) a journal; {@code intervalMillis} is only used by {@link SyncMode#INTERVAL}. */
+    public static Journal open(Path path, SyncMode mode, long intervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Journal(path, channel, mode, intervalMillis);
+    }
+
+    /**
+     * Rebuilds a bank from the journal, drops any torn frame at the end of the file and
+     * attaches the journal so further changes are appended.
+     */
+    public Bank recover() throws IOException {
+        Bank bank = new Bank();
+        recoverInto(bank, 0);
+        return bank;
+    }
+
+    /** Replays the frames that start at or after {@code fromPosition} into the bank, then attaches. */
+    void recoverInto(Bank bank, long fromPosition) throws IOException {
+        appendLock.lock();
+        try {
+            long validEnd = replay(channel, fromPosition, Long.MAX_VALUE, new BankReplayer(bank));
+            channel.truncate(validEnd);
+            writeBuffer.clear();
+            writtenPosition = validEnd;
+            appendedPosition = validEnd;
+            durablePosition = validEnd;
+        } finally {
+            appendLock.unlock();
+        }
+        bank.addListener(this);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    void replicateTo(ReplicationPrimary primary) {
+        if (replication != null && primary != null) {
+            throw new IllegalStateException("Journal is already replicated");
+        }
+        replication = primary;
+    }
+
+    /** Writes buffered frames to the file (without fsync) and returns the end of the last one. */
+    long flush() {
+        appendLock.lock();
+        try {
+            writeBufferedBytes();
+            return writtenPosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void accountAdded(BankAccount account, long accountId) {
+        Frame frame = frames.get();
+        byte[] number = account.getAccountNumber().getBytes(StandardCharsets.UTF_8);
+        String holder = account.getAccountHolder();
+        byte[] holderBytes = holder == null ? null : holder.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = frame.reserve(1 + 8 + 8 + 4 + number.length + 4
+                + (holderBytes == null ? 0 : holderBytes.length));
+        buffer.put(ADD).putLong(accountId).putLong(account.getBalanceUnits());
+        putBytes(buffer, number);
+        putBytes(buffer, holderBytes);
+        frame.recordWritten(this);
+    }
+
+    @Override
+    public void accountRemoved(BankAccount account, long accountId) {
+        Frame frame = frames.get();
+        frame.reserve(1 + 8).put(REMOVE).putLong(accountId);
+        frame.recordWritten(this);
+    }
+
+    @Override
+    public void balanceChanged(BankAccount account, long accountId, long deltaUnits) {
+        Frame frame = frames.get();
+        frame.reserve(1 + 8 + 8).put(BALANCE).putLong(accountId).putLong(deltaUnits);
+        frame.recordWritten(this);
+    }
+
+    @Override
+    public void transactionPrepared(long txId, BankAccount account, long accountId, long deltaUnits) {
+        Frame frame = frames.get();
+        frame.reserve(1 + 8 + 8 + 8).put(PREPARE).putLong(txId).putLong(accountId).putLong(deltaUnits);
+        frame.recordWritten(this);
+    }
+
+    @Override
+    public void transactionResolved(long txId, boolean committed) {
+        Frame frame = frames.get();
+        frame.reserve(1 + 8 + 1).put(RESOLVE).putLong(txId).put((byte) (committed ? 1 : 0));
+        frame.recordWritten(this);
+    }
+
+    @Override
+    public void transferStarted() {
+        frames.get().depth++;
+    }
+
+    @Override
+    public void transferFinished() {
+        Frame frame = frames.get();
+        frame.depth--;
+        frame.recordWritten(this);
+    }
+
+    // Frames are appended under the bank's ordering lock, so the log has the order the
+    // changes were applied in; the caller waits for durability only once that is released.
+    @Override
+    public void afterChange() {
+        Frame frame = frames.get();
+        long end = frame.pendingEnd;
+        if (end > 0) {
+            frame.pendingEnd = 0;
+            awaitAppended(end);
+        }
+    }
+
+    // Returns the end of the frame in the log; see awaitAppended.
+    private long append(ByteBuffer frame) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        long end;
+        appendLock.lock();
+        try {
+            if (writeBuffer.remaining() < frame.remaining()) {
+                writeBufferedBytes();
+            }
+            int length = frame.remaining();
+            if (length > writeBuffer.capacity()) {
+                writeFully(frame);
+            } else {
+                writeBuffer.put(frame);
+            }
+            appendedPosition += length;
+            end = appendedPosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+        return end;
+    }
+
+    /** Waits until the log up to {@code end} is as durable, and as replicated, as the modes promise. */
+    private void awaitAppended(long end) {
+        switch (mode) {
+            case PER_OPERATION:
+                sync();
+                break;
+            case GROUP_COMMIT:
+                awaitDurable(end);
+                break;
+            default:
+                break;
+        }
+        ReplicationPrimary primary = replication;
+        if (primary != null) {
+            primary.appended(end);
+        }
+    }
+
+    // One caller at a time leads an fsync of everything appended so far; the rest wait
+    // for it and return without an fsync of their own if it covered their frame.
+    private void awaitDurable(long end) {
+        syncLock.lock();
+        try {
+            while (durablePosition < end) {
+                if (syncInProgress) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncInProgress = true;
+                syncLock.unlock();
+                try {
+                    sync();
+                } finally {
+                    syncLock.lock();
+                    syncInProgress = false;
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /** Writes buffered frames to the file, fsyncs it and returns the end of the last frame now durable. */
+    public long sync() {
+        try {
+            long target;
+            appendLock.lock();
+            try {
+                writeBufferedBytes();
+                target = appendedPosition;
+            } finally {
+                appendLock.unlock();
+            }
+            channel.force(false);
+            synchronized (this) {
+                if (target > durablePosition) {
+                    durablePosition = target;
+                }
+            }
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBufferedBytes() throws IOException {
+        writeBuffer.flip();
+        writeFully(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            writtenPosition += channel.write(buffer, writtenPosition);
+        }
+    }
+
+    private void flushPeriodically(long intervalMillis) {
+        while (!closed) {
+            try {
+                Thread.sleep(intervalMillis);
+                sync();
+            } catch (InterruptedException e) {
+                return;
+            } catch (UncheckedIOException e) {
+                if (!closed) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        sync();
+        closed = true;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * The header of the last frame that ends at or before {@code end}, as read with
+     * {@link ByteBuffer#getLong}, or 0 if there is none. Frames are walked by their headers
+     * only, so the file up to {@code end} must already be known to be intact.
+     */
+    static long lastFrameHeader(FileChannel channel, long end) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        long last = 0;
+        long position = 0;
+        while (position + FRAME_HEADER <= end) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, position + header.position()) >= 0) {
+                // Header of the frame at position.
+            }
+            int length = header.getInt(0);
+            if (header.hasRemaining() || length < 0 || position + FRAME_HEADER + length > end) {
+                break;
+            }
+            last = header.getLong(0);
+            position += FRAME_HEADER + length;
+        }
+        return last;
+    }
+
+    /**
+     * Feeds the records of every complete, intact frame that starts in
+     * [{@code fromPosition}, {@code toPosition}) to the handler, and returns the position
+     * just past the last such frame.
+     */
+    static long replay(FileChannel channel, long fromPosition, long toPosition, RecordHandler handler)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).limit(0);
+        CRC32C crc = new CRC32C();
+        long size = Math.min(channel.size(), toPosition);
+        long position = fromPosition;
+        // buffer.position() corresponds to the file offset "position".
+        while (position + FRAME_HEADER <= size) {
+            buffer = fill(channel, buffer, FRAME_HEADER, position + buffer.remaining(), size);
+            if (buffer.remaining() < FRAME_HEADER) {
+                break;
+            }
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length < 0 || position + FRAME_HEADER + length > size) {
+                break;
+            }
+            buffer = fill(channel, buffer, FRAME_HEADER + length, position + buffer.remaining(), size);
+            if (buffer.remaining() < FRAME_HEADER + length) {
+                break;
+            }
+            int frameStart = buffer.position() + FRAME_HEADER;
+            crc.reset();
+            crc.update(buffer.array(), frameStart, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer frame = buffer.duplicate();
+            frame.position(frameStart).limit(frameStart + length);
+            while (frame.hasRemaining()) {
+                apply(frame, handler);
+            }
+            buffer.position(frameStart + length);
+            position += FRAME_HEADER + length;
+        }
+        return position;
+    }
+
+    /**
+     * Feeds the records of the complete frames at the front of an in-memory, array-backed
+     * buffer to the handler and leaves the buffer's position at the first incomplete frame,
+     * as when applying a journal streamed over a socket. Throws if a frame is corrupt.
+     */
+    static void replayFrames(ByteBuffer buffer, RecordHandler handler) {
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= FRAME_HEADER) {
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length < 0) {
+                throw new IllegalStateException("Corrupt journal frame");
+            }
+            if (buffer.remaining() < FRAME_HEADER + length) {
+                return;
+            }
+            int frameStart = buffer.position() + FRAME_HEADER;
+            crc.reset();
+            crc.update(buffer.array(), buffer.arrayOffset() + frameStart, length);
+            if ((int) crc.getValue() != checksum) {
+                throw new IllegalStateException("Corrupt journal frame");
+            }
+            ByteBuffer frame = buffer.duplicate();
+            frame.position(frameStart).limit(frameStart + length);
+            while (frame.hasRemaining()) {
+                apply(frame, handler);
+            }
+            buffer.position(frameStart + length);
+        }
+    }
+
+    /**
+     * Makes at least {@code needed} unread bytes available in the buffer (its position to
+     * its limit), reading from {@code readPosition}, the file offset just past the limit.
+     */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int needed, long readPosition,
+                                   long size) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        if (buffer.capacity() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(needed, buffer.capacity() * 2));
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < needed && readPosition < size) {
+            int limit = (int) Math.min(buffer.capacity(), buffer.position() + (size - readPosition));
+            buffer.limit(limit);
+            int read = channel.read(buffer, readPosition);
+            if (read < 0) {
+                break;
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void apply(ByteBuffer buffer, RecordHandler handler) {
+        byte type = buffer.get();
+        switch (type) {
+            case ADD: {
+                long id = buffer.getLong();
+                long units = buffer.getLong();
+                String number = getString(buffer);
+                String holder = getString(buffer);
+                handler.added(id, units, number, holder);
+                break;
+            }
+            case REMOVE:
+                handler.removed(buffer.getLong());
+                break;
+            case BALANCE: {
+                long id = buffer.getLong();
+                handler.balanceChanged(id, buffer.getLong());
+                break;
+            }
+            case PREPARE: {
+                long txId = buffer.getLong();
+                long id = buffer.getLong();
+                handler.prepared(txId, id, buffer.getLong());
+                break;
+            }
+            case RESOLVE: {
+                long txId = buffer.getLong();
+                handler.resolved(txId, buffer.get() != 0);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /** Receives the records of a journal as it is replayed. */
+    interface RecordHandler {
+        void added(long accountId, long balanceUnits, String accountNumber, String accountHolder);
+
+        void removed(long accountId);
+
+        void balanceChanged(long accountId, long deltaUnits);
+
+        /** Prepared debits are already in the balance records; only the outcome is tracked here. */
+        default void prepared(long txId, long accountId, long deltaUnits) {
+        }
+
+        default void resolved(long txId, boolean committed) {
+        }
+    }
+
+    /** Applies replayed records to a bank. Records already reflected in the bank are skipped. */
+    static final class BankReplayer implements RecordHandler {
+        private final Bank bank;
+
+        BankReplayer(Bank bank) {
+            this.bank = bank;
+        }
+
+        @Override
+        public void added(long accountId, long balanceUnits, String accountNumber, String accountHolder) {
+            if (bank.getAccountById(accountId) == null) {
+                bank.restoreAccount(BankAccount.fromUnits(accountNumber, accountHolder, balanceUnits), accountId);
+            }
+        }
+
+        @Override
+        public void removed(long accountId) {
+            bank.removeAccountById(accountId);
+        }
+
+        @Override
+        public void balanceChanged(long accountId, long deltaUnits) {
+            BankAccount account = bank.getAccountById(accountId);
+            if (account != null) {
+                account.adjustUnits(deltaUnits);
+            }
+        }
+    }
+
+    /** Per-thread frame under construction; records are buffered while a transfer is open. */
+    private static final class Frame {
+        private ByteBuffer buffer = ByteBuffer.allocate(256).position(FRAME_HEADER);
+        private final CRC32C crc = new CRC32C();
+        int depth;
+        // End of the last frame appended and not yet waited for.
+        long pendingEnd;
+
+        ByteBuffer reserve(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            return buffer;
+        }
+
+        void recordWritten(Journal journal) {
+            if (depth > 0 || buffer.position() == FRAME_HEADER) {
+                return;
+            }
+            int length = buffer.position() - FRAME_HEADER;
+            crc.reset();
+            crc.update(buffer.array(), FRAME_HEADER, length);
+            buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+            buffer.flip();
+            try {
+                pendingEnd = journal.append(buffer);
+            } finally {
+                buffer.clear().position(FRAME_HEADER);
+            }
+        }
+    }
+}
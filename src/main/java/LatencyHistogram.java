@@ -0,0 +1,81 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Lock-free log-linear histogram of nanosecond latencies.
+ *
+ * <p>Values below 16 get their own bucket; above that, each power of two is split into 8
+ * buckets, so a reported percentile is within 12.5% of the true value. Counts are striped by
+ * thread so concurrent recorders rarely touch the same cache line.
+ */
+final class LatencyHistogram {
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    static final int BUCKETS = LINEAR + (Long.SIZE - 4) * SUB_BUCKETS;
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    // Stripe s holds its buckets at [s * BUCKETS, (s + 1) * BUCKETS).
+    private final long[] counts = new long[STRIPES * BUCKETS];
+
+    void record(long nanos) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        COUNTS.getAndAdd(counts, stripe * BUCKETS + bucket(Math.max(nanos, 0)), 1L);
+    }
+
+    /** Current counts per bucket, summed over the stripes. */
+    long[] snapshot() {
+        long[] merged = new long[BUCKETS];
+        for (int i = 0; i < counts.length; i++) {
+            merged[i % BUCKETS] += (long) COUNTS.getVolatile(counts, i);
+        }
+        return merged;
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            COUNTS.setVolatile(counts, i, 0L);
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    /** Largest value that falls into {@code bucket}. */
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long next = (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS);
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+
+    /** The value at {@code percentile} (0-100) of a snapshot, or 0 if it is empty. */
+    static long percentile(long[] buckets, double percentile) {
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(buckets.length - 1);
+    }
+}
@@ -0,0 +1,275 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Merkle tree over a bank's accounts (number and balance), kept up to date as a
+ * {@link BankListener}, so two banks - say this one and another process's, or one
+ * restored from a snapshot - can be reconciled by walking only into subtrees whose
+ * hashes differ.
+ *
+ * <p>Each account number hashes to one of {@code 2^depth} leaves, the same leaf in every
+ * bank. An account contributes {@code f(number) + g(number) * balance} to its leaf,
+ * where {@code f} and {@code g} are 64-bit hashes of the number and {@code g} is odd, and
+ * every node is the sum, mod 2^64, of its children. Because the sum is linear in each
+ * balance, a balance change adds {@code g * delta} to the leaf and its ancestors, one
+ * atomic add per level and no lock; two books that differ in one account always differ
+ * in its leaf and in the root.
+ *
+ * <p>Attach a digest while the bank is quiet: a change still in flight at that moment
+ * may be counted twice or not at all. Hashes read while the bank is changing are a
+ * mix of before and after; compare once both sides have settled.
+ */
+public final class LedgerDigest implements BankListener {
+    public static final int DEFAULT_DEPTH = 16;
+    static final int MAX_DEPTH = 24;
+
+    private static final VarHandle NODES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long SALT_F = 0x6A09E667F3BCC908L;
+    private static final long SALT_G = 0xBB67AE8584CAA73BL;
+
+    private final Bank bank;
+    private final int depth;
+    // Heap order: node 1 is the root, node i has children 2i and 2i+1, leaves start at 2^depth.
+    private final long[] nodes;
+    // Ids of the accounts in each leaf, guarded by this.
+    private final long[][] members;
+    private final int[] memberCounts;
+
+    private LedgerDigest(Bank bank, int depth) {
+        this.bank = bank;
+        this.depth = depth;
+        this.nodes = new long[2 << depth];
+        this.members = new long[1 << depth][];
+        this.memberCounts = new int[1 << depth];
+    }
+
+    /** Builds a digest of the bank's accounts with {@link #DEFAULT_DEPTH} and keeps it current. */
+    public static LedgerDigest attach(Bank bank) {
+        return attach(bank, DEFAULT_DEPTH);
+    }
+
+    /** Builds a digest with {@code 2^depth} leaves; both sides of a comparison need the same depth. */
+    public static LedgerDigest attach(Bank bank, int depth) {
+        if (bank == null) {
+            throw new IllegalArgumentException("Bank cannot be null");
+        }
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+        }
+        LedgerDigest digest = new LedgerDigest(bank, depth);
+        synchronized (bank) {
+            Bank.AccountSource accounts = bank.accountSource();
+            accounts.forEach(0, accounts.end(), account -> digest.accountAdded(account, account.getId()));
+            bank.addListener(digest);
+        }
+        return digest;
+    }
+
+    /** Stops following the bank; the hashes stay as they are. */
+    public void detach() {
+        bank.removeListener(this);
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public long root() {
+        return node(1);
+    }
+
+    /** Hash of node {@code index}, in heap order: 1 is the root, 2i and 2i+1 are the children of i. */
+    public long node(int index) {
+        if (index < 1 || index >= nodes.length) {
+            throw new IllegalArgumentException("No node " + index);
+        }
+        return (long) NODES.getVolatile(nodes, index);
+    }
+
+    /**
+     * Leaves whose hash differs from the other tree's, found by descending only into
+     * differing nodes, so the number of nodes read grows with the number of differences
+     * rather than with the book. {@code otherNodes} answers {@link #node} for the other
+     * side, which may be remote.
+     */
+    public int[] differingLeaves(IntToLongFunction otherNodes) {
+        int[] leaves = new int[16];
+        int count = 0;
+        int[] stack = new int[depth + 2];
+        int top = 0;
+        stack[top++] = 1;
+        int firstLeaf = 1 << depth;
+        while (top > 0) {
+            int index = stack[--top];
+            if (node(index) == otherNodes.applyAsLong(index)) {
+                continue;
+            }
+            if (index >= firstLeaf) {
+                if (count == leaves.length) {
+                    leaves = Arrays.copyOf(leaves, count * 2);
+                }
+                leaves[count++] = index - firstLeaf;
+            } else {
+                stack[top++] = 2 * index + 1;
+                stack[top++] = 2 * index;
+            }
+        }
+        return Arrays.copyOf(leaves, count);
+    }
+
+    /** Same as {@link #differingLeaves(IntToLongFunction)} against a digest in this process. */
+    public int[] differingLeaves(LedgerDigest other) {
+        requireSameShape(other);
+        return differingLeaves(other::node);
+    }
+
+    /** The accounts currently hashed into {@code leaf}, oldest first. */
+    public List<BankAccount> accountsIn(int leaf) {
+        if (leaf < 0 || leaf >= members.length) {
+            throw new IllegalArgumentException("No leaf " + leaf);
+        }
+        long[] ids;
+        synchronized (this) {
+            ids = members[leaf] == null ? new long[0] : Arrays.copyOf(members[leaf], memberCounts[leaf]);
+        }
+        Arrays.sort(ids);
+        List<BankAccount> accounts = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            BankAccount account = bank.getAccountById(id);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Account numbers whose accounts differ between the two banks - present on one side
+     * only, or with other balances - looking only at leaves whose hashes differ.
+     */
+    public List<String> differingAccounts(LedgerDigest other) {
+        TreeSet<String> differing = new TreeSet<>();
+        for (int leaf : differingLeaves(other)) {
+            Map<String, List<Long>> mine = balancesByNumber(accountsIn(leaf));
+            Map<String, List<Long>> theirs = balancesByNumber(other.accountsIn(leaf));
+            for (Map.Entry<String, List<Long>> entry : mine.entrySet()) {
+                if (!entry.getValue().equals(theirs.remove(entry.getKey()))) {
+                    differing.add(entry.getKey());
+                }
+            }
+            differing.addAll(theirs.keySet());
+        }
+        return new ArrayList<>(differing);
+    }
+
+    @Override
+    public void accountAdded(BankAccount account, long accountId) {
+        long key = key(account);
+        int leaf = leaf(key);
+        synchronized (this) {
+            long[] ids = members[leaf];
+            int count = memberCounts[leaf];
+            if (ids == null || count == ids.length) {
+                ids = members[leaf] = ids == null ? new long[4] : Arrays.copyOf(ids, count * 2);
+            }
+            ids[count] = accountId;
+            memberCounts[leaf] = count + 1;
+        }
+        add(leaf, contribution(key, account.getBalanceUnits()));
+    }
+
+    @Override
+    public void accountRemoved(BankAccount account, long accountId) {
+        long key = key(account);
+        int leaf = leaf(key);
+        synchronized (this) {
+            long[] ids = members[leaf];
+            int count = memberCounts[leaf];
+            for (int i = 0; ids != null && i < count; i++) {
+                if (ids[i] == accountId) {
+                    ids[i] = ids[count - 1];
+                    memberCounts[leaf] = count - 1;
+                    break;
+                }
+            }
+        }
+        add(leaf, -contribution(key, account.getBalanceUnits()));
+    }
+
+    @Override
+    public void balanceChanged(BankAccount account, long accountId, long deltaUnits) {
+        long key = key(account);
+        add(leaf(key), weight(key) * deltaUnits);
+    }
+
+    // Additions commute, so the digest does not need changes reported in order. The bank still
+    // keeps balance changes from straddling an add or remove, whose contribution reads the balance.
+    @Override
+    public boolean requiresOrdering() {
+        return false;
+    }
+
+    private void add(int leaf, long delta) {
+        for (int index = (1 << depth) + leaf; index >= 1; index >>>= 1) {
+            NODES.getAndAdd(nodes, index, delta);
+        }
+    }
+
+    private int leaf(long key) {
+        return (int) (key >>> (64 - depth));
+    }
+
+    private static long contribution(long key, long balanceUnits) {
+        return mix(key ^ SALT_F) + weight(key) * balanceUnits;
+    }
+
+    private static long weight(long key) {
+        return mix(key ^ SALT_G) | 1;
+    }
+
+    /** A well-mixed 64-bit hash of the account number. */
+    private static long key(BankAccount account) {
+        long code = account.numberCode();
+        if (code == AccountNumbers.NOT_ENCODABLE) {
+            String number = account.getAccountNumber();
+            // FNV-1a over the characters, with the top bit set so it never equals a code.
+            code = 0xCBF29CE484222325L;
+            for (int i = 0; i < number.length(); i++) {
+                code = (code ^ number.charAt(i)) * 0x100000001B3L;
+            }
+            code |= Long.MIN_VALUE;
+        }
+        return mix(code);
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    private void requireSameShape(LedgerDigest other) {
+        if (other == null || other.depth != depth) {
+            throw new IllegalArgumentException("Digests must have the same depth");
+        }
+    }
+
+    private static Map<String, List<Long>> balancesByNumber(List<BankAccount> accounts) {
+        Map<String, List<Long>> balances = new HashMap<>();
+        for (BankAccount account : accounts) {
+            balances.computeIfAbsent(account.getAccountNumber(), number -> new ArrayList<>())
+                    .add(account.getBalanceUnits());
+        }
+        for (List<Long> values : balances.values()) {
+            values.sort(null);
+        }
+        return balances;
+    }
+}
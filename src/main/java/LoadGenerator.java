@@ -0,0 +1,146 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local load generator for {@link BankServer}. For each connection count it opens that many
+ * keep-alive connections, each driven by its own thread sending requests back to back
+ * (50% balance lookups, 30% deposits, 20% transfers), and prints the requests per second.
+ */
+public class LoadGenerator {
+    private static final int ACCOUNTS = 10_000;
+
+    private final int port;
+    private final long durationMillis;
+
+    public LoadGenerator(int port, long durationMillis) {
+        this.port = port;
+        this.durationMillis = durationMillis;
+    }
+
+    /** Starts a server on a free port, fills it with accounts and runs each connection count. */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long durationMillis = Long.getLong("load.durationMillis", 3000);
+        int[] connectionCounts = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            connectionCounts[i] = Integer.parseInt(args[i]);
+        }
+        if (connectionCounts.length == 0) {
+            connectionCounts = new int[] {1, 10, 100, 1000};
+        }
+        Bank bank = new Bank();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, "Holder" + i, 1_000_000.0));
+        }
+        try (BankServer server = BankServer.start(bank, 0, e -> System.err.println("Accept failed: " + e.getMessage()))) {
+            System.out.println("Serving on 127.0.0.1:" + server.port()
+                    + (BankServer.usesVirtualThreads() ? " with virtual threads" : " with platform threads"));
+            LoadGenerator generator = new LoadGenerator(server.port(), durationMillis);
+            for (int connections : connectionCounts) {
+                System.out.println(generator.run(connections));
+            }
+        }
+    }
+
+    /** Runs the mix on {@code connections} concurrent connections and returns a one-line report. */
+    public String run(int connections) throws InterruptedException {
+        LongAdder requests = new LongAdder();
+        LongAdder failures = new LongAdder();
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch finished = new CountDownLatch(connections);
+        long[] deadline = new long[1];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> clients = new ArrayList<>(connections);
+        for (int c = 0; c < connections; c++) {
+            Thread client = new Thread(null, () -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    connected.countDown();
+                    start.await();
+                    long count = 0;
+                    while (System.nanoTime() < deadline[0]) {
+                        out.write(nextRequest());
+                        if (readStatus(in) >= 500) {
+                            failures.increment();
+                        }
+                        count++;
+                    }
+                    requests.add(count);
+                } catch (IOException e) {
+                    failures.increment();
+                    connected.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            }, "load-" + c, 256 * 1024);
+            client.setDaemon(true);
+            clients.add(client);
+            client.start();
+        }
+        connected.await();
+        deadline[0] = System.nanoTime() + durationMillis * 1_000_000;
+        long begin = System.nanoTime();
+        start.countDown();
+        finished.await();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return String.format(Locale.ROOT, "connections=%-6d %,12.0f req/s   failures=%d",
+                connections, requests.sum() / seconds, failures.sum());
+    }
+
+    private static byte[] nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int op = random.nextInt(10);
+        String account = "ACC" + random.nextInt(ACCOUNTS);
+        String line;
+        if (op < 5) {
+            line = "GET /accounts/" + account;
+        } else if (op < 8) {
+            line = "POST /accounts/" + account + "/deposit?amount=1";
+        } else {
+            line = "POST /transfer?from=" + account + "&to=ACC" + random.nextInt(ACCOUNTS) + "&amount=1";
+        }
+        return (line + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Reads one response, returning its status code.
+    private static int readStatus(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int contentLength = 0;
+        String header;
+        while (!(header = readLine(in)).isEmpty()) {
+            if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+        in.skipNBytes(contentLength);
+        return Integer.parseInt(statusLine.substring(9, 12));
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
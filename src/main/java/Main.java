@@ -1,15 +1,31 @@
-//TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
-// click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
-public class Main {
-    public static void main(String[] args) {
-        //TIP Press <shortcut actionId="ShowIntentionActions"/> with your caret at the highlighted text
-        // to see how IntelliJ IDEA suggests fixing it.
-        System.out.printf("Hello and welcome!");
+import java.io.IOException;
+import java.nio.file.Path;
 
-        for (int i = 1; i <= 5; i++) {
-            //TIP Press <shortcut actionId="Debug"/> to start debugging your code. We have set one <icon src="AllIcons.Debugger.Db_set_breakpoint"/> breakpoint
-            // for you, but you can always add more by pressing <shortcut actionId="ToggleLineBreakpoint"/>.
-            System.out.println("i = " + i);
+/**
+ * Starts the HTTP front end on loopback: {@code Main [port]} (default 8080).
+ * {@code Main load [connections...]} runs the built-in {@link LoadGenerator} instead, and
+ * {@code Main node [port] [dataDirectory]} runs one {@link ShardNode} of a cluster.
+ */
+public class Main {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("load")) {
+            String[] counts = new String[args.length - 1];
+            System.arraycopy(args, 1, counts, 0, counts.length);
+            LoadGenerator.main(counts);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("node")) {
+            ShardNode node = ShardNode.start(args.length > 1 ? Integer.parseInt(args[1]) : 0,
+                    args.length > 2 ? Path.of(args[2]) : null,
+                    e -> System.err.println("Accept failed: " + e.getMessage()));
+            System.out.println("Shard node listening on 127.0.0.1:" + node.port());
+            node.awaitTermination();
+            return;
         }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        BankServer server = BankServer.start(new Bank(), port, e -> System.err.println("Accept failed: " + e.getMessage()));
+        System.out.println("Bank listening on 127.0.0.1:" + server.port()
+                + (BankServer.usesVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+        server.awaitTermination();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,387 @@
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional single-writer execution engine in front of a {@link Bank}.
+ *
+ * <p>Account numbers are hashed into N partitions. Each partition is owned by one worker
+ * thread that drains a bounded lock-free ring of commands, so every balance change for an
+ * account is made by the same thread, one at a time, without locks. Deposits, withdrawals and
+ * transfers within one partition complete in a single step. A transfer across partitions is a
+ * debit on the source partition followed by a credit on the target partition; if the credit
+ * is rejected, the source partition refunds the debit.
+ *
+ * <p>Results are returned as futures, completed on the worker thread with the same
+ * {@link TransactionStatus} values as {@link BankService#tryTransfer}. While a cross-partition
+ * transfer is in flight its amount is in neither account, and each leg reaches the journal as
+ * its own frame.
+ */
+public class PartitionedBankEngine implements Closeable {
+    private static final int DEFAULT_RING_SIZE = 1 << 14;
+
+    private final Bank bank;
+    private final Partition[] partitions;
+    // Callers between the running check and the end of their offer; close() waits them out.
+    private final AtomicInteger producers = new AtomicInteger();
+
+    public PartitionedBankEngine(Bank bank, int partitionCount) {
+        this(bank, partitionCount, DEFAULT_RING_SIZE);
+    }
+
+    public PartitionedBankEngine(Bank bank, int partitionCount, int ringSize) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two");
+        }
+        this.bank = bank;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, ringSize);
+        }
+        for (Partition partition : partitions) {
+            partition.worker.start();
+        }
+    }
+
+    public CompletableFuture<TransactionStatus> deposit(String accountNumber, double amount) {
+        return submit(Command.DEPOSIT, accountNumber, null, amount);
+    }
+
+    public CompletableFuture<TransactionStatus> withdraw(String accountNumber, double amount) {
+        return submit(Command.WITHDRAW, accountNumber, null, amount);
+    }
+
+    public CompletableFuture<TransactionStatus> transfer(String fromAccountNumber, String toAccountNumber,
+                                                         double amount) {
+        return submit(Command.TRANSFER, fromAccountNumber, toAccountNumber, amount);
+    }
+
+    public int partitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Stops accepting commands, lets every worker drain its ring, and waits for them to exit.
+     * Commands still being offered and second legs of transfers still in flight are then
+     * finished on the calling thread, so every accepted command's future completes.
+     */
+    @Override
+    public void close() {
+        for (Partition partition : partitions) {
+            partition.running = false;
+            LockSupport.unpark(partition.worker);
+        }
+        for (Partition partition : partitions) {
+            try {
+                partition.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        boolean drained;
+        int offering;
+        do {
+            // Read before draining: a producer that is not counted yet will see running unset.
+            offering = producers.get();
+            drained = true;
+            for (Partition partition : partitions) {
+                Command command;
+                while ((command = partition.handoffs.poll()) != null || (command = partition.ring.poll()) != null) {
+                    partition.execute(command);
+                    drained = false;
+                }
+            }
+            if (drained && offering > 0) {
+                Thread.yield();
+            }
+        } while (!drained || offering > 0);
+    }
+
+    private CompletableFuture<TransactionStatus> submit(int kind, String accountNumber, String otherAccountNumber,
+                                                        double amount) {
+        CompletableFuture<TransactionStatus> result = new CompletableFuture<>();
+        long units = BankAccount.toUnitsOrZero(amount);
+        if (units <= 0) {
+            result.complete(TransactionStatus.INVALID_AMOUNT);
+            return result;
+        }
+        Partition owner = partitionOf(accountNumber);
+        if (kind == Command.TRANSFER && partitionOf(otherAccountNumber) != owner) {
+            kind = Command.DEBIT;
+        }
+        owner.enqueue(new Command(kind, accountNumber, otherAccountNumber, units, result));
+        return result;
+    }
+
+    private Partition partitionOf(String accountNumber) {
+        int h = BankService.stripe(accountNumber);
+        return partitions[h % partitions.length];
+    }
+
+    private static final class Command {
+        static final int DEPOSIT = 0;
+        static final int WITHDRAW = 1;
+        static final int TRANSFER = 2;
+        static final int DEBIT = 3;
+        static final int CREDIT = 4;
+        static final int REFUND = 5;
+
+        int kind;
+        final String accountNumber;
+        final String otherAccountNumber;
+        final long units;
+        final CompletableFuture<TransactionStatus> result;
+        // Set by the debit step so the refund goes to the same registration.
+        BankAccount debited;
+        // Why the credit step failed, reported once the refund is made.
+        TransactionStatus failure;
+
+        Command(int kind, String accountNumber, String otherAccountNumber, long units,
+                CompletableFuture<TransactionStatus> result) {
+            this.kind = kind;
+            this.accountNumber = accountNumber;
+            this.otherAccountNumber = otherAccountNumber;
+            this.units = units;
+            this.result = result;
+        }
+    }
+
+    private final class Partition implements Runnable {
+        private static final int SPINS = 100;
+        private static final int YIELDS = 10;
+        private static final long PARK_NANOS = 100_000;
+
+        private final CommandRing ring;
+        // Second legs of cross-partition transfers. Never bounded, so two workers handing
+        // legs to each other cannot block on each other's full rings; the number in flight
+        // is bounded by the rings' capacity anyway.
+        private final ConcurrentLinkedQueue<Command> handoffs = new ConcurrentLinkedQueue<>();
+        private final Thread worker;
+        private volatile boolean running = true;
+        private volatile boolean sleeping;
+
+        Partition(int index, int ringSize) {
+            this.ring = new CommandRing(ringSize);
+            this.worker = new Thread(this, "bank-partition-" + index);
+            this.worker.setDaemon(true);
+        }
+
+        void enqueue(Command command) {
+            producers.incrementAndGet();
+            try {
+                if (!running) {
+                    throw new IllegalStateException("Engine is closed");
+                }
+                // A full ring pushes back on the producer instead of growing.
+                while (!ring.offer(command)) {
+                    Thread.onSpinWait();
+                    wake();
+                    Thread.yield();
+                }
+            } finally {
+                producers.decrementAndGet();
+            }
+            wake();
+        }
+
+        private void wake() {
+            if (sleeping) {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                Command command = handoffs.poll();
+                if (command == null) {
+                    command = ring.poll();
+                }
+                if (command != null) {
+                    idle = 0;
+                    execute(command);
+                    continue;
+                }
+                if (!running) {
+                    return;
+                } else if (idle < SPINS) {
+                    idle++;
+                    Thread.onSpinWait();
+                } else if (idle < SPINS + YIELDS) {
+                    idle++;
+                    Thread.yield();
+                } else {
+                    sleeping = true;
+                    if (ring.isEmpty() && handoffs.isEmpty() && running) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    sleeping = false;
+                }
+            }
+        }
+
+        private void execute(Command command) {
+            try {
+                switch (command.kind) {
+                    case Command.DEPOSIT:
+                        command.result.complete(depositTo(command.accountNumber, command.units));
+                        break;
+                    case Command.WITHDRAW:
+                        command.result.complete(withdrawFrom(command.accountNumber, command.units));
+                        break;
+                    case Command.TRANSFER:
+                        command.result.complete(transferWithin(command));
+                        break;
+                    case Command.DEBIT:
+                        debit(command);
+                        break;
+                    case Command.CREDIT:
+                        credit(command);
+                        break;
+                    case Command.REFUND:
+                        command.debited.refundWithdrawal(command.units);
+                        command.result.complete(command.failure);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown command " + command.kind);
+                }
+            } catch (RuntimeException e) {
+                command.result.completeExceptionally(e);
+            }
+        }
+
+        private TransactionStatus depositTo(String accountNumber, long units) {
+            BankAccount account = bank.getAccount(accountNumber);
+            return account == null ? TransactionStatus.ACCOUNT_NOT_FOUND : account.depositUnits(units);
+        }
+
+        private TransactionStatus withdrawFrom(String accountNumber, long units) {
+            BankAccount account = bank.getAccount(accountNumber);
+            return account == null ? TransactionStatus.ACCOUNT_NOT_FOUND : account.withdrawUnits(units);
+        }
+
+        private TransactionStatus transferWithin(Command command) {
+            BankAccount from = bank.getAccount(command.accountNumber);
+            BankAccount to = bank.getAccount(command.otherAccountNumber);
+            if (from == null || to == null) {
+                return TransactionStatus.ACCOUNT_NOT_FOUND;
+            }
+            bank.transferStarted();
+            try {
+                TransactionStatus status = from.withdrawUnits(command.units);
+                if (status != TransactionStatus.SUCCESS) {
+                    return status;
+                }
+                status = to.depositUnits(command.units);
+                if (status != TransactionStatus.SUCCESS) {
+                    from.refundWithdrawal(command.units);
+                }
+                return status;
+            } finally {
+                bank.transferFinished();
+            }
+        }
+
+        private void debit(Command command) {
+            BankAccount from = bank.getAccount(command.accountNumber);
+            if (from == null || bank.getAccount(command.otherAccountNumber) == null) {
+                command.result.complete(TransactionStatus.ACCOUNT_NOT_FOUND);
+                return;
+            }
+            TransactionStatus status = from.withdrawUnits(command.units);
+            if (status != TransactionStatus.SUCCESS) {
+                command.result.complete(status);
+                return;
+            }
+            command.debited = from;
+            command.kind = Command.CREDIT;
+            partitionOf(command.otherAccountNumber).forward(command);
+        }
+
+        private void credit(Command command) {
+            BankAccount to = bank.getAccount(command.otherAccountNumber);
+            TransactionStatus status = to == null ? TransactionStatus.ACCOUNT_NOT_FOUND : to.depositUnits(command.units);
+            if (status == TransactionStatus.SUCCESS) {
+                command.result.complete(status);
+                return;
+            }
+            command.failure = status;
+            command.kind = Command.REFUND;
+            partitionOf(command.accountNumber).forward(command);
+        }
+
+        // Second legs are accepted even while closing, so no transfer is left half done.
+        void forward(Command command) {
+            handoffs.offer(command);
+            wake();
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring of commands. Each slot carries a sequence
+     * number telling producers and the consumer whose turn it is, so neither side locks.
+     */
+    static final class CommandRing {
+        private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+        private final Object[] commands;
+        private final long[] sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        CommandRing(int size) {
+            commands = new Object[size];
+            sequences = new long[size];
+            mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                sequences[i] = i;
+            }
+        }
+
+        boolean offer(Object command) {
+            while (true) {
+                long position = tail.get();
+                int index = (int) position & mask;
+                long sequence = (long) SEQUENCES.getVolatile(sequences, index);
+                if (sequence == position) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        commands[index] = command;
+                        SEQUENCES.setVolatile(sequences, index, position + 1);
+                        return true;
+                    }
+                } else if (sequence < position) {
+                    return false;
+                }
+            }
+        }
+
+        /** Called only by the owning worker, or once it has exited. */
+        @SuppressWarnings("unchecked")
+        <T> T poll() {
+            int index = (int) head & mask;
+            if ((long) SEQUENCES.getVolatile(sequences, index) != head + 1) {
+                return null;
+            }
+            T command = (T) commands[index];
+            commands[index] = null;
+            SEQUENCES.setRelease(sequences, index, head + commands.length);
+            head++;
+            return command;
+        }
+
+        boolean isEmpty() {
+            return (long) SEQUENCES.getVolatile(sequences, (int) head & mask) != head + 1;
+        }
+    }
+}
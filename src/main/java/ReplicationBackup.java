@@ -0,0 +1,187 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Hot standby of a bank served by a {@link ReplicationPrimary}. The journal it receives is
+ * written to a local copy, byte for byte at the same positions, and applied to a local
+ * {@link Bank} as it arrives, so the standby is at most one network read behind.
+ *
+ * <p>{@link #promote} makes the standby a primary: it stops following, drops any frame that
+ * arrived incomplete, and attaches a {@link Journal} on the local copy to the bank. Nothing
+ * is replayed, since every complete frame was already applied. A standby restarted on the
+ * same file resumes from the end of its copy.
+ */
+public final class ReplicationBackup implements Closeable {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final Bank bank = new Bank();
+    private final Path path;
+    private final FileChannel file;
+    private final SocketChannel socket;
+    private final Thread receiver;
+    private volatile long appliedPosition;
+    private volatile boolean closed;
+    private final Consumer<? super Throwable> onError;
+
+    private ReplicationBackup(Path path, FileChannel file, SocketChannel socket, Consumer<? super Throwable> onError) {
+        this.path = path;
+        this.file = file;
+        this.socket = socket;
+        this.onError = onError;
+        this.receiver = new Thread(this::receive, "replication-backup");
+        this.receiver.setDaemon(true);
+    }
+
+    /**
+     * Loads the local copy at {@code journalPath}, if any, and starts following the primary.
+     * Throws if the primary's journal does not hold the copy's last frame where the copy
+     * ends, as after the primary lost frames in a crash that the standby had applied.
+     */
+    public static ReplicationBackup start(InetSocketAddress primary, Path journalPath) throws IOException {
+        return start(primary, journalPath, AcceptLoop.IGNORE);
+    }
+
+    /**
+     * Same as {@link #start(InetSocketAddress, Path)}, passing {@code onError} the failure that
+     * stops the standby following its primary, on the receiving thread.
+     */
+    public static ReplicationBackup start(InetSocketAddress primary, Path journalPath,
+                                          Consumer<? super Throwable> onError) throws IOException {
+        if (onError == null) {
+            throw new IllegalArgumentException("Error handler cannot be null");
+        }
+        FileChannel file = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SocketChannel socket = null;
+        try {
+            socket = SocketChannel.open();
+            ReplicationBackup backup = new ReplicationBackup(journalPath, file, socket, onError);
+            long start = Journal.replay(file, 0, Long.MAX_VALUE, new Journal.BankReplayer(backup.bank));
+            file.truncate(start);
+            backup.appliedPosition = start;
+            long lastFrameHeader = Journal.lastFrameHeader(file, start);
+            socket.connect(primary);
+            socket.socket().setTcpNoDelay(true);
+            ByteBuffer hello = ByteBuffer.allocate(16).putLong(start).putLong(lastFrameHeader).flip();
+            while (hello.hasRemaining()) {
+                socket.write(hello);
+            }
+            ByteBuffer answer = ByteBuffer.allocate(1);
+            while (answer.hasRemaining()) {
+                if (socket.read(answer) < 0) {
+                    throw new EOFException("Primary closed the connection");
+                }
+            }
+            if (answer.get(0) != ReplicationPrimary.ACCEPTED) {
+                throw new IOException("Local journal has diverged from the primary's at position " + start);
+            }
+            backup.receiver.start();
+            return backup;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            if (socket != null) {
+                socket.close();
+            }
+            throw e;
+        }
+    }
+
+    /** The standby's accounts, for reads. Changes made to it before {@link #promote} are not replicated. */
+    public Bank bank() {
+        return bank;
+    }
+
+    /** Journal position up to which the primary's changes are applied here. */
+    public long appliedPosition() {
+        return appliedPosition;
+    }
+
+    /** False once the primary has gone away or the standby was promoted or closed. */
+    public boolean isFollowing() {
+        return receiver.isAlive();
+    }
+
+    /**
+     * Stops following the primary and returns a journal, attached to {@link #bank()}, that
+     * carries on from the last complete frame received.
+     */
+    public synchronized Journal promote(Journal.SyncMode mode) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Backup is closed");
+        }
+        stop();
+        file.truncate(appliedPosition);
+        file.force(false);
+        file.close();
+        Journal journal = Journal.open(path, mode);
+        journal.recoverInto(bank, appliedPosition);
+        return journal;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        stop();
+        file.close();
+    }
+
+    private void stop() throws IOException {
+        closed = true;
+        socket.close();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        ByteBuffer ack = ByteBuffer.allocate(8);
+        Journal.BankReplayer replayer = new Journal.BankReplayer(bank);
+        long received = appliedPosition;
+        try {
+            while (!closed) {
+                int read = socket.read(buffer);
+                if (read < 0) {
+                    return;
+                }
+                ByteBuffer bytes = buffer.duplicate().flip();
+                bytes.position(bytes.limit() - read);
+                while (bytes.hasRemaining()) {
+                    received += file.write(bytes, received);
+                }
+
+                buffer.flip();
+                Journal.replayFrames(buffer, replayer);
+                appliedPosition += buffer.position();
+                if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                    // A frame larger than the buffer.
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                } else {
+                    buffer.compact();
+                }
+
+                ack.clear();
+                ack.putLong(0, appliedPosition);
+                while (ack.hasRemaining()) {
+                    socket.write(ack);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                onError.accept(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Streams a bank's {@link Journal} to hot standbys ({@link ReplicationBackup}s) over
+ * loopback sockets. The journal is the operation log: every account added or removed and
+ * every deposit, withdrawal and transfer, in order, with each transfer in one frame.
+ *
+ * <p>A backup connects with the journal position it already has and the header of its last
+ * frame, which carries the frame's length and checksum. The primary accepts it only if its
+ * own journal has the same frame ending at that position, so a standby that applied frames
+ * the primary lost in a crash is turned away rather than fed a stream that diverged from
+ * its copy. An accepted backup gets the bytes from its position on. Each backup has a sender thread that ships whatever the journal holds beyond
+ * what was sent, straight from the file with {@link FileChannel#transferTo}, without
+ * waiting for acknowledgements; the backup acknowledges the position it has applied, as
+ * often as it reads. With {@link AckMode#SYNC} an operation returns once every connected
+ * backup has applied it; with {@link AckMode#ASYNC} it does not wait. A backup that
+ * disconnects is no longer waited for.
+ */
+public final class ReplicationPrimary implements Closeable {
+
+    public enum AckMode {
+        /** Operations wait until every connected backup has applied them. */
+        SYNC,
+        /** Operations return at once; backups trail by the replication lag. */
+        ASYNC
+    }
+
+    /** The primary's one-byte answer to a backup's hello. */
+    static final byte ACCEPTED = 1;
+    static final byte REJECTED = 0;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final VarHandle APPENDED;
+
+    static {
+        try {
+            APPENDED = MethodHandles.lookup().findVarHandle(ReplicationPrimary.class, "appendedPosition", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Journal journal;
+    private final AckMode mode;
+    private final ServerSocketChannel server;
+    private final Set<Link> links = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock ackLock = new ReentrantLock();
+    private final Condition acknowledged = ackLock.newCondition();
+    private final Thread acceptor;
+    // End of the last frame appended to the journal.
+    private volatile long appendedPosition;
+    private volatile boolean closed;
+    private final Consumer<? super Throwable> onError;
+
+    private ReplicationPrimary(Journal journal, AckMode mode, ServerSocketChannel server,
+                               Consumer<? super Throwable> onError) {
+        this.journal = journal;
+        this.mode = mode;
+        this.server = server;
+        this.onError = onError;
+        this.appendedPosition = journal.flush();
+        this.acceptor = new Thread(this::acceptLoop, "replication-accept");
+        this.acceptor.setDaemon(true);
+    }
+
+    /** Serves backups of the bank {@code journal} is attached to on loopback; port 0 picks a free port. */
+    public static ReplicationPrimary start(Journal journal, int port, AckMode mode) throws IOException {
+        return start(journal, port, mode, AcceptLoop.IGNORE);
+    }
+
+    /**
+     * Same as {@link #start(Journal, int, AckMode)}, passing {@code onError} every failure to
+     * accept a backup, on the accepting thread; the primary keeps accepting.
+     */
+    public static ReplicationPrimary start(Journal journal, int port, AckMode mode,
+                                           Consumer<? super Throwable> onError) throws IOException {
+        if (journal == null || mode == null || onError == null) {
+            throw new IllegalArgumentException("Journal, ack mode and error handler are required");
+        }
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        ReplicationPrimary primary = new ReplicationPrimary(journal, mode, server, onError);
+        journal.replicateTo(primary);
+        primary.acceptor.start();
+        return primary;
+    }
+
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    public AckMode getAckMode() {
+        return mode;
+    }
+
+    public int backupCount() {
+        return links.size();
+    }
+
+    /** Journal position every connected backup has applied; the end of the journal if none is. */
+    public long acknowledgedPosition() {
+        long lowest = appendedPosition;
+        for (Link link : links) {
+            lowest = Math.min(lowest, link.acknowledged);
+        }
+        return lowest;
+    }
+
+    /** End of the last frame appended to the journal. */
+    public long appendedPosition() {
+        return appendedPosition;
+    }
+
+    /** Called by the journal after it appends a frame that ends at {@code end}. */
+    void appended(long end) {
+        long current;
+        while ((current = appendedPosition) < end) {
+            if (APPENDED.compareAndSet(this, current, end)) {
+                break;
+            }
+        }
+        for (Link link : links) {
+            if (link.idle) {
+                LockSupport.unpark(link.sender);
+            }
+        }
+        if (mode == AckMode.SYNC) {
+            awaitAcknowledged(end);
+        }
+    }
+
+    private void awaitAcknowledged(long end) {
+        if (acknowledgedPosition() >= end) {
+            return;
+        }
+        ackLock.lock();
+        try {
+            while (!closed && acknowledgedPosition() < end) {
+                acknowledged.awaitUninterruptibly();
+            }
+        } finally {
+            ackLock.unlock();
+        }
+    }
+
+    private void signalAcknowledged() {
+        ackLock.lock();
+        try {
+            acknowledged.signalAll();
+        } finally {
+            ackLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        journal.replicateTo(null);
+        server.close();
+        acceptor.interrupt();
+        for (Link link : links) {
+            link.close();
+        }
+        signalAcknowledged();
+    }
+
+    private void acceptLoop() {
+        AcceptLoop.run(() -> !closed, server::accept, null, this::connect, onError);
+    }
+
+    private void connect(SocketChannel socket) throws IOException {
+        socket.socket().setTcpNoDelay(true);
+        ByteBuffer hello = ByteBuffer.allocate(16);
+        while (hello.hasRemaining() && socket.read(hello) >= 0) {
+            // The backup's starting position and the header of the frame that ends there.
+        }
+        if (hello.hasRemaining()) {
+            socket.close();
+            return;
+        }
+        long from = hello.getLong(0);
+        boolean accepted = agrees(from, hello.getLong(8));
+        ByteBuffer answer = ByteBuffer.allocate(1).put(0, accepted ? ACCEPTED : REJECTED);
+        while (answer.hasRemaining()) {
+            socket.write(answer);
+        }
+        if (!accepted) {
+            throw new IOException("Rejected a backup whose journal does not match at position " + from);
+        }
+        Link link = new Link(socket, from);
+        links.add(link);
+        try {
+            link.sender.start();
+            link.receiver.start();
+        } catch (RuntimeException | Error e) {
+            link.close();
+            throw e;
+        }
+    }
+
+    // True if this journal has a frame with the given header that ends at from.
+    private boolean agrees(long from, long lastFrameHeader) throws IOException {
+        if (from == 0) {
+            return lastFrameHeader == 0;
+        }
+        long start = from - Journal.FRAME_HEADER - (int) (lastFrameHeader >>> 32);
+        if (from < 0 || from > journal.flush() || start < 0 || start >= from) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(Journal.FRAME_HEADER);
+        try (FileChannel file = FileChannel.open(journal.path(), StandardOpenOption.READ)) {
+            while (header.hasRemaining() && file.read(header, start + header.position()) >= 0) {
+                // Header of the frame that should end at from.
+            }
+        }
+        return !header.hasRemaining() && header.getLong(0) == lastFrameHeader;
+    }
+
+    /** One connected backup: a sender thread streaming the journal, and a reader of its acknowledgements. */
+    private final class Link {
+        final SocketChannel socket;
+        final Thread sender;
+        final Thread receiver;
+        volatile long acknowledged;
+        volatile boolean idle;
+        private long sent;
+
+        Link(SocketChannel socket, long from) {
+            this.socket = socket;
+            this.sent = from;
+            this.acknowledged = from;
+            this.sender = new Thread(this::send, "replication-sender");
+            this.sender.setDaemon(true);
+            this.receiver = new Thread(this::receive, "replication-acks");
+            this.receiver.setDaemon(true);
+        }
+
+        private void send() {
+            try (FileChannel file = FileChannel.open(journal.path(), StandardOpenOption.READ)) {
+                while (!closed && socket.isOpen()) {
+                    if (appendedPosition <= sent) {
+                        idle = true;
+                        if (appendedPosition <= sent) {
+                            LockSupport.parkNanos(IDLE_PARK_NANOS);
+                        }
+                        idle = false;
+                        continue;
+                    }
+                    // Frames still in the journal's write buffer are written out first.
+                    long end = journal.flush();
+                    while (sent < end) {
+                        sent += file.transferTo(sent, end - sent, socket);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Backup went away; it reconnects with the position it has.
+            } finally {
+                close();
+            }
+        }
+
+        private void receive() {
+            ByteBuffer ack = ByteBuffer.allocate(8);
+            try {
+                while (!closed) {
+                    ack.clear();
+                    while (ack.hasRemaining()) {
+                        if (socket.read(ack) < 0) {
+                            return;
+                        }
+                    }
+                    acknowledged = ack.getLong(0);
+                    if (mode == AckMode.SYNC) {
+                        signalAcknowledged();
+                    }
+                }
+            } catch (IOException e) {
+                // Connection closed.
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            if (links.remove(this)) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already broken.
+                }
+                LockSupport.unpark(sender);
+                signalAcknowledged();
+            }
+        }
+    }
+}
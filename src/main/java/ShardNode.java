@@ -0,0 +1,395 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * One shard of a {@link BankCluster}: a {@link Bank} served over a small binary protocol on
+ * loopback, and the participant side of cross-shard two-phase commit.
+ *
+ * <p>{@code PREPARE} takes a debit from the balance and holds it, or checks that a credit
+ * can be applied, and journals the vote in the same frame as the debit, so a recovered node
+ * knows exactly which transactions are in doubt. {@code COMMIT} applies a held credit,
+ * {@code ABORT} puts a held debit back; both are idempotent. With a data directory the node
+ * journals with {@link Journal.SyncMode#GROUP_COMMIT}, votes only once durable, and recovers
+ * its accounts and in-doubt transactions from the journal on start.
+ *
+ * <p>Requests are {@code [byte op][fields]}; replies start with a {@link TransactionStatus}
+ * ordinal, or {@link #ERROR} followed by a message.
+ */
+public class ShardNode implements Closeable {
+    static final byte ADD = 1;
+    static final byte BALANCE = 2;
+    static final byte DEPOSIT = 3;
+    static final byte WITHDRAW = 4;
+    static final byte TRANSFER = 5;
+    static final byte PREPARE = 6;
+    static final byte COMMIT = 7;
+    static final byte ABORT = 8;
+    static final byte IN_DOUBT = 9;
+    static final byte ERROR = -1;
+
+    private static final int TX_LOCKS = 256;
+    // Aborts remembered so that a prepare arriving after its abort is refused.
+    private static final int ABORTED_REMEMBERED = 1 << 16;
+
+    private final Bank bank;
+    private final BankService service;
+    private final Journal journal;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Prepared> prepared = new ConcurrentHashMap<>();
+    private final Object[] txLocks = new Object[TX_LOCKS];
+    private final Map<Long, Boolean> aborted = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > ABORTED_REMEMBERED;
+        }
+    };
+    private final Thread acceptor;
+    private volatile boolean running = true;
+    private final Consumer<? super Throwable> onError;
+
+    private ShardNode(Bank bank, Journal journal, ServerSocket serverSocket, Consumer<? super Throwable> onError) {
+        this.bank = bank;
+        this.service = new BankService(bank);
+        this.journal = journal;
+        this.serverSocket = serverSocket;
+        this.onError = onError;
+        for (int i = 0; i < TX_LOCKS; i++) {
+            txLocks[i] = new Object();
+        }
+        this.acceptor = new Thread(this::acceptLoop, "shard-accept");
+        this.acceptor.setDaemon(true);
+    }
+
+    /** Starts an in-memory node on loopback; port 0 picks a free port. */
+    public static ShardNode start(int port) throws IOException {
+        return start(port, null);
+    }
+
+    /** Starts a node that journals to, and first recovers from, {@code dataDirectory}. */
+    public static ShardNode start(int port, Path dataDirectory) throws IOException {
+        return start(port, dataDirectory, AcceptLoop.IGNORE);
+    }
+
+    /**
+     * Same as {@link #start(int, Path)}, passing {@code onError} every failure to accept a
+     * connection, on the accepting thread; the node keeps accepting.
+     */
+    public static ShardNode start(int port, Path dataDirectory, Consumer<? super Throwable> onError)
+            throws IOException {
+        if (onError == null) {
+            throw new IllegalArgumentException("Error handler cannot be null");
+        }
+        Bank bank = new Bank();
+        Journal journal = null;
+        Map<Long, long[]> inDoubt = new LinkedHashMap<>();
+        if (dataDirectory != null) {
+            Files.createDirectories(dataDirectory);
+            journal = Journal.open(dataDirectory.resolve("journal"), Journal.SyncMode.GROUP_COMMIT);
+            bank = journal.recover();
+            inDoubt = inDoubt(journal.path());
+        }
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        ShardNode node = new ShardNode(bank, journal, serverSocket, onError);
+        for (Map.Entry<Long, long[]> entry : inDoubt.entrySet()) {
+            BankAccount account = bank.getAccountById(entry.getValue()[0]);
+            if (account != null) {
+                node.prepared.put(entry.getKey(), new Prepared(account, entry.getValue()[1]));
+            }
+        }
+        node.acceptor.start();
+        return node;
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** The bank this node serves; changes made to it directly bypass the cluster. */
+    public Bank bank() {
+        return bank;
+    }
+
+    /** Blocks until the node is closed. */
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        // A connection accepted just before the socket closed still holds the port.
+        acceptor.interrupt();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /** Votes on one leg of {@code txId}; SUCCESS is a vote to commit. */
+    TransactionStatus prepare(long txId, String accountNumber, long deltaUnits) {
+        synchronized (txLock(txId)) {
+            if (prepared.containsKey(txId)) {
+                return TransactionStatus.SUCCESS;
+            }
+            synchronized (aborted) {
+                if (aborted.containsKey(txId)) {
+                    return TransactionStatus.NODE_UNAVAILABLE;
+                }
+            }
+            BankAccount account = bank.getAccount(accountNumber);
+            if (account == null) {
+                return TransactionStatus.ACCOUNT_NOT_FOUND;
+            }
+            if (deltaUnits == 0) {
+                return TransactionStatus.INVALID_AMOUNT;
+            }
+            bank.transferStarted();
+            try {
+                if (deltaUnits < 0) {
+                    TransactionStatus status = account.withdrawUnits(-deltaUnits);
+                    if (status != TransactionStatus.SUCCESS) {
+                        return status;
+                    }
+                } else if (account.getBalanceUnits() > Long.MAX_VALUE - deltaUnits) {
+                    return TransactionStatus.BALANCE_OVERFLOW;
+                }
+                prepared.put(txId, new Prepared(account, deltaUnits));
+                bank.transactionPrepared(txId, account, deltaUnits);
+            } finally {
+                bank.transferFinished();
+            }
+            return TransactionStatus.SUCCESS;
+        }
+    }
+
+    /** Applies a held credit; a transaction not prepared here was already resolved. */
+    void commit(long txId) {
+        synchronized (txLock(txId)) {
+            Prepared leg = prepared.get(txId);
+            if (leg == null) {
+                return;
+            }
+            bank.transferStarted();
+            try {
+                if (leg.deltaUnits > 0) {
+                    leg.account.adjustUnits(leg.deltaUnits);
+                }
+                bank.transactionResolved(txId, true);
+            } finally {
+                bank.transferFinished();
+            }
+            prepared.remove(txId);
+        }
+    }
+
+    /** Puts back a held debit; aborting a transaction never prepared here only remembers it. */
+    void abort(long txId) {
+        synchronized (txLock(txId)) {
+            Prepared leg = prepared.get(txId);
+            if (leg == null) {
+                synchronized (aborted) {
+                    aborted.put(txId, Boolean.TRUE);
+                }
+                return;
+            }
+            bank.transferStarted();
+            try {
+                if (leg.deltaUnits < 0) {
+                    leg.account.refundWithdrawal(-leg.deltaUnits);
+                }
+                bank.transactionResolved(txId, false);
+            } finally {
+                bank.transferFinished();
+            }
+            prepared.remove(txId);
+        }
+    }
+
+    /** Prepared, unresolved transactions issued by {@code coordinatorId}. */
+    List<Long> inDoubt(int coordinatorId) {
+        List<Long> ids = new ArrayList<>();
+        for (Long txId : prepared.keySet()) {
+            if (txId >>> CoordinatorLog.SEQUENCE_BITS == coordinatorId) {
+                ids.add(txId);
+            }
+        }
+        return ids;
+    }
+
+    private Object txLock(long txId) {
+        return txLocks[(int) (txId ^ txId >>> 32) & (TX_LOCKS - 1)];
+    }
+
+    // Transactions prepared in the journal and never resolved: txId -> {accountId, delta}.
+    private static Map<Long, long[]> inDoubt(Path journalPath) throws IOException {
+        Map<Long, long[]> open = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            Journal.replay(channel, 0, Long.MAX_VALUE, new Journal.RecordHandler() {
+                @Override
+                public void added(long accountId, long balanceUnits, String accountNumber, String accountHolder) {
+                }
+
+                @Override
+                public void removed(long accountId) {
+                }
+
+                @Override
+                public void balanceChanged(long accountId, long deltaUnits) {
+                }
+
+                @Override
+                public void prepared(long txId, long accountId, long deltaUnits) {
+                    open.put(txId, new long[] {accountId, deltaUnits});
+                }
+
+                @Override
+                public void resolved(long txId, boolean committed) {
+                    open.remove(txId);
+                }
+            });
+        }
+        return open;
+    }
+
+    private void acceptLoop() {
+        AcceptLoop.run(() -> running, serverSocket::accept, connections, socket -> {
+            socket.setTcpNoDelay(true);
+            Thread thread = new Thread(null, () -> serve(socket), "shard-connection", 256 * 1024);
+            thread.setDaemon(true);
+            thread.start();
+        }, onError);
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (running) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                try {
+                    handle(op, in, out);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    out.writeByte(ERROR);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                }
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Client went away or sent garbage; drop the connection.
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case ADD: {
+                String number = in.readUTF();
+                String holder = in.readBoolean() ? in.readUTF() : null;
+                double balance = in.readDouble();
+                bank.addAccount(new BankAccount(number, holder, balance));
+                out.writeByte(TransactionStatus.SUCCESS.ordinal());
+                break;
+            }
+            case BALANCE: {
+                BankAccount account = bank.getAccount(in.readUTF());
+                if (account == null) {
+                    out.writeByte(TransactionStatus.ACCOUNT_NOT_FOUND.ordinal());
+                } else {
+                    out.writeByte(TransactionStatus.SUCCESS.ordinal());
+                    out.writeLong(account.getBalanceUnits());
+                }
+                break;
+            }
+            case DEPOSIT:
+            case WITHDRAW: {
+                BankAccount account = bank.getAccount(in.readUTF());
+                double amount = in.readDouble();
+                TransactionStatus status = account == null ? TransactionStatus.ACCOUNT_NOT_FOUND
+                        : op == DEPOSIT ? account.tryDeposit(amount) : account.tryWithdraw(amount);
+                out.writeByte(status.ordinal());
+                break;
+            }
+            case TRANSFER: {
+                String from = in.readUTF();
+                String to = in.readUTF();
+                out.writeByte(service.tryTransfer(from, to, in.readDouble()).ordinal());
+                break;
+            }
+            case PREPARE: {
+                long txId = in.readLong();
+                String number = in.readUTF();
+                out.writeByte(prepare(txId, number, in.readLong()).ordinal());
+                break;
+            }
+            case COMMIT:
+            case ABORT: {
+                long txId = in.readLong();
+                if (op == COMMIT) {
+                    commit(txId);
+                } else {
+                    abort(txId);
+                }
+                out.writeByte(TransactionStatus.SUCCESS.ordinal());
+                break;
+            }
+            case IN_DOUBT: {
+                List<Long> ids = inDoubt(in.readInt());
+                out.writeByte(TransactionStatus.SUCCESS.ordinal());
+                out.writeInt(ids.size());
+                for (long txId : ids) {
+                    out.writeLong(txId);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown operation " + op);
+        }
+    }
+
+    private static final class Prepared {
+        final BankAccount account;
+        final long deltaUnits;
+
+        Prepared(BankAccount account, long deltaUnits) {
+            this.account = account;
+            this.deltaUnits = deltaUnits;
+        }
+    }
+}
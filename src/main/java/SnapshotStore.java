@@ -0,0 +1,326 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Point-in-time snapshots of every account, so a restart loads the newest snapshot and
+ * replays only the journal written after it.
+ *
+ * <p>A snapshot is never read from the live accounts. Instead, {@link #checkpoint()} takes
+ * the previous snapshot and folds in the journal frames written since, up to the current
+ * end of the journal. That prefix of the journal is immutable, so the result is exactly the
+ * state at one journal position while deposits and transfers carry on undisturbed.
+ *
+ * <p>File layout ({@code snapshot-<journal position>.snap}, written through memory maps):
+ * a 32-byte header {@code [int magic][int version][long journal position][long count]
+ * [long string bytes]}, then {@code count} fixed 32-byte records
+ * {@code [long id][long balance units][long string offset][int number length]
+ * [int holder length or -1]}, then the UTF-8 account numbers and holders.
+ */
+public class SnapshotStore implements Closeable {
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private final Path directory;
+    private final Journal journal;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotStore(Path directory, Journal journal) {
+        this.directory = directory;
+        this.journal = journal;
+    }
+
+    /**
+     * Rebuilds the bank from the newest snapshot plus the journal tail after it, and attaches
+     * the journal to the result.
+     */
+    public Bank recover() throws IOException {
+        Bank bank = new Bank();
+        long journalPosition = 0;
+        Path newest = newestSnapshot();
+        if (newest != null) {
+            journalPosition = load(newest, bank);
+        }
+        journal.recoverInto(bank, journalPosition);
+        return bank;
+    }
+
+    /**
+     * Writes a snapshot of the state at the current end of the journal and returns its path.
+     * The journal is fsynced first, so a snapshot never covers frames a crash could lose.
+     */
+    public synchronized Path checkpoint() throws IOException {
+        long journalPosition;
+        try {
+            journalPosition = journal.sync();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Path previous = newestSnapshot();
+        Image image = new Image();
+        long fromPosition = previous == null ? 0 : image.read(previous);
+        if (fromPosition >= journalPosition && previous != null) {
+            return previous;
+        }
+        try (FileChannel channel = FileChannel.open(journal.path(), StandardOpenOption.READ)) {
+            Journal.replay(channel, fromPosition, journalPosition, image);
+        }
+
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, journalPosition, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        image.write(temporary, journalPosition);
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Path old : snapshots()) {
+            if (!old.equals(target)) {
+                Files.deleteIfExists(old);
+            }
+        }
+        return target;
+    }
+
+    /** Takes a checkpoint every {@code intervalMillis} on a background thread, ignoring failures. */
+    public synchronized void start(long intervalMillis) {
+        start(intervalMillis, e -> { });
+    }
+
+    /**
+     * Takes a checkpoint every {@code intervalMillis} on a background thread. A checkpoint
+     * that fails is passed to {@code onError} and the next one is still taken.
+     */
+    public synchronized void start(long intervalMillis, Consumer<? super Exception> onError) {
+        if (onError == null) {
+            throw new IllegalArgumentException("Error handler cannot be null");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Snapshots already scheduled");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            // An exception escaping the task would cancel every later run.
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                onError.accept(e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    Path newestSnapshot() throws IOException {
+        List<Path> all = snapshots();
+        return all.isEmpty() ? null : all.get(all.size() - 1);
+    }
+
+    // Sorted oldest first; the zero-padded journal position makes name order match.
+    private List<Path> snapshots() throws IOException {
+        List<Path> all = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                all.add(path);
+            }
+        }
+        all.sort(null);
+        return all;
+    }
+
+    private static long load(Path snapshot, Bank bank) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            long journalPosition = readHeader(header, snapshot);
+            int count = (int) header.getLong(16);
+            long stringBytes = header.getLong(24);
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                    (long) count * RECORD_SIZE);
+            MappedByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + (long) count * RECORD_SIZE, stringBytes);
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < count; i++) {
+                long id = records.getLong();
+                long balanceUnits = records.getLong();
+                int offset = (int) records.getLong();
+                int numberLength = records.getInt();
+                int holderLength = records.getInt();
+                scratch = ensure(scratch, Math.max(numberLength, holderLength));
+                strings.get(offset, scratch, 0, numberLength);
+                String number = new String(scratch, 0, numberLength, StandardCharsets.UTF_8);
+                String holder = null;
+                if (holderLength >= 0) {
+                    strings.get(offset + numberLength, scratch, 0, holderLength);
+                    holder = new String(scratch, 0, holderLength, StandardCharsets.UTF_8);
+                }
+                bank.restoreAccount(BankAccount.fromUnits(number, holder, balanceUnits), id);
+            }
+            return journalPosition;
+        }
+    }
+
+    private static long readHeader(MappedByteBuffer header, Path snapshot) throws IOException {
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a snapshot file: " + snapshot);
+        }
+        return header.getLong(8);
+    }
+
+    private static byte[] ensure(byte[] bytes, int length) {
+        return bytes.length >= length ? bytes : new byte[Math.max(length, bytes.length * 2)];
+    }
+
+    /**
+     * Account state held in primitive columns while a checkpoint folds journal records into
+     * the previous snapshot. Ids only ever grow, so lookups are binary searches.
+     */
+    private static final class Image implements Journal.RecordHandler {
+        private long[] ids = new long[1024];
+        private long[] balances = new long[1024];
+        private int[] stringOffsets = new int[1024];
+        private int[] numberLengths = new int[1024];
+        private int[] holderLengths = new int[1024];
+        private boolean[] removed = new boolean[1024];
+        private int count;
+        private byte[] arena = new byte[1 << 16];
+        private int arenaLength;
+
+        long read(Path snapshot) throws IOException {
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                long journalPosition = readHeader(header, snapshot);
+                int size = (int) header.getLong(16);
+                int stringBytes = (int) header.getLong(24);
+                MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                        (long) size * RECORD_SIZE);
+                MappedByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (long) size * RECORD_SIZE, stringBytes);
+                grow(size);
+                arena = ensure(arena, stringBytes);
+                strings.get(0, arena, 0, stringBytes);
+                arenaLength = stringBytes;
+                for (int i = 0; i < size; i++) {
+                    ids[i] = records.getLong();
+                    balances[i] = records.getLong();
+                    stringOffsets[i] = (int) records.getLong();
+                    numberLengths[i] = records.getInt();
+                    holderLengths[i] = records.getInt();
+                }
+                count = size;
+                return journalPosition;
+            }
+        }
+
+        @Override
+        public void added(long accountId, long balanceUnits, String accountNumber, String accountHolder) {
+            if (count > 0 && accountId <= ids[count - 1]) {
+                return;
+            }
+            grow(count + 1);
+            byte[] number = accountNumber.getBytes(StandardCharsets.UTF_8);
+            byte[] holder = accountHolder == null ? null : accountHolder.getBytes(StandardCharsets.UTF_8);
+            ids[count] = accountId;
+            balances[count] = balanceUnits;
+            stringOffsets[count] = arenaLength;
+            numberLengths[count] = number.length;
+            holderLengths[count] = holder == null ? -1 : holder.length;
+            append(number);
+            if (holder != null) {
+                append(holder);
+            }
+            count++;
+        }
+
+        @Override
+        public void removed(long accountId) {
+            int i = Arrays.binarySearch(ids, 0, count, accountId);
+            if (i >= 0) {
+                removed[i] = true;
+            }
+        }
+
+        @Override
+        public void balanceChanged(long accountId, long deltaUnits) {
+            int i = Arrays.binarySearch(ids, 0, count, accountId);
+            if (i >= 0) {
+                balances[i] += deltaUnits;
+            }
+        }
+
+        void write(Path target, long journalPosition) throws IOException {
+            int live = 0;
+            long stringBytes = 0;
+            for (int i = 0; i < count; i++) {
+                if (!removed[i]) {
+                    live++;
+                    stringBytes += numberLengths[i] + Math.max(holderLengths[i], 0);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        HEADER_SIZE + (long) live * RECORD_SIZE);
+                MappedByteBuffer strings = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + (long) live * RECORD_SIZE, stringBytes);
+                head.putInt(MAGIC).putInt(VERSION).putLong(journalPosition).putLong(live).putLong(stringBytes);
+                for (int i = 0; i < count; i++) {
+                    if (removed[i]) {
+                        continue;
+                    }
+                    int holderLength = holderLengths[i];
+                    head.putLong(ids[i]).putLong(balances[i]).putLong(strings.position())
+                            .putInt(numberLengths[i]).putInt(holderLength);
+                    strings.put(arena, stringOffsets[i], numberLengths[i] + Math.max(holderLength, 0));
+                }
+                head.force();
+                strings.force();
+            }
+        }
+
+        private void append(byte[] bytes) {
+            if (arenaLength + bytes.length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arenaLength + bytes.length, arena.length * 2));
+            }
+            System.arraycopy(bytes, 0, arena, arenaLength, bytes.length);
+            arenaLength += bytes.length;
+        }
+
+        private void grow(int capacity) {
+            if (capacity <= ids.length) {
+                return;
+            }
+            int size = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, size);
+            balances = Arrays.copyOf(balances, size);
+            stringOffsets = Arrays.copyOf(stringOffsets, size);
+            numberLengths = Arrays.copyOf(numberLengths, size);
+            holderLengths = Arrays.copyOf(holderLengths, size);
+            removed = Arrays.copyOf(removed, size);
+        }
+    }
+}
@@ -0,0 +1,516 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-account transaction history, recorded as a {@link BankListener}.
+ *
+ * <p>Every balance change is kept in a per-account ring of primitive columns (time, amount,
+ * balance after, kind), so recording allocates nothing. When a ring is full, its older half is
+ * delta-encoded, deflated and appended to a segment file as one block; a small per-account
+ * block index (first entry, time range, file offset) stays in memory. Statements can then be
+ * read by entry index or by time range, touching only the blocks they need.
+ *
+ * <p>Entries are numbered per account from 0. Times are wall-clock milliseconds, kept
+ * non-decreasing per account. The segment file is scratch space for this process and is
+ * truncated when opened.
+ */
+public class TransactionHistory implements BankListener, Closeable {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int INITIAL_RING = 8;
+    // Time delta (up to 10 bytes), kind (1) and zigzag amount (up to 10) as varints.
+    private static final int MAX_ENCODED_ENTRY = 21;
+
+    public enum Kind {
+        OPENING, DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final int retained;
+    private final FileChannel segment;
+    private final LongSupplier clock;
+    private final ThreadLocal<int[]> transferDepth = ThreadLocal.withInitial(() -> new int[1]);
+    // Histories by account id, in chunks so growing never moves an existing one.
+    private volatile History[][] histories = new History[0][];
+    // Guarded by this; see writeBlock.
+    private long segmentLength;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private ByteBuffer rawScratch = ByteBuffer.allocate(0);
+    private ByteBuffer compressedScratch = ByteBuffer.allocate(0);
+
+    /** Keeps the newest {@code retainedPerAccount} entries of each account in memory. */
+    public TransactionHistory(Path segmentFile, int retainedPerAccount) throws IOException {
+        this(segmentFile, retainedPerAccount, System::currentTimeMillis);
+    }
+
+    TransactionHistory(Path segmentFile, int retainedPerAccount, LongSupplier clock) throws IOException {
+        if (retainedPerAccount < 2) {
+            throw new IllegalArgumentException("Retention must be at least 2 entries");
+        }
+        this.retained = retainedPerAccount;
+        this.clock = clock;
+        this.segment = FileChannel.open(segmentFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void accountAdded(BankAccount account, long accountId) {
+        History history = historyFor(account, accountId, 0);
+        synchronized (history) {
+            if (history.count == 0) {
+                history.record(clock.getAsLong(), Kind.OPENING, history.openingBalance);
+            }
+        }
+    }
+
+    @Override
+    public void accountRemoved(BankAccount account, long accountId) {
+    }
+
+    @Override
+    public void balanceChanged(BankAccount account, long accountId, long deltaUnits) {
+        History history = historyFor(account, accountId, deltaUnits);
+        boolean transfer = transferDepth.get()[0] > 0;
+        Kind kind = deltaUnits >= 0
+                ? (transfer ? Kind.TRANSFER_IN : Kind.DEPOSIT)
+                : (transfer ? Kind.TRANSFER_OUT : Kind.WITHDRAWAL);
+        synchronized (history) {
+            history.record(clock.getAsLong(), kind, deltaUnits);
+        }
+    }
+
+    @Override
+    public void transferStarted() {
+        transferDepth.get()[0]++;
+    }
+
+    @Override
+    public void transferFinished() {
+        transferDepth.get()[0]--;
+    }
+
+    /** Number of entries recorded for the account, including those spilled to disk. */
+    public long entryCount(BankAccount account) {
+        History history = find(account.getId());
+        if (history == null) {
+            return 0;
+        }
+        synchronized (history) {
+            return history.count;
+        }
+    }
+
+    /** Up to {@code limit} entries starting at entry {@code fromIndex}, oldest first. */
+    public List<Entry> statement(BankAccount account, long fromIndex, int limit) {
+        return read(account, Math.max(fromIndex, 0), Long.MIN_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    /** Up to {@code limit} entries with {@code fromMillis <= time <= toMillis}, oldest first. */
+    public List<Entry> statement(BankAccount account, long fromMillis, long toMillis, int limit) {
+        return read(account, 0, fromMillis, toMillis, limit);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        deflater.end();
+        segment.close();
+    }
+
+    private List<Entry> read(BankAccount account, long fromIndex, long fromMillis, long toMillis, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(limit, 1024));
+        History history = find(account.getId());
+        if (history == null || limit == 0) {
+            return entries;
+        }
+        // The block index only grows: entries below blockCount never change, even after the
+        // arrays are replaced, so the references are enough. Spilled blocks are read unlocked.
+        long spilled;
+        long[] blockFirst;
+        long[] blockLastTime;
+        long[] blockOffset;
+        int[] blockLength;
+        int blocks;
+        Entry[] recent;
+        synchronized (history) {
+            spilled = history.spilled;
+            blocks = history.blockCount;
+            blockFirst = history.blockFirst;
+            blockLastTime = history.blockLastTime;
+            blockOffset = history.blockOffset;
+            blockLength = history.blockLength;
+            long first = Math.max(fromIndex, spilled);
+            if (fromMillis != Long.MIN_VALUE) {
+                first = history.firstAtOrAfter(fromMillis, first);
+            }
+            recent = new Entry[(int) Math.max(0, Math.min(history.count - first, limit))];
+            for (int i = 0; i < recent.length; i++) {
+                recent[i] = history.entry(first + i);
+            }
+        }
+
+        if (fromIndex < spilled) {
+            int block = blockContaining(blockFirst, blocks, fromIndex);
+            if (fromMillis != Long.MIN_VALUE) {
+                block = Math.max(block, firstBlockEndingAtOrAfter(blockLastTime, blocks, fromMillis));
+            }
+            for (; block < blocks && entries.size() < limit; block++) {
+                long next = block + 1 < blocks ? blockFirst[block + 1] : spilled;
+                if (!decode(blockOffset[block], blockLength[block], blockFirst[block],
+                        (int) (next - blockFirst[block]), fromIndex, fromMillis, toMillis, limit, entries)) {
+                    return entries;
+                }
+            }
+        }
+        for (Entry entry : recent) {
+            if (entry.timestamp > toMillis || entries.size() == limit) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static int blockContaining(long[] blockFirst, int blocks, long index) {
+        int i = Arrays.binarySearch(blockFirst, 0, blocks, index);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    private static int firstBlockEndingAtOrAfter(long[] blockLastTime, int blocks, long millis) {
+        int low = 0;
+        int high = blocks;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blockLastTime[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private History historyFor(BankAccount account, long accountId, long pendingDelta) {
+        History history = find(accountId);
+        if (history != null) {
+            return history;
+        }
+        synchronized (this) {
+            history = find(accountId);
+            if (history == null) {
+                if (accountId <= 0 || accountId >= Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Account id out of range: " + accountId);
+                }
+                int slot = (int) accountId;
+                History[][] current = histories;
+                int chunk = slot >>> CHUNK_BITS;
+                if (chunk >= current.length) {
+                    current = Arrays.copyOf(current, chunk + 1);
+                }
+                if (current[chunk] == null) {
+                    current[chunk] = new History[CHUNK_SIZE];
+                }
+                // Registered after the account already existed: start from the balance before this change.
+                history = new History(account.getBalanceUnits() - pendingDelta);
+                current[chunk][slot & (CHUNK_SIZE - 1)] = history;
+                histories = current;
+            }
+            return history;
+        }
+    }
+
+    private History find(long accountId) {
+        if (accountId <= 0 || accountId >= Integer.MAX_VALUE) {
+            return null;
+        }
+        History[][] current = histories;
+        int chunk = (int) accountId >>> CHUNK_BITS;
+        if (chunk >= current.length || current[chunk] == null) {
+            return null;
+        }
+        return current[chunk][(int) accountId & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Encodes the oldest {@code n} in-memory entries of {@code history} (whose lock the caller
+     * holds) and appends them as one block. Spills are rare, so they share one set of buffers.
+     * Returns {offset, length}.
+     */
+    private synchronized long[] writeBlock(History history, int n) {
+        ByteBuffer raw = rawScratch;
+        if (raw.capacity() < n * MAX_ENCODED_ENTRY + 16) {
+            raw = rawScratch = ByteBuffer.allocate(n * MAX_ENCODED_ENTRY + 16);
+        }
+        raw.clear();
+        int first = (int) (history.spilled % retained);
+        long time = history.times[first];
+        raw.putLong(time);
+        raw.putLong(history.balances[first]);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) ((history.spilled + i) % retained);
+            writeVarLong(raw, history.times[slot] - time);
+            time = history.times[slot];
+            raw.put(history.kinds[slot]);
+            writeVarLong(raw, zigzag(history.amounts[slot]));
+        }
+        deflater.reset();
+        deflater.setInput(raw.array(), 0, raw.position());
+        deflater.finish();
+        ByteBuffer compressed = compressedScratch;
+        if (compressed.capacity() < raw.position() + 64) {
+            compressed = compressedScratch = ByteBuffer.allocate(raw.position() * 2 + 64);
+        }
+        compressed.clear();
+        while (!deflater.finished()) {
+            if (!compressed.hasRemaining()) {
+                compressed = compressedScratch = ByteBuffer.allocate(compressed.capacity() * 2).put(compressed.flip());
+            }
+            compressed.position(compressed.position() + deflater.deflate(compressed.array(),
+                    compressed.position(), compressed.remaining()));
+        }
+        compressed.flip();
+        try {
+            long offset = segmentLength;
+            int length = compressed.remaining();
+            while (compressed.hasRemaining()) {
+                segment.write(compressed, offset + compressed.position());
+            }
+            segmentLength += length;
+            return new long[] {offset, length};
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds the entries of one block that match the query to {@code entries}. Returns false once
+     * the query is complete (limit reached or past {@code toMillis}).
+     */
+    private boolean decode(long offset, int length, long firstIndex, int count, long fromIndex,
+                           long fromMillis, long toMillis, int limit, List<Entry> entries) {
+        try {
+            ByteBuffer compressed = ByteBuffer.allocate(length);
+            while (compressed.hasRemaining()) {
+                if (segment.read(compressed, offset + compressed.position()) < 0) {
+                    throw new IOException("Truncated history segment");
+                }
+            }
+            byte[] raw = new byte[count * MAX_ENCODED_ENTRY + 16];
+            int rawLength;
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed.array());
+                rawLength = inflater.inflate(raw);
+                if (!inflater.finished()) {
+                    throw new IOException("Truncated history block");
+                }
+            } finally {
+                inflater.end();
+            }
+            ByteBuffer in = ByteBuffer.wrap(raw, 0, rawLength);
+            long time = in.getLong();
+            long balance = in.getLong();
+            for (int i = 0; i < count; i++) {
+                time += readVarLong(in);
+                int kind = in.get();
+                long amount = unzigzag(readVarLong(in));
+                if (i > 0) {
+                    balance += amount;
+                }
+                long index = firstIndex + i;
+                if (index < fromIndex || time < fromMillis) {
+                    continue;
+                }
+                if (time > toMillis || entries.size() == limit) {
+                    return false;
+                }
+                entries.add(new Entry(index, time, KINDS[kind], amount, balance));
+            }
+            return true;
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalStateException("Unreadable history block at " + offset, e);
+        }
+    }
+
+    private static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** One statement line. Amounts are signed: negative for money leaving the account. */
+    public static final class Entry {
+        private final long index;
+        private final long timestamp;
+        private final Kind kind;
+        private final long amountUnits;
+        private final long balanceUnits;
+
+        Entry(long index, long timestamp, Kind kind, long amountUnits, long balanceUnits) {
+            this.index = index;
+            this.timestamp = timestamp;
+            this.kind = kind;
+            this.amountUnits = amountUnits;
+            this.balanceUnits = balanceUnits;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public double getAmount() {
+            return BankAccount.toAmount(amountUnits);
+        }
+
+        public double getBalanceAfter() {
+            return BankAccount.toAmount(balanceUnits);
+        }
+
+        @Override
+        public String toString() {
+            return index + " " + timestamp + " " + kind + " " + getAmount() + " " + getBalanceAfter();
+        }
+    }
+
+    /** History of one account; guarded by its own monitor. */
+    private final class History {
+        final long openingBalance;
+        // Rings start small and double up to the retention before anything is spilled.
+        long[] times = new long[INITIAL_RING];
+        long[] amounts = new long[INITIAL_RING];
+        long[] balances = new long[INITIAL_RING];
+        byte[] kinds = new byte[INITIAL_RING];
+        long count;
+        long spilled;
+        // count % ring length, kept separately to avoid a division per event.
+        int writeSlot;
+        long balance;
+        long lastTime = Long.MIN_VALUE;
+
+        long[] blockFirst = new long[4];
+        long[] blockLastTime = new long[4];
+        long[] blockOffset = new long[4];
+        int[] blockLength = new int[4];
+        int blockCount;
+
+        History(long openingBalance) {
+            this.openingBalance = openingBalance;
+            this.balance = openingBalance;
+        }
+
+        void record(long now, Kind kind, long amount) {
+            if (count - spilled == times.length) {
+                if (times.length < retained) {
+                    grow();
+                } else {
+                    spill(retained / 2);
+                }
+            }
+            lastTime = Math.max(lastTime, now);
+            if (kind != Kind.OPENING) {
+                balance += amount;
+            }
+            int slot = writeSlot;
+            times[slot] = lastTime;
+            amounts[slot] = amount;
+            balances[slot] = balance;
+            kinds[slot] = (byte) kind.ordinal();
+            writeSlot = slot + 1 == times.length ? 0 : slot + 1;
+            count++;
+        }
+
+        // Only called before the first spill, while entries sit at slots 0..count-1.
+        private void grow() {
+            int size = (int) Math.min(retained, times.length * 2L);
+            times = Arrays.copyOf(times, size);
+            amounts = Arrays.copyOf(amounts, size);
+            balances = Arrays.copyOf(balances, size);
+            kinds = Arrays.copyOf(kinds, size);
+            writeSlot = (int) count;
+        }
+
+        Entry entry(long index) {
+            int slot = (int) (index % times.length);
+            return new Entry(index, times[slot], KINDS[kinds[slot]], amounts[slot], balances[slot]);
+        }
+
+        // First in-memory index at or after {@code start} whose time is at least {@code millis}.
+        long firstAtOrAfter(long millis, long start) {
+            long low = start;
+            long high = count;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (times[(int) (mid % times.length)] < millis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Moves the oldest {@code n} in-memory entries into one compressed block on disk.
+        private void spill(int n) {
+            long lastSpilledTime = times[(int) ((spilled + n - 1) % retained)];
+            long[] block = writeBlock(this, n);
+            if (blockCount == blockFirst.length) {
+                int size = blockCount * 2;
+                blockFirst = Arrays.copyOf(blockFirst, size);
+                blockLastTime = Arrays.copyOf(blockLastTime, size);
+                blockOffset = Arrays.copyOf(blockOffset, size);
+                blockLength = Arrays.copyOf(blockLength, size);
+            }
+            blockFirst[blockCount] = spilled;
+            blockLastTime[blockCount] = lastSpilledTime;
+            blockOffset[blockCount] = block[0];
+            blockLength[blockCount] = (int) block[1];
+            blockCount++;
+            spilled += n;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Thrown by the throwing deposit and withdraw methods when the operation is rejected;
+ * carries the same status the try* variants return.
+ */
+public class TransactionRejectedException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final TransactionStatus status;
+
+    public TransactionRejectedException(TransactionStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Outcome of a deposit, withdrawal or transfer. Returned by the non-throwing
+ * tryDeposit/tryWithdraw/tryTransfer methods instead of raising an exception.
+ */
+public enum TransactionStatus {
+    SUCCESS("Success"),
+    ACCOUNT_NOT_FOUND("Account not found"),
+    INVALID_AMOUNT("Invalid amount"),
+    INSUFFICIENT_BALANCE("Insufficient balance"),
+    EXCEEDS_MAX_WITHDRAWAL("Exceeds max withdrawal limit"),
+    BELOW_MINIMUM_BALANCE("Below minimum balance"),
+    BALANCE_OVERFLOW("Balance overflow"),
+    EXCEEDS_VELOCITY_LIMIT("Exceeds velocity limit"),
+    NODE_UNAVAILABLE("Node unavailable"),
+    IDEMPOTENCY_KEY_REUSED("Idempotency key already used for another request");
+
+    private final String message;
+
+    TransactionStatus(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+
+    /** True if the same request may succeed when retried, so its outcome is not remembered. */
+    public boolean isTransient() {
+        return this == NODE_UNAVAILABLE;
+    }
+}
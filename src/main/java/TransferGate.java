@@ -0,0 +1,85 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets a reader pause transfers: {@link #close()} stops new transfers from starting and waits
+ * for the ones in flight to finish, so money is never seen on both or neither side of a
+ * transfer until {@link #open()}.
+ *
+ * <p>Transfers announce themselves in per-thread striped counters, each on its own cache
+ * line, so entering and leaving costs two uncontended atomic adds while the gate is open.
+ * A transfer must leave on the thread that entered.
+ */
+final class TransferGate {
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+    // Longs per stripe, so neighbouring counters never share a cache line.
+    private static final int PAD = 16;
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+
+    private final long[] inFlight = new long[STRIPES * PAD];
+    private final ReentrantLock exclusive = new ReentrantLock();
+    private final Object reopened = new Object();
+    private volatile boolean closed;
+
+    void enter() {
+        int stripe = stripe();
+        while (true) {
+            COUNTS.getAndAdd(inFlight, stripe, 1L);
+            if (!closed) {
+                return;
+            }
+            COUNTS.getAndAdd(inFlight, stripe, -1L);
+            awaitOpen();
+        }
+    }
+
+    void exit() {
+        COUNTS.getAndAdd(inFlight, stripe(), -1L);
+    }
+
+    /** Blocks new transfers and returns once none is in flight. Callers must {@link #open()} in a finally block. */
+    void close() {
+        exclusive.lock();
+        closed = true;
+        while (inFlightCount() != 0) {
+            Thread.yield();
+        }
+    }
+
+    void open() {
+        synchronized (reopened) {
+            closed = false;
+            reopened.notifyAll();
+        }
+        exclusive.unlock();
+    }
+
+    private void awaitOpen() {
+        boolean interrupted = false;
+        synchronized (reopened) {
+            while (closed) {
+                try {
+                    reopened.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long inFlightCount() {
+        long total = 0;
+        for (int i = 0; i < inFlight.length; i += PAD) {
+            total += (long) COUNTS.getVolatile(inFlight, i);
+        }
+        return total;
+    }
+
+    private static int stripe() {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PAD;
+    }
+}
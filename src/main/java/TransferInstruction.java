@@ -0,0 +1,26 @@
+/**
+ * One (from, to, amount) entry of a batch passed to {@link BankService#transferBatch}.
+ */
+public final class TransferInstruction {
+    private final String fromAccountNumber;
+    private final String toAccountNumber;
+    private final double amount;
+
+    public TransferInstruction(String fromAccountNumber, String toAccountNumber, double amount) {
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+    }
+
+    public String getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+
+    public String getToAccountNumber() {
+        return toAccountNumber;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+/**
+ * One account's withdrawal totals over the rolling windows of its {@link WithdrawalRules}.
+ *
+ * <p>Each window is a ring of {@value #BUCKETS} time buckets plus a running total; moving
+ * to a new bucket clears the expired ones and subtracts them from the total, so checks and
+ * updates are O(1) amortized and allocate nothing. An amount leaves its window up to one
+ * bucket (1/60 of the window) early. Callers synchronize on the instance.
+ */
+final class VelocityCounters {
+    static final int BUCKETS = 60;
+
+    final WithdrawalRules rules;
+    private final long[][] buckets;
+    private final long[] totals;
+    private final long[] limits;
+    private final long[] bucketMillis;
+    private final long[] currentBucket;
+    // Time at which each window moves to its next bucket; earlier calls skip the division.
+    private final long[] nextBucketAt;
+
+    VelocityCounters(WithdrawalRules rules) {
+        this.rules = rules;
+        int windows = rules.windowCount();
+        this.buckets = new long[windows][BUCKETS];
+        this.totals = new long[windows];
+        this.limits = new long[windows];
+        this.bucketMillis = new long[windows];
+        this.currentBucket = new long[windows];
+        this.nextBucketAt = new long[windows];
+        for (int w = 0; w < windows; w++) {
+            limits[w] = rules.windowLimitUnits(w);
+            bucketMillis[w] = rules.windowMillis(w) / BUCKETS;
+        }
+    }
+
+    /** True if withdrawing {@code units} more at {@code now} keeps every window within its limit. */
+    boolean allows(long now, long units) {
+        for (int w = 0; w < totals.length; w++) {
+            advance(w, now);
+            if (totals[w] > limits[w] - units) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void record(long now, long units) {
+        for (int w = 0; w < totals.length; w++) {
+            advance(w, now);
+            buckets[w][(int) (currentBucket[w] % BUCKETS)] += units;
+            totals[w] += units;
+        }
+    }
+
+    /** Takes back a recently recorded withdrawal that was refunded, newest buckets first. */
+    void unrecord(long now, long units) {
+        for (int w = 0; w < totals.length; w++) {
+            advance(w, now);
+            long remaining = units;
+            for (int i = 0; i < BUCKETS && remaining > 0; i++) {
+                int slot = (int) Math.floorMod(currentBucket[w] - i, (long) BUCKETS);
+                long taken = Math.min(remaining, buckets[w][slot]);
+                buckets[w][slot] -= taken;
+                totals[w] -= taken;
+                remaining -= taken;
+            }
+        }
+    }
+
+    private void advance(int w, long now) {
+        if (now < nextBucketAt[w]) {
+            return;
+        }
+        long bucket = now / bucketMillis[w];
+        long from = currentBucket[w];
+        if (bucket <= from) {
+            return;
+        }
+        long[] ring = buckets[w];
+        if (bucket - from >= BUCKETS) {
+            Arrays.fill(ring, 0);
+            totals[w] = 0;
+        } else {
+            for (long b = from + 1; b <= bucket; b++) {
+                int slot = (int) (b % BUCKETS);
+                totals[w] -= ring[slot];
+                ring[slot] = 0;
+            }
+        }
+        currentBucket[w] = bucket;
+        nextBucketAt[w] = (bucket + 1) * bucketMillis[w];
+    }
+}
@@ -0,0 +1,183 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * The withdrawal rules of one account tier, compiled for the withdrawal hot path.
+ *
+ * <p>Rules are declared on a {@link Builder} in any number and order and compiled at
+ * {@link Builder#build()}: all per-withdrawal maximums fold into one threshold, all minimum
+ * balances into one floor, and velocity limits into one tightest limit per distinct window,
+ * sorted by window. A withdrawal is then checked with one combined comparison on the success
+ * path, however many rules were declared, plus one sliding counter per velocity window.
+ *
+ * <p>Rejections are reported in a fixed order: {@code INSUFFICIENT_BALANCE},
+ * {@code EXCEEDS_MAX_WITHDRAWAL}, {@code BELOW_MINIMUM_BALANCE}, then
+ * {@code EXCEEDS_VELOCITY_LIMIT}. Accounts use {@link #STANDARD} unless given other rules
+ * with {@link BankAccount#setWithdrawalRules}; accounts of the same tier share one instance.
+ */
+public final class WithdrawalRules {
+    /** The historical limits: at most 10000 per withdrawal, and 50 left in the account. */
+    public static final WithdrawalRules STANDARD = builder("standard")
+            .maxWithdrawal(10_000)
+            .minimumBalance(50)
+            .build();
+
+    private final String tier;
+    private final int ruleCount;
+    private final long maxWithdrawalUnits;
+    private final long minBalanceUnits;
+    private final long[] windowMillis;
+    private final long[] windowLimitUnits;
+    private final LongSupplier clock;
+
+    private WithdrawalRules(Builder builder) {
+        this.tier = builder.tier;
+        this.ruleCount = builder.ruleCount;
+        this.maxWithdrawalUnits = builder.maxWithdrawalUnits;
+        this.minBalanceUnits = builder.minBalanceUnits;
+        this.clock = builder.clock;
+        List<long[]> windows = new ArrayList<>(builder.windows);
+        windows.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] millis = new long[windows.size()];
+        long[] limits = new long[windows.size()];
+        int count = 0;
+        for (long[] window : windows) {
+            if (count > 0 && millis[count - 1] == window[0]) {
+                limits[count - 1] = Math.min(limits[count - 1], window[1]);
+            } else {
+                millis[count] = window[0];
+                limits[count] = window[1];
+                count++;
+            }
+        }
+        this.windowMillis = Arrays.copyOf(millis, count);
+        this.windowLimitUnits = Arrays.copyOf(limits, count);
+    }
+
+    public static Builder builder(String tier) {
+        if (tier == null || tier.isEmpty()) {
+            throw new IllegalArgumentException("Tier cannot be empty");
+        }
+        return new Builder(tier);
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    /** Number of rules declared, before compilation. */
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /** Checks the balance rules for withdrawing {@code units} from {@code balanceUnits}. */
+    TransactionStatus check(long balanceUnits, long units) {
+        // One branch on the success path; the failing rule is only located on rejection.
+        if ((units > balanceUnits) | (units > maxWithdrawalUnits) | (balanceUnits - units < minBalanceUnits)) {
+            if (units > balanceUnits) {
+                return TransactionStatus.INSUFFICIENT_BALANCE;
+            }
+            if (units > maxWithdrawalUnits) {
+                return TransactionStatus.EXCEEDS_MAX_WITHDRAWAL;
+            }
+            return TransactionStatus.BELOW_MINIMUM_BALANCE;
+        }
+        return TransactionStatus.SUCCESS;
+    }
+
+    boolean hasVelocityLimits() {
+        return windowMillis.length > 0;
+    }
+
+    int windowCount() {
+        return windowMillis.length;
+    }
+
+    long windowMillis(int window) {
+        return windowMillis[window];
+    }
+
+    long windowLimitUnits(int window) {
+        return windowLimitUnits[window];
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        return "WithdrawalRules[" + tier + ", " + ruleCount + " rules, " + windowMillis.length + " windows]";
+    }
+
+    public static final class Builder {
+        private final String tier;
+        private final List<long[]> windows = new ArrayList<>();
+        private long maxWithdrawalUnits = Long.MAX_VALUE;
+        private long minBalanceUnits = 0;
+        private int ruleCount;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder(String tier) {
+            this.tier = tier;
+        }
+
+        /** No single withdrawal may exceed {@code amount}. */
+        public Builder maxWithdrawal(double amount) {
+            maxWithdrawalUnits = Math.min(maxWithdrawalUnits, positiveUnits(amount));
+            ruleCount++;
+            return this;
+        }
+
+        /** A withdrawal may not leave less than {@code amount} in the account. */
+        public Builder minimumBalance(double amount) {
+            if (amount < 0) {
+                throw new IllegalArgumentException("Minimum balance cannot be negative");
+            }
+            minBalanceUnits = Math.max(minBalanceUnits, BankAccount.toUnits(amount));
+            ruleCount++;
+            return this;
+        }
+
+        /** Withdrawals in any rolling {@code window} may not total more than {@code amount}. */
+        public Builder velocityLimit(Duration window, double amount) {
+            if (window == null || window.toMillis() < VelocityCounters.BUCKETS) {
+                throw new IllegalArgumentException("Velocity window must be at least " + VelocityCounters.BUCKETS + " ms");
+            }
+            windows.add(new long[] {window.toMillis(), positiveUnits(amount)});
+            ruleCount++;
+            return this;
+        }
+
+        /** Shorthand for a rolling one-hour {@link #velocityLimit}. */
+        public Builder hourlyLimit(double amount) {
+            return velocityLimit(Duration.ofHours(1), amount);
+        }
+
+        /** Shorthand for a rolling 24-hour {@link #velocityLimit}. */
+        public Builder dailyLimit(double amount) {
+            return velocityLimit(Duration.ofDays(1), amount);
+        }
+
+        /** Time source in milliseconds for the velocity windows, for tests. */
+        Builder clock(LongSupplier millis) {
+            this.clock = millis;
+            return this;
+        }
+
+        public WithdrawalRules build() {
+            return new WithdrawalRules(this);
+        }
+
+        private static long positiveUnits(double amount) {
+            long units = BankAccount.toUnitsOrZero(amount);
+            if (units <= 0) {
+                throw new IllegalArgumentException("Limit must be positive");
+            }
+            return units;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class AccountNumbersTest {
+
+    @Test
+    public void testCodesRoundTripAndAreDistinct() {
+        List<String> numbers = List.of("0", "00", "000", "7", "07", "123456", "999999999999999999",
+                "000000000000000000", "ACC1", "ACC123456", "acc1", "A", "1A", "-", "X-0000001", "zzzzzzzzzz");
+        Set<Long> codes = new HashSet<>();
+        for (String number : numbers) {
+            long code = AccountNumbers.encode(number);
+            assertTrue(code >= 0, number);
+            assertEquals(number, AccountNumbers.decode(code));
+            assertTrue(codes.add(code), "duplicate code for " + number);
+        }
+
+        Random random = new Random(7);
+        String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-";
+        Map<Long, String> seen = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder number = new StringBuilder();
+            int length = 1 + random.nextInt(AccountNumbers.MAX_CHARS);
+            int symbols = random.nextBoolean() ? 10 : alphabet.length();
+            for (int j = 0; j < length; j++) {
+                number.append(alphabet.charAt(random.nextInt(symbols)));
+            }
+            String s = number.toString();
+            long code = AccountNumbers.encode(s);
+            assertEquals(s, AccountNumbers.decode(code));
+            String previous = seen.put(code, s);
+            assertTrue(previous == null || previous.equals(s), s + " and " + previous);
+        }
+    }
+
+    @Test
+    public void testUnfitNumbersAreNotEncoded() {
+        for (String number : new String[] {null, "", "ACC 1", "ACC_1", "ACC12345678", "1234567890123456789",
+                "caf\u00e9", "\u0661\u0662"}) {
+            assertEquals(AccountNumbers.NOT_ENCODABLE, AccountNumbers.encode(number), String.valueOf(number));
+        }
+        assertThrows(IllegalArgumentException.class, () -> AccountNumbers.decode(-1));
+    }
+
+    @Test
+    public void testBankIndexesEncodedAndPlainNumbersAlike() {
+        Bank bank = new Bank();
+        int count = 20_000;
+        for (int i = 0; i < count; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, "Holder", 1.0));
+        }
+        BankAccount plain = new BankAccount("account #1", "Plain", 2.0);
+        BankAccount first = new BankAccount("0042", "First", 3.0);
+        BankAccount second = new BankAccount("0042", "Second", 4.0);
+        bank.addAccount(plain);
+        bank.addAccount(first);
+        bank.addAccount(second);
+
+        for (int i = 0; i < count; i += 7) {
+            assertEquals("ACC" + i, bank.getAccount("ACC" + i).getAccountNumber());
+        }
+        assertSame(plain, bank.getAccount("account #1"));
+        assertEquals("account #1", plain.getAccountNumber());
+        assertSame(first, bank.getAccount("0042"));
+        assertNull(bank.getAccount("42"));
+
+        bank.removeAccountById(first.getId());
+        assertSame(second, bank.getAccount("0042"));
+        bank.addAccount(first);
+        assertSame(second, bank.getAccount("0042"));
+        bank.removeAccount("0042");
+        assertNull(bank.getAccount("0042"));
+
+        for (int i = 0; i < count; i += 2) {
+            bank.removeAccount("ACC" + i);
+        }
+        for (int i = 0; i < count; i++) {
+            BankAccount account = bank.getAccount("ACC" + i);
+            assertEquals(i % 2 == 1, account != null, "ACC" + i);
+        }
+        bank.removeAccount("account #1");
+        assertNull(bank.getAccount("account #1"));
+        assertEquals(count / 2, bank.getAccounts().size());
+    }
+}
@@ -0,0 +1,62 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class AccountVectorTest {
+
+    @Test
+    public void testMatchesSortedMapUnderRandomUpdates() {
+        Random random = new Random(42);
+        TreeMap<Long, BankAccount> expected = new TreeMap<>();
+        AccountVector vector = AccountVector.EMPTY;
+        for (int i = 0; i < 20_000; i++) {
+            long index = random.nextInt(i < 10_000 ? 5_000 : 70_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(index);
+                vector = vector.with(index, null);
+            } else {
+                BankAccount account = new BankAccount("N" + index, "Holder", 1.0);
+                expected.put(index, account);
+                vector = vector.with(index, account);
+            }
+        }
+
+        List<BankAccount> values = new ArrayList<>(expected.values());
+        assertEquals(values.size(), vector.size());
+        List<BankAccount> iterated = new ArrayList<>();
+        vector.iterator().forEachRemaining(iterated::add);
+        assertEquals(values, iterated);
+        for (int i = 0; i < values.size(); i += 97) {
+            assertSame(values.get(i), vector.get(i));
+        }
+        for (long index = 0; index < 70_000; index += 13) {
+            assertSame(expected.get(index), vector.find(index));
+        }
+    }
+
+    @Test
+    public void testOldVersionsAreUnchanged() {
+        BankAccount a = new BankAccount("A", "Alice", 1.0);
+        BankAccount b = new BankAccount("B", "Bob", 2.0);
+        AccountVector first = AccountVector.EMPTY.with(0, a);
+        AccountVector second = first.with(1, b).with(0, null).with(100_000, a);
+
+        assertEquals(1, first.size());
+        assertSame(a, first.get(0));
+        assertNull(first.find(1));
+        assertEquals(2, second.size());
+        assertSame(b, second.get(0));
+        assertSame(a, second.get(1));
+        assertSame(second, second.with(5_000_000, null));
+    }
+
+    @Test
+    public void testGetOutOfRange() {
+        AccountVector vector = AccountVector.EMPTY.with(3, new BankAccount("A", "Alice", 1.0));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.asList().get(-1));
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end transfer latency at high concurrency: {@code concurrency} requests are kept in
+ * flight against Zipfian (skew 1.2) account pairs. The blocking API needs one thread per
+ * request in flight; the async API keeps them in flight from a few threads and runs them
+ * on a small pool. Prints throughput and p50/p99/p99.9 latency for each.
+ */
+public class AsyncTransferBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int SAMPLES = 1 << 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] concurrencies = args.length > 0 ? BankLookupBenchmark.parseSizes(args) : new int[] {64, 1024, 4096};
+        long millis = BenchmarkRunner.MEASURE_MILLIS;
+        Bank bank = new Bank();
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = "ACC" + i;
+            bank.addAccount(new BankAccount(numbers[i], "Holder" + i, 1_000_000.0));
+        }
+        ZipfianGenerator zipf = new ZipfianGenerator(ACCOUNTS, 1.2);
+
+        for (int concurrency : concurrencies) {
+            BankService blocking = new BankService(bank);
+            Recorder recorder = new Recorder();
+            AtomicBoolean running = new AtomicBoolean(true);
+            CountDownLatch done = new CountDownLatch(concurrency);
+            for (int t = 0; t < concurrency; t++) {
+                Thread thread = new Thread(null, () -> {
+                    while (running.get()) {
+                        int[] pair = pair(zipf);
+                        long start = System.nanoTime();
+                        blocking.tryTransfer(numbers[pair[0]], numbers[pair[1]], 1.0);
+                        recorder.record(System.nanoTime() - start);
+                    }
+                    done.countDown();
+                }, "blocking-" + t, 256 * 1024);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            recorder.measure(millis, running);
+            done.await();
+            recorder.print("blocking tryTransfer", concurrency);
+
+            int poolSize = Runtime.getRuntime().availableProcessors();
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+            BankService async = new BankService(bank, pool);
+            Recorder asyncRecorder = new Recorder();
+            AtomicBoolean asyncRunning = new AtomicBoolean(true);
+            CountDownLatch asyncDone = new CountDownLatch(concurrency);
+            // Each in-flight slot issues its next request when the previous one completes.
+            for (int slot = 0; slot < concurrency; slot++) {
+                issue(async, numbers, zipf, asyncRecorder, asyncRunning, asyncDone);
+            }
+            asyncRecorder.measure(millis, asyncRunning);
+            asyncDone.await();
+            pool.shutdown();
+            asyncRecorder.print("transferAsync pool=" + poolSize, concurrency);
+        }
+    }
+
+    private static void issue(BankService service, String[] numbers, ZipfianGenerator zipf, Recorder recorder,
+                              AtomicBoolean running, CountDownLatch done) {
+        if (!running.get()) {
+            done.countDown();
+            return;
+        }
+        int[] pair = pair(zipf);
+        long start = System.nanoTime();
+        service.transferAsync(numbers[pair[0]], numbers[pair[1]], 1.0).whenComplete((status, error) -> {
+            recorder.record(System.nanoTime() - start);
+            issue(service, numbers, zipf, recorder, running, done);
+        });
+    }
+
+    private static int[] pair(ZipfianGenerator zipf) {
+        int from = zipf.next();
+        int to = zipf.next();
+        if (from == to) {
+            to = (to + 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        }
+        return new int[] {from, to};
+    }
+
+    private static final class Recorder {
+        private final long[] samples = new long[SAMPLES];
+        private final LongAdder operations = new LongAdder();
+        private volatile boolean measuring;
+        private long elapsedNanos;
+
+        void record(long nanos) {
+            if (measuring) {
+                long n = operations.sum();
+                samples[(int) (n & (SAMPLES - 1))] = nanos;
+                operations.increment();
+            }
+        }
+
+        void measure(long millis, AtomicBoolean running) throws InterruptedException {
+            Thread.sleep(BenchmarkRunner.WARMUP_MILLIS);
+            measuring = true;
+            long begin = System.nanoTime();
+            Thread.sleep(millis);
+            measuring = false;
+            elapsedNanos = System.nanoTime() - begin;
+            running.set(false);
+        }
+
+        void print(String name, int concurrency) {
+            long count = operations.sum();
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLES));
+            Arrays.sort(sorted);
+            System.out.printf("%-32s in-flight=%-6d %,12.0f ops/s  p50=%,d ns p99=%,d ns p99.9=%,d ns%n",
+                    name, concurrency, count * 1e9 / elapsedNanos,
+                    sorted[sorted.length / 2], sorted[(int) (sorted.length * 0.99)],
+                    sorted[(int) (sorted.length * 0.999)]);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Deposit/withdraw throughput on 1, 4, 16 and 64 threads, first all hammering one hot
+ * account and then spread over many cold accounts.
+ */
+public class BalanceContentionBenchmark {
+    private static final int COLD_ACCOUNTS = 100_000;
+
+    public static void main(String[] args) {
+        int[] threadCounts = args.length > 0 ? BankLookupBenchmark.parseSizes(args) : new int[] {1, 4, 16, 64};
+
+        BankAccount hot = new BankAccount("HOT", "Hot", 1_000_000.0);
+        BankAccount[] cold = new BankAccount[COLD_ACCOUNTS];
+        for (int i = 0; i < cold.length; i++) {
+            cold[i] = new BankAccount("COLD" + i, "Cold" + i, 1_000_000.0);
+        }
+
+        for (int threads : threadCounts) {
+            BenchmarkRunner.run("deposit+withdraw hot account", threads, t -> {
+                hot.deposit(10.0);
+                hot.withdraw(10.0);
+                return 1;
+            });
+        }
+        for (int threads : threadCounts) {
+            BenchmarkRunner.run("deposit+withdraw cold accounts", threads, t -> {
+                BankAccount account = cold[ThreadLocalRandom.current().nextInt(COLD_ACCOUNTS)];
+                account.deposit(10.0);
+                account.withdraw(10.0);
+                return 1;
+            });
+        }
+        System.out.printf("hot balance after run: %.4f (expected 1000000.0000)%n", hot.getBalance());
+    }
+}
@@ -71,4 +71,13 @@ public class BankAccountBasicPathTest {
         account.withdraw(10000.0); // 11000 - 10000 = 1000 >= 50
         assertEquals(1000.0, account.getBalance());
     }
+
+    @Test
+    public void testRejectionCarriesItsStatus() {
+        TransactionRejectedException exception = assertThrows(TransactionRejectedException.class,
+                () -> account.withdraw(6000.0));
+        assertEquals(TransactionStatus.INSUFFICIENT_BALANCE, exception.getStatus());
+        exception = assertThrows(TransactionRejectedException.class, () -> account.deposit(-1.0));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, exception.getStatus());
+    }
 }
\ No newline at end of file
@@ -220,4 +220,79 @@ public class BankAccountTest {
         });
         assertEquals("Deposit amount must be positive", exception.getMessage());
     }
+
+    @Test
+    public void testDepositNoFloatingPointDrift() {
+        BankAccount account = new BankAccount("1011", "DriftTest", 0.0);
+        for (int i = 0; i < 10; i++) {
+            account.deposit(0.1);
+        }
+        assertEquals(1.0, account.getBalance());
+    }
+
+    @Test
+    public void testConcurrentDepositsAndWithdrawalsLoseNoUpdates() throws InterruptedException {
+        BankAccount account = new BankAccount("1012", "ConcurrentTest", 1000.0);
+        Thread[] workers = new Thread[8];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    account.deposit(2.5);
+                    account.withdraw(1.5);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(1000.0 + 8 * 10_000 * 1.0, account.getBalance());
+    }
+
+    @Test
+    public void testConcurrentWithdrawalsRespectMinimumBalance() throws InterruptedException {
+        BankAccount account = new BankAccount("1013", "MinBalanceTest", 1050.0);
+        Thread[] workers = new Thread[8];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    try {
+                        account.withdraw(10.0);
+                    } catch (IllegalArgumentException e) {
+                        // Rejected once the minimum balance is reached.
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(50.0, account.getBalance());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1000.0, 0.0, INVALID_AMOUNT",
+            "1000.0, -5.0, INVALID_AMOUNT",
+            "500.0, 600.0, INSUFFICIENT_BALANCE",
+            "20000.0, 11000.0, EXCEEDS_MAX_WITHDRAWAL",
+            "1000.0, 960.0, BELOW_MINIMUM_BALANCE",
+            "1000.0, 500.0, SUCCESS"
+    })
+    public void testTryWithdrawStatus(double initialBalance, double amount, TransactionStatus expected) {
+        BankAccount account = new BankAccount("1014", "TryWithdraw", initialBalance);
+        assertEquals(expected, account.tryWithdraw(amount));
+        double expectedBalance = expected.isSuccess() ? initialBalance - amount : initialBalance;
+        assertEquals(expectedBalance, account.getBalance());
+    }
+
+    @Test
+    public void testTryDepositStatus() {
+        BankAccount account = new BankAccount("1015", "TryDeposit", 100.0);
+        assertEquals(TransactionStatus.INVALID_AMOUNT, account.tryDeposit(0.0));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, account.tryDeposit(Double.NaN));
+        assertEquals(TransactionStatus.SUCCESS, account.tryDeposit(25.0));
+        assertEquals(125.0, account.getBalance());
+    }
 }
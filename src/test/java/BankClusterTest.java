@@ -0,0 +1,198 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BankClusterTest {
+
+    @TempDir
+    Path dir;
+
+    private final ShardNode[] nodes = new ShardNode[2];
+    private List<InetSocketAddress> addresses;
+    private BankCluster cluster;
+    // Two accounts on node 0 and two on node 1.
+    private String a0;
+    private String b0;
+    private String a1;
+    private String b1;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        addresses = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = ShardNode.start(0, dir.resolve("node" + i));
+            addresses.add(new InetSocketAddress("127.0.0.1", nodes[i].port()));
+        }
+        cluster = BankCluster.open(addresses, dir.resolve("coordinator.log"), 1);
+        List<List<String>> byNode = List.of(new ArrayList<>(), new ArrayList<>());
+        for (int i = 0; byNode.get(0).size() < 2 || byNode.get(1).size() < 2; i++) {
+            String number = "ACC" + i;
+            byNode.get(cluster.nodeFor(number)).add(number);
+        }
+        a0 = byNode.get(0).get(0);
+        b0 = byNode.get(0).get(1);
+        a1 = byNode.get(1).get(0);
+        b1 = byNode.get(1).get(1);
+        for (String number : List.of(a0, b0, a1, b1)) {
+            cluster.addAccount(number, "Holder " + number, 1000.0);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        cluster.close();
+        for (ShardNode node : nodes) {
+            node.close();
+        }
+    }
+
+    @Test
+    public void testAccountsAreSpreadByConsistentHashing() {
+        assertNotNull(nodes[0].bank().getAccount(a0));
+        assertNull(nodes[1].bank().getAccount(a0));
+        assertNotNull(nodes[1].bank().getAccount(a1));
+
+        HashRing two = new HashRing(List.of("n0", "n1"));
+        HashRing three = new HashRing(List.of("n0", "n1", "n2"));
+        int[] counts = new int[3];
+        int moved = 0;
+        for (int i = 0; i < 30_000; i++) {
+            String number = "ACC" + i;
+            int owner = three.nodeFor(number);
+            counts[owner]++;
+            if (owner != two.nodeFor(number)) {
+                moved++;
+                assertEquals(2, owner, "only the new node takes accounts over");
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 7_000 && count < 13_000, "unbalanced: " + count);
+        }
+        assertEquals(counts[2], moved);
+    }
+
+    @Test
+    public void testSingleShardAndCrossShardTransfers() {
+        BankService service = new BankService(cluster);
+        assertTrue(service.transfer(a0, b0, 100.0));
+        assertEquals(TransactionStatus.SUCCESS, service.tryTransfer(a0, a1, 250.0));
+        assertEquals(TransactionStatus.SUCCESS, service.tryTransfer(b1, b0, 50.0));
+
+        assertEquals(650.0, cluster.getBalance(a0));
+        assertEquals(1150.0, cluster.getBalance(b0));
+        assertEquals(1250.0, cluster.getBalance(a1));
+        assertEquals(950.0, cluster.getBalance(b1));
+        assertTrue(nodes[0].inDoubt(cluster.coordinatorId()).isEmpty());
+        assertTrue(nodes[1].inDoubt(cluster.coordinatorId()).isEmpty());
+    }
+
+    @Test
+    public void testRejectedLegAbortsTheOther() {
+        assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, cluster.tryTransfer(a0, a1, 990.0));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, cluster.tryTransfer(a0, "missing-" + a1, 10.0));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, cluster.tryTransfer(a0, a1, -1.0));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, cluster.tryTransfer(null, a1, 10.0));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, cluster.tryTransfer(a0, null, 10.0));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, new BankService(cluster).tryTransfer(null, null, 10.0));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, cluster.tryDeposit(null, 10.0));
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, cluster.tryWithdraw(null, 10.0));
+        assertThrows(IllegalArgumentException.class, () -> cluster.getBalance(null));
+
+        assertEquals(1000.0, cluster.getBalance(a0));
+        assertEquals(1000.0, cluster.getBalance(a1));
+        assertTrue(nodes[0].inDoubt(cluster.coordinatorId()).isEmpty());
+    }
+
+    @Test
+    public void testUnreachableNodeAbortsAndRestartedNodeRecovers() throws IOException {
+        assertEquals(TransactionStatus.SUCCESS, cluster.tryTransfer(a0, a1, 100.0));
+        int port = nodes[1].port();
+        nodes[1].close();
+
+        assertEquals(TransactionStatus.NODE_UNAVAILABLE, cluster.tryTransfer(a0, a1, 100.0));
+        assertEquals(900.0, cluster.getBalance(a0));
+
+        nodes[1] = ShardNode.start(port, dir.resolve("node1"));
+        assertEquals(1100.0, cluster.getBalance(a1));
+        assertEquals(TransactionStatus.SUCCESS, cluster.tryTransfer(a1, a0, 100.0));
+        assertEquals(1000.0, cluster.getBalance(a0));
+        assertEquals(1000.0, cluster.getBalance(a1));
+    }
+
+    @Test
+    public void testCommitDecidedBeforeCoordinatorCrashIsCompletedOnRestart() throws IOException {
+        long txId = cluster.nextTransactionId();
+        assertEquals(TransactionStatus.SUCCESS, cluster.prepare(0, txId, a0, -2_000_000));
+        assertEquals(TransactionStatus.SUCCESS, cluster.prepare(1, txId, a1, 2_000_000));
+        cluster.logCommit(txId, 0, 1);
+        // The coordinator stops before telling either node.
+        cluster.close();
+        assertEquals(800.0, nodes[0].bank().getAccount(a0).getBalance());
+        assertEquals(1000.0, nodes[1].bank().getAccount(a1).getBalance());
+
+        cluster = BankCluster.open(addresses, dir.resolve("coordinator.log"), 1);
+        assertEquals(800.0, cluster.getBalance(a0));
+        assertEquals(1200.0, cluster.getBalance(a1));
+        assertTrue(nodes[0].inDoubt(cluster.coordinatorId()).isEmpty());
+        assertTrue(nodes[1].inDoubt(cluster.coordinatorId()).isEmpty());
+    }
+
+    @Test
+    public void testUndecidedTransactionSurvivesNodeCrashAndIsAbortedOnRestart() throws IOException {
+        long txId = cluster.nextTransactionId();
+        assertEquals(TransactionStatus.SUCCESS, cluster.prepare(0, txId, a0, -2_000_000));
+        cluster.close();
+        int port = nodes[0].port();
+        nodes[0].close();
+
+        nodes[0] = ShardNode.start(port, dir.resolve("node0"));
+        assertEquals(List.of(txId), nodes[0].inDoubt(cluster.coordinatorId()));
+        assertEquals(800.0, nodes[0].bank().getAccount(a0).getBalance());
+
+        cluster = BankCluster.open(addresses, dir.resolve("coordinator.log"), 1);
+        assertTrue(cluster.nextTransactionId() > txId);
+        assertEquals(1000.0, cluster.getBalance(a0));
+        assertTrue(nodes[0].inDoubt(cluster.coordinatorId()).isEmpty());
+    }
+
+    @Test
+    public void testCoordinatorIdIsGivenAndKeptInTheLog() throws IOException {
+        assertEquals(1, cluster.coordinatorId());
+        assertEquals(1, cluster.nextTransactionId() >>> CoordinatorLog.SEQUENCE_BITS);
+        cluster.close();
+        assertThrows(IllegalArgumentException.class,
+                () -> BankCluster.open(addresses, dir.resolve("coordinator.log"), 2));
+        assertThrows(IllegalArgumentException.class, () -> BankCluster.open(addresses, dir.resolve("other.log"), 0));
+        assertThrows(IllegalArgumentException.class, () -> BankCluster.open(addresses, dir.resolve("other.log"),
+                CoordinatorLog.MAX_COORDINATOR_ID + 1));
+        try (BankCluster other = BankCluster.open(addresses, dir.resolve("other.log"), 2)) {
+            assertEquals(2, other.coordinatorId());
+        }
+        cluster = BankCluster.open(addresses, dir.resolve("coordinator.log"), 1);
+        assertEquals(1, cluster.coordinatorId());
+    }
+
+    @Test
+    public void testTransferAbortsWhenTheCommitCannotBeLogged() throws IOException {
+        assertEquals(TransactionStatus.SUCCESS, cluster.tryTransfer(a0, a1, 100.0));
+        cluster.log().close();
+
+        assertEquals(TransactionStatus.NODE_UNAVAILABLE, cluster.tryTransfer(a0, a1, 100.0));
+        assertEquals(900.0, cluster.getBalance(a0));
+        assertEquals(1100.0, cluster.getBalance(a1));
+        assertTrue(nodes[0].inDoubt(cluster.coordinatorId()).isEmpty());
+        assertTrue(nodes[1].inDoubt(cluster.coordinatorId()).isEmpty());
+    }
+
+    @Test
+    public void testNodeRequiresAnErrorHandler() {
+        assertThrows(IllegalArgumentException.class, () -> ShardNode.start(0, null, null));
+    }
+}
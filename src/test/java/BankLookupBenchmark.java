@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lookup latency of Bank.getAccount against the old linear scan over an ArrayList,
+ * at 1k, 100k and 10M accounts, with the caller's key strings reused or freshly made. Run with a large heap, e.g. -Xmx8g.
+ */
+public class BankLookupBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? parseSizes(args) : new int[] {1_000, 100_000, 10_000_000};
+        for (int accountCount : sizes) {
+            Bank bank = new Bank();
+            List<BankAccount> list = new ArrayList<>(accountCount);
+            String[] numbers = new String[accountCount];
+            for (int i = 0; i < accountCount; i++) {
+                BankAccount account = new BankAccount("ACC" + i, "Holder" + i, 1000.0);
+                numbers[i] = account.getAccountNumber();
+                bank.addAccount(account);
+                list.add(account);
+            }
+
+            BenchmarkRunner.run("getAccount indexed n=" + accountCount, t -> {
+                BankAccount found = bank.getAccount(numbers[ThreadLocalRandom.current().nextInt(accountCount)]);
+                return found == null ? 0 : 1;
+            });
+            // As numbers arrive off the wire: a new string each time, its hash not yet computed.
+            BenchmarkRunner.run("getAccount indexed, fresh key n=" + accountCount, t -> {
+                String number = new String(numbers[ThreadLocalRandom.current().nextInt(accountCount)]);
+                BankAccount found = bank.getAccount(number);
+                return found == null ? 0 : 1;
+            });
+            BenchmarkRunner.run("getAccount linear scan n=" + accountCount, t -> {
+                String accountNumber = numbers[ThreadLocalRandom.current().nextInt(accountCount)];
+                for (BankAccount account : list) {
+                    if (account.getAccountNumber().equals(accountNumber)) {
+                        return 1;
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class BankMetricsTest {
+
+    @BeforeEach
+    public void setUp() {
+        BankMetrics.reset();
+        BankMetrics.setSampling(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BankMetrics.setSampling(1024);
+        BankMetrics.setEnabled(true);
+        BankMetrics.reset();
+    }
+
+    @Test
+    public void testCountsRejectionReasons() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 500.0));
+        bank.addAccount(new BankAccount("C", "Carol", 50_000.0));
+        BankService service = new BankService(bank);
+
+        assertTrue(service.transfer("A", "B", 100.0));
+        assertFalse(service.transfer("A", "missing", 100.0));
+        assertFalse(service.transfer("A", "B", 5000.0));
+        assertFalse(service.transfer("A", "B", 880.0));
+        assertEquals(TransactionStatus.EXCEEDS_MAX_WITHDRAWAL, service.tryTransfer("C", "B", 20_000.0));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, service.tryTransfer("A", "B", -1.0));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, bank.getAccount("B").tryDeposit(0.0));
+
+        BankMetrics.Snapshot snapshot = BankMetrics.snapshot();
+        assertEquals(1, snapshot.rejections(BankMetrics.Operation.TRANSFER, TransactionStatus.ACCOUNT_NOT_FOUND));
+        assertEquals(1, snapshot.rejections(BankMetrics.Operation.TRANSFER, TransactionStatus.INSUFFICIENT_BALANCE));
+        assertEquals(1, snapshot.rejections(BankMetrics.Operation.TRANSFER, TransactionStatus.BELOW_MINIMUM_BALANCE));
+        assertEquals(1, snapshot.rejections(BankMetrics.Operation.TRANSFER, TransactionStatus.EXCEEDS_MAX_WITHDRAWAL));
+        assertEquals(1, snapshot.rejections(BankMetrics.Operation.TRANSFER, TransactionStatus.INVALID_AMOUNT));
+        assertEquals(1, snapshot.rejections(BankMetrics.Operation.DEPOSIT, TransactionStatus.INVALID_AMOUNT));
+        // The failed withdrawals made inside transfer() are counted as withdrawals too.
+        assertEquals(1, snapshot.rejections(BankMetrics.Operation.WITHDRAW, TransactionStatus.INSUFFICIENT_BALANCE));
+        assertEquals(6, snapshot.sampleCount(BankMetrics.Operation.TRANSFER));
+        assertTrue(snapshot.sampleCount(BankMetrics.Operation.GET_ACCOUNT) >= 12);
+        assertTrue(snapshot.percentileNanos(BankMetrics.Operation.TRANSFER, 99)
+                >= snapshot.percentileNanos(BankMetrics.Operation.TRANSFER, 50));
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        BankMetrics.setEnabled(false);
+        BankAccount account = new BankAccount("A", "Alice", 100.0);
+        account.tryDeposit(10.0);
+        account.tryWithdraw(1_000.0);
+        BankMetrics.Snapshot snapshot = BankMetrics.snapshot();
+        assertEquals(0, snapshot.sampleCount(BankMetrics.Operation.DEPOSIT));
+        assertEquals(0, snapshot.rejections(BankMetrics.Operation.WITHDRAW, TransactionStatus.INSUFFICIENT_BALANCE));
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000; value++) {
+            histogram.record(value * 1_000);
+        }
+        long[] buckets = histogram.snapshot();
+        long p50 = LatencyHistogram.percentile(buckets, 50);
+        long p99 = LatencyHistogram.percentile(buckets, 99);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50=" + p50);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 1.125, "p99=" + p99);
+        for (long value : new long[] {0, 15, 16, 17, 1_000_003, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket < LatencyHistogram.BUCKETS);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void testPeriodicDump() throws InterruptedException {
+        new BankAccount("A", "Alice", 100.0).tryWithdraw(1_000.0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScheduledExecutorService dump = BankMetrics.startDump(new PrintStream(bytes, true), 20);
+        try {
+            Thread.sleep(200);
+        } finally {
+            dump.shutdownNow();
+        }
+        String text = bytes.toString();
+        assertTrue(text.contains("WITHDRAW"), text);
+        assertTrue(text.contains("INSUFFICIENT_BALANCE=1"), text);
+    }
+
+    @Test
+    public void testInvalidSampling() {
+        assertThrows(IllegalArgumentException.class, () -> BankMetrics.setSampling(3));
+    }
+}
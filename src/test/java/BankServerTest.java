@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BankServerTest {
+    private Bank bank;
+    private BankServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        bank = new Bank();
+        server = BankServer.start(bank, 0);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testCreateAndOperate() throws Exception {
+        assertEquals(201, send("POST", "/accounts?number=A&holder=Alice&balance=1000").statusCode());
+        assertEquals(201, send("POST", "/accounts?number=B&holder=Bob&balance=500").statusCode());
+
+        assertEquals("SUCCESS", send("POST", "/accounts/A/deposit?amount=100").body());
+        assertEquals("SUCCESS", send("POST", "/accounts/B/withdraw?amount=50").body());
+        assertEquals("SUCCESS", send("POST", "/transfer?from=A&to=B&amount=200").body());
+
+        HttpResponse<String> balance = send("GET", "/accounts/A");
+        assertEquals(200, balance.statusCode());
+        assertEquals("900.0", balance.body());
+        assertEquals(650.0, bank.getAccount("B").getBalance());
+    }
+
+    @Test
+    public void testRejectionsAndErrors() throws Exception {
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+
+        HttpResponse<String> rejected = send("POST", "/accounts/A/withdraw?amount=995");
+        assertEquals(422, rejected.statusCode());
+        assertEquals("BELOW_MINIMUM_BALANCE", rejected.body());
+        assertEquals(404, send("GET", "/accounts/missing").statusCode());
+        assertEquals(404, send("POST", "/transfer?from=A&to=missing&amount=1").statusCode());
+        assertEquals(400, send("POST", "/accounts/A/deposit?amount=abc").statusCode());
+        assertEquals(400, send("POST", "/accounts?number=C&balance=-5").statusCode());
+        assertEquals(404, send("GET", "/unknown").statusCode());
+    }
+
+    @Test
+    public void testEncodedAccountNumber() throws Exception {
+        assertEquals(201, send("POST", "/accounts?number=AB%2012&holder=Jo&balance=10").statusCode());
+        assertEquals("10.0", send("GET", "/accounts/AB%2012").body());
+    }
+
+    @Test
+    public void testLoadGeneratorReportsThroughput() throws Exception {
+        for (int i = 0; i < 10_000; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, "Holder", 1000.0));
+        }
+        String report = new LoadGenerator(server.port(), 200).run(4);
+        assertTrue(report.contains("connections=4"), report);
+        assertTrue(report.endsWith("failures=0"), report);
+    }
+
+    @Test
+    public void testAcceptFailuresBackOff() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failures = new AtomicInteger();
+        Thread loop = new Thread(() -> AcceptLoop.run(running::get, () -> {
+            throw new IOException("Too many open files");
+        }, null, connection -> fail("Nothing was accepted"), e -> failures.incrementAndGet()));
+        loop.start();
+        Thread.sleep(500);
+        running.set(false);
+        loop.join(5000);
+
+        assertFalse(loop.isAlive());
+        // 10 + 20 + 40 + 80 + 160 ms of backoff fit in half a second; a spinning loop fails millions of times
+        assertTrue(failures.get() >= 2 && failures.get() <= 7, "failures: " + failures.get());
+    }
+
+    @Test
+    public void testFailedHandoffClosesTheConnectionAndKeepsAccepting() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<AtomicBoolean> closed = new ArrayList<>();
+        Set<Closeable> connections = ConcurrentHashMap.newKeySet();
+        List<Throwable> errors = new ArrayList<>();
+        AtomicInteger served = new AtomicInteger();
+        AcceptLoop.run(running::get, () -> {
+            AtomicBoolean flag = new AtomicBoolean();
+            closed.add(flag);
+            return () -> flag.set(true);
+        }, connections, connection -> {
+            if (closed.size() == 1) {
+                throw new OutOfMemoryError("unable to create native thread");
+            }
+            served.incrementAndGet();
+            running.set(false);
+        }, errors::add);
+
+        assertEquals(2, closed.size());
+        assertTrue(closed.get(0).get());
+        assertFalse(closed.get(1).get());
+        assertEquals(1, connections.size());
+        assertEquals(1, served.get());
+        assertEquals(1, errors.size());
+        assertInstanceOf(OutOfMemoryError.class, errors.get(0));
+    }
+
+    @Test
+    public void testNullErrorHandlerIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> BankServer.start(bank, 0, null));
+    }
+}
@@ -133,4 +133,24 @@ public class BankServiceMockitoTest {
         verify(mockFromAccount, times(1)).withdraw(250.0);
         verify(mockToAccount, times(1)).deposit(250.0);
     }
+
+    @Test
+    public void testTransferDepositFailureRollsBackWithdrawal() {
+        Bank mockBank = mock(Bank.class);
+        BankAccount mockFromAccount = mock(BankAccount.class);
+        BankAccount mockToAccount = mock(BankAccount.class);
+
+        when(mockBank.getAccount("from")).thenReturn(mockFromAccount);
+        when(mockBank.getAccount("to")).thenReturn(mockToAccount);
+
+        doNothing().when(mockFromAccount).withdraw(100.0);
+        doThrow(new IllegalArgumentException("Deposit error")).when(mockToAccount).deposit(100.0);
+
+        BankService bankService = new BankService(mockBank);
+        boolean result = bankService.transfer("from", "to", 100.0);
+        assertFalse(result);
+
+        verify(mockFromAccount, times(1)).withdraw(100.0);
+        verify(mockFromAccount, times(1)).deposit(100.0);
+    }
 }
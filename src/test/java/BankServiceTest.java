@@ -0,0 +1,240 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BankServiceTest {
+
+    @Test
+    public void testTransferMovesMoney() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 500.0));
+        BankService service = new BankService(bank);
+        assertTrue(service.transfer("A", "B", 200.0));
+        assertEquals(800.0, bank.getAccount("A").getBalance());
+        assertEquals(700.0, bank.getAccount("B").getBalance());
+    }
+
+    @Test
+    public void testTransferRollsBackWhenDepositFails() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 5000.0));
+        // Close enough to the largest representable balance that any deposit overflows.
+        bank.addAccount(new BankAccount("B", "Bob", 922_337_203_685_000.0));
+        BankService service = new BankService(bank);
+        assertFalse(service.transfer("A", "B", 1000.0));
+        assertEquals(5000.0, bank.getAccount("A").getBalance());
+        assertEquals(922_337_203_685_000.0, bank.getAccount("B").getBalance());
+    }
+
+    @Test
+    public void testOpposingConcurrentTransfersConserveMoney() throws InterruptedException {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 100_000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 100_000.0));
+        BankService service = new BankService(bank);
+        Thread[] workers = new Thread[8];
+        for (int t = 0; t < workers.length; t++) {
+            boolean forward = t % 2 == 0;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    if (forward) {
+                        service.transfer("A", "B", 3.0);
+                    } else {
+                        service.transfer("B", "A", 3.0);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join(10_000);
+            assertFalse(worker.isAlive(), "transfer threads should not deadlock");
+        }
+        double total = bank.getAccount("A").getBalance() + bank.getAccount("B").getBalance();
+        assertEquals(200_000.0, total);
+    }
+
+    @Test
+    public void testTryTransferReportsReason() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 500.0));
+        BankService service = new BankService(bank);
+        assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, service.tryTransfer("A", "X", 10.0));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, service.tryTransfer("A", "B", -10.0));
+        assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, service.tryTransfer("A", "B", 990.0));
+        assertEquals(TransactionStatus.INSUFFICIENT_BALANCE, service.tryTransfer("B", "A", 600.0));
+        assertEquals(TransactionStatus.SUCCESS, service.tryTransfer("A", "B", 100.0));
+        assertEquals(900.0, bank.getAccount("A").getBalance());
+        assertEquals(600.0, bank.getAccount("B").getBalance());
+    }
+
+    @Test
+    public void testTransferBatchAppliesRulesInInstructionOrder() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 100.0));
+        bank.addAccount(new BankAccount("B", "Bob", 300.0));
+        BankService service = new BankService(bank);
+
+        TransactionStatus[] results = service.transferBatch(Arrays.asList(
+                new TransferInstruction("A", "B", 80.0),   // A would drop to 20
+                new TransferInstruction("B", "A", 150.0),  // A now 250, B 150
+                new TransferInstruction("A", "B", 80.0),   // A now 170, B 230
+                new TransferInstruction("A", "X", 10.0),
+                new TransferInstruction("A", "B", 0.0),
+                new TransferInstruction("B", "A", 20_000.0)));
+
+        assertArrayEquals(new TransactionStatus[] {
+                TransactionStatus.BELOW_MINIMUM_BALANCE,
+                TransactionStatus.SUCCESS,
+                TransactionStatus.SUCCESS,
+                TransactionStatus.ACCOUNT_NOT_FOUND,
+                TransactionStatus.INVALID_AMOUNT,
+                TransactionStatus.INSUFFICIENT_BALANCE}, results);
+        assertEquals(170.0, bank.getAccount("A").getBalance());
+        assertEquals(230.0, bank.getAccount("B").getBalance());
+    }
+
+    @Test
+    public void testTransferBatchNetsOffsettingMovements() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 1000.0));
+        bank.addAccount(new BankAccount("C", "Carol", 1000.0));
+        BankService service = new BankService(bank);
+
+        TransactionStatus[] results = service.transferBatch(Arrays.asList(
+                new TransferInstruction("A", "B", 300.0),
+                new TransferInstruction("B", "C", 300.0),
+                new TransferInstruction("C", "A", 100.0)));
+
+        for (TransactionStatus status : results) {
+            assertEquals(TransactionStatus.SUCCESS, status);
+        }
+        assertEquals(800.0, bank.getAccount("A").getBalance());
+        assertEquals(1000.0, bank.getAccount("B").getBalance());
+        assertEquals(1200.0, bank.getAccount("C").getBalance());
+    }
+
+    @Test
+    public void testTransferBatchFallsBackWhenBalancesKeepChanging() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 1000.0));
+        bank.addAccount(new BankAccount("C", "Carol", 1000.0));
+        BankAccount b = bank.getAccount("B");
+        int[] deposits = new int[1];
+        // Every debit of A is followed by an unlocked deposit to B, so the net write to B always misses.
+        bank.addListener(new BankListener() {
+            @Override
+            public void accountAdded(BankAccount account, long accountId) {
+            }
+
+            @Override
+            public void accountRemoved(BankAccount account, long accountId) {
+            }
+
+            @Override
+            public void balanceChanged(BankAccount account, long accountId, long deltaUnits) {
+                if (account.getAccountNumber().equals("A") && deltaUnits < 0) {
+                    deposits[0]++;
+                    b.deposit(1.0);
+                }
+            }
+        });
+        BankService service = new BankService(bank);
+
+        TransactionStatus[] results = service.transferBatch(Arrays.asList(
+                new TransferInstruction("A", "C", 100.0),
+                new TransferInstruction("B", "C", 100.0),
+                new TransferInstruction("B", "A", 5_000.0)));
+
+        assertArrayEquals(new TransactionStatus[] {
+                TransactionStatus.SUCCESS,
+                TransactionStatus.SUCCESS,
+                TransactionStatus.INSUFFICIENT_BALANCE}, results);
+        assertTrue(deposits[0] > 1);
+        assertEquals(900.0, bank.getAccount("A").getBalance());
+        assertEquals(900.0 + deposits[0], b.getBalance());
+        assertEquals(1200.0, bank.getAccount("C").getBalance());
+    }
+
+    @Test
+    public void testAsyncOperations() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 500.0));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BankService service = new BankService(bank, executor);
+            assertEquals(TransactionStatus.SUCCESS, service.transferAsync("A", "B", 200.0).join());
+            assertEquals(TransactionStatus.SUCCESS, service.depositAsync("A", 50.0).join());
+            assertEquals(TransactionStatus.SUCCESS, service.withdrawAsync("B", 100.0).join());
+            assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, service.withdrawAsync("A", 845.0).join());
+            assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, service.depositAsync("missing", 1.0).join());
+            assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, service.transferAsync("A", "missing", 1.0).join());
+            assertEquals(850.0, bank.getAccount("A").getBalance());
+            assertEquals(600.0, bank.getAccount("B").getBalance());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncTransfersOnHotAccountConserveMoney() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("HOT", "Hot", 1_000_000.0));
+        for (int i = 0; i < 16; i++) {
+            bank.addAccount(new BankAccount("C" + i, "Cold", 1000.0));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BankService service = new BankService(bank, executor);
+            List<CompletableFuture<TransactionStatus>> results = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                results.add(i % 2 == 0
+                        ? service.transferAsync("HOT", "C" + (i % 16), 1.0)
+                        : service.transferAsync("C" + (i % 16), "HOT", 1.0));
+            }
+            results.forEach(result -> assertEquals(TransactionStatus.SUCCESS, result.join()));
+        } finally {
+            executor.shutdown();
+        }
+        double total = 0;
+        for (BankAccount account : bank.getAccounts()) {
+            total += account.getBalance();
+        }
+        assertEquals(1_016_000.0, total);
+    }
+
+    @Test
+    public void testNullExecutorRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BankService(new Bank(), null));
+    }
+
+    @Test
+    public void testKeyedTransferRetryDoesNotMoveMoneyAgain() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 500.0));
+        BankService service = new BankService(bank);
+        assertTrue(service.transfer("key-1", "A", "B", 200.0));
+        assertTrue(service.transfer("key-1", "A", "B", 200.0));
+        assertEquals(TransactionStatus.SUCCESS, service.tryTransfer("key-1", "A", "B", 200.0));
+        assertEquals(800.0, bank.getAccount("A").getBalance());
+
+        assertEquals(TransactionStatus.INSUFFICIENT_BALANCE, service.tryTransfer("key-2", "B", "A", 5000.0));
+        bank.getAccount("B").deposit(10_000.0);
+        assertEquals(TransactionStatus.INSUFFICIENT_BALANCE, service.tryTransfer("key-2", "B", "A", 5000.0));
+        assertEquals(10_700.0, bank.getAccount("B").getBalance());
+        assertEquals(TransactionStatus.IDEMPOTENCY_KEY_REUSED, service.tryTransfer("key-1", "A", "B", 300.0));
+        assertEquals(800.0, bank.getAccount("A").getBalance());
+        assertThrows(IllegalArgumentException.class, () -> service.tryTransfer("", "A", "B", 1.0));
+    }
+}
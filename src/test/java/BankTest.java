@@ -1,6 +1,10 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class BankTest {
 
@@ -63,6 +67,57 @@ public class BankTest {
         assertNotEquals(0, bank.getAccounts().size());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "columnar"})
+    public void testEveryChangeToGetAccountsCopiesIt(String kind) {
+        Bank bank = kind.equals("columnar") ? new ColumnarBank() : new Bank();
+        for (int i = 0; i < 5; i++) {
+            bank.addAccount(new BankAccount("N" + i, "Holder", 100.0 + i));
+        }
+        bank.removeAccount("N1");
+        List<Consumer<List<BankAccount>>> changes = List.of(
+                list -> assertTrue(list.remove(bank.getAccount("N2"))),
+                list -> assertTrue(list.removeIf(account -> account.getAccountNumber().equals("N2"))),
+                list -> assertTrue(list.removeAll(List.of(bank.getAccount("N2")))),
+                list -> assertTrue(list.retainAll(List.of(bank.getAccount("N0"), bank.getAccount("N3"), bank.getAccount("N4")))),
+                list -> {
+                    Iterator<BankAccount> it = list.iterator();
+                    while (it.hasNext()) {
+                        if (it.next().getAccountNumber().equals("N2")) {
+                            it.remove();
+                        }
+                    }
+                });
+        for (Consumer<List<BankAccount>> change : changes) {
+            List<BankAccount> accounts = bank.getAccounts();
+            change.accept(accounts);
+            assertEquals(List.of("N0", "N3", "N4"), accounts.stream().map(BankAccount::getAccountNumber).toList());
+            assertEquals(4, bank.getAccounts().size());
+            assertNotNull(bank.getAccount("N2"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "columnar"})
+    public void testGetAccountsIsAPointInTime(String kind) {
+        Bank bank = kind.equals("columnar") ? new ColumnarBank() : new Bank();
+        for (int i = 0; i < 4; i++) {
+            bank.addAccount(new BankAccount("N" + i, "Holder", 100.0));
+        }
+        bank.removeAccount("N0");
+        List<BankAccount> before = bank.getAccounts();
+        bank.removeAccount("N2");
+        bank.addAccount(new BankAccount("N4", "Holder", 100.0));
+
+        assertEquals(3, before.size());
+        assertEquals("N1", before.get(0).getAccountNumber());
+        assertEquals("N2", before.get(1).getAccountNumber());
+        assertEquals("N3", before.get(2).getAccountNumber());
+        assertEquals(List.of("N1", "N2", "N3"), before.stream().map(BankAccount::getAccountNumber).toList());
+        assertThrows(IndexOutOfBoundsException.class, () -> before.get(3));
+        assertEquals(List.of("N1", "N3", "N4"), bank.getAccounts().stream().map(BankAccount::getAccountNumber).toList());
+    }
+
     @Test
     public void testRemoveNonExistingAccount() {
         Bank bank = new Bank();
@@ -169,4 +224,103 @@ public class BankTest {
         // Check that both accounts exist (assuming duplicates are allowed).
         assertEquals(2, bank.getAccounts().size());
     }
+
+    @Test
+    public void testGetAccountReturnsFirstDuplicate() {
+        Bank bank = new Bank();
+        BankAccount account1 = new BankAccount("H1", "First", 100.0);
+        BankAccount account2 = new BankAccount("H1", "Second", 200.0);
+        bank.addAccount(account1);
+        bank.addAccount(account2);
+        assertSame(account1, bank.getAccount("H1"));
+    }
+
+    @Test
+    public void testRemoveAccountRemovesAllDuplicates() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("I1", "First", 100.0));
+        bank.addAccount(new BankAccount("I2", "Other", 150.0));
+        bank.addAccount(new BankAccount("I1", "Second", 200.0));
+        bank.removeAccount("I1");
+        List<BankAccount> remaining = bank.getAccounts();
+        assertEquals(1, remaining.size());
+        assertEquals("I2", remaining.get(0).getAccountNumber());
+        assertNull(bank.getAccount("I1"));
+    }
+
+    @Test
+    public void testOrderPreservedAfterRemoveAndReAdd() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("J1", "First", 100.0));
+        bank.addAccount(new BankAccount("J2", "Second", 200.0));
+        bank.removeAccount("J1");
+        bank.addAccount(new BankAccount("J1", "Third", 300.0));
+        List<BankAccount> accounts = bank.getAccounts();
+        assertEquals("J2", accounts.get(0).getAccountNumber());
+        assertEquals("J1", accounts.get(1).getAccountNumber());
+        assertEquals("Third", bank.getAccount("J1").getAccountHolder());
+    }
+
+    @Test
+    public void testGetAccountNullNumber() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("K1", "User", 100.0));
+        assertNull(bank.getAccount(null));
+    }
+
+    @Test
+    public void testGetAccountsIsAConsistentSnapshot() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("L1", "First", 100.0));
+        bank.addAccount(new BankAccount("L2", "Second", 200.0));
+        List<BankAccount> before = bank.getAccounts();
+        bank.removeAccount("L1");
+        bank.addAccount(new BankAccount("L3", "Third", 300.0));
+
+        assertEquals(2, before.size());
+        assertEquals("L1", before.get(0).getAccountNumber());
+        assertEquals("L2", before.get(1).getAccountNumber());
+        List<BankAccount> after = bank.getAccounts();
+        assertEquals("L2", after.get(0).getAccountNumber());
+        assertEquals("L3", after.get(1).getAccountNumber());
+    }
+
+    @Test
+    public void testGetAccountsModifiedListIsIsolated() {
+        Bank bank = new Bank();
+        BankAccount first = new BankAccount("M1", "First", 100.0);
+        bank.addAccount(first);
+        List<BankAccount> accounts = bank.getAccounts();
+        accounts.add(new BankAccount("M2", "Other", 50.0));
+        accounts.remove(first);
+
+        assertEquals(1, accounts.size());
+        assertEquals("M2", accounts.get(0).getAccountNumber());
+        assertEquals(1, bank.getAccounts().size());
+        assertNull(bank.getAccount("M2"));
+    }
+
+    @Test
+    public void testFindByHolder() {
+        Bank bank = new Bank();
+        BankAccount first = new BankAccount("1", "Smith, Anna", 100.0);
+        BankAccount second = new BankAccount("2", "Smith, Anna", 200.0);
+        BankAccount other = new BankAccount("3", "Smithers", 300.0);
+        bank.addAccount(first);
+        bank.addAccount(other);
+        bank.addAccount(second);
+        bank.addAccount(new BankAccount("4", "Jones", 400.0));
+        bank.addAccount(new BankAccount("5", null, 500.0));
+
+        assertEquals(List.of(first, second), bank.findByHolder("Smith, Anna"));
+        assertEquals(List.of(first, second, other), bank.findByHolderPrefix("Smith", 10));
+        assertEquals(List.of(first), bank.findByHolderPrefix("Smith", 1));
+        assertTrue(bank.findByHolder("smith, anna").isEmpty());
+        assertTrue(bank.findByHolder(null).isEmpty());
+        assertEquals(4, bank.findByHolderPrefix("", 10).size());
+
+        bank.removeAccount("1");
+        assertEquals(List.of(second), bank.findByHolder("Smith, Anna"));
+        assertThrows(IllegalArgumentException.class, () -> bank.findByHolderPrefix("S", 0));
+    }
 }
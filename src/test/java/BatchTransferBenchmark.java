@@ -0,0 +1,45 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Settlement throughput of transferBatch against looping over transfer, for a payment
+ * file of 100k instructions over 10k accounts.
+ */
+public class BatchTransferBenchmark {
+    private static final int ACCOUNTS = 10_000;
+    private static final int BATCH_SIZE = 100_000;
+
+    public static void main(String[] args) {
+        Bank bank = new Bank();
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = "ACC" + i;
+            bank.addAccount(new BankAccount(numbers[i], "Holder" + i, 1_000_000.0));
+        }
+        BankService service = new BankService(bank);
+
+        List<TransferInstruction> batch = new ArrayList<>(BATCH_SIZE);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new TransferInstruction(numbers[random.nextInt(ACCOUNTS)],
+                    numbers[random.nextInt(ACCOUNTS)], 1 + random.nextInt(100)));
+        }
+
+        BenchmarkRunner.Result looped = BenchmarkRunner.run("transfer loop, batch=" + BATCH_SIZE, t -> {
+            long ok = 0;
+            for (TransferInstruction instruction : batch) {
+                if (service.transfer(instruction.getFromAccountNumber(), instruction.getToAccountNumber(),
+                        instruction.getAmount())) {
+                    ok++;
+                }
+            }
+            return ok;
+        });
+        BenchmarkRunner.Result batched = BenchmarkRunner.run("transferBatch, batch=" + BATCH_SIZE, t ->
+                service.transferBatch(batch).length);
+
+        System.out.printf("instructions/s: loop %,.0f  batch %,.0f%n",
+                looped.opsPerSecond() * BATCH_SIZE, batched.opsPerSecond() * BATCH_SIZE);
+    }
+}
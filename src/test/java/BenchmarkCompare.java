@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares two result files written by {@link BenchmarkSuite} and lists every benchmark
+ * whose throughput dropped by more than the threshold (default 10%). Exits with status 1
+ * if any did, so it can gate a release build.
+ *
+ * <pre>
+ * java -cp target/test-classes BenchmarkCompare baseline.json results.json [thresholdPercent]
+ * </pre>
+ */
+public class BenchmarkCompare {
+    private static final Pattern RESULT = Pattern.compile(
+            "\"name\": \"((?:[^\"\\\\]|\\\\.)*)\", \"threads\": (\\d+),.*\"opsPerSecond\": ([0-9.]+)");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkCompare <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        Map<String, Double> baseline = read(Path.of(args[0]));
+        Map<String, Double> current = read(Path.of(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null || before == 0) {
+                continue;
+            }
+            double change = (entry.getValue() - before) * 100.0 / before;
+            boolean regressed = change < -threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-64s %+7.1f%%%s%n", entry.getKey(), change, regressed ? "  REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Double> read(Path path) throws IOException {
+        Map<String, Double> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(path)) {
+            Matcher m = RESULT.matcher(line);
+            if (m.find()) {
+                results.put(m.group(1) + " threads=" + m.group(2), Double.parseDouble(m.group(3)));
+            }
+        }
+        return results;
+    }
+}
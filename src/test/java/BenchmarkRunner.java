@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Minimal timing harness for the *Benchmark mains under src/test/java.
+ * Each worker thread calls the operation in a tight loop (passing its thread index)
+ * for a warmup period and then a measurement period. The default periods can be set with
+ * {@code -Dbench.warmupMillis} and {@code -Dbench.measureMillis}.
+ */
+public final class BenchmarkRunner {
+    static final long WARMUP_MILLIS = Long.getLong("bench.warmupMillis", 1000);
+    static final long MEASURE_MILLIS = Long.getLong("bench.measureMillis", 2000);
+
+    private static final List<Result> RESULTS = new ArrayList<>();
+    private static volatile long sink;
+
+    private BenchmarkRunner() {
+    }
+
+    public static Result run(String name, int threads, long warmupMillis, long measureMillis, IntToLongFunction op) {
+        runPhase(threads, warmupMillis, op);
+        long[] totals = runPhase(threads, measureMillis, op);
+        Result result = new Result(name, threads, totals[0], totals[1]);
+        System.out.println(result);
+        synchronized (RESULTS) {
+            RESULTS.add(result);
+        }
+        return result;
+    }
+
+    public static Result run(String name, int threads, IntToLongFunction op) {
+        return run(name, threads, WARMUP_MILLIS, MEASURE_MILLIS, op);
+    }
+
+    public static Result run(String name, IntToLongFunction op) {
+        return run(name, 1, op);
+    }
+
+    /** Writes every result recorded so far as a JSON array, one result object per line. */
+    public static void writeJson(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        List<Result> results;
+        synchronized (RESULTS) {
+            results = new ArrayList<>(RESULTS);
+        }
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                out.write(results.get(i).toJson());
+                out.write(i + 1 < results.size() ? ",\n" : "\n");
+            }
+            out.write("]\n");
+        }
+    }
+
+    private static long[] runPhase(int threads, long millis, IntToLongFunction op) {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        LongAdder operations = new LongAdder();
+        for (int t = 0; t < threads; t++) {
+            int threadIndex = t;
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                long local = 0;
+                try {
+                    start.await();
+                    while (running.get()) {
+                        local += op.applyAsLong(threadIndex);
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    operations.add(count);
+                    sink += local;
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            Thread.sleep(millis);
+            running.set(false);
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new long[] {operations.sum(), System.nanoTime() - begin};
+    }
+
+    public static final class Result {
+        public final String name;
+        public final int threads;
+        public final long operations;
+        public final long elapsedNanos;
+
+        Result(String name, int threads, long operations, long elapsedNanos) {
+            this.name = name;
+            this.threads = threads;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double opsPerSecond() {
+            return operations * 1e9 / elapsedNanos;
+        }
+
+        public double nanosPerOp() {
+            return operations == 0 ? 0 : (double) elapsedNanos * threads / operations;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"name\": \"%s\", \"threads\": %d, \"operations\": %d, \"elapsedNanos\": %d, "
+                            + "\"opsPerSecond\": %.1f, \"nanosPerOp\": %.2f}",
+                    name.replace("\\", "\\\\").replace("\"", "\\\""), threads, operations, elapsedNanos,
+                    opsPerSecond(), nanosPerOp());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-48s threads=%-3d %,16.0f ops/s %,12.1f ns/op",
+                    name, threads, opsPerSecond(), nanosPerOp());
+        }
+    }
+}
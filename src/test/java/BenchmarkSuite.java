@@ -0,0 +1,32 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Runs the in-memory hot-path benchmarks and writes their results as JSON, for the
+ * {@code bench} Maven profile:
+ *
+ * <pre>
+ * mvn -B -Pbench -DskipTests verify
+ * </pre>
+ *
+ * Results go to {@code target/benchmarks/results.json} (or the first argument). Compare two
+ * runs with {@link BenchmarkCompare}. {@code -Dbench.accounts=1000,100000,10000000} sets the
+ * book sizes used for lookups and getAccounts().
+ */
+public class BenchmarkSuite {
+
+    public static void main(String[] args) throws IOException {
+        Path output = Path.of(args.length > 0 ? args[0] : "target/benchmarks/results.json");
+        String[] sizes = System.getProperty("bench.accounts", "1000,100000,1000000").split(",");
+
+        BankLookupBenchmark.main(sizes);
+        GetAccountsBenchmark.main(sizes);
+        BalanceContentionBenchmark.main(new String[0]);
+        TransferContentionBenchmark.main(new String[0]);
+        RejectionPathBenchmark.main(new String[0]);
+        BatchTransferBenchmark.main(new String[0]);
+
+        BenchmarkRunner.writeJson(output);
+        System.out.println("Results written to " + output.toAbsolutePath());
+    }
+}
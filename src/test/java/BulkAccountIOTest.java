@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BulkAccountIOTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testCsvImportReportsBadRowsAndContinues() throws IOException {
+        Path file = dir.resolve("accounts.csv");
+        Files.writeString(file, "accountNumber,accountHolder,balance\n"
+                + "A1,Alice,1000.50\n"
+                + "A2,\"Smith, \"\"Jo\"\"\",0.00005\r\n"
+                + "A3,Bob,-5\n"
+                + "\n"
+                + "A4,Carol,12x\n"
+                + "A5,Dan\n"
+                + ",Nobody,10\n"
+                + "A6,,7\n"
+                + "A7,\"\",8", StandardCharsets.UTF_8);
+        Bank bank = new Bank();
+        BulkAccountIO.ImportReport report = BulkAccountIO.importCsv(file, bank);
+
+        assertEquals(4, report.getImported());
+        assertEquals(4, report.getRejected());
+        assertEquals(List.of("line 4: Initial balance cannot be negative", "line 6: Invalid balance",
+                "line 7: Expected 3 fields but found 2", "line 8: Account number cannot be null"), report.getErrors());
+        assertEquals(1000.5, bank.getAccount("A1").getBalance());
+        assertEquals("Smith, \"Jo\"", bank.getAccount("A2").getAccountHolder());
+        assertEquals(0.0001, bank.getAccount("A2").getBalance());
+        assertNull(bank.getAccount("A6").getAccountHolder());
+        assertEquals("", bank.getAccount("A7").getAccountHolder());
+        assertNull(bank.getAccount("A3"));
+    }
+
+    @Test
+    public void testCsvAndBinaryRoundTrip() throws IOException {
+        Bank bank = new Bank();
+        for (int i = 0; i < 20_000; i++) {
+            String holder = i % 3 == 0 ? null : i % 3 == 1 ? "Holder, " + i : "J\u00fcrgen \u4e2d" + i;
+            bank.addAccount(new BankAccount("ACC" + i, holder, i + 0.1234));
+        }
+        for (String format : new String[] {"csv", "bin"}) {
+            Path file = dir.resolve("export." + format);
+            long exported = format.equals("csv") ? BulkAccountIO.exportCsv(bank, file)
+                    : BulkAccountIO.exportBinary(bank, file);
+            assertEquals(20_000, exported);
+
+            Bank copy = new ColumnarBank();
+            BulkAccountIO.ImportReport report = format.equals("csv") ? BulkAccountIO.importCsv(file, copy)
+                    : BulkAccountIO.importBinary(file, copy);
+            assertEquals(20_000, report.getImported(), format);
+            assertEquals(0, report.getRejected(), format);
+            List<BankAccount> originals = bank.getAccounts();
+            List<BankAccount> copies = copy.getAccounts();
+            for (int i = 0; i < originals.size(); i++) {
+                assertEquals(originals.get(i).getAccountNumber(), copies.get(i).getAccountNumber());
+                assertEquals(originals.get(i).getAccountHolder(), copies.get(i).getAccountHolder());
+                assertEquals(originals.get(i).getBalance(), copies.get(i).getBalance());
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryImportStopsAtTruncatedRecord() throws IOException {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 10.0));
+        bank.addAccount(new BankAccount("B", "Bob", 20.0));
+        Path file = dir.resolve("accounts.bin");
+        BulkAccountIO.exportBinary(bank, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        List<BankAccount> imported = new ArrayList<>();
+        BulkAccountIO.ImportReport report = BulkAccountIO.importBinary(file, imported::add);
+        assertEquals(1, imported.size());
+        assertEquals(List.of("record 2: Truncated record; import stopped"), report.getErrors());
+
+        Files.write(file, ByteBuffer.allocate(8).putInt(1).putInt(1).array());
+        assertEquals(List.of("Not an account file"), BulkAccountIO.importBinary(file, imported::add).getErrors());
+    }
+
+    @Test
+    public void testRecordsSpanningBufferBoundaries() throws IOException {
+        Path file = dir.resolve("wide.csv");
+        StringBuilder csv = new StringBuilder();
+        String holder = "x".repeat(700);
+        for (int i = 0; i < 5000; i++) {
+            csv.append("N").append(i).append(",\"").append(holder).append("\n").append(i).append("\",")
+                    .append(i).append(".5\n");
+        }
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        List<BankAccount> imported = new ArrayList<>();
+        BulkAccountIO.ImportReport report = BulkAccountIO.importCsv(file, imported::add);
+        assertEquals(5000, report.getImported());
+        assertEquals(holder + "\n4999", imported.get(4999).getAccountHolder());
+        assertEquals(4999.5, imported.get(4999).getBalance());
+    }
+}
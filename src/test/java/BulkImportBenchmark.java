@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Import throughput in records/sec. Writes a CSV and a binary file of {@code rows} accounts
+ * (default 50M; about 1.7 GB and 1.9 GB) to a temporary directory, parses both into a counting
+ * sink, then imports the first {@code bankRows} (default 5M) into a ColumnarBank end to end.
+ * {@code BulkImportBenchmark [rows] [bankRows]}.
+ */
+public class BulkImportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 50_000_000L;
+        int bankRows = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        Path dir = Files.createTempDirectory("bulk-import");
+        Path csv = dir.resolve("accounts.csv");
+        Path binary = dir.resolve("accounts.bin");
+        Path smallCsv = dir.resolve("bank.csv");
+        try {
+            write(csv, binary, rows);
+            write(smallCsv, null, bankRows);
+            System.out.printf("files: csv %,d MB, binary %,d MB%n", Files.size(csv) >> 20, Files.size(binary) >> 20);
+
+            LongAdder sink = new LongAdder();
+            long start = System.nanoTime();
+            BulkAccountIO.ImportReport report = BulkAccountIO.importCsv(csv, account -> sink.increment());
+            print("parse CSV", report, System.nanoTime() - start);
+            start = System.nanoTime();
+            report = BulkAccountIO.importBinary(binary, account -> sink.increment());
+            print("parse binary", report, System.nanoTime() - start);
+
+            Bank bank = new ColumnarBank();
+            start = System.nanoTime();
+            report = BulkAccountIO.importCsv(smallCsv, bank);
+            print("import CSV into ColumnarBank", report, System.nanoTime() - start);
+            Path export = dir.resolve("export.bin");
+            start = System.nanoTime();
+            long exported = BulkAccountIO.exportBinary(bank, export);
+            System.out.printf("%-32s %,d records in %,d ms: %,.0f records/s%n", "export binary from ColumnarBank",
+                    exported, (System.nanoTime() - start) / 1_000_000, exported * 1e9 / (System.nanoTime() - start));
+            Files.delete(export);
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(smallCsv);
+            Files.delete(dir);
+        }
+    }
+
+    private static void print(String name, BulkAccountIO.ImportReport report, long nanos) {
+        System.out.printf("%-32s %,d records in %,d ms: %,.0f records/s (%d rejected)%n", name,
+                report.getImported(), nanos / 1_000_000, report.getImported() * 1e9 / nanos, report.getRejected());
+    }
+
+    // One row in 1000 has a negative balance, so the error path is exercised too.
+    private static void write(Path csvFile, Path binaryFile, long rows) throws IOException {
+        try (FileChannel csvOut = FileChannel.open(csvFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel binaryOut = binaryFile == null ? null : FileChannel.open(binaryFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer text = ByteBuffer.allocateDirect(1 << 20);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(1 << 20);
+            text.put("accountNumber,accountHolder,balance\n".getBytes(StandardCharsets.US_ASCII));
+            bytes.putInt(BulkAccountIO.MAGIC).putInt(BulkAccountIO.VERSION);
+            for (long i = 0; i < rows; i++) {
+                String number = "ACC" + i;
+                String holder = "Holder " + (i % 1_000_000);
+                long units = i % 1000 == 999 ? -1 : i % 100_000_000;
+                if (text.remaining() < 128) {
+                    drain(text, csvOut);
+                }
+                String fraction = Long.toString(Math.abs(units % 10_000) + 10_000).substring(1);
+                text.put((number + "," + holder + "," + (units < 0 ? "-" : "") + Math.abs(units / 10_000) + "."
+                        + fraction + "\n").getBytes(StandardCharsets.US_ASCII));
+                if (binaryOut != null) {
+                    if (bytes.remaining() < 128) {
+                        drain(bytes, binaryOut);
+                    }
+                    byte[] n = number.getBytes(StandardCharsets.US_ASCII);
+                    byte[] h = holder.getBytes(StandardCharsets.US_ASCII);
+                    bytes.putInt(n.length).put(n).putInt(h.length).put(h).putLong(units);
+                }
+            }
+            drain(text, csvOut);
+            if (binaryOut != null) {
+                drain(bytes, binaryOut);
+            }
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
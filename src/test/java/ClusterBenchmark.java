@@ -0,0 +1,94 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Transfer throughput of a cluster of 1, 2 and 4 {@link ShardNode} processes on loopback,
+ * each journaling to its own directory. Two workloads per size: transfers between accounts
+ * of the same node, and transfers between random accounts, of which (n-1)/n cross nodes and
+ * take a two-phase commit. {@code ClusterBenchmark [accounts] [threads]}, default 100k and 32.
+ */
+public class ClusterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        for (int size : new int[] {1, 2, 4}) {
+            Path dir = Files.createTempDirectory("cluster-bench");
+            List<Process> processes = new ArrayList<>();
+            try {
+                List<InetSocketAddress> addresses = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    Process process = startNode(dir.resolve("node" + i));
+                    processes.add(process);
+                    addresses.add(new InetSocketAddress("127.0.0.1", readPort(process)));
+                }
+                try (BankCluster cluster = BankCluster.open(addresses, dir.resolve("coordinator.log"), 1)) {
+                    run(cluster, accounts, threads);
+                }
+            } finally {
+                for (Process process : processes) {
+                    process.destroyForcibly().waitFor();
+                }
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static void run(BankCluster cluster, int accounts, int threads) {
+        int size = cluster.size();
+        List<List<String>> byNode = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            byNode.add(new ArrayList<>());
+        }
+        for (int i = 0; i < accounts; i++) {
+            String number = "ACC" + i;
+            cluster.addAccount(number, "Holder " + i, 1_000_000.0);
+            byNode.get(cluster.nodeFor(number)).add(number);
+        }
+        String[][] local = new String[size][];
+        for (int i = 0; i < size; i++) {
+            local[i] = byNode.get(i).toArray(new String[0]);
+        }
+
+        BenchmarkRunner.run(size + " node(s), same-node transfers", threads, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String[] numbers = local[random.nextInt(size)];
+            return cluster.tryTransfer(numbers[random.nextInt(numbers.length)],
+                    numbers[random.nextInt(numbers.length)], 1.0).ordinal();
+        });
+        BenchmarkRunner.run(size + " node(s), random transfers", threads, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return cluster.tryTransfer("ACC" + random.nextInt(accounts), "ACC" + random.nextInt(accounts), 1.0)
+                    .ordinal();
+        });
+    }
+
+    private static Process startNode(Path dataDirectory) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-Xmx512m", "-cp", System.getProperty("java.class.path"),
+                "Main", "node", "0", dataDirectory.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static int readPort(Process process) throws IOException {
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine();
+        if (line == null) {
+            throw new IOException("Node exited before listening");
+        }
+        return Integer.parseInt(line.substring(line.lastIndexOf(':') + 1).trim());
+    }
+}
@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ColumnarBankTest {
+
+    @Test
+    public void testAddAndGetAccount() {
+        Bank bank = new ColumnarBank();
+        bank.addAccount(new BankAccount("333", "Charlie", 300.0));
+        bank.addAccount(new BankAccount("444", "Dave", 600.5));
+        BankAccount found = bank.getAccount("444");
+        assertNotNull(found);
+        assertEquals("444", found.getAccountNumber());
+        assertEquals("Dave", found.getAccountHolder());
+        assertEquals(600.5, found.getBalance());
+        assertNull(bank.getAccount("555"));
+        assertNull(bank.getAccount(null));
+    }
+
+    @Test
+    public void testViewsUpdateTheColumns() {
+        Bank bank = new ColumnarBank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.getAccount("A").deposit(500.0);
+        bank.getAccount("A").withdraw(200.0);
+        assertEquals(1300.0, bank.getAccount("A").getBalance());
+        Exception exception = assertThrows(IllegalArgumentException.class, () ->
+                bank.getAccount("A").withdraw(1260.0));
+        assertEquals("Below minimum balance", exception.getMessage());
+    }
+
+    @Test
+    public void testDuplicatesOrderAndRemoval() {
+        Bank bank = new ColumnarBank();
+        bank.addAccount(new BankAccount("D1", "First", 100.0));
+        bank.addAccount(new BankAccount("D2", "Other", 150.0));
+        bank.addAccount(new BankAccount("D1", "Second", 200.0));
+        assertEquals("First", bank.getAccount("D1").getAccountHolder());
+        assertEquals(3, bank.getAccounts().size());
+
+        bank.removeAccount("D1");
+        List<BankAccount> remaining = bank.getAccounts();
+        assertEquals(1, remaining.size());
+        assertEquals("D2", remaining.get(0).getAccountNumber());
+        assertNull(bank.getAccount("D1"));
+
+        bank.addAccount(new BankAccount("D1", "Third", 300.0));
+        assertEquals("Third", bank.getAccount("D1").getAccountHolder());
+        assertEquals("D1", bank.getAccounts().get(1).getAccountNumber());
+    }
+
+    @Test
+    public void testManyAccountsAndNonLatinNames() {
+        Bank bank = new ColumnarBank();
+        for (int i = 0; i < 200_000; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, i % 2 == 0 ? "Holder" + i : "\u0425\u043E\u0437\u044F\u0438\u043D" + i, i));
+        }
+        for (int i = 0; i < 200_000; i += 7) {
+            BankAccount account = bank.getAccount("ACC" + i);
+            assertEquals(i % 2 == 0 ? "Holder" + i : "\u0425\u043E\u0437\u044F\u0438\u043D" + i, account.getAccountHolder());
+            assertEquals(i, account.getBalance());
+        }
+        for (int i = 0; i < 200_000; i += 2) {
+            bank.removeAccount("ACC" + i);
+        }
+        assertEquals(100_000, bank.getAccounts().size());
+        assertNull(bank.getAccount("ACC10"));
+        assertNotNull(bank.getAccount("ACC11"));
+    }
+
+    @Test
+    public void testWorksWithBankService() {
+        Bank bank = new ColumnarBank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 500.0));
+        BankService service = new BankService(bank);
+        assertTrue(service.transfer("A", "B", 200.0));
+        assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, service.tryTransfer("A", "B", 790.0));
+        assertEquals(800.0, bank.getAccount("A").getBalance());
+        assertEquals(700.0, bank.getAccount("B").getBalance());
+    }
+
+    @Test
+    public void testWithdrawalRulesAndVelocityLimits() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        WithdrawalRules capped = WithdrawalRules.builder("capped").hourlyLimit(1000).clock(now::get).build();
+        WithdrawalRules strict = WithdrawalRules.builder("strict").minimumBalance(500).build();
+        BankAccount source = new BankAccount("S", "Strict", 1000.0);
+        source.setWithdrawalRules(strict);
+        Bank bank = new ColumnarBank();
+        bank.addAccount(new BankAccount("A", "Alice", 10_000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 100.0));
+        bank.addAccount(source);
+
+        assertSame(strict, bank.getAccount("S").getWithdrawalRules());
+        assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, bank.getAccount("S").tryWithdraw(600.0));
+        assertSame(WithdrawalRules.STANDARD, bank.getAccount("A").getWithdrawalRules());
+
+        bank.getAccount("A").setWithdrawalRules(capped);
+        assertSame(capped, bank.getAccount("A").getWithdrawalRules());
+        assertEquals(TransactionStatus.SUCCESS, bank.getAccount("A").tryWithdraw(600.0));
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, bank.getAccount("A").tryWithdraw(500.0));
+        BankService service = new BankService(bank);
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, service.tryTransfer("A", "B", 500.0));
+        TransactionStatus[] results = service.transferBatch(List.of(
+                new TransferInstruction("A", "B", 300.0),
+                new TransferInstruction("A", "B", 300.0)));
+        assertArrayEquals(new TransactionStatus[] {TransactionStatus.SUCCESS,
+                TransactionStatus.EXCEEDS_VELOCITY_LIMIT}, results);
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, bank.getAccount("A").tryWithdraw(200.0));
+        assertEquals(9_100.0, bank.getAccount("A").getBalance());
+
+        now.addAndGet(Duration.ofMinutes(61).toMillis());
+        assertEquals(TransactionStatus.SUCCESS, bank.getAccount("A").tryWithdraw(1000.0));
+        bank.getAccount("A").setWithdrawalRules(WithdrawalRules.STANDARD);
+        assertEquals(TransactionStatus.SUCCESS, bank.getAccount("A").tryWithdraw(1000.0));
+    }
+
+    @Test
+    public void testFindByHolder() {
+        Bank bank = new ColumnarBank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Albert", 500.0));
+        bank.addAccount(new BankAccount("C", "Bob", 10.0));
+        assertEquals("A", bank.findByHolder("Alice").get(0).getAccountNumber());
+        assertEquals(2, bank.findByHolderPrefix("Al", 10).size());
+        bank.removeAccount("B");
+        assertEquals(1, bank.findByHolderPrefix("Al", 10).size());
+        assertEquals(1000.0, bank.findByHolderPrefix("Al", 10).get(0).getBalance());
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testJournalsThroughListeners() throws IOException {
+        Path path = dir.resolve("columnar.journal");
+        try (Journal journal = Journal.open(path, Journal.SyncMode.GROUP_COMMIT)) {
+            Bank bank = new ColumnarBank();
+            bank.addListener(journal);
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            bank.addAccount(new BankAccount("B", "Bob", 500.0));
+            new BankService(bank).transfer("A", "B", 100.0);
+        }
+        try (Journal journal = Journal.open(path, Journal.SyncMode.GROUP_COMMIT)) {
+            Bank bank = journal.recover();
+            assertEquals(900.0, bank.getAccount("A").getBalance());
+            assertEquals(600.0, bank.getAccount("B").getBalance());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Heap per account and GC cost of the object-per-account Bank against ColumnarBank.
+ * Run one engine per JVM for clean numbers: {@code ColumnarMemoryBenchmark object|columnar [accounts]}.
+ * With no arguments both run in sequence at 1M accounts. Use a large heap for 10M+.
+ */
+public class ColumnarMemoryBenchmark {
+
+    public static void main(String[] args) {
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        if (args.length == 0 || args[0].equals("object")) {
+            measure("Bank (object per account)", new Bank(), accounts);
+        }
+        if (args.length == 0 || args[0].equals("columnar")) {
+            measure("ColumnarBank", new ColumnarBank(), accounts);
+        }
+    }
+
+    private static void measure(String name, Bank bank, int accounts) {
+        long before = usedHeapAfterGc();
+        for (int i = 0; i < accounts; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, "Holder" + i, 1000.0));
+        }
+        long after = usedHeapAfterGc();
+        System.out.printf("%-28s %,d accounts: %,d bytes/account%n", name, accounts, (after - before) / accounts);
+
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        System.out.printf("%-28s full GC with book live: %,d ms%n", name, (System.nanoTime() - fullGcStart) / 1_000_000);
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < 5_000_000; i++) {
+            BankAccount account = bank.getAccount("ACC" + ThreadLocalRandom.current().nextInt(accounts));
+            account.deposit(1.0);
+        }
+        System.out.printf("%-28s 5M lookups+deposits: %,d ms, %d collections, %,d ms in GC%n", name,
+                (System.nanoTime() - start) / 1_000_000, gcCount() - gcCount, gcMillis() - gcMillis);
+        if (bank.getAccounts().size() != accounts) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += gc.getCollectionCount();
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += gc.getCollectionTime();
+        }
+        return total;
+    }
+}
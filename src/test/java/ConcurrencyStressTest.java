@@ -0,0 +1,217 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Randomized many-thread workloads against {@link Bank} and {@link ColumnarBank} that check
+ * global invariants: money is neither created nor destroyed by transfers, no deposit or
+ * withdrawal is lost, and no balance is ever seen below the 50 minimum. Each run prints its
+ * throughput and fails listing the violations it saw.
+ *
+ * <p>The defaults keep a run short. Scale it up with system properties, for example
+ * {@code mvn test -Dtest=ConcurrencyStressTest -Dstress.threads=64 -Dstress.millis=60000}:
+ * {@code stress.threads} (default 8), {@code stress.accounts} (200), {@code stress.skew}
+ * (Zipfian exponent for picking accounts, 0 is uniform; default 0.99) and
+ * {@code stress.millis} (run time per workload, default 1000).
+ */
+public class ConcurrencyStressTest {
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int ACCOUNTS = Integer.getInteger("stress.accounts", 200);
+    private static final double SKEW = Double.parseDouble(System.getProperty("stress.skew", "0.99"));
+    private static final long MILLIS = Long.getLong("stress.millis", 1000);
+
+    private static final long UNITS = BankAccount.UNITS_PER_CURRENCY;
+    private static final long MINIMUM_UNITS = 50 * UNITS;
+    private static final long OPENING_UNITS = 1_000 * UNITS;
+    private static final int MAX_VIOLATIONS = 20;
+
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+
+    private static Bank newBank(String kind) {
+        Bank bank = kind.equals("columnar") ? new ColumnarBank() : new Bank();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.addAccount(BankAccount.fromUnits("ACC" + i, "Holder " + i, OPENING_UNITS));
+        }
+        return bank;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "columnar"})
+    public void testTransfersConserveMoneyAndKeepTheMinimum(String kind) throws InterruptedException {
+        Bank bank = newBank(kind);
+        LedgerDigest digest = LedgerDigest.attach(bank, 8);
+        BankService service = new BankService(bank);
+        ZipfianGenerator accounts = new ZipfianGenerator(ACCOUNTS, SKEW);
+
+        long operations = run("transfers (" + kind + ")", bank, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int choice = random.nextInt(10);
+            if (choice < 7) {
+                service.tryTransfer(number(accounts), number(accounts), 1 + random.nextInt(400));
+                return 1;
+            }
+            if (choice < 9) {
+                List<TransferInstruction> batch = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    batch.add(new TransferInstruction(number(accounts), number(accounts), 1 + random.nextInt(400)));
+                }
+                service.transferBatch(batch);
+                return batch.size();
+            }
+            service.transfer(number(accounts), number(accounts), 0.0001 * (1 + random.nextInt(10_000)));
+            return 1;
+        });
+
+        long total = 0;
+        for (BankAccount account : bank.getAccounts()) {
+            total += account.getBalanceUnits();
+            checkMinimum(account);
+        }
+        if (total != OPENING_UNITS * ACCOUNTS) {
+            violations.add("total is " + total + " units, expected " + OPENING_UNITS * ACCOUNTS);
+        }
+        if (digest.root() != LedgerDigest.attach(bank, 8).root()) {
+            violations.add("ledger digest missed a balance change");
+        }
+        assertTrue(operations > 0);
+        assertTrue(violations.isEmpty(), String.join("\n", violations));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "columnar"})
+    public void testDepositsAndWithdrawalsLoseNoUpdates(String kind) throws InterruptedException {
+        Bank bank = newBank(kind);
+        ZipfianGenerator accounts = new ZipfianGenerator(ACCOUNTS, SKEW);
+        // Net units successfully moved per account, as the callers saw it.
+        AtomicLongArray expected = new AtomicLongArray(ACCOUNTS);
+
+        run("deposits and withdrawals (" + kind + ")", bank, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int index = accounts.next();
+            BankAccount account = bank.getAccount("ACC" + index);
+            long units = (1 + random.nextInt(200)) * UNITS;
+            if (random.nextBoolean()) {
+                if (account.tryDeposit(units / (double) UNITS) == TransactionStatus.SUCCESS) {
+                    expected.addAndGet(index, units);
+                }
+            } else if (account.tryWithdraw(units / (double) UNITS) == TransactionStatus.SUCCESS) {
+                expected.addAndGet(index, -units);
+            }
+            return 1;
+        });
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BankAccount account = bank.getAccount("ACC" + i);
+            long balance = account.getBalanceUnits();
+            if (balance != OPENING_UNITS + expected.get(i)) {
+                violations.add("ACC" + i + " has " + balance + " units, expected " + (OPENING_UNITS + expected.get(i)));
+            }
+            checkMinimum(account);
+        }
+        assertTrue(violations.isEmpty(), String.join("\n", violations));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"object", "columnar"})
+    public void testDigestFollowsAccountsComingAndGoing(String kind) throws InterruptedException {
+        Bank bank = newBank(kind);
+        LedgerDigest digest = LedgerDigest.attach(bank, 8);
+        int churn = 16;
+
+        run("accounts coming and going (" + kind + ")", bank, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String number = "CHURN" + random.nextInt(churn);
+            int choice = random.nextInt(10);
+            if (choice == 0) {
+                bank.removeAccount(number);
+            } else if (choice == 1) {
+                bank.addAccount(BankAccount.fromUnits(number, "Churn", OPENING_UNITS));
+            } else {
+                BankAccount account = bank.getAccount(choice < 6 ? number : "ACC" + random.nextInt(ACCOUNTS));
+                if (account != null) {
+                    account.tryDeposit(1 + random.nextInt(100));
+                }
+            }
+            return 1;
+        });
+
+        if (digest.root() != LedgerDigest.attach(bank, 8).root()) {
+            violations.add("ledger digest drifted from the accounts: " + digest.differingAccounts(LedgerDigest.attach(bank, 8)));
+        }
+        assertTrue(violations.isEmpty(), String.join("\n", violations));
+    }
+
+    /** A unit of work; returns the number of operations it performed. */
+    private interface Workload {
+        long run();
+    }
+
+    /**
+     * Runs {@code workload} on {@link #THREADS} threads for {@link #MILLIS} while one more
+     * thread keeps checking that no balance is below the minimum; returns the operations done.
+     */
+    private long run(String name, Bank bank, Workload workload) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        operations.add(workload.run());
+                    }
+                } catch (RuntimeException e) {
+                    violate(Thread.currentThread().getName() + " threw " + e);
+                }
+            }, "stress-" + t));
+        }
+        threads.add(new Thread(() -> {
+            while (running.get()) {
+                for (BankAccount account : bank.getAccounts()) {
+                    checkMinimum(account);
+                }
+            }
+        }, "stress-checker"));
+
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        Thread.sleep(MILLIS);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            if (thread.isAlive()) {
+                violate(thread.getName() + " did not finish; deadlock?");
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("stress %s: %d threads, %d accounts, skew %.2f: %,d ops in %.1f s (%,.0f ops/s), %d violations while running%n",
+                name, THREADS, ACCOUNTS, SKEW, operations.sum(), seconds, operations.sum() / seconds, violations.size());
+        return operations.sum();
+    }
+
+    private void checkMinimum(BankAccount account) {
+        long balance = account.getBalanceUnits();
+        if (balance < MINIMUM_UNITS) {
+            violate(account.getAccountNumber() + " fell to " + balance + " units");
+        }
+    }
+
+    private void violate(String violation) {
+        if (violations.size() < MAX_VIOLATIONS) {
+            violations.add(violation);
+        }
+    }
+
+    private static String number(ZipfianGenerator accounts) {
+        return "ACC" + accounts.next();
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Full passes of the end-of-day jobs (interest, fee, balance report) over a large book at
+ * fork/join parallelism 1, 2, 4, ... up to the core count, while one thread keeps
+ * transferring. {@code EndOfDayBenchmark [accounts] [object|columnar]}, default 1M accounts
+ * in a Bank; give the JVM about 4 GB for 10M.
+ */
+public class EndOfDayBenchmark {
+    private static final int PASSES = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Bank bank = args.length > 1 && args[1].equals("columnar") ? new ColumnarBank() : new Bank();
+        for (int i = 0; i < accounts; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, "Holder" + i, 1000.0 + i % 1000));
+        }
+        BankService service = new BankService(bank);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder transfers = new LongAdder();
+        Thread traffic = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (running.get()) {
+                service.tryTransfer("ACC" + random.nextInt(accounts), "ACC" + random.nextInt(accounts), 1.0);
+                transfers.increment();
+            }
+        }, "online-traffic");
+        traffic.setDaemon(true);
+        traffic.start();
+
+        for (int pass = 0; pass <= PASSES; pass++) {
+            long start = System.nanoTime();
+            for (BankAccount account : bank.getAccounts()) {
+                double interest = account.getBalance() * 0.0001;
+                if (interest > 0) {
+                    account.deposit(interest);
+                }
+            }
+            if (pass > 0) {
+                System.out.printf("getAccounts + deposit loop: interest %,d ms%n", (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            for (int pass = 0; pass <= PASSES; pass++) {
+                // Pass 0 warms up.
+                long before = transfers.sum();
+                long start = System.nanoTime();
+                bank.processAccounts(EndOfDayJobs.accrueInterest(0.0001), pool);
+                long interest = System.nanoTime() - start;
+                start = System.nanoTime();
+                bank.processAccounts(EndOfDayJobs.chargeMaintenanceFee(0.5), pool);
+                long fees = System.nanoTime() - start;
+                start = System.nanoTime();
+                EndOfDayJobs.BalanceReport report = bank.aggregate(EndOfDayJobs.balanceReport(), pool);
+                long aggregate = System.nanoTime() - start;
+                if (pass > 0) {
+                    System.out.printf("%s %,d accounts parallelism=%d: interest %,d ms, fees %,d ms, "
+                                    + "report %,d ms, %,d transfers alongside%n",
+                            bank.getClass().getSimpleName(), report.getAccountCount(), parallelism,
+                            interest / 1_000_000, fees / 1_000_000, aggregate / 1_000_000,
+                            transfers.sum() - before);
+                }
+            }
+            pool.shutdown();
+        }
+        running.set(false);
+        traffic.join();
+    }
+}
@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+public class EndOfDayJobsTest {
+
+    @Test
+    public void testInterestAndFees() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 100.0));
+        bank.addAccount(new BankAccount("C", "Carol", 2.0));
+        bank.removeAccount("B");
+        bank.addAccount(new BankAccount("D", "Dan", 0.0));
+
+        assertEquals(1.002, bank.processAccounts(EndOfDayJobs.accrueInterest(0.001)), 1e-9);
+        assertEquals(1001.0, bank.getAccount("A").getBalance());
+        assertEquals(2.002, bank.getAccount("C").getBalance());
+
+        // Fees never overdraw, so Carol and Dan are not charged.
+        assertEquals(5.0, bank.processAccounts(EndOfDayJobs.chargeMaintenanceFee(5.0)), 1e-9);
+        assertEquals(996.0, bank.getAccount("A").getBalance());
+        assertEquals(2.002, bank.getAccount("C").getBalance());
+        // They do bypass the minimum balance.
+        assertEquals(946.0, bank.processAccounts(EndOfDayJobs.chargeMaintenanceFee(946.0)), 1e-9);
+        assertEquals(50.0, bank.getAccount("A").getBalance());
+        assertEquals(50.0, bank.processAccounts(EndOfDayJobs.chargeMaintenanceFee(50.0)), 1e-9);
+        assertEquals(0.0, bank.getAccount("A").getBalance());
+    }
+
+    @Test
+    public void testBalanceReport() {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 0.5));
+        bank.addAccount(new BankAccount("B", "Bob", 50.0));
+        bank.addAccount(new BankAccount("C", "Carol", 99.0));
+        bank.addAccount(new BankAccount("D", "Dan", 1_000_000.0));
+
+        EndOfDayJobs.BalanceReport report = bank.aggregate(EndOfDayJobs.balanceReport());
+        assertEquals(4, report.getAccountCount());
+        assertEquals(1_000_149.5, report.getTotalLiabilities());
+        assertEquals(0.5, report.getMinBalance());
+        assertEquals(1_000_000.0, report.getMaxBalance());
+        assertEquals(1, report.getAccountsInDecade(0));
+        assertEquals(2, report.getAccountsInDecade(2));
+        assertEquals(1, report.getAccountsInDecade(7));
+        assertEquals(0, bank.aggregate(EndOfDayJobs.balanceReport()).getAccountsInDecade(3));
+    }
+
+    @Test
+    public void testVisitsEveryAccountOnceInIdOrder() {
+        for (Bank bank : new Bank[] {new Bank(), new ColumnarBank()}) {
+            for (int i = 0; i < 100_000; i++) {
+                bank.addAccount(new BankAccount("ACC" + i, "Holder", 100.0));
+            }
+            bank.removeAccount("ACC7");
+            String joined = bank.processAccounts(
+                    Collectors.mapping(BankAccount::getAccountNumber, Collectors.joining(",")), new ForkJoinPool(4));
+            assertTrue(joined.startsWith("ACC0,ACC1,ACC2,ACC3,ACC4,ACC5,ACC6,ACC8,"));
+            assertEquals(99_999, joined.split(",").length);
+            assertTrue(joined.endsWith(",ACC99999"));
+        }
+    }
+
+    @Test
+    public void testAggregateIsExactDuringTransfers() throws InterruptedException {
+        Bank bank = new Bank();
+        int accounts = 50_000;
+        for (int i = 0; i < accounts; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, "Holder", 1000.0));
+        }
+        BankService service = new BankService(bank);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] traffic = new Thread[3];
+        for (int t = 0; t < traffic.length; t++) {
+            traffic[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    service.tryTransfer("ACC" + random.nextInt(accounts), "ACC" + random.nextInt(accounts), 1.0);
+                }
+            });
+            traffic[t].start();
+        }
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertEquals(accounts * 1000.0, bank.aggregate(EndOfDayJobs.balanceReport()).getTotalLiabilities());
+            }
+        } finally {
+            running.set(false);
+            for (Thread thread : traffic) {
+                thread.join();
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> EndOfDayJobs.accrueInterest(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> EndOfDayJobs.chargeMaintenanceFee(0));
+        assertThrows(IllegalArgumentException.class, () -> new Bank().processAccounts(null));
+    }
+}
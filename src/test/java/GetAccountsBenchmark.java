@@ -0,0 +1,23 @@
+/**
+ * Cost of Bank.getAccounts() at 1k, 100k and 1M accounts, plus iterating the result.
+ */
+public class GetAccountsBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? BankLookupBenchmark.parseSizes(args) : new int[] {1_000, 100_000, 1_000_000};
+        for (int accountCount : sizes) {
+            Bank bank = new Bank();
+            for (int i = 0; i < accountCount; i++) {
+                bank.addAccount(new BankAccount("ACC" + i, "Holder" + i, 1000.0));
+            }
+            BenchmarkRunner.run("getAccounts n=" + accountCount, t -> bank.getAccounts().size());
+            BenchmarkRunner.run("getAccounts + iterate n=" + accountCount, t -> {
+                long total = 0;
+                for (BankAccount account : bank.getAccounts()) {
+                    total += account.getBalanceUnits();
+                }
+                return total;
+            });
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holder lookups over a large book: the indexed exact and prefix searches against copying
+ * getAccounts() and filtering it. {@code HolderLookupBenchmark [accounts] [object|columnar]},
+ * default 1M accounts in a ColumnarBank; give the JVM about 4 GB for 10M.
+ */
+public class HolderLookupBenchmark {
+    private static final String[] SURNAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+            "Thomas", "Taylor", "Moore", "Jackson", "Martin"};
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Bank bank = args.length > 1 && args[1].equals("object") ? new Bank() : new ColumnarBank();
+        long loadStart = System.nanoTime();
+        for (int i = 0; i < accounts; i++) {
+            bank.addAccount(new BankAccount("ACC" + i, holder(i), 1000.0));
+        }
+        System.out.printf("loaded %,d accounts into %s in %,d ms%n", accounts, bank.getClass().getSimpleName(),
+                (System.nanoTime() - loadStart) / 1_000_000);
+
+        BenchmarkRunner.run("findByHolder", t -> {
+            return bank.findByHolder(holder(ThreadLocalRandom.current().nextInt(accounts))).size();
+        });
+        BenchmarkRunner.run("findByHolderPrefix, 3 chars, 20", t -> {
+            String holder = holder(ThreadLocalRandom.current().nextInt(accounts));
+            return bank.findByHolderPrefix(holder.substring(0, 3), 20).size();
+        });
+        BenchmarkRunner.run("findByHolderPrefix, surname + 4 digits", t -> {
+            String holder = holder(ThreadLocalRandom.current().nextInt(accounts));
+            String prefix = holder.substring(0, Math.min(holder.length(), holder.indexOf(' ') + 5));
+            return bank.findByHolderPrefix(prefix, 100).size();
+        });
+        BenchmarkRunner.run("getAccounts + filter", 1, 0, 2000, t -> {
+            String holder = holder(ThreadLocalRandom.current().nextInt(accounts));
+            List<BankAccount> all = bank.getAccounts();
+            long found = 0;
+            for (BankAccount account : all) {
+                if (holder.equals(account.getAccountHolder())) {
+                    found++;
+                }
+            }
+            return found;
+        });
+    }
+
+    // Roughly two accounts per distinct holder, spread over a few common surnames.
+    private static String holder(int i) {
+        int person = i / 2;
+        return SURNAMES[person % SURNAMES.length] + " " + (person / SURNAMES.length);
+    }
+}
@@ -0,0 +1,177 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdempotencyCacheTest {
+
+    @Test
+    public void testDuplicateReturnsRecordedResult() {
+        IdempotencyCache cache = new IdempotencyCache(1024, 60_000, () -> 0L);
+        AtomicInteger runs = new AtomicInteger();
+        assertEquals(TransactionStatus.INSUFFICIENT_BALANCE, cache.execute("k", () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.INSUFFICIENT_BALANCE;
+        }));
+        assertEquals(TransactionStatus.INSUFFICIENT_BALANCE, cache.execute("k", () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.SUCCESS;
+        }));
+        assertEquals(1, runs.get());
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("other", () -> TransactionStatus.SUCCESS));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testExpiredKeysRunAgain() {
+        AtomicLong now = new AtomicLong();
+        IdempotencyCache cache = new IdempotencyCache(1024, 1000, now::get);
+        cache.execute("k", () -> TransactionStatus.SUCCESS);
+        now.set(999);
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("k", () -> TransactionStatus.INVALID_AMOUNT));
+        now.set(1000);
+        assertEquals(TransactionStatus.INVALID_AMOUNT, cache.execute("k", () -> TransactionStatus.INVALID_AMOUNT));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSizeIsBoundedAndOldestKeysGoFirst() {
+        IdempotencyCache cache = new IdempotencyCache(4096, 60_000, () -> 0L);
+        for (int i = 0; i < 100_000; i++) {
+            cache.execute("key" + i, () -> TransactionStatus.SUCCESS);
+        }
+        assertTrue(cache.size() <= 4096, "size " + cache.size());
+        assertTrue(cache.size() > 2048, "size " + cache.size());
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("key99999", () -> TransactionStatus.INVALID_AMOUNT));
+        assertEquals(TransactionStatus.INVALID_AMOUNT, cache.execute("key0", () -> TransactionStatus.INVALID_AMOUNT));
+    }
+
+    @Test
+    public void testFailedOperationIsNotRecorded() {
+        IdempotencyCache cache = new IdempotencyCache(1024, 60_000, () -> 0L);
+        assertThrows(IllegalStateException.class, () -> cache.execute("k", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("k", () -> TransactionStatus.SUCCESS));
+    }
+
+    @Test
+    public void testTransientOutcomeIsNotRecorded() {
+        IdempotencyCache cache = new IdempotencyCache(1024, 60_000, () -> 0L);
+        assertEquals(TransactionStatus.NODE_UNAVAILABLE, cache.execute("k", () -> TransactionStatus.NODE_UNAVAILABLE));
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("k", () -> TransactionStatus.SUCCESS));
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("k", () -> TransactionStatus.NODE_UNAVAILABLE));
+    }
+
+    @Test
+    public void testKeyIsBoundToItsRequest() {
+        IdempotencyCache cache = new IdempotencyCache(1024, 60_000, () -> 0L);
+        long request = IdempotencyCache.requestFingerprint("A", "B", 2_000_000);
+        AtomicInteger runs = new AtomicInteger();
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("k", request, () -> {
+            runs.incrementAndGet();
+            return TransactionStatus.SUCCESS;
+        }));
+        for (long other : new long[] {IdempotencyCache.requestFingerprint("A", "B", 2_000_001),
+                IdempotencyCache.requestFingerprint("B", "A", 2_000_000),
+                IdempotencyCache.requestFingerprint("A", "C", 2_000_000),
+                IdempotencyCache.requestFingerprint("A", null, 2_000_000)}) {
+            assertNotEquals(request, other);
+            assertEquals(TransactionStatus.IDEMPOTENCY_KEY_REUSED, cache.execute("k", other, () -> {
+                runs.incrementAndGet();
+                return TransactionStatus.SUCCESS;
+            }));
+        }
+        assertEquals(TransactionStatus.SUCCESS, cache.execute("k", request, () -> TransactionStatus.INVALID_AMOUNT));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testConcurrentDuplicatesRunOnce() throws InterruptedException {
+        IdempotencyCache cache = new IdempotencyCache(1024, 60_000, () -> 0L);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<TransactionStatus> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                TransactionStatus status = cache.execute("k", () -> {
+                    runs.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return TransactionStatus.SUCCESS;
+                });
+                synchronized (results) {
+                    results.add(status);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        started.await();
+        Thread.sleep(50);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, runs.get());
+        assertEquals(8, results.size());
+        results.forEach(status -> assertEquals(TransactionStatus.SUCCESS, status));
+    }
+
+    @Test
+    public void testRunningKeyIsNeitherEvictedNorExpired() throws InterruptedException {
+        AtomicLong now = new AtomicLong();
+        // One entry per segment, so any other key in the same segment wants the slot.
+        IdempotencyCache cache = new IdempotencyCache(64, 1000, now::get);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionStatus[] results = new TransactionStatus[2];
+        Thread[] callers = new Thread[2];
+        for (int t = 0; t < callers.length; t++) {
+            int caller = t;
+            callers[t] = new Thread(() -> results[caller] = cache.execute("K", () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return TransactionStatus.SUCCESS;
+            }));
+        }
+        callers[0].start();
+        started.await();
+        callers[1].start();
+        Thread.sleep(50);
+        now.set(5000);
+        for (int i = 0; i < 1000; i++) {
+            cache.execute("other" + i, () -> TransactionStatus.SUCCESS);
+        }
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        assertEquals(1, runs.get());
+        assertEquals(TransactionStatus.SUCCESS, results[0]);
+        assertEquals(TransactionStatus.SUCCESS, results[1]);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(10, 1000, () -> 0L));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(1024, 0, () -> 0L));
+        IdempotencyCache cache = new IdempotencyCache(1024, 1000, () -> 0L);
+        assertThrows(IllegalArgumentException.class, () -> cache.execute(null, () -> TransactionStatus.SUCCESS));
+    }
+}
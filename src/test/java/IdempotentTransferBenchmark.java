@@ -0,0 +1,66 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyed transfers where most calls are client retries: each call reuses one of the caller's
+ * 64 most recent keys with probability {@code retry} (default 0.9), otherwise it sends a new
+ * key. Compared with unkeyed tryTransfer, then the heap cost per key of a full cache.
+ */
+public class IdempotentTransferBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int RECENT = 64;
+    private static final int CACHE_KEYS = 1 << 21;
+
+    public static void main(String[] args) {
+        int[] threadCounts = args.length > 0 ? BankLookupBenchmark.parseSizes(args) : new int[] {1, 4};
+        double retry = Double.parseDouble(System.getProperty("bench.retry", "0.9"));
+        Bank bank = new Bank();
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = "ACC" + i;
+            bank.addAccount(new BankAccount(numbers[i], "Holder" + i, 1_000_000.0));
+        }
+
+        for (int threads : threadCounts) {
+            BankService plain = new BankService(bank);
+            BenchmarkRunner.run("tryTransfer, no key", threads, t -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                return plain.tryTransfer(numbers[random.nextInt(ACCOUNTS)], numbers[random.nextInt(ACCOUNTS)], 1.0)
+                        .ordinal();
+            });
+
+            BankService keyed = new BankService(bank);
+            String[][] recent = new String[threads][RECENT];
+            long[] issued = new long[threads];
+            BenchmarkRunner.run(String.format("tryTransfer, key, %.0f%% retries", retry * 100), threads, t -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                String key;
+                if (issued[t] > 0 && random.nextDouble() < retry) {
+                    key = recent[t][random.nextInt((int) Math.min(issued[t], RECENT))];
+                } else {
+                    key = "client" + t + "-" + issued[t];
+                    recent[t][(int) (issued[t]++ % RECENT)] = key;
+                }
+                return keyed.tryTransfer(key, numbers[random.nextInt(ACCOUNTS)], numbers[random.nextInt(ACCOUNTS)],
+                        1.0).ordinal();
+            });
+        }
+
+        long before = usedHeap();
+        IdempotencyCache cache = new IdempotencyCache(CACHE_KEYS, 1, TimeUnit.HOURS);
+        for (int i = 0; i < CACHE_KEYS * 2; i++) {
+            cache.execute("request-" + i, () -> TransactionStatus.SUCCESS);
+        }
+        long after = usedHeap();
+        System.out.printf("cache full: %,d keys, %.1f bytes/key%n", cache.size(),
+                (after - before) / (double) cache.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,35 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Deposit throughput with the journal attached, for each durability mode, on 1 and 16 threads.
+ * Pass a directory on the disk to measure; defaults to the system temp directory.
+ */
+public class JournalBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = args.length > 0 ? Path.of(args[0]) : Path.of(System.getProperty("java.io.tmpdir"));
+        for (Journal.SyncMode mode : Journal.SyncMode.values()) {
+            for (int threads : new int[] {1, 16}) {
+                Path path = Files.createTempFile(dir, "bench", ".journal");
+                try (Journal journal = Journal.open(path, mode, 10)) {
+                    Bank bank = journal.recover();
+                    BankAccount[] accounts = new BankAccount[ACCOUNTS];
+                    for (int i = 0; i < ACCOUNTS; i++) {
+                        accounts[i] = new BankAccount("ACC" + i, "Holder" + i, 1000.0);
+                        bank.addAccount(accounts[i]);
+                    }
+                    BenchmarkRunner.run("journaled deposit " + mode, threads, 1000, 3000, t -> {
+                        accounts[ThreadLocalRandom.current().nextInt(ACCOUNTS)].deposit(1.0);
+                        return 1;
+                    });
+                } finally {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class JournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRecoverRebuildsBank() throws IOException {
+        Path path = dir.resolve("bank.journal");
+        try (Journal journal = Journal.open(path, Journal.SyncMode.GROUP_COMMIT)) {
+            Bank bank = journal.recover();
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            bank.addAccount(new BankAccount("B", "Bob", 500.0));
+            bank.addAccount(new BankAccount("C", "Carol", 300.0));
+            bank.getAccount("A").deposit(250.5);
+            bank.getAccount("B").withdraw(100.0);
+            assertTrue(new BankService(bank).transfer("A", "B", 200.0));
+            bank.removeAccount("C");
+        }
+
+        try (Journal journal = Journal.open(path, Journal.SyncMode.PER_OPERATION)) {
+            Bank bank = journal.recover();
+            List<BankAccount> accounts = bank.getAccounts();
+            assertEquals(2, accounts.size());
+            assertEquals("Alice", bank.getAccount("A").getAccountHolder());
+            assertEquals(1050.5, bank.getAccount("A").getBalance());
+            assertEquals(600.0, bank.getAccount("B").getBalance());
+            assertNull(bank.getAccount("C"));
+
+            // The recovered bank keeps journaling.
+            bank.getAccount("B").deposit(1.0);
+        }
+
+        try (Journal journal = Journal.open(path, Journal.SyncMode.INTERVAL, 5)) {
+            assertEquals(601.0, journal.recover().getAccount("B").getBalance());
+        }
+    }
+
+    @Test
+    public void testRecoverKeepsDuplicateAccountsApart() throws IOException {
+        Path path = dir.resolve("dup.journal");
+        try (Journal journal = Journal.open(path, Journal.SyncMode.GROUP_COMMIT)) {
+            Bank bank = journal.recover();
+            bank.addAccount(new BankAccount("D", "First", 100.0));
+            bank.addAccount(new BankAccount("D", "Second", 200.0));
+            bank.getAccounts().get(1).deposit(50.0);
+        }
+        try (Journal journal = Journal.open(path, Journal.SyncMode.GROUP_COMMIT)) {
+            List<BankAccount> accounts = journal.recover().getAccounts();
+            assertEquals(100.0, accounts.get(0).getBalance());
+            assertEquals(250.0, accounts.get(1).getBalance());
+        }
+    }
+
+    @Test
+    public void testTornTailIsDropped() throws IOException {
+        Path path = dir.resolve("torn.journal");
+        try (Journal journal = Journal.open(path, Journal.SyncMode.PER_OPERATION)) {
+            Bank bank = journal.recover();
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            bank.getAccount("A").deposit(10.0);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (Journal journal = Journal.open(path, Journal.SyncMode.PER_OPERATION)) {
+            Bank bank = journal.recover();
+            assertEquals(1000.0, bank.getAccount("A").getBalance());
+            bank.getAccount("A").deposit(5.0);
+        }
+        try (Journal journal = Journal.open(path, Journal.SyncMode.PER_OPERATION)) {
+            assertEquals(1005.0, journal.recover().getAccount("A").getBalance());
+        }
+    }
+
+    @Test
+    public void testEveryPrefixOfAConcurrentLogKeepsTheMinimum() throws Exception {
+        Path path = dir.resolve("concurrent.journal");
+        int accounts = 8;
+        long minimum = 50 * BankAccount.UNITS_PER_CURRENCY;
+        Bank live;
+        try (Journal journal = Journal.open(path, Journal.SyncMode.INTERVAL, 5)) {
+            live = journal.recover();
+            for (int i = 0; i < accounts; i++) {
+                live.addAccount(new BankAccount("ACC" + i, "Holder " + i, 50.0));
+            }
+            BankService service = new BankService(live);
+            // Withdrawals and transfers only succeed on money just deposited, so a log that
+            // recorded a debit ahead of the credit it depended on would dip below the minimum.
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        BankAccount account = live.getAccount("ACC" + random.nextInt(accounts));
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                account.tryDeposit(1.0);
+                                break;
+                            case 1:
+                                account.tryWithdraw(1.0);
+                                break;
+                            default:
+                                service.tryTransfer(account.getAccountNumber(), "ACC" + random.nextInt(accounts), 1.0);
+                                break;
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        // Replay one frame at a time; each prefix is a log truncated after that frame.
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(path));
+        Bank replayed = new Bank();
+        Journal.BankReplayer replayer = new Journal.BankReplayer(replayed);
+        int frames = 0;
+        while (log.remaining() >= 8) {
+            int end = log.position() + 8 + log.getInt(log.position());
+            ByteBuffer frame = log.duplicate().limit(end);
+            Journal.replayFrames(frame, replayer);
+            assertEquals(end, frame.position());
+            log.position(end);
+            frames++;
+            for (BankAccount account : replayed.getAccounts()) {
+                assertTrue(account.getBalanceUnits() >= minimum,
+                        account.getAccountNumber() + " fell to " + account.getBalanceUnits() + " units after frame " + frames);
+            }
+        }
+        assertFalse(log.hasRemaining());
+        for (BankAccount account : live.getAccounts()) {
+            assertEquals(account.getBalanceUnits(), replayed.getAccount(account.getAccountNumber()).getBalanceUnits());
+        }
+    }
+}
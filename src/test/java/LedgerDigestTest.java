@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LedgerDigestTest {
+
+    private static List<BankAccount> book(int count) {
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            accounts.add(new BankAccount("ACC" + i, "Holder " + i, 100.0 + i));
+        }
+        return accounts;
+    }
+
+    private static Bank bankOf(List<BankAccount> accounts) {
+        Bank bank = new Bank();
+        for (BankAccount account : accounts) {
+            bank.addAccount(BankAccount.fromUnits(account.getAccountNumber(), account.getAccountHolder(),
+                    account.getBalanceUnits()));
+        }
+        return bank;
+    }
+
+    @Test
+    public void testSameBooksHaveSameRootWhateverTheOrder() {
+        List<BankAccount> accounts = book(5_000);
+        Bank ours = bankOf(accounts);
+        Collections.shuffle(accounts, new Random(1));
+        Bank theirs = new Bank();
+        LedgerDigest theirDigest = LedgerDigest.attach(theirs, 10);
+        for (BankAccount account : accounts) {
+            theirs.addAccount(BankAccount.fromUnits(account.getAccountNumber(), account.getAccountHolder(),
+                    account.getBalanceUnits()));
+        }
+        LedgerDigest ourDigest = LedgerDigest.attach(ours, 10);
+
+        assertEquals(ourDigest.root(), theirDigest.root());
+        assertEquals(0, ourDigest.differingLeaves(theirDigest).length);
+
+        ours.getAccount("ACC7").deposit(10.0);
+        assertNotEquals(ourDigest.root(), theirDigest.root());
+        theirs.getAccount("ACC7").deposit(4.0);
+        theirs.getAccount("ACC7").deposit(6.0);
+        assertEquals(ourDigest.root(), theirDigest.root());
+    }
+
+    @Test
+    public void testDrillDownFindsExactlyTheDifferences() {
+        List<BankAccount> accounts = book(20_000);
+        Bank ours = bankOf(accounts);
+        Bank theirs = bankOf(accounts);
+        LedgerDigest ourDigest = LedgerDigest.attach(ours);
+        LedgerDigest theirDigest = LedgerDigest.attach(theirs);
+
+        ours.getAccount("ACC10").withdraw(5.0);
+        assertTrue(new BankService(ours).transfer("ACC20", "ACC30", 1.0));
+        theirs.removeAccount("ACC40");
+        theirs.addAccount(new BankAccount("NEW1", "New", 1.0));
+        ours.addAccount(new BankAccount("ACC50", "Duplicate", 150.0));
+        // Moved back and forth: no longer a difference.
+        ours.getAccount("ACC60").deposit(1.0);
+        ours.getAccount("ACC60").withdraw(1.0);
+
+        assertEquals(List.of("ACC10", "ACC20", "ACC30", "ACC40", "ACC50", "NEW1"),
+                ourDigest.differingAccounts(theirDigest));
+        assertEquals(ourDigest.differingAccounts(theirDigest), theirDigest.differingAccounts(ourDigest));
+
+        AtomicInteger reads = new AtomicInteger();
+        int[] leaves = ourDigest.differingLeaves(index -> {
+            reads.incrementAndGet();
+            return theirDigest.node(index);
+        });
+        assertTrue(leaves.length <= 6);
+        assertTrue(reads.get() <= 1 + 2 * 6 * ourDigest.depth(), "read " + reads.get() + " nodes");
+    }
+
+    @Test
+    public void testDigestOfRestoredBankMatchesLiveOne() {
+        Bank live = bankOf(book(1_000));
+        LedgerDigest liveDigest = LedgerDigest.attach(live);
+        BankService service = new BankService(live);
+        Random random = new Random(3);
+        for (int i = 0; i < 2_000; i++) {
+            service.tryTransfer("ACC" + random.nextInt(1_000), "ACC" + random.nextInt(1_000), 1.0 + random.nextInt(20));
+        }
+        live.removeAccount("ACC999");
+
+        Bank restored = bankOf(live.getAccounts());
+        assertEquals(liveDigest.root(), LedgerDigest.attach(restored).root());
+
+        long before = liveDigest.root();
+        liveDigest.detach();
+        live.getAccount("ACC1").deposit(1.0);
+        assertEquals(before, liveDigest.root());
+        assertNotEquals(before, LedgerDigest.attach(live).root());
+    }
+
+    @Test
+    public void testColumnarBankHasSameDigestAsObjectBank() {
+        List<BankAccount> accounts = book(2_000);
+        accounts.add(new BankAccount("account #1", "Not encodable", 12.5));
+        Bank objects = bankOf(accounts);
+        Bank columns = new ColumnarBank();
+        LedgerDigest columnDigest = LedgerDigest.attach(columns, 10);
+        for (BankAccount account : accounts) {
+            columns.addAccount(account);
+        }
+        LedgerDigest objectDigest = LedgerDigest.attach(objects, 10);
+        assertEquals(objectDigest.root(), columnDigest.root());
+
+        objects.getAccount("ACC5").deposit(3.0);
+        columns.getAccount("ACC5").deposit(3.0);
+        assertTrue(new BankService(columns).transfer("ACC6", "account #1", 2.0));
+        assertEquals(List.of("ACC6", "account #1"), objectDigest.differingAccounts(columnDigest));
+        assertTrue(new BankService(objects).transfer("ACC6", "account #1", 2.0));
+        assertEquals(objectDigest.root(), columnDigest.root());
+        assertEquals(objectDigest.root(), LedgerDigest.attach(columns, 10).root());
+    }
+
+    @Test
+    public void testRejectsBadArguments() {
+        Bank bank = new Bank();
+        assertThrows(IllegalArgumentException.class, () -> LedgerDigest.attach(null));
+        assertThrows(IllegalArgumentException.class, () -> LedgerDigest.attach(bank, 0));
+        assertThrows(IllegalArgumentException.class, () -> LedgerDigest.attach(bank, LedgerDigest.MAX_DEPTH + 1));
+        LedgerDigest digest = LedgerDigest.attach(bank, 4);
+        assertThrows(IllegalArgumentException.class, () -> digest.differingLeaves(LedgerDigest.attach(bank, 5)));
+        assertThrows(IllegalArgumentException.class, () -> digest.node(32));
+        assertThrows(IllegalArgumentException.class, () -> digest.accountsIn(16));
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The instrumented hot paths with BankMetrics off, on with the default sampling, and on with
+ * every call timed.
+ */
+public class MetricsOverheadBenchmark {
+    private static final int ACCOUNTS = 100_000;
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        Bank bank = new Bank();
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = "ACC" + i;
+            bank.addAccount(new BankAccount(numbers[i], "Holder" + i, 1_000_000.0));
+        }
+        BankService service = new BankService(bank);
+
+        String[] modes = {"metrics off", "metrics sampled 1/1024", "metrics every call"};
+        for (int mode = 0; mode < modes.length; mode++) {
+            BankMetrics.setEnabled(mode != 0);
+            BankMetrics.setSampling(mode == 2 ? 1 : 1024);
+            BenchmarkRunner.run("getAccount, " + modes[mode], threads, t ->
+                    bank.getAccount(numbers[ThreadLocalRandom.current().nextInt(ACCOUNTS)]) == null ? 0 : 1);
+            BenchmarkRunner.run("withdraw+deposit, " + modes[mode], threads, t -> {
+                BankAccount account = bank.getAccount(numbers[ThreadLocalRandom.current().nextInt(ACCOUNTS)]);
+                return account.tryWithdraw(1.0).ordinal() + account.tryDeposit(1.0).ordinal();
+            });
+            BenchmarkRunner.run("transfer, " + modes[mode], threads, t -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                return service.transfer(numbers[random.nextInt(ACCOUNTS)], numbers[random.nextInt(ACCOUNTS)], 1.0) ? 1 : 0;
+            });
+        }
+        BankMetrics.setEnabled(true);
+        BankMetrics.setSampling(1024);
+        System.out.print(BankMetrics.snapshot());
+    }
+}
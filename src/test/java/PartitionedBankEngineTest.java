@@ -0,0 +1,138 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class PartitionedBankEngineTest {
+
+    // Finds an account number that lands in the given partition of an engine with `partitions` partitions.
+    private static String numberIn(int partition, int partitions, String prefix) {
+        for (int i = 0; ; i++) {
+            String number = prefix + i;
+            if (BankService.stripe(number) % partitions == partition) {
+                return number;
+            }
+        }
+    }
+
+    @Test
+    public void testDepositWithdrawAndTransfers() {
+        Bank bank = new Bank();
+        String a = numberIn(0, 2, "A");
+        String b = numberIn(0, 2, "B");
+        String c = numberIn(1, 2, "C");
+        bank.addAccount(new BankAccount(a, "Alice", 1000.0));
+        bank.addAccount(new BankAccount(b, "Bob", 500.0));
+        bank.addAccount(new BankAccount(c, "Carol", 200.0));
+        try (PartitionedBankEngine engine = new PartitionedBankEngine(bank, 2)) {
+            assertEquals(TransactionStatus.SUCCESS, engine.deposit(a, 100.0).join());
+            assertEquals(TransactionStatus.SUCCESS, engine.withdraw(b, 50.0).join());
+            assertEquals(TransactionStatus.SUCCESS, engine.transfer(a, b, 100.0).join());
+            assertEquals(TransactionStatus.SUCCESS, engine.transfer(a, c, 300.0).join());
+            assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, engine.transfer(c, a, 490.0).join());
+            assertEquals(TransactionStatus.ACCOUNT_NOT_FOUND, engine.transfer(a, "missing", 1.0).join());
+            assertEquals(TransactionStatus.INVALID_AMOUNT, engine.deposit(a, -1.0).join());
+        }
+        assertEquals(700.0, bank.getAccount(a).getBalance());
+        assertEquals(550.0, bank.getAccount(b).getBalance());
+        assertEquals(500.0, bank.getAccount(c).getBalance());
+    }
+
+    @Test
+    public void testRejectedCreditIsRefunded() {
+        Bank bank = new Bank();
+        String from = numberIn(0, 2, "F");
+        String to = numberIn(1, 2, "T");
+        bank.addAccount(new BankAccount(from, "From", 5000.0));
+        bank.addAccount(new BankAccount(to, "To", 922_337_203_685_000.0));
+        try (PartitionedBankEngine engine = new PartitionedBankEngine(bank, 2)) {
+            assertEquals(TransactionStatus.BALANCE_OVERFLOW, engine.transfer(from, to, 1000.0).join());
+        }
+        assertEquals(5000.0, bank.getAccount(from).getBalance());
+    }
+
+    @Test
+    public void testConcurrentTransfersConserveMoney() throws InterruptedException {
+        Bank bank = new Bank();
+        int accounts = 64;
+        for (int i = 0; i < accounts; i++) {
+            bank.addAccount(new BankAccount("P" + i, "Holder", 1000.0));
+        }
+        List<CompletableFuture<TransactionStatus>> results = new ArrayList<>();
+        try (PartitionedBankEngine engine = new PartitionedBankEngine(bank, 4, 64)) {
+            Thread[] producers = new Thread[4];
+            for (int t = 0; t < producers.length; t++) {
+                int seed = t;
+                producers[t] = new Thread(() -> {
+                    List<CompletableFuture<TransactionStatus>> local = new ArrayList<>();
+                    for (int i = 0; i < 5_000; i++) {
+                        int from = (i * 7 + seed) % accounts;
+                        int to = (i * 13 + seed * 3 + 1) % accounts;
+                        local.add(engine.transfer("P" + from, "P" + to, 1 + i % 50));
+                    }
+                    synchronized (results) {
+                        results.addAll(local);
+                    }
+                });
+                producers[t].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        }
+        assertEquals(20_000, results.size());
+        results.forEach(result -> assertTrue(result.isDone()));
+        long total = 0;
+        for (BankAccount account : bank.getAccounts()) {
+            total += account.getBalanceUnits();
+        }
+        assertEquals(accounts * 1000L * BankAccount.UNITS_PER_CURRENCY, total);
+    }
+
+    @Test
+    public void testCloseUnderConcurrentSubmitsCompletesEveryAcceptedCommand() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            Bank bank = new Bank();
+            bank.addAccount(new BankAccount("P0", "Holder", 1000.0));
+            bank.addAccount(new BankAccount("P1", "Holder", 1000.0));
+            PartitionedBankEngine engine = new PartitionedBankEngine(bank, 2, 8);
+            List<CompletableFuture<TransactionStatus>> accepted = new ArrayList<>();
+            Thread[] producers = new Thread[4];
+            for (int t = 0; t < producers.length; t++) {
+                String number = "P" + (t % 2);
+                producers[t] = new Thread(() -> {
+                    List<CompletableFuture<TransactionStatus>> local = new ArrayList<>();
+                    try {
+                        while (true) {
+                            local.add(engine.deposit(number, 1.0));
+                        }
+                    } catch (IllegalStateException closed) {
+                        // The engine stopped accepting commands.
+                    }
+                    synchronized (accepted) {
+                        accepted.addAll(local);
+                    }
+                });
+                producers[t].start();
+            }
+            Thread.sleep(5);
+            engine.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            long deposited = 0;
+            for (CompletableFuture<TransactionStatus> result : accepted) {
+                assertTrue(result.isDone(), "a command accepted before close never ran");
+                deposited += result.getNow(null) == TransactionStatus.SUCCESS ? 1 : 0;
+            }
+            assertEquals(2000.0 + deposited, bank.getAccount("P0").getBalance() + bank.getAccount("P1").getBalance());
+        }
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedBankEngine(new Bank(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedBankEngine(new Bank(), 2, 100));
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * PartitionedBankEngine against BankService on a mix of 90% single-account operations and
+ * 10% transfers, with one producer thread per partition (1, 2, 4 and 8 by default).
+ * Producers wait for each result, so the recorded latencies are submit-to-completion;
+ * p50 and p99 are printed after each run.
+ */
+public class PartitionedEngineBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int SAMPLES = 1 << 20;
+
+    public static void main(String[] args) {
+        int[] partitionCounts = args.length > 0 ? BankLookupBenchmark.parseSizes(args) : new int[] {1, 2, 4, 8};
+
+        Bank bank = new Bank();
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = "ACC" + i;
+            bank.addAccount(new BankAccount(numbers[i], "Holder" + i, 1_000_000.0));
+        }
+        BankService service = new BankService(bank);
+
+        for (int partitions : partitionCounts) {
+            long[][] serviceLatencies = new long[partitions][SAMPLES];
+            int[] serviceCounts = new int[partitions];
+            BenchmarkRunner.run("BankService mixed", partitions, t -> {
+                long start = System.nanoTime();
+                long result = mixed(bank, service, numbers);
+                record(serviceLatencies, serviceCounts, t, System.nanoTime() - start);
+                return result;
+            });
+            printPercentiles(serviceLatencies, serviceCounts);
+
+            long[][] engineLatencies = new long[partitions][SAMPLES];
+            int[] engineCounts = new int[partitions];
+            try (PartitionedBankEngine engine = new PartitionedBankEngine(bank, partitions)) {
+                BenchmarkRunner.run("PartitionedBankEngine mixed p=" + partitions, partitions, t -> {
+                    long start = System.nanoTime();
+                    long result = mixed(engine, numbers);
+                    record(engineLatencies, engineCounts, t, System.nanoTime() - start);
+                    return result;
+                });
+            }
+            printPercentiles(engineLatencies, engineCounts);
+        }
+    }
+
+    private static long mixed(Bank bank, BankService service, String[] numbers) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int op = random.nextInt(10);
+        String number = numbers[random.nextInt(ACCOUNTS)];
+        if (op == 0) {
+            return service.tryTransfer(number, numbers[random.nextInt(ACCOUNTS)], 1.0).ordinal();
+        }
+        BankAccount account = bank.getAccount(number);
+        return (op % 2 == 0 ? account.tryDeposit(1.0) : account.tryWithdraw(1.0)).ordinal();
+    }
+
+    private static long mixed(PartitionedBankEngine engine, String[] numbers) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int op = random.nextInt(10);
+        String number = numbers[random.nextInt(ACCOUNTS)];
+        if (op == 0) {
+            return engine.transfer(number, numbers[random.nextInt(ACCOUNTS)], 1.0).join().ordinal();
+        }
+        return (op % 2 == 0 ? engine.deposit(number, 1.0) : engine.withdraw(number, 1.0)).join().ordinal();
+    }
+
+    private static void record(long[][] latencies, int[] counts, int thread, long nanos) {
+        latencies[thread][counts[thread]++ & (SAMPLES - 1)] = nanos;
+    }
+
+    private static void printPercentiles(long[][] latencies, int[] counts) {
+        int total = 0;
+        for (int t = 0; t < latencies.length; t++) {
+            total += Math.min(counts[t], SAMPLES);
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int t = 0; t < latencies.length; t++) {
+            int n = Math.min(counts[t], SAMPLES);
+            System.arraycopy(latencies[t], 0, all, offset, n);
+            offset += n;
+        }
+        Arrays.sort(all);
+        if (all.length > 0) {
+            System.out.printf("    latency p50=%,d ns p99=%,d ns p99.9=%,d ns%n",
+                    all[all.length / 2], all[(int) (all.length * 0.99)], all[(int) (all.length * 0.999)]);
+        }
+    }
+}
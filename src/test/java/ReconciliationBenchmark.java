@@ -0,0 +1,70 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reconciling two copies of a book that differ in 1, 100 and 10,000 accounts: the full
+ * getAccounts() walk on both sides against a {@link LedgerDigest} drill-down, and the cost
+ * the digest adds to deposits. {@code ReconciliationBenchmark [accounts]}, default 1M.
+ */
+public class ReconciliationBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Bank ours = new Bank();
+        Bank theirs = new Bank();
+        for (int i = 0; i < accounts; i++) {
+            ours.addAccount(new BankAccount("ACC" + i, "Holder" + i, 1000.0));
+            theirs.addAccount(new BankAccount("ACC" + i, "Holder" + i, 1000.0));
+        }
+
+        BenchmarkRunner.run("deposit, no digest n=" + accounts, t ->
+                ours.getAccount("ACC" + ThreadLocalRandom.current().nextInt(accounts)).tryDeposit(1.0).ordinal());
+        long start = System.nanoTime();
+        LedgerDigest ourDigest = LedgerDigest.attach(ours);
+        System.out.printf("attach digest to %,d accounts: %,d ms%n", accounts, (System.nanoTime() - start) / 1_000_000);
+        BenchmarkRunner.run("deposit, digest attached n=" + accounts, t ->
+                ours.getAccount("ACC" + ThreadLocalRandom.current().nextInt(accounts)).tryDeposit(1.0).ordinal());
+        // Bring the other side level, then diverge by a known number of accounts.
+        for (BankAccount account : ours.getAccounts()) {
+            BankAccount copy = theirs.getAccount(account.getAccountNumber());
+            copy.adjustUnits(account.getBalanceUnits() - copy.getBalanceUnits());
+        }
+        LedgerDigest theirDigest = LedgerDigest.attach(theirs);
+
+        int changed = 0;
+        for (int differences : new int[] {1, 100, 10_000}) {
+            for (; changed < differences; changed++) {
+                theirs.getAccount("ACC" + (int) ((long) changed * accounts / differences)).deposit(0.01);
+            }
+            for (int round = 0; round <= ROUNDS; round++) {
+                start = System.nanoTime();
+                int walked = fullWalk(ours, theirs);
+                long walk = System.nanoTime() - start;
+                start = System.nanoTime();
+                int drilled = ourDigest.differingAccounts(theirDigest).size();
+                long drill = System.nanoTime() - start;
+                if (round > 0) {
+                    System.out.printf("%,6d differences: full walk %,9.2f ms (%,d found), digest %,9.3f ms (%,d found)%n",
+                            differences, walk / 1e6, walked, drill / 1e6, drilled);
+                }
+            }
+        }
+    }
+
+    private static int fullWalk(Bank ours, Bank theirs) {
+        Map<String, Long> balances = new HashMap<>();
+        for (BankAccount account : theirs.getAccounts()) {
+            balances.put(account.getAccountNumber(), account.getBalanceUnits());
+        }
+        int differing = 0;
+        for (BankAccount account : ours.getAccounts()) {
+            Long balance = balances.remove(account.getAccountNumber());
+            if (balance == null || balance != account.getBalanceUnits()) {
+                differing++;
+            }
+        }
+        return differing + balances.size();
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Throwing withdraw/transfer against the non-throwing tryWithdraw/tryTransfer at
+ * 0%, 10%, 30% and 90% rejection rates. Rejections exceed the max withdrawal limit,
+ * so they leave balances untouched.
+ */
+public class RejectionPathBenchmark {
+
+    public static void main(String[] args) {
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 1_000_000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 1_000_000.0));
+        BankService service = new BankService(bank);
+        BankAccount account = bank.getAccount("A");
+
+        for (int rejectPercent : new int[] {0, 10, 30, 90}) {
+            BenchmarkRunner.run("withdraw (throwing) reject=" + rejectPercent + "%", t -> {
+                if (ThreadLocalRandom.current().nextInt(100) < rejectPercent) {
+                    try {
+                        account.withdraw(20_000.0);
+                    } catch (IllegalArgumentException e) {
+                        return 0;
+                    }
+                }
+                account.withdraw(10.0);
+                account.deposit(10.0);
+                return 1;
+            });
+            BenchmarkRunner.run("tryWithdraw reject=" + rejectPercent + "%", t -> {
+                if (ThreadLocalRandom.current().nextInt(100) < rejectPercent) {
+                    if (account.tryWithdraw(20_000.0) != TransactionStatus.SUCCESS) {
+                        return 0;
+                    }
+                }
+                account.tryWithdraw(10.0);
+                account.tryDeposit(10.0);
+                return 1;
+            });
+            BenchmarkRunner.run("transfer reject=" + rejectPercent + "%", t -> {
+                double amount = ThreadLocalRandom.current().nextInt(100) < rejectPercent ? 20_000.0 : 10.0;
+                boolean forward = service.transfer("A", "B", amount);
+                return forward && service.transfer("B", "A", amount) ? 1 : 0;
+            });
+            BenchmarkRunner.run("tryTransfer reject=" + rejectPercent + "%", t -> {
+                double amount = ThreadLocalRandom.current().nextInt(100) < rejectPercent ? 20_000.0 : 10.0;
+                TransactionStatus forward = service.tryTransfer("A", "B", amount);
+                return forward.isSuccess() && service.tryTransfer("B", "A", amount).isSuccess() ? 1 : 0;
+            });
+        }
+    }
+}
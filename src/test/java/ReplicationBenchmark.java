@@ -0,0 +1,98 @@
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Transfer throughput of a journaled bank with no standby, one ASYNC standby and one SYNC
+ * standby (in this JVM, over loopback), and the replication lag under that load: the time
+ * from a deposit on the primary until the standby shows it, and the journal bytes not yet
+ * applied. The journal fsyncs every 10 ms so the disk stays out of the way.
+ * {@code ReplicationBenchmark [accounts] [threads]}, default 100k and 8.
+ */
+public class ReplicationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        run(null, accounts, threads);
+        run(ReplicationPrimary.AckMode.ASYNC, accounts, threads);
+        run(ReplicationPrimary.AckMode.SYNC, accounts, threads);
+    }
+
+    private static void run(ReplicationPrimary.AckMode mode, int accounts, int threads) throws Exception {
+        Path dir = Files.createTempDirectory("replication-bench");
+        try (Journal journal = Journal.open(dir.resolve("primary.journal"), Journal.SyncMode.INTERVAL, 10)) {
+            Bank bank = journal.recover();
+            for (int i = 0; i < accounts; i++) {
+                bank.addAccount(new BankAccount("ACC" + i, "Holder" + i, 1_000_000.0));
+            }
+            bank.addAccount(new BankAccount("PROBE", "Probe", 0.0));
+            BankService service = new BankService(bank);
+            String name = mode == null ? "no standby" : mode + " standby";
+            if (mode == null) {
+                transfers(name, service, accounts, threads);
+                return;
+            }
+            try (ReplicationPrimary primary = ReplicationPrimary.start(journal, 0, mode);
+                 ReplicationBackup backup = ReplicationBackup.start(
+                         new InetSocketAddress("127.0.0.1", primary.port()), dir.resolve("backup.journal"))) {
+                while (backup.appliedPosition() < primary.appendedPosition()) {
+                    Thread.sleep(10);
+                }
+                AtomicBoolean running = new AtomicBoolean(true);
+                LatencyHistogram lag = new LatencyHistogram();
+                long[] bytesBehind = new long[2];
+                Thread probe = new Thread(() -> {
+                    BankAccount primaryProbe = bank.getAccount("PROBE");
+                    BankAccount standbyProbe = backup.bank().getAccount("PROBE");
+                    while (running.get()) {
+                        long expected = primaryProbe.getBalanceUnits() + 1;
+                        long start = System.nanoTime();
+                        primaryProbe.depositUnits(1);
+                        while (standbyProbe.getBalanceUnits() < expected && running.get()) {
+                            Thread.onSpinWait();
+                        }
+                        lag.record(System.nanoTime() - start);
+                        long behind = primary.appendedPosition() - backup.appliedPosition();
+                        bytesBehind[0] = Math.max(bytesBehind[0], behind);
+                        bytesBehind[1] += behind;
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }, "lag-probe");
+                probe.start();
+                transfers(name, service, accounts, threads);
+                running.set(false);
+                probe.join();
+                long[] buckets = lag.snapshot();
+                long samples = 0;
+                for (long count : buckets) {
+                    samples += count;
+                }
+                System.out.printf("  lag: p50 %,d us, p99 %,d us, max %,d us; bytes behind: mean %,d, max %,d%n",
+                        LatencyHistogram.percentile(buckets, 50) / 1000, LatencyHistogram.percentile(buckets, 99) / 1000,
+                        LatencyHistogram.percentile(buckets, 100) / 1000, bytesBehind[1] / Math.max(1, samples),
+                        bytesBehind[0]);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void transfers(String name, BankService service, int accounts, int threads) {
+        BenchmarkRunner.run(name + ", transfers", threads, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return service.tryTransfer("ACC" + random.nextInt(accounts), "ACC" + random.nextInt(accounts), 1.0)
+                    .ordinal();
+        });
+    }
+}
@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ReplicationTest {
+
+    @TempDir
+    Path dir;
+
+    private static InetSocketAddress address(ReplicationPrimary primary) {
+        return new InetSocketAddress("127.0.0.1", primary.port());
+    }
+
+    private static void awaitBackups(ReplicationPrimary primary, int count) throws InterruptedException {
+        for (int i = 0; i < 1000 && primary.backupCount() < count; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, primary.backupCount());
+    }
+
+    private static void awaitCaughtUp(ReplicationPrimary primary, ReplicationBackup backup)
+            throws InterruptedException {
+        for (int i = 0; i < 1000 && backup.appliedPosition() < primary.appendedPosition(); i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(primary.appendedPosition(), backup.appliedPosition());
+    }
+
+    @Test
+    public void testSyncAcknowledgementMeansApplied() throws Exception {
+        try (Journal journal = Journal.open(dir.resolve("primary.journal"), Journal.SyncMode.INTERVAL, 10);
+             ReplicationPrimary primary = ReplicationPrimary.start(journal, 0, ReplicationPrimary.AckMode.SYNC);
+             ReplicationBackup backup = ReplicationBackup.start(address(primary), dir.resolve("backup.journal"))) {
+            Bank bank = journal.recover();
+            awaitBackups(primary, 1);
+            Bank standby = backup.bank();
+
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            bank.addAccount(new BankAccount("B", "Bob", 500.0));
+            assertEquals(1000.0, standby.getAccount("A").getBalance());
+            bank.getAccount("A").deposit(250.0);
+            assertEquals(1250.0, standby.getAccount("A").getBalance());
+            assertTrue(new BankService(bank).transfer("A", "B", 200.0));
+            assertEquals(1050.0, standby.getAccount("A").getBalance());
+            assertEquals(700.0, standby.getAccount("B").getBalance());
+            bank.removeAccount("B");
+            assertNull(standby.getAccount("B"));
+            assertEquals(primary.appendedPosition(), backup.appliedPosition());
+        }
+    }
+
+    @Test
+    public void testPromotedBackupCarriesOnAsPrimary() throws Exception {
+        Path backupPath = dir.resolve("backup.journal");
+        ReplicationBackup backup;
+        try (Journal journal = Journal.open(dir.resolve("primary.journal"), Journal.SyncMode.INTERVAL, 10);
+             ReplicationPrimary primary = ReplicationPrimary.start(journal, 0, ReplicationPrimary.AckMode.ASYNC)) {
+            Bank bank = journal.recover();
+            // Accounts created before the backup connects are streamed from the start of the journal.
+            for (int i = 0; i < 1000; i++) {
+                bank.addAccount(new BankAccount("ACC" + i, "Holder" + i, 100.0));
+            }
+            backup = ReplicationBackup.start(address(primary), backupPath);
+            BankService service = new BankService(bank);
+            for (int i = 0; i < 1000; i++) {
+                service.transfer("ACC" + i, "ACC" + (i + 1) % 1000, 25.0);
+            }
+            awaitCaughtUp(primary, backup);
+        }
+
+        // The primary is gone; the standby takes over with everything it acknowledged.
+        for (int i = 0; i < 1000 && backup.isFollowing(); i++) {
+            Thread.sleep(5);
+        }
+        assertFalse(backup.isFollowing());
+        try (Journal journal = backup.promote(Journal.SyncMode.GROUP_COMMIT)) {
+            // The promoted standby journals on into its own copy of the log.
+            assertEquals(backupPath, journal.path());
+            Bank bank = backup.bank();
+            assertEquals(1000, bank.getAccounts().size());
+            assertEquals(100.0, bank.getAccount("ACC0").getBalance());
+            assertEquals(100.0, bank.getAccount("ACC500").getBalance());
+            bank.getAccount("ACC0").deposit(1.0);
+        }
+        try (Journal journal = Journal.open(backupPath, Journal.SyncMode.GROUP_COMMIT)) {
+            assertEquals(101.0, journal.recover().getAccount("ACC0").getBalance());
+        }
+    }
+
+    @Test
+    public void testRestartedBackupResumesFromItsCopy() throws Exception {
+        Path backupPath = dir.resolve("backup.journal");
+        try (Journal journal = Journal.open(dir.resolve("primary.journal"), Journal.SyncMode.INTERVAL, 10);
+             ReplicationPrimary primary = ReplicationPrimary.start(journal, 0, ReplicationPrimary.AckMode.ASYNC)) {
+            Bank bank = journal.recover();
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            try (ReplicationBackup backup = ReplicationBackup.start(address(primary), backupPath)) {
+                awaitCaughtUp(primary, backup);
+            }
+            bank.getAccount("A").withdraw(100.0);
+            bank.addAccount(new BankAccount("B", "Bob", 10.0));
+            try (ReplicationBackup backup = ReplicationBackup.start(address(primary), backupPath)) {
+                assertTrue(backup.appliedPosition() > 0);
+                awaitCaughtUp(primary, backup);
+                assertEquals(900.0, backup.bank().getAccount("A").getBalance());
+                assertEquals(10.0, backup.bank().getAccount("B").getBalance());
+                assertEquals(1, backup.bank().findByHolder("Alice").size());
+            }
+        }
+    }
+
+    @Test
+    public void testBackupAheadOfACrashedPrimaryIsTurnedAway() throws Exception {
+        Path primaryPath = dir.resolve("primary.journal");
+        Path backupPath = dir.resolve("backup.journal");
+        long kept;
+        try (Journal journal = Journal.open(primaryPath, Journal.SyncMode.INTERVAL, 10);
+             ReplicationPrimary primary = ReplicationPrimary.start(journal, 0, ReplicationPrimary.AckMode.SYNC);
+             ReplicationBackup backup = ReplicationBackup.start(address(primary), backupPath)) {
+            Bank bank = journal.recover();
+            awaitBackups(primary, 1);
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            kept = primary.appendedPosition();
+            bank.getAccount("A").deposit(100.0);
+            assertEquals(primary.appendedPosition(), backup.appliedPosition());
+        }
+        // The primary crashes before its last frame reaches the disk, and carries on without it.
+        try (FileChannel file = FileChannel.open(primaryPath, StandardOpenOption.WRITE)) {
+            file.truncate(kept);
+        }
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        try (Journal journal = Journal.open(primaryPath, Journal.SyncMode.INTERVAL, 10);
+             ReplicationPrimary primary = ReplicationPrimary.start(journal, 0, ReplicationPrimary.AckMode.ASYNC,
+                     errors::add)) {
+            Bank bank = journal.recover();
+            bank.getAccount("A").deposit(200.0);
+            bank.addAccount(new BankAccount("B", "Bob", 10.0));
+
+            assertThrows(IOException.class, () -> ReplicationBackup.start(address(primary), backupPath));
+            for (int i = 0; i < 1000 && errors.isEmpty(); i++) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, errors.size());
+            assertEquals(0, primary.backupCount());
+
+            // A copy cut back to the history both share is followed again.
+            try (FileChannel file = FileChannel.open(backupPath, StandardOpenOption.WRITE)) {
+                file.truncate(kept);
+            }
+            try (ReplicationBackup backup = ReplicationBackup.start(address(primary), backupPath)) {
+                awaitCaughtUp(primary, backup);
+                assertEquals(1200.0, backup.bank().getAccount("A").getBalance());
+                assertEquals(10.0, backup.bank().getAccount("B").getBalance());
+            }
+        }
+    }
+
+    @Test
+    public void testErrorHandlersAreRequired() throws Exception {
+        try (Journal journal = Journal.open(dir.resolve("primary.journal"), Journal.SyncMode.INTERVAL, 10)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> ReplicationPrimary.start(journal, 0, ReplicationPrimary.AckMode.ASYNC, null));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ReplicationBackup.start(new InetSocketAddress("127.0.0.1", 1), dir.resolve("backup.journal"), null));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Restart time of a large book: full journal replay against newest snapshot plus journal
+ * tail. The account count defaults to 10M (run with a large heap, e.g. -Xmx16g).
+ */
+public class SnapshotRestartBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int tailOperations = accounts / 10;
+        Path dir = Files.createTempDirectory("snapshot-bench");
+        Path journalPath = dir.resolve("bank.journal");
+        try {
+            try (Journal journal = Journal.open(journalPath, Journal.SyncMode.INTERVAL, 100);
+                 SnapshotStore store = new SnapshotStore(dir, journal)) {
+                Bank bank = store.recover();
+                BankAccount[] all = new BankAccount[accounts];
+                for (int i = 0; i < accounts; i++) {
+                    all[i] = new BankAccount("ACC" + i, "Holder" + i, 1000.0);
+                    bank.addAccount(all[i]);
+                }
+                for (int i = 0; i < accounts; i++) {
+                    all[i].deposit(1.0);
+                }
+                long start = System.nanoTime();
+                store.checkpoint();
+                System.out.printf("checkpoint of %,d accounts: %,d ms%n", accounts, millisSince(start));
+                for (int i = 0; i < tailOperations; i++) {
+                    all[ThreadLocalRandom.current().nextInt(accounts)].deposit(1.0);
+                }
+            }
+            System.out.printf("journal size: %,d bytes%n", Files.size(journalPath));
+
+            long start = System.nanoTime();
+            try (Journal journal = Journal.open(journalPath, Journal.SyncMode.INTERVAL, 100)) {
+                journal.recover();
+            }
+            System.out.printf("restart from full journal: %,d ms%n", millisSince(start));
+            System.gc();
+
+            start = System.nanoTime();
+            try (Journal journal = Journal.open(journalPath, Journal.SyncMode.INTERVAL, 100);
+                 SnapshotStore store = new SnapshotStore(dir, journal)) {
+                store.recover();
+            }
+            System.out.printf("restart from snapshot + %,d-op tail: %,d ms%n", tailOperations, millisSince(start));
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
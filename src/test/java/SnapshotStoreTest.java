@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class SnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRecoverFromSnapshotAndJournalTail() throws IOException {
+        Path journalPath = dir.resolve("bank.journal");
+        try (Journal journal = Journal.open(journalPath, Journal.SyncMode.GROUP_COMMIT);
+             SnapshotStore store = new SnapshotStore(dir, journal)) {
+            Bank bank = store.recover();
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            bank.addAccount(new BankAccount("B", "Bob", 500.0));
+            bank.addAccount(new BankAccount("C", null, 300.0));
+            bank.getAccount("A").deposit(100.0);
+            store.checkpoint();
+
+            // Changes after the first snapshot, including one to an account it contains.
+            bank.getAccount("A").withdraw(50.0);
+            bank.removeAccount("B");
+            bank.addAccount(new BankAccount("D", "Dora", 700.0));
+            store.checkpoint();
+
+            bank.getAccount("D").deposit(25.0);
+            bank.getAccount("C").deposit(1.0);
+        }
+
+        assertEquals(1, countSnapshots(), "older snapshots are deleted");
+
+        try (Journal journal = Journal.open(journalPath, Journal.SyncMode.GROUP_COMMIT);
+             SnapshotStore store = new SnapshotStore(dir, journal)) {
+            Bank bank = store.recover();
+            List<BankAccount> accounts = bank.getAccounts();
+            assertEquals(3, accounts.size());
+            assertEquals("A", accounts.get(0).getAccountNumber());
+            assertEquals("C", accounts.get(1).getAccountNumber());
+            assertEquals("D", accounts.get(2).getAccountNumber());
+            assertEquals(1050.0, bank.getAccount("A").getBalance());
+            assertNull(bank.getAccount("C").getAccountHolder());
+            assertEquals(301.0, bank.getAccount("C").getBalance());
+            assertEquals(725.0, bank.getAccount("D").getBalance());
+            assertNull(bank.getAccount("B"));
+
+            // A snapshot after recovery starts from the previous one and keeps the same state.
+            bank.addAccount(new BankAccount("E", "Eve", 10.0));
+            store.checkpoint();
+        }
+
+        try (Journal journal = Journal.open(journalPath, Journal.SyncMode.GROUP_COMMIT);
+             SnapshotStore store = new SnapshotStore(dir, journal)) {
+            Bank bank = store.recover();
+            assertEquals(4, bank.getAccounts().size());
+            assertEquals(1050.0, bank.getAccount("A").getBalance());
+            assertEquals(10.0, bank.getAccount("E").getBalance());
+        }
+    }
+
+    @Test
+    public void testCheckpointWhileDepositsContinue() throws Exception {
+        Path journalPath = dir.resolve("live.journal");
+        try (Journal journal = Journal.open(journalPath, Journal.SyncMode.INTERVAL, 5);
+             SnapshotStore store = new SnapshotStore(dir, journal)) {
+            Bank bank = store.recover();
+            for (int i = 0; i < 100; i++) {
+                bank.addAccount(new BankAccount("ACC" + i, "Holder" + i, 100.0));
+            }
+            Thread writer = new Thread(() -> {
+                for (int n = 0; n < 20_000; n++) {
+                    bank.getAccount("ACC" + (n % 100)).deposit(1.0);
+                }
+            });
+            writer.start();
+            for (int i = 0; i < 5; i++) {
+                store.checkpoint();
+            }
+            writer.join();
+        }
+        try (Journal journal = Journal.open(journalPath, Journal.SyncMode.INTERVAL, 5);
+             SnapshotStore store = new SnapshotStore(dir, journal)) {
+            Bank bank = store.recover();
+            double total = 0;
+            for (BankAccount account : bank.getAccounts()) {
+                total += account.getBalance();
+            }
+            assertEquals(100 * 100.0 + 20_000.0, total);
+        }
+    }
+
+    @Test
+    public void testScheduledCheckpointsSurviveAFailure() throws Exception {
+        Path snapshots = dir.resolve("snapshots");
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        try (Journal journal = Journal.open(dir.resolve("scheduled.journal"), Journal.SyncMode.GROUP_COMMIT);
+             SnapshotStore store = new SnapshotStore(snapshots, journal)) {
+            Bank bank = new Bank();
+            bank.addListener(journal);
+            bank.addAccount(new BankAccount("A", "Alice", 100.0));
+            // The directory does not exist yet, so the first checkpoints fail.
+            store.start(5, errors::add);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (errors.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertFalse(errors.isEmpty());
+            Files.createDirectories(snapshots);
+            while (store.newestSnapshot() == null && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertNotNull(store.newestSnapshot());
+        }
+    }
+
+    private long countSnapshots() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".snap")).count();
+        }
+    }
+}
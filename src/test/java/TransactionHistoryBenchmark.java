@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Deposit cost with and without a TransactionHistory listener, heap allocated per recorded
+ * event, and statement query latency on one account with 5M entries (override with the
+ * first argument).
+ */
+public class TransactionHistoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path segment = Files.createTempFile("history", ".seg");
+        try (TransactionHistory history = new TransactionHistory(segment, 1024)) {
+            Bank plain = new Bank();
+            Bank recorded = new Bank();
+            recorded.addListener(history);
+            for (int i = 0; i < 10_000; i++) {
+                plain.addAccount(new BankAccount("ACC" + i, "Holder", 1_000_000.0));
+                recorded.addAccount(new BankAccount("ACC" + i, "Holder", 1_000_000.0));
+            }
+            BankAccount[] plainAccounts = plain.getAccounts().toArray(new BankAccount[0]);
+            BankAccount[] recordedAccounts = recorded.getAccounts().toArray(new BankAccount[0]);
+            BenchmarkRunner.run("deposit, no history", t ->
+                    plainAccounts[ThreadLocalRandom.current().nextInt(plainAccounts.length)].depositUnits(1).ordinal());
+            BenchmarkRunner.run("deposit, with history", t ->
+                    recordedAccounts[ThreadLocalRandom.current().nextInt(recordedAccounts.length)].depositUnits(1).ordinal());
+
+            BankAccount hot = recordedAccounts[0];
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < entries; i++) {
+                hot.depositUnits(1);
+            }
+            long nanos = System.nanoTime() - start;
+            long allocated = allocatedBytes() - before;
+            System.out.printf("recorded %,d events on one account: %.1f ns/event, %.2f bytes allocated/event, segment %,d bytes%n",
+                    entries, (double) nanos / entries, (double) allocated / entries, Files.size(segment));
+
+            long count = history.entryCount(hot);
+            BenchmarkRunner.run("statement page of 50, random offset", t ->
+                    history.statement(hot, ThreadLocalRandom.current().nextLong(count), 50).size());
+            BenchmarkRunner.run("statement newest 50", t -> history.statement(hot, count - 50, 50).size());
+        } finally {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
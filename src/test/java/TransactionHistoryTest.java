@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionHistoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRecordsKindsAndBalances() throws IOException {
+        Bank bank = new Bank();
+        try (TransactionHistory history = new TransactionHistory(dir.resolve("history.seg"), 16)) {
+            bank.addListener(history);
+            bank.addAccount(new BankAccount("A", "Alice", 1000.0));
+            bank.addAccount(new BankAccount("B", "Bob", 500.0));
+            BankAccount a = bank.getAccount("A");
+            a.deposit(100.0);
+            a.withdraw(50.0);
+            new BankService(bank).transfer("A", "B", 200.0);
+
+            List<TransactionHistory.Entry> entries = history.statement(a, 0, 10);
+            assertEquals(4, entries.size());
+            assertEquals(TransactionHistory.Kind.OPENING, entries.get(0).getKind());
+            assertEquals(1000.0, entries.get(0).getBalanceAfter());
+            assertEquals(TransactionHistory.Kind.DEPOSIT, entries.get(1).getKind());
+            assertEquals(TransactionHistory.Kind.WITHDRAWAL, entries.get(2).getKind());
+            assertEquals(-50.0, entries.get(2).getAmount());
+            assertEquals(TransactionHistory.Kind.TRANSFER_OUT, entries.get(3).getKind());
+            assertEquals(850.0, entries.get(3).getBalanceAfter());
+
+            List<TransactionHistory.Entry> b = history.statement(bank.getAccount("B"), 0, 10);
+            assertEquals(TransactionHistory.Kind.TRANSFER_IN, b.get(1).getKind());
+            assertEquals(700.0, b.get(1).getBalanceAfter());
+        }
+    }
+
+    @Test
+    public void testPagedAndTimeQueriesAcrossSpilledBlocks() throws IOException {
+        AtomicLong clock = new AtomicLong(1_000);
+        Bank bank = new Bank();
+        try (TransactionHistory history = new TransactionHistory(dir.resolve("history.seg"), 64,
+                () -> clock.getAndAdd(10))) {
+            bank.addListener(history);
+            bank.addAccount(new BankAccount("A", "Alice", 0.0));
+            BankAccount a = bank.getAccount("A");
+            for (int i = 1; i <= 10_000; i++) {
+                a.deposit(i % 7 + 1);
+            }
+            assertEquals(10_001, history.entryCount(a));
+
+            List<TransactionHistory.Entry> page = history.statement(a, 5_000, 100);
+            assertEquals(100, page.size());
+            for (int i = 0; i < page.size(); i++) {
+                assertEquals(5_000 + i, page.get(i).getIndex());
+            }
+            assertEquals(5_000 % 7 + 1, page.get(0).getAmount());
+            assertEquals(expectedBalance(5_000), page.get(0).getBalanceAfter());
+
+            // Entry i was recorded at 1000 + 10 * i.
+            List<TransactionHistory.Entry> range = history.statement(a, 1_000 + 10 * 2_500L, 1_000 + 10 * 2_504L, 100);
+            assertEquals(5, range.size());
+            assertEquals(2_500, range.get(0).getIndex());
+            assertEquals(2_504, range.get(4).getIndex());
+
+            List<TransactionHistory.Entry> tail = history.statement(a, 9_990, 100);
+            assertEquals(11, tail.size());
+            assertEquals(expectedBalance(10_000), tail.get(10).getBalanceAfter());
+
+            List<TransactionHistory.Entry> spanning = history.statement(a, 1_000 + 10 * 9_900L, Long.MAX_VALUE, 1_000);
+            assertEquals(101, spanning.size());
+            assertEquals(9_900, spanning.get(0).getIndex());
+        }
+    }
+
+    private static double expectedBalance(int entries) {
+        double balance = 0;
+        for (int i = 1; i <= entries; i++) {
+            balance += i % 7 + 1;
+        }
+        return balance;
+    }
+
+    @Test
+    public void testUnknownAccountAndInvalidRetention() throws IOException {
+        try (TransactionHistory history = new TransactionHistory(dir.resolve("history.seg"), 8)) {
+            BankAccount detached = new BankAccount("X", "Nobody", 1.0);
+            assertEquals(0, history.entryCount(detached));
+            assertTrue(history.statement(detached, 0, 10).isEmpty());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransactionHistory(dir.resolve("other.seg"), 1));
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * BankService.transfer throughput with account pairs drawn uniformly and from a
+ * Zipfian hot-account distribution, on 1, 4 and 16 threads.
+ */
+public class TransferContentionBenchmark {
+    private static final int ACCOUNTS = 100_000;
+
+    public static void main(String[] args) {
+        int[] threadCounts = args.length > 0 ? BankLookupBenchmark.parseSizes(args) : new int[] {1, 4, 16};
+
+        Bank bank = new Bank();
+        String[] numbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            numbers[i] = "ACC" + i;
+            bank.addAccount(new BankAccount(numbers[i], "Holder" + i, 1_000_000.0));
+        }
+        BankService service = new BankService(bank);
+
+        for (double skew : new double[] {0.0, 0.99, 1.2}) {
+            ZipfianGenerator zipf = new ZipfianGenerator(ACCOUNTS, skew);
+            for (int threads : threadCounts) {
+                BenchmarkRunner.run("transfer zipf skew=" + skew, threads, t -> {
+                    int from = zipf.next();
+                    int to = zipf.next();
+                    if (from == to) {
+                        to = (to + 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    }
+                    return service.transfer(numbers[from], numbers[to], 1.0) ? 1 : 0;
+                });
+            }
+        }
+
+        double total = 0;
+        for (BankAccount account : bank.getAccounts()) {
+            total += account.getBalance();
+        }
+        System.out.printf("total after run: %.4f (expected %.4f)%n", total, ACCOUNTS * 1_000_000.0);
+    }
+}
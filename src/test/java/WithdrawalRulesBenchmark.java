@@ -0,0 +1,42 @@
+import java.time.Duration;
+
+/**
+ * Cost of the compiled withdrawal rules on tryWithdraw + tryDeposit, for tiers with 1, 5
+ * and 20 declared rules, against the standard tier. Metrics are off to keep the clock out
+ * of the measurement.
+ */
+public class WithdrawalRulesBenchmark {
+
+    public static void main(String[] args) {
+        BankMetrics.setEnabled(false);
+        WithdrawalRules one = WithdrawalRules.builder("one rule")
+                .maxWithdrawal(10_000)
+                .build();
+        WithdrawalRules five = WithdrawalRules.builder("five rules")
+                .maxWithdrawal(10_000)
+                .maxWithdrawal(25_000)
+                .minimumBalance(50)
+                .hourlyLimit(1e12)
+                .dailyLimit(1e13)
+                .build();
+        WithdrawalRules.Builder builder = WithdrawalRules.builder("twenty rules");
+        for (int i = 0; i < 6; i++) {
+            builder.maxWithdrawal(10_000 + i * 1000).minimumBalance(10 * i);
+        }
+        long[] minutes = {1, 15, 60, 1440};
+        for (int i = 0; i < 8; i++) {
+            builder.velocityLimit(Duration.ofMinutes(minutes[i % minutes.length]), 1e12 + i);
+        }
+        WithdrawalRules twenty = builder.build();
+
+        for (WithdrawalRules rules : new WithdrawalRules[] {WithdrawalRules.STANDARD, one, five, twenty}) {
+            BankAccount account = new BankAccount("A", "Alice", 1_000_000.0);
+            account.setWithdrawalRules(rules);
+            BenchmarkRunner.run(rules.getTier() + " (" + rules.getRuleCount() + " rules)", t -> {
+                account.tryWithdraw(1.0);
+                return account.tryDeposit(1.0).ordinal();
+            });
+        }
+        BankMetrics.setEnabled(true);
+    }
+}
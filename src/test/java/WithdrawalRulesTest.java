@@ -0,0 +1,159 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WithdrawalRulesTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    public void testStandardRulesKeepHistoricalOrder() {
+        BankAccount account = new BankAccount("A", "Alice", 100.0);
+        assertSame(WithdrawalRules.STANDARD, account.getWithdrawalRules());
+        assertEquals(TransactionStatus.INSUFFICIENT_BALANCE, account.tryWithdraw(20_000.0));
+        assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, account.tryWithdraw(60.0));
+        account.deposit(50_000.0);
+        assertEquals(TransactionStatus.EXCEEDS_MAX_WITHDRAWAL, account.tryWithdraw(20_000.0));
+        assertEquals(TransactionStatus.SUCCESS, account.tryWithdraw(10_000.0));
+    }
+
+    @Test
+    public void testRulesFoldToTightestLimits() {
+        WithdrawalRules rules = WithdrawalRules.builder("gold")
+                .maxWithdrawal(50_000)
+                .maxWithdrawal(20_000)
+                .minimumBalance(0)
+                .minimumBalance(500)
+                .build();
+        assertEquals(4, rules.getRuleCount());
+        BankAccount account = new BankAccount("A", "Alice", 100_000.0);
+        account.setWithdrawalRules(rules);
+        assertEquals(TransactionStatus.EXCEEDS_MAX_WITHDRAWAL, account.tryWithdraw(30_000.0));
+        assertEquals(TransactionStatus.SUCCESS, account.tryWithdraw(20_000.0));
+        account.withdraw(20_000.0);
+        account.withdraw(20_000.0);
+        account.withdraw(20_000.0);
+        assertEquals(TransactionStatus.BELOW_MINIMUM_BALANCE, account.tryWithdraw(19_600.0));
+        assertEquals(TransactionStatus.SUCCESS, account.tryWithdraw(19_500.0));
+    }
+
+    @Test
+    public void testVelocityLimitsSlide() {
+        WithdrawalRules rules = WithdrawalRules.builder("capped")
+                .hourlyLimit(1000)
+                .dailyLimit(1500)
+                .clock(now::get)
+                .build();
+        BankAccount account = new BankAccount("A", "Alice", 100_000.0);
+        account.setWithdrawalRules(rules);
+        assertEquals(TransactionStatus.SUCCESS, account.tryWithdraw(600.0));
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, account.tryWithdraw(500.0));
+        assertEquals(TransactionStatus.SUCCESS, account.tryWithdraw(400.0));
+        assertEquals(99_000.0, account.getBalance());
+
+        now.addAndGet(Duration.ofMinutes(61).toMillis());
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, account.tryWithdraw(600.0));
+        assertEquals(TransactionStatus.SUCCESS, account.tryWithdraw(500.0));
+
+        now.addAndGet(Duration.ofHours(24).toMillis());
+        assertEquals(TransactionStatus.SUCCESS, account.tryWithdraw(1000.0));
+        assertThrows(IllegalArgumentException.class, () -> account.withdraw(1.0));
+    }
+
+    @Test
+    public void testFailedTransferDoesNotCountTowardVelocity() {
+        WithdrawalRules rules = WithdrawalRules.builder("capped").hourlyLimit(1000).clock(now::get).build();
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 10_000.0));
+        // Close enough to the largest representable balance that any deposit overflows.
+        bank.addAccount(new BankAccount("FULL", "Full", 922_337_203_685_000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 0.0));
+        bank.getAccount("A").setWithdrawalRules(rules);
+        BankService service = new BankService(bank);
+
+        assertEquals(TransactionStatus.BALANCE_OVERFLOW, service.tryTransfer("A", "FULL", 800.0));
+        assertFalse(service.transfer("A", "FULL", 800.0));
+        assertEquals(TransactionStatus.SUCCESS, service.tryTransfer("A", "B", 800.0));
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, service.tryTransfer("A", "B", 300.0));
+    }
+
+    @Test
+    public void testBatchRespectsVelocityLimits() {
+        WithdrawalRules rules = WithdrawalRules.builder("capped").hourlyLimit(1000).clock(now::get).build();
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 10_000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 0.0));
+        bank.getAccount("A").setWithdrawalRules(rules);
+        BankService service = new BankService(bank);
+
+        TransactionStatus[] results = service.transferBatch(List.of(
+                new TransferInstruction("A", "B", 600.0),
+                new TransferInstruction("A", "B", 600.0),
+                new TransferInstruction("A", "B", 400.0)));
+        assertArrayEquals(new TransactionStatus[] {TransactionStatus.SUCCESS,
+                TransactionStatus.EXCEEDS_VELOCITY_LIMIT, TransactionStatus.SUCCESS}, results);
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, bank.getAccount("A").tryWithdraw(1.0));
+    }
+
+    @Test
+    public void testBatchAndConcurrentWithdrawalShareOneAllowance() {
+        WithdrawalRules rules = WithdrawalRules.builder("capped").hourlyLimit(1000).clock(now::get).build();
+        Bank bank = new Bank();
+        bank.addAccount(new BankAccount("A", "Alice", 10_000.0));
+        bank.addAccount(new BankAccount("B", "Bob", 0.0));
+        BankAccount alice = bank.getAccount("A");
+        alice.setWithdrawalRules(rules);
+        TransactionStatus[] racing = new TransactionStatus[1];
+        // Withdraws from another thread once the batch has checked its debit but before it is done.
+        bank.addListener(new BankListener() {
+            @Override
+            public void accountAdded(BankAccount account, long accountId) {
+            }
+
+            @Override
+            public void accountRemoved(BankAccount account, long accountId) {
+            }
+
+            @Override
+            public void balanceChanged(BankAccount account, long accountId, long deltaUnits) {
+                if (account == alice && deltaUnits < 0 && racing[0] == null) {
+                    Thread thread = new Thread(() -> racing[0] = alice.tryWithdraw(500.0));
+                    thread.start();
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public boolean requiresOrdering() {
+                return false;
+            }
+        });
+
+        TransactionStatus[] results = new BankService(bank).transferBatch(List.of(new TransferInstruction("A", "B", 600.0)));
+        assertEquals(TransactionStatus.SUCCESS, results[0]);
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, racing[0]);
+        assertEquals(9_400.0, alice.getBalance(), 0.0);
+        assertEquals(TransactionStatus.SUCCESS, alice.tryWithdraw(400.0));
+        assertEquals(TransactionStatus.EXCEEDS_VELOCITY_LIMIT, alice.tryWithdraw(0.01));
+    }
+
+    @Test
+    public void testInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> WithdrawalRules.builder(""));
+        assertThrows(IllegalArgumentException.class, () -> WithdrawalRules.builder("t").maxWithdrawal(0));
+        assertThrows(IllegalArgumentException.class, () -> WithdrawalRules.builder("t").minimumBalance(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> WithdrawalRules.builder("t").velocityLimit(Duration.ofMillis(10), 100));
+        assertThrows(IllegalArgumentException.class, () -> new BankAccount("A", "Alice", 0).setWithdrawalRules(null));
+        assertThrows(IllegalArgumentException.class, () -> {
+            Bank bank = new ColumnarBank();
+            bank.addAccount(new BankAccount("A", "Alice", 0));
+            bank.getAccount("A").setWithdrawalRules(null);
+        });
+    }
+}
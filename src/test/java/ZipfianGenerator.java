@@ -0,0 +1,28 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples indexes in [0, n) with a Zipfian distribution: index 0 is the hottest.
+ * A skew of 0 is uniform; around 1 concentrates most traffic on a few accounts.
+ */
+public final class ZipfianGenerator {
+    private final double[] cumulative;
+
+    public ZipfianGenerator(int n, double skew) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int i = Arrays.binarySearch(cumulative, u);
+        return Math.min(i >= 0 ? i : -i - 1, cumulative.length - 1);
+    }
+}